@@ -0,0 +1,170 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.bench;
+
+
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.DweseTicketLoggerWebappApplication;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.util.FileSystemUtils;
+
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.UUID;
+
+
+/**
+ * Aplicación completa (sin servidor web) sobre una base de datos H2 en memoria en modo MariaDB, compartida
+ * por todos los benchmarks de una ejecución.
+ *
+ * El esquema es el de `schema.sql` (H2 no admite las columnas generadas `STORED`, que se crean como
+ * virtuales) y los datos se generan al arrancar: 20 comunidades, 60 provincias, 100 supermercados y
+ * `rows` ubicaciones y categorías. El log de la aplicación se limita a WARN para no medir la escritura de
+ * las trazas INFO de los DAO.
+ */
+@State(Scope.Benchmark)
+public class ApplicationState {
+
+
+    static final int REGIONS = 20;
+    static final int PROVINCES = 60;
+    static final int SUPERMARKETS = 100;
+
+    // Cada categoría cuelga de la que tiene su id dividido entre este valor, lo que da un árbol de pocos niveles
+    private static final int CATEGORY_FAN_OUT = 10;
+
+
+    @Param({"1000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+
+    private Path uploadDir;
+
+
+    @Setup(Level.Trial)
+    public void start() throws IOException, SQLException {
+        uploadDir = Files.createTempDirectory("jmh-uploads");
+        String url = "jdbc:h2:mem:jmh-" + UUID.randomUUID() + ";MODE=MariaDB;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+        try (Connection connection = DriverManager.getConnection(url, "sa", "")) {
+            String schema = new ClassPathResource("schema.sql").getContentAsString(StandardCharsets.UTF_8)
+                    .replace(" STORED;", ";");
+            ScriptUtils.executeSqlScript(connection, new ByteArrayResource(schema.getBytes(StandardCharsets.UTF_8)));
+            seed(connection);
+        }
+        // Como argumentos de línea de comandos para que prevalezcan sobre application.properties
+        context = new SpringApplicationBuilder(DweseTicketLoggerWebappApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=" + url,
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--spring.sql.init.mode=never",
+                        "--spring.jpa.hibernate.ddl-auto=none",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=WARN",
+                        "--UPLOAD_PATH=" + uploadDir,
+                        "--app.uploads.sweep.interval=0");
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(uploadDir);
+    }
+
+
+    /**
+     * @param type Tipo del bean.
+     * @return Bean de la aplicación.
+     */
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    /**
+     * @return Contexto de la aplicación.
+     */
+    public ApplicationContext applicationContext() {
+        return context;
+    }
+
+    /**
+     * @return Directorio de subidas de esta ejecución.
+     */
+    public Path uploadDir() {
+        return uploadDir;
+    }
+
+
+    private void seed(Connection connection) throws SQLException {
+        connection.setAutoCommit(false);
+        try (PreparedStatement regions = connection.prepareStatement("INSERT INTO regions (code, name) VALUES (?, ?)")) {
+            for (int i = 1; i <= REGIONS; i++) {
+                regions.setString(1, "R" + i);
+                regions.setString(2, "Region " + i);
+                regions.addBatch();
+            }
+            regions.executeBatch();
+        }
+        try (PreparedStatement provinces = connection.prepareStatement("INSERT INTO provinces (code, name, region_id) VALUES (?, ?, ?)")) {
+            for (int i = 1; i <= PROVINCES; i++) {
+                provinces.setString(1, "P" + i);
+                provinces.setString(2, "Province " + i);
+                provinces.setInt(3, 1 + i % REGIONS);
+                provinces.addBatch();
+            }
+            provinces.executeBatch();
+        }
+        try (PreparedStatement supermarkets = connection.prepareStatement("INSERT INTO supermarkets (name) VALUES (?)")) {
+            for (int i = 1; i <= SUPERMARKETS; i++) {
+                supermarkets.setString(1, "Supermarket " + i);
+                supermarkets.addBatch();
+            }
+            supermarkets.executeBatch();
+        }
+        try (PreparedStatement locations = connection.prepareStatement(
+                "INSERT INTO locations (address, city, supermarket_id, province_id, latitude, longitude) VALUES (?, ?, ?, ?, ?, ?)")) {
+            for (int i = 1; i <= rows; i++) {
+                locations.setString(1, "Calle " + i);
+                locations.setString(2, "City " + i % 500);
+                locations.setInt(3, 1 + i % SUPERMARKETS);
+                locations.setInt(4, 1 + i % PROVINCES);
+                locations.setDouble(5, 36 + (i % 700) / 100.0);
+                locations.setDouble(6, -9 + (i % 1200) / 100.0);
+                locations.addBatch();
+            }
+            locations.executeBatch();
+        }
+        try (PreparedStatement categories = connection.prepareStatement("INSERT INTO categories (name, parent_id) VALUES (?, ?)")) {
+            for (int i = 1; i <= rows; i++) {
+                categories.setString(1, "Category " + i);
+                if (i > CATEGORY_FAN_OUT) {
+                    categories.setInt(2, i / CATEGORY_FAN_OUT);
+                } else {
+                    categories.setNull(2, Types.INTEGER);
+                }
+                categories.addBatch();
+            }
+            categories.executeBatch();
+        }
+        connection.commit();
+    }
+}
@@ -0,0 +1,123 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.bench;
+
+
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.CategoryDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.KeysetPage;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.KeysetPageRequest;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.CategoryNode;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.CategoryRow;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Category;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+
+/**
+ * Lecturas de {@code CategoryDAOImpl} con {@code rows} categorías en árbol: listados, subárboles y ancestros,
+ * recuento de descendientes, consulta por id y comprobaciones de existencia.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CategoryDAOBenchmark {
+
+
+    private CategoryDAO categoryDAO;
+
+    private int rows;
+
+    private List<Integer> ids;
+
+    // Va recorriendo los ids para no leer siempre la misma fila
+    private int nextId;
+
+
+    @Setup
+    public void setUp(ApplicationState application) {
+        categoryDAO = application.bean(CategoryDAO.class);
+        rows = application.rows;
+        ids = IntStream.rangeClosed(1, Math.min(rows, 25)).boxed().toList();
+    }
+
+    private int nextId() {
+        nextId = nextId % rows + 1;
+        return nextId;
+    }
+
+
+    @Benchmark
+    public List<Category> listAllCategory() {
+        return categoryDAO.listAllCategory();
+    }
+
+    @Benchmark
+    public KeysetPage<CategoryRow> listCategoryPage() {
+        return categoryDAO.listCategoryPage(new KeysetPageRequest());
+    }
+
+    @Benchmark
+    public void streamAllCategories(Blackhole blackhole) {
+        try (Stream<CategoryRow> categories = categoryDAO.streamAllCategories()) {
+            categories.forEach(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public List<CategoryRow> listCategoryRowsByIds() {
+        return categoryDAO.listCategoryRowsByIds(ids);
+    }
+
+    @Benchmark
+    public Category getCategoryById() {
+        return categoryDAO.getCategoryById(nextId());
+    }
+
+    @Benchmark
+    public List<CategoryNode> listSubtree() {
+        return categoryDAO.listSubtree(1 + nextId() % 10);
+    }
+
+    @Benchmark
+    public List<CategoryNode> listAncestors() {
+        return categoryDAO.listAncestors(nextId());
+    }
+
+    @Benchmark
+    public Map<Integer, Long> countDescendants() {
+        return categoryDAO.countDescendants(ids);
+    }
+
+    @Benchmark
+    public boolean existsCategoryByName() {
+        return categoryDAO.existsCategoryByName("Category " + nextId());
+    }
+
+    @Benchmark
+    public boolean existsCategoryByNameMissing() {
+        return categoryDAO.existsCategoryByName("Missing");
+    }
+
+    @Benchmark
+    public boolean existsCategoryByNameAndNotId() {
+        int id = nextId();
+        return categoryDAO.existsCategoryByNameAndNotId("Category " + id, id);
+    }
+}
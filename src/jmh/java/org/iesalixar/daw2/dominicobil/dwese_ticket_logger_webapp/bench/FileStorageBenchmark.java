@@ -0,0 +1,74 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.bench;
+
+
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services.FileStorageService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockMultipartFile;
+
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * {@code FileStorageService.saveFile} con imágenes de 64 KB y 1 MB: un contenido nuevo en cada llamada
+ * (comprobación del tipo, SHA-256, escritura en disco y alta en `stored_files`) y el mismo contenido repetido,
+ * que solo calcula el SHA-256 y reutiliza el archivo ya guardado. Las imágenes llevan cabecera WebP, que
+ * ImageIO no decodifica, para que la generación de versiones no compita en segundo plano con la medición.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FileStorageBenchmark {
+
+
+    private static final byte[] WEBP_HEADER = {'R', 'I', 'F', 'F', 0, 0, 0, 0, 'W', 'E', 'B', 'P'};
+
+
+    @Param({"65536", "1048576"})
+    public int fileSize;
+
+    private FileStorageService fileStorageService;
+
+    private byte[] content;
+
+    private MockMultipartFile duplicate;
+
+    private long counter;
+
+
+    @Setup
+    public void setUp(ApplicationState application) {
+        fileStorageService = application.bean(FileStorageService.class);
+        content = new byte[fileSize];
+        System.arraycopy(WEBP_HEADER, 0, content, 0, WEBP_HEADER.length);
+        duplicate = new MockMultipartFile("imageFile", "scan.webp", "image/webp", content.clone());
+        fileStorageService.saveFile(duplicate);
+    }
+
+
+    @Benchmark
+    public String saveNewFile() {
+        // Un contador justo después de la cabecera basta para que el SHA-256 sea distinto cada vez
+        ByteBuffer.wrap(content).putLong(WEBP_HEADER.length, ++counter);
+        return fileStorageService.saveFile(new MockMultipartFile("imageFile", "scan.webp", "image/webp", content));
+    }
+
+    @Benchmark
+    public String saveDuplicateFile() {
+        return fileStorageService.saveFile(duplicate);
+    }
+}
@@ -0,0 +1,92 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.bench;
+
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * Compara dos resultados de JMH en JSON (el de un commit anterior y el actual) y muestra, benchmark a benchmark,
+ * la diferencia de puntuación. Un benchmark se marca como regresión si empeora más del umbral indicado y la
+ * diferencia es mayor que la suma de los márgenes de error de las dos mediciones; en ese caso el proceso termina
+ * con código 1, para poder usarlo en integración continua.
+ *
+ * Uso: {@code JmhResultComparison <anterior.json> <actual.json> [umbral en %]}
+ */
+public class JmhResultComparison {
+
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: JmhResultComparison <baseline.json> <current.json> [threshold %]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+        Map<String, Score> baseline = read(Path.of(args[0]));
+        Map<String, Score> current = read(Path.of(args[1]));
+
+        int regressions = 0;
+        System.out.printf(Locale.ROOT, "%-90s %14s %14s %9s%n", "benchmark", "baseline", "current", "change");
+        for (Map.Entry<String, Score> entry : current.entrySet()) {
+            Score now = entry.getValue();
+            Score before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf(Locale.ROOT, "%-90s %14s %14.3f %9s  %s%n", entry.getKey(), "-", now.value, "new", now.unit);
+                continue;
+            }
+            double change = (now.value - before.value) / before.value * 100;
+            // En modo throughput una puntuación mayor es mejor; en los modos de tiempo, peor
+            double worsening = now.higherIsBetter() ? -change : change;
+            boolean significant = Math.abs(now.value - before.value) > now.error + before.error;
+            boolean regression = worsening > threshold && significant;
+            if (regression) {
+                regressions++;
+            }
+            System.out.printf(Locale.ROOT, "%-90s %14.3f %14.3f %+8.1f%%  %s%s%n", entry.getKey(), before.value, now.value,
+                    change, now.unit, regression ? "  REGRESSION" : "");
+        }
+        baseline.keySet().stream()
+                .filter(name -> !current.containsKey(name))
+                .forEach(name -> System.out.printf(Locale.ROOT, "%-90s %14.3f %14s %9s%n", name, baseline.get(name).value, "-", "removed"));
+
+        System.out.printf(Locale.ROOT, "%d benchmarks compared, %d regressions over %.1f%%%n", current.size(), regressions, threshold);
+        if (regressions > 0) {
+            System.exit(1);
+        }
+    }
+
+
+    /**
+     * Lee un resultado de JMH. Cada benchmark se identifica por su nombre, su modo y sus parámetros.
+     */
+    private static Map<String, Score> read(Path file) throws IOException {
+        Map<String, Score> scores = new TreeMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file.toFile())) {
+            Map<String, String> params = new LinkedHashMap<>();
+            result.path("params").fields().forEachRemaining(param -> params.put(param.getKey(), param.getValue().asText()));
+            String name = result.path("benchmark").asText() + " [" + result.path("mode").asText() + "]"
+                    + (params.isEmpty() ? "" : " " + params);
+            JsonNode metric = result.path("primaryMetric");
+            double error = metric.path("scoreError").asDouble(0);
+            scores.put(name, new Score(metric.path("score").asDouble(), Double.isNaN(error) ? 0 : error,
+                    metric.path("scoreUnit").asText(), result.path("mode").asText()));
+        }
+        return scores;
+    }
+
+
+    private record Score(double value, double error, String unit, String mode) {
+
+        private boolean higherIsBetter() {
+            return mode.equals("thrpt");
+        }
+    }
+}
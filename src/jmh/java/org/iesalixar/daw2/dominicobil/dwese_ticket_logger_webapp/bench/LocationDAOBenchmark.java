@@ -0,0 +1,147 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.bench;
+
+
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.KeysetPage;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.KeysetPageRequest;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.LocationDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.LocationKeys;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.LocationPoint;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.LocationRow;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Location;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+
+/**
+ * Lecturas de {@code LocationDAOImpl} con {@code rows} ubicaciones: listados completos y paginados, coordenadas
+ * y claves para los índices en memoria, consulta por id y comprobaciones de existencia.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LocationDAOBenchmark {
+
+
+    private LocationDAO locationDAO;
+
+    private int rows;
+
+    private List<Integer> ids;
+
+    // Va recorriendo los ids para no leer siempre la misma fila
+    private int nextId;
+
+
+    @Setup
+    public void setUp(ApplicationState application) {
+        locationDAO = application.bean(LocationDAO.class);
+        rows = application.rows;
+        ids = IntStream.rangeClosed(1, Math.min(rows, 25)).boxed().toList();
+    }
+
+    private int nextId() {
+        nextId = nextId % rows + 1;
+        return nextId;
+    }
+
+
+    @Benchmark
+    public List<Location> listAllLocations() {
+        return locationDAO.listAllLocations();
+    }
+
+    @Benchmark
+    public KeysetPage<LocationRow> listLocationsPage() {
+        return locationDAO.listLocationsPage(new KeysetPageRequest());
+    }
+
+    @Benchmark
+    public void streamAllLocations(Blackhole blackhole) {
+        try (Stream<LocationRow> locations = locationDAO.streamAllLocations()) {
+            locations.forEach(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public List<LocationRow> listLocationRowsByIds() {
+        return locationDAO.listLocationRowsByIds(ids);
+    }
+
+    @Benchmark
+    public void streamLocationPoints(Blackhole blackhole) {
+        try (Stream<LocationPoint> points = locationDAO.streamLocationPoints()) {
+            points.forEach(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public List<LocationPoint> listLocationPointsByIds() {
+        return locationDAO.listLocationPointsByIds(ids);
+    }
+
+    @Benchmark
+    public List<LocationPoint> listLocationPointsInBox() {
+        return locationDAO.listLocationPointsInBox(37.0, 38.0, -4.0, -3.0, null);
+    }
+
+    @Benchmark
+    public void streamLocationKeys(Blackhole blackhole) {
+        try (Stream<LocationKeys> keys = locationDAO.streamLocationKeys()) {
+            keys.forEach(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public List<LocationKeys> listLocationKeysByIds() {
+        return locationDAO.listLocationKeysByIds(ids);
+    }
+
+    @Benchmark
+    public List<Integer> listLocationIdsByProvince() {
+        return locationDAO.listLocationIdsByProvince(1 + nextId() % ApplicationState.PROVINCES, 500);
+    }
+
+    @Benchmark
+    public List<Integer> listLocationIdsBySupermarket() {
+        return locationDAO.listLocationIdsBySupermarket(1 + nextId() % ApplicationState.SUPERMARKETS, 500);
+    }
+
+    @Benchmark
+    public Location getLocationById() {
+        return locationDAO.getLocationById(nextId());
+    }
+
+    @Benchmark
+    public boolean existsLocationByCode() {
+        return locationDAO.existsLocationByCode("Calle " + nextId());
+    }
+
+    @Benchmark
+    public boolean existsLocationByCodeMissing() {
+        return locationDAO.existsLocationByCode("Missing");
+    }
+
+    @Benchmark
+    public boolean existsLocationByCodeAndNotId() {
+        int id = nextId();
+        return locationDAO.existsLocationByCodeAndNotId("Calle " + id, id);
+    }
+}
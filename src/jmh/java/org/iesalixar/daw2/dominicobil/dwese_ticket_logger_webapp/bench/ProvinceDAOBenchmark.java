@@ -0,0 +1,122 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.bench;
+
+
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.KeysetPage;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.KeysetPageRequest;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.ProvinceDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.ProvinceKeys;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.ProvinceRow;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Province;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+
+/**
+ * Lecturas de {@code ProvinceDAOImpl}: listados, claves para los informes, consulta por id y comprobaciones
+ * de existencia.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ProvinceDAOBenchmark {
+
+
+    private ProvinceDAO provinceDAO;
+
+    private int rows;
+
+    private List<Integer> ids;
+
+    // Va recorriendo los ids para no leer siempre la misma fila
+    private int nextId;
+
+
+    @Setup
+    public void setUp(ApplicationState application) {
+        provinceDAO = application.bean(ProvinceDAO.class);
+        rows = ApplicationState.PROVINCES;
+        ids = IntStream.rangeClosed(1, Math.min(rows, 25)).boxed().toList();
+    }
+
+    private int nextId() {
+        nextId = nextId % rows + 1;
+        return nextId;
+    }
+
+
+    @Benchmark
+    public List<Province> listAllProvinces() {
+        return provinceDAO.listAllProvinces();
+    }
+
+    @Benchmark
+    public KeysetPage<ProvinceRow> listProvincesPage() {
+        return provinceDAO.listProvincesPage(new KeysetPageRequest());
+    }
+
+    @Benchmark
+    public void streamAllProvinces(Blackhole blackhole) {
+        try (Stream<ProvinceRow> provinces = provinceDAO.streamAllProvinces()) {
+            provinces.forEach(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public List<ProvinceRow> listProvinceRowsByIds() {
+        return provinceDAO.listProvinceRowsByIds(ids);
+    }
+
+    @Benchmark
+    public List<ProvinceKeys> listProvinceKeys() {
+        return provinceDAO.listProvinceKeys();
+    }
+
+    @Benchmark
+    public List<ProvinceKeys> listProvinceKeysByIds() {
+        return provinceDAO.listProvinceKeysByIds(ids);
+    }
+
+    @Benchmark
+    public List<Integer> listProvinceIdsByRegion() {
+        return provinceDAO.listProvinceIdsByRegion(1 + nextId() % ApplicationState.REGIONS, 500);
+    }
+
+    @Benchmark
+    public Province getProvinceById() {
+        return provinceDAO.getProvinceById(nextId());
+    }
+
+    @Benchmark
+    public boolean existsProvinceByCode() {
+        return provinceDAO.existsProvinceByCode("P" + nextId());
+    }
+
+    @Benchmark
+    public boolean existsProvinceByCodeMissing() {
+        return provinceDAO.existsProvinceByCode("MISSING");
+    }
+
+    @Benchmark
+    public boolean existsProvinceByCodeAndNotId() {
+        int id = nextId();
+        return provinceDAO.existsProvinceByCodeAndNotId("P" + id, id);
+    }
+}
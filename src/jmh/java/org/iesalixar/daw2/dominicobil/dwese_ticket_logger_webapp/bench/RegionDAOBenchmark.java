@@ -0,0 +1,105 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.bench;
+
+
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.KeysetPage;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.KeysetPageRequest;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.RegionDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.RegionRow;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Region;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+
+/**
+ * Lecturas de {@code RegionDAOImpl}: listados, consulta por id y comprobaciones de existencia.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RegionDAOBenchmark {
+
+
+    private RegionDAO regionDAO;
+
+    private int rows;
+
+    private List<Integer> ids;
+
+    // Va recorriendo los ids para no leer siempre la misma fila
+    private int nextId;
+
+
+    @Setup
+    public void setUp(ApplicationState application) {
+        regionDAO = application.bean(RegionDAO.class);
+        rows = ApplicationState.REGIONS;
+        ids = IntStream.rangeClosed(1, Math.min(rows, 25)).boxed().toList();
+    }
+
+    private int nextId() {
+        nextId = nextId % rows + 1;
+        return nextId;
+    }
+
+
+    @Benchmark
+    public List<Region> listAllRegions() {
+        return regionDAO.listAllRegions();
+    }
+
+    @Benchmark
+    public KeysetPage<RegionRow> listRegionsPage() {
+        return regionDAO.listRegionsPage(new KeysetPageRequest());
+    }
+
+    @Benchmark
+    public void streamAllRegions(Blackhole blackhole) {
+        try (Stream<RegionRow> regions = regionDAO.streamAllRegions()) {
+            regions.forEach(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public List<RegionRow> listRegionRowsByIds() {
+        return regionDAO.listRegionRowsByIds(ids);
+    }
+
+    @Benchmark
+    public Region getRegionById() {
+        return regionDAO.getRegionById(nextId());
+    }
+
+    @Benchmark
+    public boolean existsRegionByCode() {
+        return regionDAO.existsRegionByCode("R" + nextId());
+    }
+
+    @Benchmark
+    public boolean existsRegionByCodeMissing() {
+        return regionDAO.existsRegionByCode("MISSING");
+    }
+
+    @Benchmark
+    public boolean existsRegionByCodeAndNotId() {
+        int id = nextId();
+        return regionDAO.existsRegionByCodeAndNotId("R" + id, id);
+    }
+}
@@ -0,0 +1,105 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.bench;
+
+
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.KeysetPage;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.KeysetPageRequest;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.SupermarketDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.SupermarketRow;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Supermarket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+
+/**
+ * Lecturas de {@code SupermarketDAOImpl}: listados, consulta por id y comprobaciones de existencia.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SupermarketDAOBenchmark {
+
+
+    private SupermarketDAO supermarketDAO;
+
+    private int rows;
+
+    private List<Integer> ids;
+
+    // Va recorriendo los ids para no leer siempre la misma fila
+    private int nextId;
+
+
+    @Setup
+    public void setUp(ApplicationState application) {
+        supermarketDAO = application.bean(SupermarketDAO.class);
+        rows = ApplicationState.SUPERMARKETS;
+        ids = IntStream.rangeClosed(1, Math.min(rows, 25)).boxed().toList();
+    }
+
+    private int nextId() {
+        nextId = nextId % rows + 1;
+        return nextId;
+    }
+
+
+    @Benchmark
+    public List<Supermarket> listAllSupermarkets() {
+        return supermarketDAO.listAllSupermarkets();
+    }
+
+    @Benchmark
+    public KeysetPage<SupermarketRow> listSupermarketsPage() {
+        return supermarketDAO.listSupermarketsPage(new KeysetPageRequest());
+    }
+
+    @Benchmark
+    public void streamAllSupermarkets(Blackhole blackhole) {
+        try (Stream<SupermarketRow> supermarkets = supermarketDAO.streamAllSupermarkets()) {
+            supermarkets.forEach(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public List<SupermarketRow> listSupermarketRowsByIds() {
+        return supermarketDAO.listSupermarketRowsByIds(ids);
+    }
+
+    @Benchmark
+    public Supermarket getSupermarketById() {
+        return supermarketDAO.getSupermarketById(nextId());
+    }
+
+    @Benchmark
+    public boolean existsSupermarketByName() {
+        return supermarketDAO.existsSupermarketByName("Supermarket " + nextId());
+    }
+
+    @Benchmark
+    public boolean existsSupermarketByNameMissing() {
+        return supermarketDAO.existsSupermarketByName("Missing");
+    }
+
+    @Benchmark
+    public boolean existsSupermarketByNameAndNotId() {
+        int id = nextId();
+        return supermarketDAO.existsSupermarketByNameAndNotId("Supermarket " + id, id);
+    }
+}
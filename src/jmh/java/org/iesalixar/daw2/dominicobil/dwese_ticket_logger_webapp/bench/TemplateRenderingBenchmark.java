@@ -0,0 +1,132 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.bench;
+
+
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.CategoryRow;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.LocationRow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.spring6.expression.ThymeleafEvaluationContext;
+import org.thymeleaf.web.servlet.JakartaServletWebApplication;
+
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+
+/**
+ * Renderizado con Thymeleaf de los listados completos de ubicaciones ({@code location.html}) y categorías
+ * ({@code category.html}) con 100, 10.000 y 100.000 filas ya cargadas en memoria, sin base de datos. La salida
+ * se descarta contando los caracteres, así que se mide el motor de plantillas y no la red.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TemplateRenderingBenchmark {
+
+
+    @Param({"100", "10000", "100000"})
+    public int renderedRows;
+
+    private SpringTemplateEngine templateEngine;
+
+    private ThymeleafEvaluationContext evaluationContext;
+
+    private MockServletContext servletContext;
+
+    private JakartaServletWebApplication webApplication;
+
+    private List<LocationRow> locations;
+
+    private List<CategoryRow> categories;
+
+
+    @Setup
+    public void setUp(ApplicationState application) {
+        templateEngine = application.bean(SpringTemplateEngine.class);
+        evaluationContext = new ThymeleafEvaluationContext(application.applicationContext(),
+                ApplicationConversionService.getSharedInstance());
+        servletContext = new MockServletContext();
+        webApplication = JakartaServletWebApplication.buildApplication(servletContext);
+        locations = IntStream.rangeClosed(1, renderedRows)
+                .mapToObj(i -> new LocationRow(i, "Calle " + i, "City " + i % 500, "Province " + i % 60, "Supermarket " + i % 100))
+                .toList();
+        // Una de cada diez categorías tiene imagen, para que se resuelva también la URL de la miniatura
+        categories = IntStream.rangeClosed(1, renderedRows)
+                .mapToObj(i -> new CategoryRow(i, "Category " + i, i % 10 == 0 ? "ab/cd/" + i + ".png" : null,
+                        i > 10 ? "Category " + i / 10 : null))
+                .toList();
+    }
+
+
+    @Benchmark
+    public long renderLocations() throws IOException {
+        return render("location", "/locations", Map.of("listLocations", locations));
+    }
+
+    @Benchmark
+    public long renderCategories() throws IOException {
+        return render("category", "/categories", Map.of("listCategories", categories));
+    }
+
+
+    private long render(String template, String path, Map<String, Object> variables) throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest(servletContext, "GET", path);
+        WebContext context = new WebContext(webApplication.buildExchange(request, new MockHttpServletResponse()),
+                Locale.forLanguageTag("es"), variables);
+        context.setVariable(ThymeleafEvaluationContext.THYMELEAF_EVALUATION_CONTEXT_CONTEXT_VARIABLE_NAME, evaluationContext);
+        try (CountingWriter writer = new CountingWriter()) {
+            templateEngine.process(template, context, writer);
+            return writer.count;
+        }
+    }
+
+
+    /**
+     * Writer que descarta la salida y cuenta los caracteres escritos.
+     */
+    private static final class CountingWriter extends Writer {
+
+        private long count;
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            count += length;
+        }
+
+        @Override
+        public void write(String text, int offset, int length) {
+            count += length;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
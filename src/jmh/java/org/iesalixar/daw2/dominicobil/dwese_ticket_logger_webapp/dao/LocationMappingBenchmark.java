@@ -0,0 +1,76 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao;
+
+
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.bench.ApplicationState;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.LocationRow;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Location;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+
+/**
+ * Lectura de todas las ubicaciones con su provincia y supermercado por tres caminos: JDBC con
+ * {@link LocationDAOImpl.LocationRowMapper}, entidades JPA ({@code listAllLocations}) y la proyección JPA a
+ * {@link LocationRow} que usan los listados. Las tres hacen la misma consulta con joins, así que la diferencia
+ * es el coste de construir los objetos.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LocationMappingBenchmark {
+
+
+    private static final String ROW_MAPPER_QUERY =
+            "SELECT l.id, l.address, l.city, p.id AS province_id, p.code AS province_code, p.name AS province_name, " +
+                    "s.id AS supermarket_id, s.name AS supermarket_name " +
+                    "FROM locations l JOIN provinces p ON l.province_id = p.id JOIN supermarkets s ON l.supermarket_id = s.id";
+
+    private final LocationDAOImpl.LocationRowMapper rowMapper = new LocationDAOImpl.LocationRowMapper();
+
+    private JdbcTemplate jdbcTemplate;
+
+    private LocationDAO locationDAO;
+
+
+    @Setup
+    public void setUp(ApplicationState application) {
+        jdbcTemplate = application.bean(JdbcTemplate.class);
+        locationDAO = application.bean(LocationDAO.class);
+    }
+
+
+    @Benchmark
+    public List<Location> rowMapper() {
+        return jdbcTemplate.query(ROW_MAPPER_QUERY, rowMapper);
+    }
+
+    @Benchmark
+    public List<Location> jpaEntities() {
+        return locationDAO.listAllLocations();
+    }
+
+    @Benchmark
+    public void jpaProjection(Blackhole blackhole) {
+        try (Stream<LocationRow> rows = locationDAO.streamAllLocations()) {
+            rows.forEach(blackhole::consume);
+        }
+    }
+}
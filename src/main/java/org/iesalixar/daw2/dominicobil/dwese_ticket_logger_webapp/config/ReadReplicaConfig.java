@@ -0,0 +1,137 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.config;
+
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+
+
+/**
+ * Configuración de la separación de lecturas y escrituras entre el primario y una réplica.
+ *
+ * Solo se activa si se define `app.datasource.replica.url` (variable DB_REPLICA_URL); sin ella la
+ * aplicación usa el único DataSource que crea Spring Boot. El DataSource principal es un
+ * `LazyConnectionDataSourceProxy`: no pide la conexión física hasta la primera sentencia, de modo que
+ * las transacciones marcadas como de solo lectura (`@ReadOnlyTransactional` en los DAO) la obtienen
+ * de la réplica y el resto del primario. Si la réplica no responde o su retraso supera
+ * `app.datasource.replica.max-lag`, las lecturas vuelven al primario.
+ */
+@Configuration
+@ConditionalOnExpression("!'${app.datasource.replica.url:}'.isEmpty()")
+public class ReadReplicaConfig {
+
+
+    // Logger para registrar eventos en esta clase
+    private static final Logger logger = LoggerFactory.getLogger(ReadReplicaConfig.class);
+
+
+    @Value("${app.datasource.replica.url}")
+    private String replicaUrl;
+
+    @Value("${app.datasource.replica.username:${spring.datasource.username}}")
+    private String replicaUsername;
+
+    @Value("${app.datasource.replica.password:${spring.datasource.password}}")
+    private String replicaPassword;
+
+    @Value("${app.datasource.replica.lag-query:SHOW REPLICA STATUS}")
+    private String lagQuery;
+
+    @Value("${app.datasource.replica.max-lag:5s}")
+    private Duration maxLag;
+
+    @Value("${app.datasource.replica.check-interval:5s}")
+    private Duration checkInterval;
+
+
+    /**
+     * Pool de conexiones del primario, configurado con las propiedades `spring.datasource.*`.
+     * @param properties Propiedades del DataSource de Spring Boot.
+     * @return DataSource del primario.
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+
+    /**
+     * Pool de conexiones de solo lectura de la réplica.
+     * @param properties Propiedades del DataSource de Spring Boot (para el driver).
+     * @return DataSource de la réplica.
+     */
+    @Bean
+    @ConfigurationProperties("app.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .driverClassName(properties.determineDriverClassName())
+                .url(replicaUrl)
+                .username(replicaUsername)
+                .password(replicaPassword)
+                .build();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+
+    /**
+     * Monitor del retraso de la réplica.
+     * @param replicaDataSource DataSource de la réplica.
+     * @return Monitor ya arrancado.
+     */
+    @Bean(destroyMethod = "close")
+    public ReplicaLagMonitor replicaLagMonitor(@Qualifier("replicaDataSource") DataSource replicaDataSource) {
+        ReplicaLagMonitor monitor = new ReplicaLagMonitor(replicaDataSource, lagQuery, maxLag, checkInterval);
+        monitor.start();
+        logger.info("Read/write splitting enabled. Replica: {} (max lag {}s).", replicaUrl, maxLag.toSeconds());
+        return monitor;
+    }
+
+
+    /**
+     * DataSource que usan JPA y JDBC: escrituras al primario y transacciones de solo lectura a la réplica.
+     * @param primaryDataSource DataSource del primario.
+     * @param replicaDataSource DataSource de la réplica.
+     * @param replicaLagMonitor Monitor que decide si la réplica puede usarse.
+     * @return DataSource con separación de lecturas y escrituras.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                 ReplicaLagMonitor replicaLagMonitor) {
+        AbstractRoutingDataSource readOnlyDataSource = new AbstractRoutingDataSource() {
+            @Override
+            protected Object determineCurrentLookupKey() {
+                return replicaLagMonitor.isReplicaUsable() ? "replica" : "primary";
+            }
+        };
+        readOnlyDataSource.setTargetDataSources(Map.of("replica", replicaDataSource, "primary", primaryDataSource));
+        readOnlyDataSource.afterPropertiesSet();
+
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+        dataSource.setReadOnlyDataSource(readOnlyDataSource);
+        return dataSource;
+    }
+}
@@ -0,0 +1,128 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.config;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Comprueba periódicamente el retraso de la réplica de lectura.
+ *
+ * Ejecuta la consulta de retraso configurada (por defecto `SHOW REPLICA STATUS`, que requiere el
+ * permiso REPLICA MONITOR) y lee la columna `Seconds_Behind_Master`, o la primera columna si no existe.
+ * La réplica solo se usa mientras el retraso sea conocido y no supere el máximo permitido: si la
+ * consulta falla, no devuelve filas o devuelve NULL (replicación detenida), las lecturas van al primario.
+ */
+public class ReplicaLagMonitor implements AutoCloseable {
+
+
+    // Logger para registrar eventos en esta clase
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    // Columna de SHOW REPLICA STATUS con el retraso en segundos
+    private static final String LAG_COLUMN = "Seconds_Behind_Master";
+
+
+    private final DataSource replica;
+    private final String lagQuery;
+    private final Duration maxLag;
+    private final Duration checkInterval;
+    private final ScheduledExecutorService scheduler;
+
+    // Hasta la primera comprobación correcta las lecturas van al primario
+    private volatile boolean replicaUsable;
+
+
+    /**
+     * @param replica       DataSource de la réplica.
+     * @param lagQuery      Consulta que devuelve el retraso de la réplica en segundos.
+     * @param maxLag        Retraso máximo con el que se siguen enviando lecturas a la réplica.
+     * @param checkInterval Intervalo entre comprobaciones.
+     */
+    public ReplicaLagMonitor(DataSource replica, String lagQuery, Duration maxLag, Duration checkInterval) {
+        this.replica = replica;
+        this.lagQuery = lagQuery;
+        this.maxLag = maxLag;
+        this.checkInterval = checkInterval;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+
+    /**
+     * Comienza las comprobaciones periódicas.
+     */
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::check, 0, checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * @return true si las lecturas pueden enviarse a la réplica.
+     */
+    public boolean isReplicaUsable() {
+        return replicaUsable;
+    }
+
+
+    /**
+     * Mide el retraso actual y actualiza el estado de la réplica.
+     */
+    void check() {
+        Long lagSeconds = null;
+        try (Connection connection = replica.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.setQueryTimeout((int) Math.max(1, checkInterval.toSeconds()));
+            try (ResultSet resultSet = statement.executeQuery(lagQuery)) {
+                if (resultSet.next()) {
+                    long value = resultSet.getLong(lagColumn(resultSet.getMetaData()));
+                    lagSeconds = resultSet.wasNull() ? null : value;
+                }
+            }
+        } catch (SQLException e) {
+            logger.debug("Replica lag check failed: {}", e.getMessage());
+        }
+
+        boolean usable = lagSeconds != null && lagSeconds <= maxLag.toSeconds();
+        if (usable != replicaUsable) {
+            if (usable) {
+                logger.info("Read replica available (lag {}s). Read-only transactions will use the replica.", lagSeconds);
+            } else {
+                logger.warn("Read replica unavailable or lagging (lag: {}, max: {}s). Reads fall back to the primary.",
+                        lagSeconds == null ? "unknown" : lagSeconds + "s", maxLag.toSeconds());
+            }
+        }
+        replicaUsable = usable;
+    }
+
+
+    private static int lagColumn(ResultSetMetaData metaData) throws SQLException {
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            if (LAG_COLUMN.equalsIgnoreCase(metaData.getColumnLabel(i))) {
+                return i;
+            }
+        }
+        return 1;
+    }
+
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,116 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.config;
+
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+
+import javax.cache.CacheManager;
+import java.time.Duration;
+import java.util.List;
+import java.util.OptionalLong;
+
+
+/**
+ * Configuración de la caché de segundo nivel de Hibernate.
+ *
+ * Crea un CacheManager JCache local con Caffeine como proveedor y una caché acotada por cada región
+ * de Hibernate: las entidades de referencia (regiones, provincias, supermercados), la colección de
+ * provincias de cada región y los resultados de consultas cacheables. El tamaño máximo y la caducidad
+ * se leen de application.properties. Las cachés se crean aquí, antes de arrancar Hibernate, que las
+ * usa tal cual (`missing_cache_strategy=fail` evita que una región sin configurar se cree sin límites).
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+
+
+    // Logger para registrar eventos en esta clase
+    private static final Logger logger = LoggerFactory.getLogger(SecondLevelCacheConfig.class);
+
+
+    // Regiones de caché de las entidades de referencia (deben coincidir con las anotaciones @Cache)
+    public static final String REGIONS = "regions";
+    public static final String PROVINCES = "provinces";
+    public static final String SUPERMARKETS = "supermarkets";
+    public static final String REGION_PROVINCES = "regions.provinces";
+
+    // Regiones que Hibernate usa para la caché de consultas
+    public static final String QUERY_RESULTS = "default-query-results-region";
+    public static final String UPDATE_TIMESTAMPS = "default-update-timestamps-region";
+
+    // Todas las regiones configuradas, en el orden en que se muestran las estadísticas
+    public static final List<String> CACHE_REGIONS =
+            List.of(REGIONS, PROVINCES, SUPERMARKETS, REGION_PROVINCES, QUERY_RESULTS, UPDATE_TIMESTAMPS);
+
+
+    @Value("${app.cache.reference.max-entries:10000}")
+    private long referenceMaxEntries;
+
+    @Value("${app.cache.reference.expire-after-write:1h}")
+    private Duration referenceExpireAfterWrite;
+
+    @Value("${app.cache.query.max-entries:1000}")
+    private long queryMaxEntries;
+
+    @Value("${app.cache.query.expire-after-write:10m}")
+    private Duration queryExpireAfterWrite;
+
+
+    /**
+     * CacheManager JCache de Caffeine con una caché por región de Hibernate.
+     * @return CacheManager que Hibernate usa como almacenamiento de la caché de segundo nivel.
+     */
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager() {
+        // Proveedor propio (no el compartido de Caching) para que cada contexto de Spring tenga sus cachés
+        CacheManager cacheManager = new CaffeineCachingProvider().getCacheManager();
+        for (String region : List.of(REGIONS, PROVINCES, SUPERMARKETS, REGION_PROVINCES)) {
+            cacheManager.createCache(region, boundedCache(referenceMaxEntries, referenceExpireAfterWrite));
+        }
+        cacheManager.createCache(QUERY_RESULTS, boundedCache(queryMaxEntries, queryExpireAfterWrite));
+        // Las marcas de tiempo de actualización invalidan la caché de consultas: nunca deben expulsarse
+        cacheManager.createCache(UPDATE_TIMESTAMPS, cacheConfiguration());
+        logger.info("Second-level cache configured: {} entries / {} for reference entities, {} entries / {} for queries.",
+                referenceMaxEntries, referenceExpireAfterWrite, queryMaxEntries, queryExpireAfterWrite);
+        return cacheManager;
+    }
+
+
+    /**
+     * Entrega a Hibernate el CacheManager creado en esta configuración.
+     * @param hibernateCacheManager CacheManager con las regiones ya creadas.
+     * @return Customizer de las propiedades de Hibernate.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> {
+            properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        };
+    }
+
+
+    private CaffeineConfiguration<Object, Object> boundedCache(long maxEntries, Duration expireAfterWrite) {
+        CaffeineConfiguration<Object, Object> configuration = cacheConfiguration();
+        configuration.setMaximumSize(OptionalLong.of(maxEntries));
+        configuration.setExpireAfterWrite(OptionalLong.of(expireAfterWrite.toNanos()));
+        return configuration;
+    }
+
+
+    private CaffeineConfiguration<Object, Object> cacheConfiguration() {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setTypes(Object.class, Object.class);
+        // Estadísticas nativas de Caffeine: aciertos, fallos y expulsiones por región
+        configuration.setNativeStatisticsEnabled(true);
+        configuration.setStoreByValue(false);
+        return configuration;
+    }
+}
@@ -0,0 +1,94 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.config;
+
+
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services.LocalStorageBackend;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services.S3StorageBackend;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services.StorageBackend;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+
+/**
+ * Configuración del almacén de archivos subidos.
+ *
+ * Con `app.storage.type=local` (por defecto) los archivos se guardan en el directorio UPLOAD_PATH; con
+ * `app.storage.type=s3`, en un bucket compatible con S3 configurado con las propiedades `app.storage.s3.*`,
+ * que pueden compartir varios nodos de la aplicación.
+ */
+@Configuration
+public class StorageConfig {
+
+
+    // Logger para registrar eventos en esta clase
+    private static final Logger logger = LoggerFactory.getLogger(StorageConfig.class);
+
+
+    @Value("${app.storage.type:local}")
+    private String storageType;
+
+    // Variable de entorno para la ruta de almacenamiento local
+    @Value("${UPLOAD_PATH:}")
+    private String uploadPath;
+
+    @Value("${app.storage.s3.endpoint:}")
+    private String endpoint;
+
+    @Value("${app.storage.s3.region:us-east-1}")
+    private String region;
+
+    @Value("${app.storage.s3.bucket:}")
+    private String bucket;
+
+    @Value("${app.storage.s3.access-key:}")
+    private String accessKey;
+
+    @Value("${app.storage.s3.secret-key:}")
+    private String secretKey;
+
+    @Value("${app.storage.s3.staging-dir:${java.io.tmpdir}/ticket-logger-uploads}")
+    private String stagingDir;
+
+    @Value("${app.storage.s3.multipart-threshold:16MB}")
+    private DataSize multipartThreshold;
+
+    @Value("${app.storage.s3.part-size:8MB}")
+    private DataSize partSize;
+
+    @Value("${app.storage.s3.upload-concurrency:4}")
+    private int uploadConcurrency;
+
+
+    /**
+     * Almacén de archivos según `app.storage.type`.
+     * @return Almacén local o S3.
+     */
+    @Bean(destroyMethod = "close")
+    public StorageBackend storageBackend() {
+        if ("s3".equalsIgnoreCase(storageType)) {
+            if (endpoint.isEmpty() || bucket.isEmpty()) {
+                throw new IllegalStateException("app.storage.type=s3 requiere app.storage.s3.endpoint y app.storage.s3.bucket");
+            }
+            logger.info("Almacén de archivos S3: {}/{} (subida por partes desde {}).", endpoint, bucket, multipartThreshold);
+            return new S3StorageBackend(URI.create(endpoint), region, bucket, accessKey, secretKey, Paths.get(stagingDir),
+                    multipartThreshold.toBytes(), partSize.toBytes(), uploadConcurrency);
+        }
+
+        Path root = Paths.get(uploadPath);
+        if (!uploadPath.isEmpty() && Files.isDirectory(root)) {
+            logger.info("UPLOAD_PATH configurado correctamente: {}", uploadPath);
+        } else {
+            logger.error("La variable de entorno UPLOAD_PATH no está configurada o no es un directorio: {}", uploadPath);
+        }
+        return new LocalStorageBackend(root);
+    }
+}
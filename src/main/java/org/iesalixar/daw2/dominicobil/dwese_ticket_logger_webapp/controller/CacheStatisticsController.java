@@ -0,0 +1,37 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.controller;
+
+
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.CacheStatsReport;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services.CacheStatisticsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+
+/**
+ * Controlador que expone en JSON los contadores de la caché de segundo nivel.
+ */
+@RestController
+public class CacheStatisticsController {
+
+
+    // Logger para registrar eventos importantes en el controlador
+    private static final Logger logger = LoggerFactory.getLogger(CacheStatisticsController.class);
+
+
+    @Autowired
+    private CacheStatisticsService cacheStatisticsService;
+
+
+    /**
+     * Devuelve aciertos, fallos y expulsiones de cada región de la caché y los contadores de carga de la base de datos.
+     * @return Informe de estadísticas de la caché.
+     */
+    @GetMapping("/cache/stats")
+    public CacheStatsReport getCacheStats() {
+        logger.info("Solicitando las estadísticas de la caché de segundo nivel.");
+        return cacheStatisticsService.getReport();
+    }
+}
@@ -1,14 +1,25 @@
 package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.controller;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.KeysetPage;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.KeysetPageRequest;
 import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.CategoryDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.TicketDAO;
 import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Category;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.CategoryNode;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.CategoryRow;
 import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Region;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services.ExportService;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services.ChunkedUploadService;
 import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services.FileStorageService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.MessageSource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -16,8 +27,11 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
 @Controller
 @RequestMapping("/categories")
 public class CategoryController {
@@ -30,21 +44,60 @@ public class CategoryController {
     @Autowired
     private FileStorageService fileStorageService;
 
+    // Subidas por partes: el formulario envía el identificador de la sesión en lugar del archivo
+    @Autowired
+    private ChunkedUploadService chunkedUploadService;
 
     @Autowired
     private CategoryDAO categorieDAO;
 
+    // Las categorías usadas en líneas de ticket (o con subcategorías usadas) no se pueden borrar
+    @Autowired
+    private TicketDAO ticketDAO;
+
+    // Servicio para exportar los listados en CSV/NDJSON
+    @Autowired
+    private ExportService exportService;
+
     @GetMapping
-    public String listCategories(Model model) {
-        // Solicitando la lista de todas las categorias...
-        logger.info("Requesting the list of all categories...");
-        List<Category> listCategories = categorieDAO.listAllCategory();
+    public String listCategories(@ModelAttribute("pageRequest") KeysetPageRequest pageRequest,
+                                 @RequestParam(value = "all", defaultValue = "false") boolean all, Model model) {
+        if (all) {
+            // Todas las categorias en modo streaming: se renderizan según se leen del cursor
+            logger.info("Requesting all categories in streaming mode...");
+            model.addAttribute("listCategories", StreamingViews.iterateUntilRequestCompletes(categorieDAO.streamAllCategories()));
+            return "category";
+        }
+        // Solicitando una página de categorias...
+        logger.info("Requesting a page of categories...");
+        KeysetPage<CategoryRow> page = categorieDAO.listCategoryPage(pageRequest);
         // Se han cargado {} categorias.
-        logger.info("Loaded {} categories.", listCategories.size());
-        model.addAttribute("listCategories", listCategories);
+        logger.info("Loaded {} categories.", page.getContent().size());
+        model.addAttribute("page", page);
+        model.addAttribute("listCategories", page.getContent());
+        model.addAttribute("descendantCounts",
+                categorieDAO.countDescendants(page.getContent().stream().map(CategoryRow::id).toList()));
         return "category"; // Nombre de la plantilla Thymeleaf a renderizar
     }
 
+    /**
+     * Exporta todas las categorías en CSV o NDJSON leyendo directamente del cursor de base de datos,
+     * sin construir la lista en memoria.
+     *
+     * @param format         Formato de salida: `csv` (por defecto) o `ndjson`.
+     * @param acceptEncoding Cabecera Accept-Encoding; si admite gzip la salida se comprime al vuelo.
+     * @param response       Respuesta HTTP en la que se escriben las filas.
+     * @throws IOException Si falla la escritura de la respuesta.
+     */
+    @GetMapping("/export")
+    public void exportCategories(@RequestParam(value = "format", defaultValue = "csv") String format,
+                                 @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                 HttpServletResponse response) throws IOException {
+        logger.info("Exporting categories in {} format", format);
+        exportService.export(categorieDAO.streamAllCategories(), CategoryRow.class, "categories", ExportService.Format.of(format), acceptEncoding, response);
+    }
+
+
     @GetMapping("/new")
     public String showNewForm(Model model) {
         // Mostrando formulario para nueva categoria.
@@ -60,20 +113,26 @@ public class CategoryController {
         // Mostrando formulario de edición para la categoria con ID {}
         logger.info("Displaying edit form for the category with ID {}", id);
         Category category = categorieDAO.getCategoryById(id);
-        List<Category> listCategories = categorieDAO.listAllCategory(); // Obtener la lista de categorias
         if (category == null) {
             // No se encontró la categoria con ID {}
             logger.warn("Category with ID {} not found.");
             return "redirect:/categories"; // Redirigir si no se encuentra
         }
+        // La categoría y sus subcategorías no pueden elegirse como padre: crearían un ciclo
+        Set<Integer> subtreeIds = subtreeIds(id);
+        List<Category> listCategories = categorieDAO.listAllCategory().stream()
+                .filter(candidate -> !subtreeIds.contains(candidate.getId()))
+                .toList();
         model.addAttribute("category", category);
-        model.addAttribute("listCategories", categorieDAO.listAllCategory());
+        model.addAttribute("listCategories", listCategories);
+        model.addAttribute("breadcrumb", categorieDAO.listAncestors(id));
         return "category-form";
     }
 
     @PostMapping("/insert")
     public String insertCategory(@Valid @ModelAttribute("category") Category category, BindingResult result,
-                                 @RequestParam("imageFile") MultipartFile imageFile,
+                                 @RequestParam(value = "imageFile", required = false) MultipartFile imageFile,
+                                 @RequestParam(value = "uploadId", required = false) String uploadId,
                                  RedirectAttributes redirectAttributes, Locale locale, Model model) {
 
         // Verificar si hay errores en la validación
@@ -92,11 +151,16 @@ public class CategoryController {
         }
 
         // Guardar el archivo de imagen si se ha subido uno
-        if (!imageFile.isEmpty()) {
-            String fileName = fileStorageService.saveFile(imageFile);
-            if (fileName != null) {
-                category.setImage(fileName); // Guardar el nombre del archivo en la entidad
+        if (hasImage(imageFile, uploadId)) {
+            String fileName = storeImage(imageFile, uploadId);
+            if (fileName == null) {
+                // La imagen no es de un tipo permitido, es demasiado grande o no se ha podido guardar
+                logger.warn("Image for category {} was rejected.", category.getName());
+                model.addAttribute("errorMessage", messageSource.getMessage("msg.categorie-controller.image.invalid", null, locale));
+                model.addAttribute("listCategories", categorieDAO.listAllCategory());
+                return "category-form";
             }
+            category.setImage(fileName); // Guardar el nombre del archivo en la entidad
         }
 
         categorieDAO.insertCategory(category); // Insertar la nueva categoria
@@ -108,7 +172,8 @@ public class CategoryController {
 
     @PostMapping("/update")
     public String updateCategory(@Valid @ModelAttribute("categorie") Category category, BindingResult result,
-                                 @RequestParam("imageFile") MultipartFile imageFile,
+                                 @RequestParam(value = "imageFile", required = false) MultipartFile imageFile,
+                                 @RequestParam(value = "uploadId", required = false) String uploadId,
                                  RedirectAttributes redirectAttributes, Locale locale) {
 
         // Actualizando categoria con ID {}
@@ -126,15 +191,37 @@ public class CategoryController {
             return "redirect:/categories/edit?id=" + category.getId();
         }
 
+        if (category.getParent() != null && category.getParent().getId() != null
+                && subtreeIds(category.getId()).contains(category.getParent().getId())) {
+            // La categoria padre {} es la propia categoria o una de sus subcategorias.
+            logger.warn("Parent category {} is the category itself or one of its descendants.", category.getParent().getId());
+            String errorMessage = messageSource.getMessage("msg.categorie-controller.update.parentCycle", null, locale);
+            redirectAttributes.addFlashAttribute("errorMessage", errorMessage);
+            return "redirect:/categories/edit?id=" + category.getId();
+        }
+
         // Guardar la imagen subida
-        if (!imageFile.isEmpty()) {
-            String fileName = fileStorageService.saveFile(imageFile);
-            if (fileName != null) {
-                category.setImage(fileName); // Guardar el nombre del archivo en la entidad
+        if (hasImage(imageFile, uploadId)) {
+            String fileName = storeImage(imageFile, uploadId);
+            if (fileName == null) {
+                // La imagen no es de un tipo permitido, es demasiado grande o no se ha podido guardar
+                logger.warn("Image for category {} was rejected.", category.getId());
+                String errorMessage = messageSource.getMessage("msg.categorie-controller.image.invalid", null, locale);
+                redirectAttributes.addFlashAttribute("errorMessage", errorMessage);
+                return "redirect:/categories/edit?id=" + category.getId();
             }
+            category.setImage(fileName); // Guardar el nombre del archivo en la entidad
         }
 
-        categorieDAO.updateCategory(category);
+        try {
+            categorieDAO.updateCategory(category);
+        } catch (OptimisticLockingFailureException e) {
+            // La categoria con ID {} ha sido modificada por otro usuario.
+            logger.warn("Category with ID {} was modified by another user.", category.getId());
+            String errorMessage = messageSource.getMessage("msg.categorie-controller.update.conflict", null, locale);
+            redirectAttributes.addFlashAttribute("errorMessage", errorMessage);
+            return "redirect:/categories/edit?id=" + category.getId();
+        }
         // Categoria con ID {} actualizada con éxito.
         logger.info("Category with ID {} updated successfully.", category.getId());
         return "redirect:/categories";
@@ -142,18 +229,59 @@ public class CategoryController {
 
 
     @PostMapping("/delete")
-    public String deleteCategorie(@RequestParam("id") int id, RedirectAttributes redirectAttributes) {
+    public String deleteCategorie(@RequestParam("id") int id, RedirectAttributes redirectAttributes, Locale locale) {
         // Eliminando categoria con ID {}
         logger.info("Deleting category with ID {}", id);
-        Category category = categorieDAO.getCategoryById(id);
-        categorieDAO.deleteCategory(id);
-        // Eliminar la imagen asociada, si existe
-        if (category.getImage() != null && !category.getImage().isEmpty()) {
-            fileStorageService.deleteFile(category.getImage());
+        // El borrado arrastra las subcategorías, así que se comprueban las líneas de ticket de todo el subárbol
+        if (ticketDAO.existsTicketLinesByCategories(subtreeIds(id))) {
+            // La categoria con ID {} tiene lineas de ticket y no se puede eliminar.
+            logger.warn("Category with ID {} has ticket lines and cannot be deleted.", id);
+            String errorMessage = messageSource.getMessage("msg.categorie-controller.delete.hasTickets", null, locale);
+            redirectAttributes.addFlashAttribute("errorMessage", errorMessage);
+            return "redirect:/categories";
+        }
+        try {
+            // Las imágenes que se quedan sin uso las borra el almacén de archivos al confirmarse el borrado
+            categorieDAO.deleteCategory(id);
+        } catch (DataIntegrityViolationException e) {
+            // La categoria con ID {} ha recibido lineas de ticket entre la comprobacion y el borrado.
+            logger.warn("Category with ID {} got ticket lines before it could be deleted.", id);
+            String errorMessage = messageSource.getMessage("msg.categorie-controller.delete.hasTickets", null, locale);
+            redirectAttributes.addFlashAttribute("errorMessage", errorMessage);
+            return "redirect:/categories";
         }
 
         // Categoria con ID {} eliminada con éxito.
         logger.info("Category with ID {} deleted successfully.", id);
         return "redirect:/categories";
     }
+
+
+    /**
+     * Indica si el formulario trae una imagen, ya sea en el campo de archivo o como subida por partes.
+     */
+    private boolean hasImage(MultipartFile imageFile, String uploadId) {
+        return (uploadId != null && !uploadId.isBlank()) || (imageFile != null && !imageFile.isEmpty());
+    }
+
+    /**
+     * Guarda la imagen del formulario. Si viene de una subida por partes, el archivo ya está guardado y solo
+     * se recoge su ruta.
+     * @return Ruta de la imagen, o null si se ha rechazado o la sesión no existe o no se ha completado.
+     */
+    private String storeImage(MultipartFile imageFile, String uploadId) {
+        if (uploadId != null && !uploadId.isBlank()) {
+            return chunkedUploadService.claim(uploadId);
+        }
+        return fileStorageService.saveFile(imageFile);
+    }
+
+    /**
+     * IDs de una categoría y de todos sus descendientes.
+     * @param id ID de la categoría.
+     * @return Conjunto de IDs del subárbol.
+     */
+    private Set<Integer> subtreeIds(int id) {
+        return categorieDAO.listSubtree(id).stream().map(CategoryNode::id).collect(Collectors.toSet());
+    }
 }
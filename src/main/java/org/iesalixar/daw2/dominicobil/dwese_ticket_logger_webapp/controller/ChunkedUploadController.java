@@ -0,0 +1,132 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.controller;
+
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.UploadSessionStatus;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services.ChunkedUploadService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+
+import java.io.IOException;
+import java.io.InputStream;
+
+
+/**
+ * API de subidas por partes reanudables: abrir sesión, enviar partes, consultar el estado y cerrar.
+ */
+@RestController
+@RequestMapping("/upload-sessions")
+public class ChunkedUploadController {
+
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkedUploadController.class);
+
+    @Autowired
+    private ChunkedUploadService chunkedUploadService;
+
+
+    /**
+     * Abre una sesión de subida.
+     * @param fileName Nombre original del archivo.
+     * @param size     Tamaño total en bytes.
+     * @return 201 con el estado de la sesión; 400 si los datos no son válidos, 413 si el archivo supera el
+     *         máximo permitido o 429 si hay demasiadas sesiones abiertas.
+     */
+    @PostMapping
+    public ResponseEntity<UploadSessionStatus> createSession(@RequestParam("fileName") String fileName,
+                                                             @RequestParam("size") long size) {
+        ChunkedUploadService.Opened opened = chunkedUploadService.create(fileName, size);
+        return switch (opened.result()) {
+            case ACCEPTED -> ResponseEntity.status(HttpStatus.CREATED).body(opened.status());
+            case TOO_LARGE -> ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+            case TOO_MANY_SESSIONS -> ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+            default -> ResponseEntity.badRequest().build();
+        };
+    }
+
+
+    /**
+     * Recibe una parte. El cuerpo se lee directamente de la petición, sin cargarlo en memoria.
+     * @param id       Sesión.
+     * @param index    Número de la parte, desde 0.
+     * @param checksum SHA-256 de la parte en hexadecimal.
+     * @param request  Petición HTTP con la parte como cuerpo.
+     * @return 204 si se ha aceptado; 404 si la sesión no existe, 400 si la parte no es válida, 409 si la
+     *         misma parte se está recibiendo en otra petición, 410 si la sesión ya se ha completado o descartado
+     *         o 422 si el SHA-256 no coincide.
+     */
+    @PutMapping("/{id}/chunks/{index}")
+    public ResponseEntity<Void> putChunk(@PathVariable String id, @PathVariable int index,
+                                         @RequestHeader(value = "X-Chunk-SHA256", required = false) String checksum,
+                                         HttpServletRequest request) throws IOException {
+        try (InputStream body = request.getInputStream()) {
+            return switch (chunkedUploadService.writeChunk(id, index, body, checksum)) {
+                case ACCEPTED -> ResponseEntity.noContent().build();
+                case UNKNOWN_SESSION -> ResponseEntity.notFound().build();
+                case BUSY -> ResponseEntity.status(HttpStatus.CONFLICT).build();
+                case CLOSED -> ResponseEntity.status(HttpStatus.GONE).build();
+                case CHECKSUM_MISMATCH -> ResponseEntity.unprocessableEntity().build();
+                default -> ResponseEntity.badRequest().build();
+            };
+        }
+    }
+
+
+    /**
+     * Devuelve el estado de la sesión, para reanudar la subida desde `offset`.
+     * @param id Sesión.
+     * @return Estado de la sesión, o 404 si no existe.
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<UploadSessionStatus> getSession(@PathVariable String id) {
+        UploadSessionStatus status = chunkedUploadService.getStatus(id);
+        return status == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(status);
+    }
+
+
+    /**
+     * Cierra la sesión y guarda el archivo reunido.
+     * @param id Sesión.
+     * @return 200 con el estado; 404 si la sesión no existe, 409 si faltan partes o si otra petición lo está
+     *         guardando, o 422 si el archivo se ha rechazado.
+     */
+    @PostMapping("/{id}/complete")
+    public ResponseEntity<UploadSessionStatus> completeSession(@PathVariable String id) {
+        UploadSessionStatus status = chunkedUploadService.complete(id);
+        if (status == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (status.completed()) {
+            return ResponseEntity.ok(status);
+        }
+        if (status.completing() || status.receivedChunks() < status.chunkCount()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(status);
+        }
+        logger.warn("Upload session {} for {} was rejected.", id, status.fileName());
+        return ResponseEntity.unprocessableEntity().body(status);
+    }
+
+
+    /**
+     * Descarta la sesión y lo recibido hasta ahora.
+     * @param id Sesión.
+     * @return 204, o 404 si no existe.
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> abortSession(@PathVariable String id) {
+        return chunkedUploadService.abort(id) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+}
@@ -0,0 +1,41 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.controller;
+
+
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.DeletionJob;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services.CascadeDeletionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+
+/**
+ * Controlador que expone en JSON el estado de los borrados en cascada en segundo plano.
+ */
+@RestController
+public class DeletionJobController {
+
+
+    // Logger para registrar eventos importantes en el controlador
+    private static final Logger logger = LoggerFactory.getLogger(DeletionJobController.class);
+
+
+    @Autowired
+    private CascadeDeletionService cascadeDeletionService;
+
+
+    /**
+     * Devuelve el estado y el progreso de un trabajo de borrado.
+     * @param id ID del trabajo.
+     * @return Trabajo de borrado, o 404 si no existe.
+     */
+    @GetMapping("/deletion-jobs/{id}")
+    public ResponseEntity<DeletionJob> getDeletionJob(@PathVariable("id") int id) {
+        logger.info("Solicitando el estado del trabajo de borrado {}.", id);
+        DeletionJob job = cascadeDeletionService.getJob(id);
+        return job == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(job);
+    }
+}
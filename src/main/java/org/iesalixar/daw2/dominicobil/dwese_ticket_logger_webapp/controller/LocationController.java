@@ -1,16 +1,29 @@
 package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.controller;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.KeysetPage;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.KeysetPageRequest;
 import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.LocationDAO;
 import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.ProvinceDAO;
 import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.SupermarketDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.TicketDAO;
 import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Location;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.LocationRow;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.NearbyLocation;
 import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Province;
 import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Supermarket;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services.ExportService;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services.NearbyLocationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.MessageSource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -18,6 +31,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.sql.SQLException;
+import java.io.IOException;
 import java.util.List;
 import java.util.Locale;
 
@@ -36,6 +50,14 @@ public class LocationController {
     @Autowired
     private LocationDAO locationDAO;
 
+    // Servicio para exportar los listados en CSV/NDJSON
+    @Autowired
+    private ExportService exportService;
+
+    // Servicio con el índice espacial para buscar las ubicaciones más cercanas
+    @Autowired
+    private NearbyLocationService nearbyLocationService;
+
     @Autowired
     private SupermarketDAO supermarketDAO;
 
@@ -43,28 +65,84 @@ public class LocationController {
     @Autowired
     private ProvinceDAO provinceDAO;
 
+    // DAO de tickets: una ubicación con tickets no se puede borrar
+    @Autowired
+    private TicketDAO ticketDAO;
+
 
     @Autowired
     private MessageSource messageSource;
 
     /**
-     * Lista todas las ubicaciones y las pasa como atributo al modelo para que sean
-     * accesibles en la vista `location.html`.
+     * Lista una página de ubicaciones (paginación por keyset) y la pasa como atributo al modelo
+     * para que sea accesible en la vista `location.html`.
+     * Con `all=true` se listan todas las ubicaciones en modo streaming: las filas se leen de un cursor
+     * de base de datos mientras se renderiza la vista y la respuesta se envía por trozos.
      *
-     * @param model Objeto del modelo para pasar datos a la vista.
+     * @param pageRequest Parámetros de ordenación, filtro y cursor de la página.
+     * @param all         Si es true, se listan todas las ubicaciones en modo streaming.
+     * @param model       Objeto del modelo para pasar datos a la vista.
      * @return El nombre de la plantilla Thymeleaf para renderizar la lista de ubicaciones.
      */
     @GetMapping
-    public String listLocations(Model model) {
-        logger.info("Solicitando la lista de todas las ubicaciones...");
-        List<Location> listLocations = null;
-        listLocations = locationDAO.listAllLocations();
-        logger.info("Se han cargado {} ubicaciones.", listLocations.size());
-        model.addAttribute("listLocations", listLocations);
+    public String listLocations(@ModelAttribute("pageRequest") KeysetPageRequest pageRequest,
+                                @RequestParam(value = "all", defaultValue = "false") boolean all, Model model) {
+        if (all) {
+            logger.info("Solicitando todas las ubicaciones en modo streaming...");
+            model.addAttribute("listLocations", StreamingViews.iterateUntilRequestCompletes(locationDAO.streamAllLocations()));
+            return "location";
+        }
+        logger.info("Solicitando una página de ubicaciones...");
+        KeysetPage<LocationRow> page = locationDAO.listLocationsPage(pageRequest);
+        logger.info("Se han cargado {} ubicaciones.", page.getContent().size());
+        model.addAttribute("page", page);
+        model.addAttribute("listLocations", page.getContent());
         return "location";  // Vista para listar locations
     }
 
 
+    /**
+     * Exporta todas las ubicaciones en CSV o NDJSON leyendo directamente del cursor de base de datos,
+     * sin construir la lista en memoria.
+     *
+     * @param format         Formato de salida: `csv` (por defecto) o `ndjson`.
+     * @param acceptEncoding Cabecera Accept-Encoding; si admite gzip la salida se comprime al vuelo.
+     * @param response       Respuesta HTTP en la que se escriben las filas.
+     * @throws IOException Si falla la escritura de la respuesta.
+     */
+    @GetMapping("/export")
+    public void exportLocations(@RequestParam(value = "format", defaultValue = "csv") String format,
+                                @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                HttpServletResponse response) throws IOException {
+        logger.info("Exportando las ubicaciones en formato {}", format);
+        exportService.export(locationDAO.streamAllLocations(), LocationRow.class, "locations", ExportService.Format.of(format), acceptEncoding, response);
+    }
+
+
+    /**
+     * Devuelve en JSON las ubicaciones más cercanas a un punto, opcionalmente de un solo supermercado.
+     *
+     * @param latitude      Latitud del punto en grados.
+     * @param longitude     Longitud del punto en grados.
+     * @param supermarketId ID del supermercado para filtrar (opcional).
+     * @param limit         Número de ubicaciones a devolver.
+     * @return Ubicaciones ordenadas por distancia, o 400 si las coordenadas o el límite no son válidos.
+     */
+    @GetMapping(value = "/nearby", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<List<NearbyLocation>> findNearbyLocations(@RequestParam("lat") double latitude,
+                                                                    @RequestParam("lon") double longitude,
+                                                                    @RequestParam(value = "supermarketId", required = false) Integer supermarketId,
+                                                                    @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        if (!(Math.abs(latitude) <= 90 && Math.abs(longitude) <= 180) || limit < 1) {
+            logger.warn("Búsqueda por cercanía con parámetros no válidos: lat={}, lon={}, limit={}", latitude, longitude, limit);
+            return ResponseEntity.badRequest().build();
+        }
+        logger.info("Buscando las {} ubicaciones más cercanas a ({}, {})", limit, latitude, longitude);
+        return ResponseEntity.ok(nearbyLocationService.findNearest(latitude, longitude, supermarketId, limit));
+    }
+
+
     /**
      * Muestra el formulario para crear una nueva ubicación.
      *
@@ -169,7 +247,14 @@ public class LocationController {
         }
 
 
-        locationDAO.updateLocation(location);
+        try {
+            locationDAO.updateLocation(location);
+        } catch (OptimisticLockingFailureException e) {
+            logger.warn("La ubicación con ID {} ha sido modificada por otro usuario.", location.getId());
+            String errorMessage = messageSource.getMessage("msg.location-controller.update.conflict", null, locale);
+            redirectAttributes.addFlashAttribute("errorMessage", errorMessage);
+            return "redirect:/locations/edit?id=" + location.getId();
+        }
         logger.info("Ubicación con ID {} actualizada con éxito.", location.getId());
         return "redirect:/locations"; // Redirigir a la lista de locations
     }
@@ -182,14 +267,30 @@ public class LocationController {
      *
      * @param id                 ID de la ubicación a eliminar.
      * @param redirectAttributes Atributos para mensajes flash de redirección.
+     * @param locale             Locale para los mensajes de error.
      * @return Redirección a la lista de ubicaciones.
      */
     @PostMapping("/delete")
-    public String deleteLocation(@RequestParam("id") int id, RedirectAttributes redirectAttributes) {
+    public String deleteLocation(@RequestParam("id") int id, RedirectAttributes redirectAttributes, Locale locale) {
         logger.info("Eliminando ubicación con ID {}", id);
 
 
-        locationDAO.deleteLocation(id);
+        // Los tickets de la ubicación no se borran ni se reasignan
+        if (ticketDAO.existsTicketsByLocation(id)) {
+            logger.warn("La ubicación con ID {} tiene tickets y no se puede eliminar.", id);
+            String errorMessage = messageSource.getMessage("msg.location-controller.delete.hasTickets", null, locale);
+            redirectAttributes.addFlashAttribute("errorMessage", errorMessage);
+            return "redirect:/locations";
+        }
+        try {
+            locationDAO.deleteLocation(id);
+        } catch (DataIntegrityViolationException e) {
+            // Ha entrado un ticket entre la comprobación y el borrado
+            logger.warn("La ubicación con ID {} ha recibido tickets y no se ha eliminado.", id);
+            String errorMessage = messageSource.getMessage("msg.location-controller.delete.hasTickets", null, locale);
+            redirectAttributes.addFlashAttribute("errorMessage", errorMessage);
+            return "redirect:/locations";
+        }
         logger.info("Ubicación con ID {} eliminada con éxito.", id);
         return "redirect:/locations"; // Redirigir a la lista de locations
     }
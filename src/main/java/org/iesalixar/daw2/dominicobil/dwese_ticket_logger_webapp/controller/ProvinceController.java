@@ -1,14 +1,23 @@
 package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.controller;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.KeysetPage;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.KeysetPageRequest;
 import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.ProvinceDAO;
 import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.RegionDAO;
 import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Province;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.ProvinceRow;
 import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Region;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.DeletionJob;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services.CascadeDeletionService;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services.ExportService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.MessageSource;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -16,6 +25,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.sql.SQLException;
+import java.io.IOException;
 import java.util.List;
 import java.util.Locale;
 
@@ -34,6 +44,14 @@ public class ProvinceController {
     // DAO para gestionar las operaciones de las provincias en la base de datos
     @Autowired
     private ProvinceDAO provinceDAO;
+
+    // Servicio para exportar los listados en CSV/NDJSON
+    @Autowired
+    private ExportService exportService;
+
+    // Servicio que borra en segundo plano las provincias con sus ubicaciones
+    @Autowired
+    private CascadeDeletionService cascadeDeletionService;
     @Autowired
     private RegionDAO regionDAO;
 
@@ -41,23 +59,42 @@ public class ProvinceController {
 
 
     /**
-     * Lista todas las provincias y las pasa como atributo al modelo para que sean
-     * accesibles en la vista `province.html`.
+     * Lista una página de provincias (paginación por keyset) y la pasa como atributo al modelo
+     * para que sea accesible en la vista `province.html`.
      *
-     * @param model Objeto del modelo para pasar datos a la vista.
+     * @param pageRequest Parámetros de ordenación, filtro y cursor de la página.
+     * @param model       Objeto del modelo para pasar datos a la vista.
      * @return El nombre de la plantilla Thymeleaf para renderizar la lista de provincias.
      */
     @GetMapping
-    public String listProvinces(Model model) {
-        logger.info("Solicitando la lista de todas las provincias...");
-        List<Province> listProvinces = null;
-        listProvinces = provinceDAO.listAllProvinces();
-        logger.info("Se han cargado {} provincias.", listProvinces.size());
-        model.addAttribute("listProvinces", listProvinces); // Pasar la lista de provincias al modelo
+    public String listProvinces(@ModelAttribute("pageRequest") KeysetPageRequest pageRequest, Model model) {
+        logger.info("Solicitando una página de provincias...");
+        KeysetPage<ProvinceRow> page = provinceDAO.listProvincesPage(pageRequest);
+        logger.info("Se han cargado {} provincias.", page.getContent().size());
+        model.addAttribute("page", page);
+        model.addAttribute("listProvinces", page.getContent()); // Pasar la lista de provincias al modelo
         return "province"; // Nombre de la plantilla Thymeleaf a renderizar
     }
 
 
+    /**
+     * Exporta todas las provincias en CSV o NDJSON leyendo directamente del cursor de base de datos,
+     * sin construir la lista en memoria.
+     *
+     * @param format         Formato de salida: `csv` (por defecto) o `ndjson`.
+     * @param acceptEncoding Cabecera Accept-Encoding; si admite gzip la salida se comprime al vuelo.
+     * @param response       Respuesta HTTP en la que se escriben las filas.
+     * @throws IOException Si falla la escritura de la respuesta.
+     */
+    @GetMapping("/export")
+    public void exportProvinces(@RequestParam(value = "format", defaultValue = "csv") String format,
+                                @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                HttpServletResponse response) throws IOException {
+        logger.info("Exportando las provincias en formato {}", format);
+        exportService.export(provinceDAO.streamAllProvinces(), ProvinceRow.class, "provinces", ExportService.Format.of(format), acceptEncoding, response);
+    }
+
+
     /**
      * Muestra el formulario para crear una nueva provincia.
      *
@@ -150,24 +187,41 @@ public class ProvinceController {
             redirectAttributes.addFlashAttribute("errorMessage", errorMessage);
             return "redirect:/provinces/edit?id=" + province.getId();
         }
-        provinceDAO.updateProvince(province);
+        try {
+            provinceDAO.updateProvince(province);
+        } catch (OptimisticLockingFailureException e) {
+            logger.warn("La provincia con ID {} ha sido modificada por otro usuario.", province.getId());
+            String errorMessage = messageSource.getMessage("msg.province-controller.update.conflict", null, locale);
+            redirectAttributes.addFlashAttribute("errorMessage", errorMessage);
+            return "redirect:/provinces/edit?id=" + province.getId();
+        }
         logger.info("Provincia con ID {} actualizada con éxito.", province.getId());
         return "redirect:/provinces"; // Redirigir a la lista de provincias
     }
 
 
     /**
-     * Elimina una provincia de la base de datos.
+     * Elimina una provincia de la base de datos junto con sus ubicaciones.
+     * El borrado se hace en segundo plano y por bloques; la petición vuelve en cuanto queda registrado.
      *
      * @param id                 ID de la provincia a eliminar.
      * @param redirectAttributes Atributos para mensajes flash de redirección.
+     * @param locale             Idioma de los mensajes.
      * @return Redirección a la lista de provincias.
      */
     @PostMapping("/delete")
-    public String deleteProvince(@RequestParam("id") int id, RedirectAttributes redirectAttributes) {
+    public String deleteProvince(@RequestParam("id") int id, RedirectAttributes redirectAttributes, Locale locale) {
         logger.info("Eliminando provincia con ID {}", id);
-        provinceDAO.deleteProvince(id);
-        logger.info("Provincia con ID {} eliminada con éxito.", id);
+        if (cascadeDeletionService.hasTickets(DeletionJob.Target.PROVINCE, id)) {
+            logger.warn("La provincia con ID {} tiene ubicaciones con tickets y no se puede eliminar.", id);
+            String errorMessage = messageSource.getMessage("msg.province-controller.delete.hasTickets", null, locale);
+            redirectAttributes.addFlashAttribute("errorMessage", errorMessage);
+            return "redirect:/provinces";
+        }
+        DeletionJob job = cascadeDeletionService.submit(DeletionJob.Target.PROVINCE, id);
+        logger.info("Provincia con ID {} en cola para su eliminación (trabajo {}).", id, job.getId());
+        redirectAttributes.addFlashAttribute("successMessage",
+                messageSource.getMessage("msg.province-controller.delete.queued", new Object[]{job.getId()}, locale));
         return "redirect:/provinces"; // Redirigir a la lista de provincias
     }
 
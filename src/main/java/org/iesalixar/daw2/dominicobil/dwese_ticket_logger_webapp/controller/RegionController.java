@@ -1,12 +1,21 @@
 package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.controller;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.KeysetPage;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.KeysetPageRequest;
 import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.RegionDAO;
 import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Region;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.DeletionJob;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.RegionRow;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services.CascadeDeletionService;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services.ExportService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.MessageSource;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -14,6 +23,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.sql.SQLException;
+import java.io.IOException;
 import java.util.List;
 import java.util.Locale;
 
@@ -31,22 +41,50 @@ public class RegionController {
     @Autowired
     private RegionDAO regionDAO;
 
+    // Servicio para exportar los listados en CSV/NDJSON
+    @Autowired
+    private ExportService exportService;
+
+    // Servicio que borra en segundo plano las regiones con sus provincias y ubicaciones
+    @Autowired
+    private CascadeDeletionService cascadeDeletionService;
+
     /**
-     * Lista todas las regiones y las pasa como atributo al modelo para que sean
-     * accesibles en la vista `region.html`.
+     * Lista una página de regiones (paginación por keyset) y la pasa como atributo al modelo
+     * para que sea accesible en la vista `region.html`.
      *
-     * @param model Objeto del modelo para pasar datos a la vista.
+     * @param pageRequest Parámetros de ordenación, filtro y cursor de la página.
+     * @param model       Objeto del modelo para pasar datos a la vista.
      * @return El nombre de la plantilla Thymeleaf para renderizar la lista de regiones.
      */
     @GetMapping
-    public String listRegions(Model model) {
-        logger.info("Requesting the list of all regions...");
-        List<Region> listRegions = regionDAO.listAllRegions();
-        logger.info("Loaded {} regions.", listRegions.size());
-        model.addAttribute("listRegions", listRegions); // Pasar la lista de regiones al modelo
+    public String listRegions(@ModelAttribute("pageRequest") KeysetPageRequest pageRequest, Model model) {
+        logger.info("Requesting a page of regions...");
+        KeysetPage<RegionRow> page = regionDAO.listRegionsPage(pageRequest);
+        logger.info("Loaded {} regions.", page.getContent().size());
+        model.addAttribute("page", page);
+        model.addAttribute("listRegions", page.getContent()); // Pasar la lista de regiones al modelo
         return "region"; // Nombre de la plantilla Thymeleaf a renderizar
     }
 
+    /**
+     * Exporta todas las regiones en CSV o NDJSON leyendo directamente del cursor de base de datos,
+     * sin construir la lista en memoria.
+     *
+     * @param format         Formato de salida: `csv` (por defecto) o `ndjson`.
+     * @param acceptEncoding Cabecera Accept-Encoding; si admite gzip la salida se comprime al vuelo.
+     * @param response       Respuesta HTTP en la que se escriben las filas.
+     * @throws IOException Si falla la escritura de la respuesta.
+     */
+    @GetMapping("/export")
+    public void exportRegions(@RequestParam(value = "format", defaultValue = "csv") String format,
+                              @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                              HttpServletResponse response) throws IOException {
+        logger.info("Exporting regions in {} format", format);
+        exportService.export(regionDAO.streamAllRegions(), RegionRow.class, "regions", ExportService.Format.of(format), acceptEncoding, response);
+    }
+
+
     /**
      * Muestra el formulario para crear una nueva región.
      *
@@ -124,23 +162,40 @@ public class RegionController {
             redirectAttributes.addFlashAttribute("errorMessage", errorMessage);
             return "redirect:/regions/edit?id=" + region.getId();
         }
-        regionDAO.updateRegion(region);
+        try {
+            regionDAO.updateRegion(region);
+        } catch (OptimisticLockingFailureException e) {
+            logger.warn("Region with ID {} was modified by another user.", region.getId());
+            String errorMessage = messageSource.getMessage("msg.region-controller.update.conflict", null, locale);
+            redirectAttributes.addFlashAttribute("errorMessage", errorMessage);
+            return "redirect:/regions/edit?id=" + region.getId();
+        }
         logger.info("Region with ID {} updated successfully.", region.getId());
         return "redirect:/regions"; // Redirigir a la lista de regiones
     }
 
     /**
-     * Elimina una región de la base de datos.
+     * Elimina una región de la base de datos junto con sus provincias y ubicaciones.
+     * El borrado se hace en segundo plano y por bloques; la petición vuelve en cuanto queda registrado.
      *
      * @param id                 ID de la región a eliminar.
      * @param redirectAttributes Atributos para mensajes flash de redirección.
+     * @param locale             Idioma de los mensajes.
      * @return Redirección a la lista de regiones.
      */
     @PostMapping("/delete")
-    public String deleteRegion(@RequestParam("id") int id, RedirectAttributes redirectAttributes) {
+    public String deleteRegion(@RequestParam("id") int id, RedirectAttributes redirectAttributes, Locale locale) {
         logger.info("Deleting region with ID {}", id);
-        regionDAO.deleteRegion(id);
-        logger.info("Region with ID {} deleted successfully.", id);
+        if (cascadeDeletionService.hasTickets(DeletionJob.Target.REGION, id)) {
+            logger.warn("Region with ID {} has locations with tickets and cannot be deleted.", id);
+            String errorMessage = messageSource.getMessage("msg.region-controller.delete.hasTickets", null, locale);
+            redirectAttributes.addFlashAttribute("errorMessage", errorMessage);
+            return "redirect:/regions";
+        }
+        DeletionJob job = cascadeDeletionService.submit(DeletionJob.Target.REGION, id);
+        logger.info("Region with ID {} queued for deletion (job {}).", id, job.getId());
+        redirectAttributes.addFlashAttribute("successMessage",
+                messageSource.getMessage("msg.region-controller.delete.queued", new Object[]{job.getId()}, locale));
         return "redirect:/regions"; // Redirigir a la lista de regiones
     }
 }
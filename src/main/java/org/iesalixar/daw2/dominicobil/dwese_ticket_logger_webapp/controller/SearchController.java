@@ -0,0 +1,59 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.controller;
+
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.SearchResult;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services.SearchService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.List;
+
+/**
+ * Controlador de la búsqueda global sobre regiones, provincias, supermercados, ubicaciones y categorías.
+ * Devuelve la página `search.html` o, si se pide JSON, la lista de resultados.
+ */
+@Controller
+@RequestMapping("/search")
+public class SearchController {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchController.class);
+
+    // Servicio con el índice de búsqueda en memoria
+    @Autowired
+    private SearchService searchService;
+
+    /**
+     * Muestra los resultados de la búsqueda.
+     *
+     * @param query Texto buscado.
+     * @param model Objeto del modelo para pasar datos a la vista.
+     * @return El nombre de la plantilla Thymeleaf con los resultados.
+     */
+    @GetMapping
+    public String search(@RequestParam(name = "q", defaultValue = "") String query, Model model) {
+        logger.info("Searching for '{}'", query);
+        model.addAttribute("query", query);
+        model.addAttribute("results", searchService.search(query));
+        return "search";
+    }
+
+    /**
+     * Devuelve los resultados de la búsqueda en JSON (por ejemplo, para autocompletar).
+     *
+     * @param query Texto buscado.
+     * @return Resultados ordenados por relevancia.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public List<SearchResult> searchJson(@RequestParam(name = "q", defaultValue = "") String query) {
+        logger.info("Searching for '{}' (JSON)", query);
+        return searchService.search(query);
+    }
+}
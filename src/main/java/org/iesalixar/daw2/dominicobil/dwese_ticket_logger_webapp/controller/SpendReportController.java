@@ -0,0 +1,143 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.controller;
+
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.SpendDimension;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.SpendTotal;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services.SpendReportService;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services.SpendRollupService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Controlador de los informes de gasto. Devuelve en JSON el gasto agrupado por región, provincia,
+ * supermercado, categoría o mes, con filtros opcionales por rango de fechas, región, provincia,
+ * supermercado y categoría. Permite además lanzar el recálculo del resumen diario.
+ */
+@RestController
+@RequestMapping("/reports")
+public class SpendReportController {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpendReportController.class);
+
+    // Servicio con el almacén en memoria de las líneas de ticket
+    @Autowired
+    private SpendReportService spendReportService;
+
+    @Autowired
+    private SpendRollupService spendRollupService;
+
+    /**
+     * Devuelve el gasto agrupado.
+     *
+     * @param by            Criterio de agrupación: region, province, supermarket, category o month.
+     * @param from          Primer mes incluido (yyyy-MM), opcional.
+     * @param to            Último mes incluido (yyyy-MM), opcional.
+     * @param regionId      Región, opcional.
+     * @param provinceId    Provincia, opcional.
+     * @param supermarketId Supermercado, opcional.
+     * @param categoryId    Categoría, incluidas sus subcategorías, opcional.
+     * @return Totales por grupo, 400 si el criterio o el rango no son válidos o 503 si los datos aún se están cargando.
+     */
+    @GetMapping(value = "/spend", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<SpendTotal>> spend(@RequestParam(name = "by", defaultValue = "category") String by,
+                                                  @RequestParam(name = "from", required = false) YearMonth from,
+                                                  @RequestParam(name = "to", required = false) YearMonth to,
+                                                  @RequestParam(name = "regionId", required = false) Integer regionId,
+                                                  @RequestParam(name = "provinceId", required = false) Integer provinceId,
+                                                  @RequestParam(name = "supermarketId", required = false) Integer supermarketId,
+                                                  @RequestParam(name = "categoryId", required = false) Integer categoryId) {
+        Optional<SpendDimension> dimension = dimension(by);
+        if (dimension.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            logger.warn("Invalid spend report range {} - {}", from, to);
+            return ResponseEntity.badRequest().build();
+        }
+        logger.info("Spend report by {} ({} - {}, region {}, province {}, supermarket {}, category {})",
+                dimension.get(), from, to, regionId, provinceId, supermarketId, categoryId);
+        return spendReportService.spendBy(dimension.get(), from, to, regionId, provinceId, supermarketId, categoryId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "5")
+                        .build());
+    }
+
+    /**
+     * Devuelve el gasto agrupado de un rango de días, leído del resumen diario.
+     *
+     * @param by            Criterio de agrupación: region, province, supermarket, category o month.
+     * @param from          Primer día incluido (yyyy-MM-dd).
+     * @param to            Último día incluido (yyyy-MM-dd).
+     * @param regionId      Región, opcional.
+     * @param provinceId    Provincia, opcional.
+     * @param supermarketId Supermercado, opcional.
+     * @param categoryId    Categoría, incluidas sus subcategorías, opcional.
+     * @return Totales por grupo, o 400 si el criterio o el rango no son válidos.
+     */
+    @GetMapping(value = "/spend/daily", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<SpendTotal>> dailySpend(@RequestParam(name = "by", defaultValue = "region") String by,
+                                                       @RequestParam(name = "from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                       @RequestParam(name = "to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                       @RequestParam(name = "regionId", required = false) Integer regionId,
+                                                       @RequestParam(name = "provinceId", required = false) Integer provinceId,
+                                                       @RequestParam(name = "supermarketId", required = false) Integer supermarketId,
+                                                       @RequestParam(name = "categoryId", required = false) Integer categoryId) {
+        Optional<SpendDimension> dimension = dimension(by);
+        if (dimension.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (from.isAfter(to)) {
+            logger.warn("Invalid daily spend report range {} - {}", from, to);
+            return ResponseEntity.badRequest().build();
+        }
+        logger.info("Daily spend report by {} ({} - {}, region {}, province {}, supermarket {}, category {})",
+                dimension.get(), from, to, regionId, provinceId, supermarketId, categoryId);
+        return ResponseEntity.ok(spendReportService.dailySpendBy(dimension.get(), from, to,
+                regionId, provinceId, supermarketId, categoryId));
+    }
+
+    /**
+     * Lanza en segundo plano el recálculo del resumen diario para un rango de días.
+     *
+     * @param from Primer día incluido (yyyy-MM-dd).
+     * @param to   Último día incluido (yyyy-MM-dd).
+     * @return 202 si se ha lanzado, 400 si el rango no es válido o 409 si ya hay un recálculo en marcha.
+     */
+    @PostMapping("/spend/daily/rebuild")
+    public ResponseEntity<Void> rebuildDailySpend(@RequestParam(name = "from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                  @RequestParam(name = "to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        if (from.isAfter(to)) {
+            logger.warn("Invalid spend rollup rebuild range {} - {}", from, to);
+            return ResponseEntity.badRequest().build();
+        }
+        return spendRollupService.rebuild(from, to).isPresent()
+                ? ResponseEntity.accepted().build()
+                : ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+
+    private Optional<SpendDimension> dimension(String by) {
+        try {
+            return Optional.of(SpendDimension.valueOf(by.toUpperCase(Locale.ROOT)));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Unknown spend report dimension '{}'", by);
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.controller;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Utilidad para pasar a una vista Thymeleaf un `Stream` respaldado por un cursor de base de datos.
+ *
+ * Thymeleaf recorre los `Iterator` de `th:each` de forma perezosa y escribe cada fila en la respuesta
+ * según la genera, por lo que la página se envía por trozos (chunked) sin tener la lista completa en memoria.
+ * El Stream se cierra al terminar la petición, es decir, después de renderizar la vista.
+ */
+final class StreamingViews {
+
+    private StreamingViews() {
+    }
+
+    /**
+     * Registra el cierre del Stream al final de la petición y devuelve su iterador para el modelo.
+     * @param stream Stream abierto devuelto por el DAO.
+     * @param <T>    Tipo de las filas.
+     * @return Iterador perezoso sobre las filas del Stream.
+     */
+    static <T> Iterator<T> iterateUntilRequestCompletes(Stream<T> stream) {
+        RequestContextHolder.currentRequestAttributes().registerDestructionCallback(
+                StreamingViews.class.getName() + "." + System.identityHashCode(stream),
+                stream::close,
+                RequestAttributes.SCOPE_REQUEST);
+        return stream.iterator();
+    }
+}
@@ -1,13 +1,21 @@
 package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.controller;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.KeysetPage;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.KeysetPageRequest;
 import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.SupermarketDAO;
 import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Supermarket;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.DeletionJob;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.SupermarketRow;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services.CascadeDeletionService;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services.ExportService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.MessageSource;
-import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -16,6 +24,7 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 
 import java.sql.SQLException;
+import java.io.IOException;
 import java.util.List;
 import java.util.Locale;
 /**
@@ -33,25 +42,52 @@ public class SupermarketController {
     @Autowired
     private SupermarketDAO supermarketDAO;
 
+    // Servicio para exportar los listados en CSV/NDJSON
+    @Autowired
+    private ExportService exportService;
+
+    // Servicio que borra en segundo plano los supermercados con sus ubicaciones
+    @Autowired
+    private CascadeDeletionService cascadeDeletionService;
+
 
     /**
-     * Lista todos los supermercados y los pasa como atributo al modelo para que sean
-     * accesibles en la vista `supermarket.html`.
+     * Lista una página de supermercados (paginación por keyset) y la pasa como atributo al modelo
+     * para que sea accesible en la vista `supermarket.html`.
      *
-     * @param model Objeto del modelo para pasar datos a la vista.
+     * @param pageRequest Parámetros de ordenación, filtro y cursor de la página.
+     * @param model       Objeto del modelo para pasar datos a la vista.
      * @return El nombre de la plantilla Thymeleaf para renderizar la lista de supermercados.
      */
     @GetMapping
-    public String listSupermarkets(Model model) {
-        logger.info("Solicitando la lista de todos los supermercados...");
-        List<Supermarket> listSupermarkets = null;
-        listSupermarkets = supermarketDAO.listAllSupermarkets();
-        logger.info("Se han cargado {} supermercados.", listSupermarkets.size());
-        model.addAttribute("listSupermarkets", listSupermarkets);
+    public String listSupermarkets(@ModelAttribute("pageRequest") KeysetPageRequest pageRequest, Model model) {
+        logger.info("Solicitando una página de supermercados...");
+        KeysetPage<SupermarketRow> page = supermarketDAO.listSupermarketsPage(pageRequest);
+        logger.info("Se han cargado {} supermercados.", page.getContent().size());
+        model.addAttribute("page", page);
+        model.addAttribute("listSupermarkets", page.getContent());
         return "supermarket"; // Nombre de la plantilla Thymeleaf a renderizar
     }
 
 
+    /**
+     * Exporta todas los supermercados en CSV o NDJSON leyendo directamente del cursor de base de datos,
+     * sin construir la lista en memoria.
+     *
+     * @param format         Formato de salida: `csv` (por defecto) o `ndjson`.
+     * @param acceptEncoding Cabecera Accept-Encoding; si admite gzip la salida se comprime al vuelo.
+     * @param response       Respuesta HTTP en la que se escriben las filas.
+     * @throws IOException Si falla la escritura de la respuesta.
+     */
+    @GetMapping("/export")
+    public void exportSupermarkets(@RequestParam(value = "format", defaultValue = "csv") String format,
+                                   @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                   HttpServletResponse response) throws IOException {
+        logger.info("Exportando los supermercados en formato {}", format);
+        exportService.export(supermarketDAO.streamAllSupermarkets(), SupermarketRow.class, "supermarkets", ExportService.Format.of(format), acceptEncoding, response);
+    }
+
+
     /**
      * Muestra el formulario para crear un nuevo supermercado.
      *
@@ -131,29 +167,41 @@ public class SupermarketController {
             redirectAttributes.addFlashAttribute("errorMessage", errorMessage);
             return "redirect:/supermarkets/edit?id=" + supermarket.getId();
         }
-        supermarketDAO.updateSupermarket(supermarket);
+        try {
+            supermarketDAO.updateSupermarket(supermarket);
+        } catch (OptimisticLockingFailureException e) {
+            logger.warn("El supermercado con ID {} ha sido modificado por otro usuario.", supermarket.getId());
+            String errorMessage = messageSource.getMessage("msg.supermarket-controller.update.conflict", null, locale);
+            redirectAttributes.addFlashAttribute("errorMessage", errorMessage);
+            return "redirect:/supermarkets/edit?id=" + supermarket.getId();
+        }
         logger.info("Supermercado con ID {} actualizado con éxito.", supermarket.getId());
         return "redirect:/supermarkets"; // Redirigir a la lista de supermercados
     }
 
 
     /**
-     * Elimina un supermercado de la base de datos.
+     * Elimina un supermercado de la base de datos junto con sus ubicaciones.
+     * El borrado se hace en segundo plano y por bloques; la petición vuelve en cuanto queda registrado.
      *
      * @param id                 ID del supermercado a eliminar.
      * @param redirectAttributes Atributos para mensajes flash de redirección.
+     * @param locale             Idioma de los mensajes.
      * @return Redirección a la lista de supermercados.
      */
     @PostMapping("/delete")
-    public String deleteSupermarket(@RequestParam("id") int id, RedirectAttributes redirectAttributes) {
+    public String deleteSupermarket(@RequestParam("id") int id, RedirectAttributes redirectAttributes, Locale locale) {
         logger.info("Eliminando supermercado con ID {}", id);
-        try {
-            supermarketDAO.deleteSupermarket(id);
-            logger.info("Supermercado con ID {} eliminado con éxito.", id);
-        } catch (DataIntegrityViolationException e) {
-            logger.error("Error al eliminar el supermercado con ID {}: {}", id, e.getMessage());
-            redirectAttributes.addFlashAttribute("errorMessage", "Error al eliminar el supermercado.");
+        if (cascadeDeletionService.hasTickets(DeletionJob.Target.SUPERMARKET, id)) {
+            logger.warn("El supermercado con ID {} tiene ubicaciones con tickets y no se puede eliminar.", id);
+            String errorMessage = messageSource.getMessage("msg.supermarket-controller.delete.hasTickets", null, locale);
+            redirectAttributes.addFlashAttribute("errorMessage", errorMessage);
+            return "redirect:/supermarkets";
         }
+        DeletionJob job = cascadeDeletionService.submit(DeletionJob.Target.SUPERMARKET, id);
+        logger.info("Supermercado con ID {} en cola para su eliminación (trabajo {}).", id, job.getId());
+        redirectAttributes.addFlashAttribute("successMessage",
+                messageSource.getMessage("msg.supermarket-controller.delete.queued", new Object[]{job.getId()}, locale));
         return "redirect:/supermarkets"; // Redirigir a la lista de supermercados
     }
 }
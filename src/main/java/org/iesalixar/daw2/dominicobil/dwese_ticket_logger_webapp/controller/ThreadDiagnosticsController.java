@@ -0,0 +1,30 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.controller;
+
+
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.PinningReport;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services.VirtualThreadPinningMonitor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+
+/**
+ * Controlador que expone en JSON el diagnóstico de los hilos virtuales.
+ */
+@RestController
+public class ThreadDiagnosticsController {
+
+
+    @Autowired
+    private VirtualThreadPinningMonitor pinningMonitor;
+
+
+    /**
+     * Devuelve cuántas veces y dónde se han quedado los hilos virtuales fijados a su hilo portador.
+     * @return Informe de pinning.
+     */
+    @GetMapping("/threads/pinning")
+    public PinningReport getPinning() {
+        return pinningMonitor.getReport();
+    }
+}
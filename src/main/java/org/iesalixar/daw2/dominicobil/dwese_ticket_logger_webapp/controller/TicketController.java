@@ -0,0 +1,79 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.controller;
+
+import jakarta.validation.Valid;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.IngestionReceipt;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.TicketBatchRequest;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.TicketRequest;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services.TicketIngestionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Controlador de ingesta de tickets. Acepta un ticket o un lote de tickets en JSON y responde 202 en cuanto
+ * quedan en cola para escribirse; si la cola está llena responde 503 para que el cliente reintente.
+ */
+@RestController
+@RequestMapping("/tickets")
+public class TicketController {
+
+    private static final Logger logger = LoggerFactory.getLogger(TicketController.class);
+
+    // Segundos que se sugiere esperar al cliente cuando la cola está llena
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    // Servicio que encola los tickets y los escribe por lotes
+    @Autowired
+    private TicketIngestionService ticketIngestionService;
+
+    /**
+     * Recibe un ticket.
+     *
+     * @param ticket Ticket con sus líneas.
+     * @return 202 con el recibo, 400 si el ticket no es válido o 503 si la cola está llena.
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<IngestionReceipt> ingestTicket(@Valid @RequestBody TicketRequest ticket) {
+        return ingest(List.of(ticket));
+    }
+
+    /**
+     * Recibe un lote de tickets. El lote se acepta entero o se rechaza entero.
+     *
+     * @param batch Lote de tickets.
+     * @return 202 con el recibo, 400 si algún ticket no es válido o 503 si el lote no cabe en la cola.
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<IngestionReceipt> ingestTickets(@Valid @RequestBody TicketBatchRequest batch) {
+        return ingest(batch.tickets());
+    }
+
+    private ResponseEntity<IngestionReceipt> ingest(List<TicketRequest> tickets) {
+        boolean accepted;
+        try {
+            accepted = ticketIngestionService.submit(tickets);
+        } catch (ArithmeticException e) {
+            logger.warn("Rejected {} tickets: amount overflow", tickets.size());
+            return ResponseEntity.badRequest().build();
+        }
+        if (!accepted) {
+            logger.warn("Ticket queue is full; rejected {} tickets", tickets.size());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                    .build();
+        }
+        logger.debug("Queued {} tickets", tickets.size());
+        return ResponseEntity.accepted()
+                .body(new IngestionReceipt(tickets.size(), ticketIngestionService.getPendingCount()));
+    }
+}
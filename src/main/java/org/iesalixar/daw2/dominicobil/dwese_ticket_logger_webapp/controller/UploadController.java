@@ -0,0 +1,86 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.controller;
+
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.UploadServingStats;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.UploadSweepReport;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services.UploadServingService;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services.UploadSweeperService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.HandlerMapping;
+
+
+import java.io.IOException;
+
+
+/**
+ * Controlador que sirve los archivos subidos (`/uploads/**`) y expone en JSON sus contadores y el
+ * barrido de archivos huérfanos.
+ */
+@RestController
+public class UploadController {
+
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    @Autowired
+    private UploadServingService uploadServingService;
+
+    @Autowired
+    private UploadSweeperService uploadSweeperService;
+
+
+    /**
+     * Envía un archivo subido con cabeceras de caché, validación y rangos.
+     * @param request  Petición HTTP.
+     * @param response Respuesta HTTP.
+     */
+    @RequestMapping(value = "/uploads/**", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void serveUpload(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String pattern = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String path = (String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
+        uploadServingService.serve(pathMatcher.extractPathWithinPattern(pattern, path), request, response);
+    }
+
+
+    /**
+     * Devuelve las peticiones, bytes enviados, respuestas 304 y parciales desde el arranque.
+     * @return Contadores del servicio de archivos subidos.
+     */
+    @GetMapping("/storage/stats")
+    public UploadServingStats getStorageStats() {
+        return uploadServingService.getStats();
+    }
+
+
+    /**
+     * Devuelve el resultado de la última pasada del barrido de huérfanos.
+     * @return Resultado de la pasada, o 204 si todavía no ha terminado ninguna.
+     */
+    @GetMapping("/storage/sweep")
+    public ResponseEntity<UploadSweepReport> getLastSweep() {
+        UploadSweepReport report = uploadSweeperService.getLastReport();
+        return report == null ? ResponseEntity.noContent().build() : ResponseEntity.ok(report);
+    }
+
+
+    /**
+     * Lanza una pasada del barrido de huérfanos sin esperar a la programada.
+     * @return 202 si se ha lanzado, o 409 si ya hay una en curso o el almacén no es local.
+     */
+    @PostMapping("/storage/sweep")
+    public ResponseEntity<Void> requestSweep() {
+        return uploadSweeperService.requestSweep()
+                ? ResponseEntity.accepted().build()
+                : ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+}
@@ -1,22 +1,43 @@
 package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao;
 
 import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Category;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.CategoryNode;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.CategoryRow;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 public interface CategoryDAO {
 
     List<Category> listAllCategory() ;
 
+    KeysetPage<CategoryRow> listCategoryPage(KeysetPageRequest pageRequest) ;
+
+    Stream<CategoryRow> streamAllCategories() ;
+
+    List<CategoryRow> listCategoryRowsByIds(Collection<Integer> ids);
+
+    List<Integer> listCategoryIdsByParents(Collection<Integer> parentIds);
+
     void deleteCategory(int id) ;
 
     Category getCategoryById(int id) ;
 
     public void insertCategory(Category categorie);
 
+    int insertCategories(List<Category> categories);
+
     public void updateCategory(Category categorie);
 
     boolean existsCategoryByNameAndNotId(String name, int id) ;
 
     boolean existsCategoryByName(String address) ;
+
+    List<CategoryNode> listSubtree(int id) ;
+
+    List<CategoryNode> listAncestors(int id) ;
+
+    Map<Integer, Long> countDescendants(Collection<Integer> ids) ;
 }
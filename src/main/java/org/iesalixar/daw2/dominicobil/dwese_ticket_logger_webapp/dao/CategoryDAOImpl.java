@@ -1,14 +1,27 @@
 package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao;
 
+import jakarta.annotation.PostConstruct;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.OptimisticLockException;
 import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
 import jakarta.transaction.Transactional;
 import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Category;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.CategoryNode;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.CategoryRow;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
 
 @Repository
 @Transactional
@@ -17,15 +30,82 @@ public class CategoryDAOImpl implements CategoryDAO {
     // Logger para registrar eventos importantes en el DAO
     private static final Logger logger = LoggerFactory.getLogger(CategoryDAOImpl.class);
 
+    // Consulta de proyección compartida por el listado paginado, el modo streaming y las exportaciones
+    private static final String ROW_SELECT =
+            "SELECT new org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.CategoryRow(c.id, c.name, c.image, pc.name)";
+    private static final String ROW_FROM = "FROM Category c LEFT JOIN c.parent pc";
+
+    // Consulta paginada por keyset: ordenable por id o nombre y filtrable por nombre.
+    // Proyecta a CategoryRow con LEFT JOIN al padre para no disparar una carga LAZY por fila.
+    private static final KeysetQuery<CategoryRow> PAGE_QUERY = new KeysetQuery<>(CategoryRow.class,
+            ROW_SELECT, ROW_FROM, "c.id", CategoryRow::id, "column(c.name_norm as String)")
+            .sortable("name", "c.name", CategoryRow::name);
+
+    // Profundidad máxima de los recorridos recursivos del árbol. Muy por encima de cualquier taxonomía
+    // real; solo evita que un ciclo en parent_id deje la consulta iterando sin fin.
+    private static final int MAX_TREE_DEPTH = 500;
+
+    // Subárbol de una categoría: la propia categoría y sus descendientes, bajando por parent_id (indexado)
+    private static final String SUBTREE_QUERY =
+            "WITH RECURSIVE subtree (id, name, image, parent_id, depth) AS ( " +
+            "  SELECT id, name, image, parent_id, 0 FROM categories WHERE id = :id " +
+            "  UNION ALL " +
+            "  SELECT c.id, c.name, c.image, c.parent_id, s.depth + 1 " +
+            "  FROM categories c JOIN subtree s ON c.parent_id = s.id WHERE s.depth < :maxDepth " +
+            ") SELECT id, name, image, parent_id, depth FROM subtree ORDER BY depth, name";
+
+    // Antepasados de una categoría: sube por la clave primaria desde la categoría hasta la raíz
+    private static final String ANCESTORS_QUERY =
+            "WITH RECURSIVE ancestors (id, name, image, parent_id, depth) AS ( " +
+            "  SELECT id, name, image, parent_id, 0 FROM categories WHERE id = :id " +
+            "  UNION ALL " +
+            "  SELECT c.id, c.name, c.image, c.parent_id, a.depth + 1 " +
+            "  FROM categories c JOIN ancestors a ON c.id = a.parent_id WHERE a.depth < :maxDepth " +
+            ") SELECT id, name, image, parent_id, depth FROM ancestors ORDER BY depth DESC";
+
+    // Número de descendientes de cada categoría indicada: un par (categoría, descendiente) por fila
+    private static final String DESCENDANT_COUNT_QUERY =
+            "WITH RECURSIVE tree (root_id, id, depth) AS ( " +
+            "  SELECT id, id, 0 FROM categories WHERE id IN (:ids) " +
+            "  UNION ALL " +
+            "  SELECT t.root_id, c.id, t.depth + 1 " +
+            "  FROM categories c JOIN tree t ON c.parent_id = t.id WHERE t.depth < :maxDepth " +
+            ") SELECT root_id, COUNT(*) - 1 FROM tree GROUP BY root_id";
+
     // EntityManager para interactuar con la base de datos
     @PersistenceContext
     private EntityManager entityManager;
 
+    // Componente para las inserciones masivas en lotes JDBC
+    @Autowired
+    private JpaBatchInserter batchInserter;
+
+    @Autowired
+    private ExistenceIndexes existenceIndexes;
+
+    // Avisa de los cambios a los índices en memoria (búsqueda)
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Referencias de las imágenes de las categorías a los archivos subidos
+    @Autowired
+    private StoredFileDAO storedFileDAO;
+
+    // Comprobación de existencia por nombre (columna name_norm indexada y filtro de Bloom opcional)
+    private ExistenceIndex nameIndex;
+
+
+    @PostConstruct
+    void initExistenceIndex() {
+        nameIndex = existenceIndexes.create("categories", "name", "name_norm");
+    }
+
     /**
      * Lista todas las categorías de la base de datos.
      * @return Lista de categorías
      */
     @Override
+    @ReadOnlyTransactional
     public List<Category> listAllCategory() {
         logger.info("Listing all categories from the database.");
         String query = "SELECT c FROM Category c"; // Cambiado a JPQL
@@ -34,6 +114,62 @@ public class CategoryDAOImpl implements CategoryDAO {
         return categories;
     }
 
+    /**
+     * Obtiene una página de categorías paginada por keyset.
+     * @param pageRequest Petición de página (ordenación, filtro por nombre, cursor y tamaño)
+     * @return Página de categorías
+     */
+    @Override
+    @ReadOnlyTransactional
+    public KeysetPage<CategoryRow> listCategoryPage(KeysetPageRequest pageRequest) {
+        logger.info("Listing categories page sorted by {} {} with filter: {}", pageRequest.getSort(), pageRequest.getDir(), pageRequest.getFilter());
+        KeysetPage<CategoryRow> page = PAGE_QUERY.fetch(entityManager, pageRequest);
+        logger.info("Retrieved {} categories for the requested page.", page.getContent().size());
+        return page;
+    }
+
+    /**
+     * Recorre todas las categorías con un cursor de solo avance, sin cargarlas en memoria.
+     * El Stream devuelto mantiene abierta una conexión y debe cerrarse siempre.
+     * @return Stream de categorías ordenadas por ID
+     */
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public Stream<CategoryRow> streamAllCategories() {
+        logger.info("Streaming all categories from the database.");
+        String query = ROW_SELECT + " " + ROW_FROM + " ORDER BY c.id";
+        return StreamingQuery.stream(entityManager, query, CategoryRow.class, Map.of());
+    }
+
+    /**
+     * Obtiene en una sola consulta las proyecciones de listado de las categorías indicadas.
+     * @param ids IDs de las categorías
+     * @return Proyecciones de las categorías que existen
+     */
+    @Override
+    public List<CategoryRow> listCategoryRowsByIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        String query = ROW_SELECT + " " + ROW_FROM + " WHERE c.id IN :ids";
+        return entityManager.createQuery(query, CategoryRow.class).setParameter("ids", ids).getResultList();
+    }
+
+    /**
+     * Obtiene los IDs de las subcategorías directas de las categorías indicadas.
+     * @param parentIds IDs de las categorías padre
+     * @return IDs de las subcategorías
+     */
+    @Override
+    public List<Integer> listCategoryIdsByParents(Collection<Integer> parentIds) {
+        if (parentIds.isEmpty()) {
+            return List.of();
+        }
+        return entityManager.createQuery("SELECT c.id FROM Category c WHERE c.parent.id IN :parentIds", Integer.class)
+                .setParameter("parentIds", parentIds)
+                .getResultList();
+    }
+
     /**
      * Inserta una nueva categoría en la base de datos.
      * @param category Categoría a insertar
@@ -42,22 +178,79 @@ public class CategoryDAOImpl implements CategoryDAO {
     public void insertCategory(Category category) {
         logger.info("Inserting Category with name: {} and image: {}", category.getName(), category.getImage());
         entityManager.persist(category);
+        if (category.getImage() != null) {
+            storedFileDAO.addReferences(List.of(category.getImage()));
+        }
+        eventPublisher.publishEvent(EntityChangedEvent.saved(Category.class, category.getId()));
+        nameIndex.added(category.getName());
         logger.info("Inserted Category with ID: {}", category.getId());
     }
 
+    /**
+     * Inserta una lista de categorías en lotes JDBC.
+     * @param categories Categorías a insertar
+     * @return Número de categorías insertadas
+     */
+    @Override
+    public int insertCategories(List<Category> categories) {
+        logger.info("Inserting {} categories in JDBC batches.", categories.size());
+        categories.forEach(category -> nameIndex.added(category.getName()));
+        int inserted = batchInserter.persistAll(categories);
+        storedFileDAO.addReferences(categories.stream().map(Category::getImage).filter(Objects::nonNull).toList());
+        eventPublisher.publishEvent(EntityChangedEvent.saved(Category.class, categories.stream().map(Category::getId).toList()));
+        logger.info("Inserted {} categories.", inserted);
+        return inserted;
+    }
+
     /**
      * Actualiza una categoría existente en la base de datos.
+     *
+     * Se envía un único UPDATE condicionado a la versión. La imagen solo se modifica si llega una
+     * nueva (el formulario de edición no la incluye) y la categoría padre se asigna por referencia.
+     * Si la categoría ha cambiado desde que se leyó se lanza OptimisticLockException.
+     * Al cambiar la imagen se pasa la referencia del archivo anterior al nuevo.
      * @param category Categoría a actualizar
      */
     @Override
     public void updateCategory(Category category) {
-        logger.info("Updating Category with id: {}", category.getId());
-        entityManager.merge(category);
+        logger.info("Updating Category with id: {} and version: {}", category.getId(), category.getVersion());
+        nameIndex.updating(entityManager, category.getId(), category.getName());
+        Category parent = category.getParent() != null && category.getParent().getId() != null
+                ? entityManager.getReference(Category.class, category.getParent().getId())
+                : null;
+        boolean updateImage = category.getImage() != null;
+        String previousImage = updateImage ? getImage(category.getId()) : null;
+        Query update = entityManager.createQuery(
+                        "UPDATE Category c SET c.name = :name, c.parent = :parent, " +
+                                (updateImage ? "c.image = :image, " : "") +
+                                "c.version = c.version + 1 WHERE c.id = :id AND c.version = :version")
+                .setParameter("name", category.getName())
+                .setParameter("parent", parent)
+                .setParameter("id", category.getId())
+                .setParameter("version", category.getVersion());
+        if (updateImage) {
+            update.setParameter("image", category.getImage());
+        }
+        int rows = update.executeUpdate();
+        if (rows == 0) {
+            logger.warn("Category with id: {} was modified or deleted concurrently (version {}).", category.getId(), category.getVersion());
+            throw new OptimisticLockException(category);
+        }
+        category.setVersion(category.getVersion() + 1);
+        if (updateImage && !category.getImage().equals(previousImage)) {
+            storedFileDAO.addReferences(List.of(category.getImage()));
+            if (previousImage != null) {
+                storedFileDAO.removeReferences(List.of(previousImage));
+                eventPublisher.publishEvent(new StoredFilesReleasedEvent(List.of(previousImage)));
+            }
+        }
+        eventPublisher.publishEvent(EntityChangedEvent.saved(Category.class, category.getId()));
         logger.info("Updated Category with id: {}", category.getId());
     }
 
     /**
-     * Elimina una categoría de la base de datos.
+     * Elimina una categoría de la base de datos, junto con sus subcategorías, y suelta las referencias
+     * de sus imágenes.
      * @param id ID de la categoría a eliminar
      */
     @Override
@@ -65,19 +258,40 @@ public class CategoryDAOImpl implements CategoryDAO {
         logger.info("Deleting Category with id: {}", id);
         Category category = entityManager.find(Category.class, id);
         if (category != null) {
+            // El borrado se propaga a las subcategorías (CascadeType.ALL): se avisa de todo el subárbol
+            List<Integer> subtreeIds = listSubtree(id).stream().map(CategoryNode::id).toList();
+            List<String> images = entityManager.createQuery(
+                            "SELECT c.image FROM Category c WHERE c.id IN :ids AND c.image IS NOT NULL", String.class)
+                    .setParameter("ids", subtreeIds)
+                    .getResultList();
             entityManager.remove(category);
+            if (!images.isEmpty()) {
+                storedFileDAO.removeReferences(images);
+                eventPublisher.publishEvent(new StoredFilesReleasedEvent(images));
+            }
+            eventPublisher.publishEvent(EntityChangedEvent.deleted(Category.class, subtreeIds));
+            nameIndex.removed(category.getName());
             logger.info("Deleted Category with id: {}", id);
         } else {
             logger.warn("Category with id: {} not found.", id);
         }
     }
 
+    private String getImage(int id) {
+        return entityManager.createQuery("SELECT c.image FROM Category c WHERE c.id = :id", String.class)
+                .setParameter("id", id)
+                .getResultStream()
+                .findFirst()
+                .orElse(null);
+    }
+
     /**
      * Recupera una categoría por su ID.
      * @param id ID de la categoría a recuperar
      * @return Categoría encontrada o null si no existe
      */
     @Override
+    @ReadOnlyTransactional
     public Category getCategoryById(int id) {
         logger.info("Retrieving Category by id: {}", id);
         Category category = entityManager.find(Category.class, id);
@@ -89,6 +303,72 @@ public class CategoryDAOImpl implements CategoryDAO {
         return category;
     }
 
+    /**
+     * Obtiene el subárbol de una categoría con una única consulta recursiva (CTE).
+     * @param id ID de la categoría raíz del subárbol
+     * @return La categoría y todos sus descendientes, por nivel y nombre; vacía si no existe
+     */
+    @Override
+    @ReadOnlyTransactional
+    public List<CategoryNode> listSubtree(int id) {
+        logger.info("Retrieving subtree of Category with id: {}", id);
+        List<CategoryNode> subtree = listTreeNodes(SUBTREE_QUERY, id);
+        logger.info("Retrieved {} categories in the subtree of {}", subtree.size(), id);
+        return subtree;
+    }
+
+    /**
+     * Obtiene los antepasados de una categoría (su ruta de navegación) con una única consulta recursiva (CTE).
+     * @param id ID de la categoría
+     * @return Categorías desde la raíz hasta la propia categoría, incluida; vacía si no existe
+     */
+    @Override
+    @ReadOnlyTransactional
+    public List<CategoryNode> listAncestors(int id) {
+        logger.info("Retrieving ancestors of Category with id: {}", id);
+        List<CategoryNode> ancestors = listTreeNodes(ANCESTORS_QUERY, id);
+        logger.info("Retrieved {} categories in the path to {}", ancestors.size(), id);
+        return ancestors;
+    }
+
+    /**
+     * Cuenta los descendientes (a cualquier profundidad) de cada categoría indicada con una única consulta.
+     * @param ids IDs de las categorías
+     * @return Número de descendientes por ID de categoría; las que no existen no aparecen
+     */
+    @Override
+    @ReadOnlyTransactional
+    public Map<Integer, Long> countDescendants(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        logger.info("Counting descendants of {} categories", ids.size());
+        List<?> rows = entityManager.createNativeQuery(DESCENDANT_COUNT_QUERY)
+                .setParameter("ids", ids)
+                .setParameter("maxDepth", MAX_TREE_DEPTH)
+                .getResultList();
+        Map<Integer, Long> counts = new HashMap<>();
+        for (Object row : rows) {
+            Object[] columns = (Object[]) row;
+            counts.put(((Number) columns[0]).intValue(), ((Number) columns[1]).longValue());
+        }
+        return counts;
+    }
+
+    private List<CategoryNode> listTreeNodes(String query, int id) {
+        List<?> rows = entityManager.createNativeQuery(query)
+                .setParameter("id", id)
+                .setParameter("maxDepth", MAX_TREE_DEPTH)
+                .getResultList();
+        List<CategoryNode> nodes = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            Object[] columns = (Object[]) row;
+            nodes.add(new CategoryNode(((Number) columns[0]).intValue(), (String) columns[1], (String) columns[2],
+                    columns[3] == null ? null : ((Number) columns[3]).intValue(), ((Number) columns[4]).intValue()));
+        }
+        return nodes;
+    }
+
     /**
      * Verifica si una categoría con el nombre especificado ya existe en la base de datos,
      * excluyendo una categoría con un ID específico.
@@ -100,12 +380,7 @@ public class CategoryDAOImpl implements CategoryDAO {
     @Override
     public boolean existsCategoryByNameAndNotId(String name, int id) {
         logger.info("Checking if Category with name: {} exists excluding id: {}", name, id);
-        String query = "SELECT COUNT(c) FROM Category c WHERE UPPER(c.name) = :name AND c.id != :id";
-        Long count = entityManager.createQuery(query, Long.class)
-                .setParameter("name", name.toUpperCase())
-                .setParameter("id", id)
-                .getSingleResult();
-        boolean exists = count != null && count > 0;
+        boolean exists = nameIndex.existsExcludingId(entityManager, name, id);
         logger.info("Category with name: {} exists excluding id {}: {}", name, id, exists);
         return exists;
     }
@@ -118,11 +393,7 @@ public class CategoryDAOImpl implements CategoryDAO {
     @Override
     public boolean existsCategoryByName(String name) {
         logger.info("Checking if Category with name: {} exists", name);
-        String query = "SELECT COUNT(c) FROM Category c WHERE UPPER(c.name) = :name";
-        Long count = entityManager.createQuery(query, Long.class)
-                .setParameter("name", name.toUpperCase())
-                .getSingleResult();
-        boolean exists = count != null && count > 0;
+        boolean exists = nameIndex.exists(entityManager, name);
         logger.info("Category with name: {} exists: {}", name, exists);
         return exists;
     }
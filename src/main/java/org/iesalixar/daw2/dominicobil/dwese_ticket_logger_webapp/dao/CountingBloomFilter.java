@@ -0,0 +1,115 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Filtro de Bloom con contadores de 4 bits, que admite eliminar claves además de añadirlas.
+ *
+ * `mightContain` nunca da falsos negativos para claves añadidas y no eliminadas; puede dar
+ * falsos positivos con la probabilidad configurada. Los contadores que llegan al máximo (15)
+ * quedan saturados y no se decrementan, lo que solo puede provocar falsos positivos.
+ * Es seguro para su uso concurrente: cada contador se actualiza con CAS sobre su palabra de 64 bits.
+ */
+final class CountingBloomFilter {
+
+    private static final int COUNTERS_PER_WORD = 16;
+    private static final long COUNTER_MASK = 0xFL;
+
+    private final AtomicLongArray words;
+    private final long counters;
+    private final int hashes;
+
+    /**
+     * @param expectedKeys       Número de claves que se espera almacenar.
+     * @param falsePositiveRate  Probabilidad de falso positivo deseada con ese número de claves.
+     */
+    CountingBloomFilter(long expectedKeys, double falsePositiveRate) {
+        long n = Math.max(1, expectedKeys);
+        double p = Math.min(Math.max(falsePositiveRate, 1e-9), 0.5);
+        long m = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, (m + COUNTERS_PER_WORD - 1) / COUNTERS_PER_WORD);
+        this.words = new AtomicLongArray(Math.max(1, words));
+        this.counters = (long) this.words.length() * COUNTERS_PER_WORD;
+        this.hashes = Math.max(1, (int) Math.round((double) counters / n * Math.log(2)));
+    }
+
+    /**
+     * Añade una clave al filtro.
+     * @param key Clave ya normalizada.
+     */
+    void add(String key) {
+        long hash = hash(key);
+        for (int i = 0; i < hashes; i++) {
+            update(index(hash, i), 1);
+        }
+    }
+
+    /**
+     * Elimina una clave añadida previamente. Eliminar una clave que no se añadió rompe la garantía
+     * de ausencia de falsos negativos, por lo que el llamante solo debe hacerlo tras confirmarse el borrado.
+     * @param key Clave ya normalizada.
+     */
+    void remove(String key) {
+        long hash = hash(key);
+        for (int i = 0; i < hashes; i++) {
+            update(index(hash, i), -1);
+        }
+    }
+
+    /**
+     * @param key Clave ya normalizada.
+     * @return false si la clave seguro que no está; true si puede estar.
+     */
+    boolean mightContain(String key) {
+        long hash = hash(key);
+        for (int i = 0; i < hashes; i++) {
+            long index = index(hash, i);
+            long word = words.get((int) (index / COUNTERS_PER_WORD));
+            if (((word >>> shift(index)) & COUNTER_MASK) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void update(long index, int delta) {
+        int word = (int) (index / COUNTERS_PER_WORD);
+        int shift = shift(index);
+        while (true) {
+            long current = words.get(word);
+            long counter = (current >>> shift) & COUNTER_MASK;
+            // Un contador saturado ya no es exacto: se deja fijo. Uno a cero no se decrementa.
+            if (counter == COUNTER_MASK || (delta < 0 && counter == 0)) {
+                return;
+            }
+            long updated = (current & ~(COUNTER_MASK << shift)) | ((counter + delta) << shift);
+            if (words.compareAndSet(word, current, updated)) {
+                return;
+            }
+        }
+    }
+
+    private long index(long hash, int i) {
+        // Doble hashing (Kirsch-Mitzenmacher): h1 + i * h2 sobre las dos mitades del hash de 64 bits
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long combined = (h1 + (long) i * h2) & Long.MAX_VALUE;
+        return combined % counters;
+    }
+
+    private static int shift(long index) {
+        return (int) (index % COUNTERS_PER_WORD) * 4;
+    }
+
+    private static long hash(String key) {
+        // FNV-1a de 64 bits seguido del finalizador de SplitMix64 para repartir bien ambas mitades
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+}
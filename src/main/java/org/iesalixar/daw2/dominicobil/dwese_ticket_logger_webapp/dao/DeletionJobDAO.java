@@ -0,0 +1,53 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao;
+
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.DeletionJob;
+
+import java.util.List;
+
+/**
+ * Interfaz DeletionJobDAO que define las operaciones sobre los trabajos de borrado en cascada.
+ */
+public interface DeletionJobDAO {
+
+    /**
+     * Guarda un trabajo nuevo.
+     * @param job Trabajo a insertar
+     */
+    void insertJob(DeletionJob job);
+
+    /**
+     * Obtiene un trabajo por su ID.
+     * @param id ID del trabajo
+     * @return Trabajo encontrado o null si no existe
+     */
+    DeletionJob getJobById(int id);
+
+    /**
+     * Busca un trabajo pendiente o en curso para la misma entidad.
+     * @param target Tipo de la entidad
+     * @param targetId ID de la entidad
+     * @return Trabajo sin terminar o null si no hay ninguno
+     */
+    DeletionJob getUnfinishedJob(DeletionJob.Target target, int targetId);
+
+    /**
+     * Lista los trabajos pendientes o en curso, en orden de creación.
+     * @return Trabajos sin terminar
+     */
+    List<DeletionJob> listUnfinishedJobs();
+
+    /**
+     * Cambia el estado de un trabajo.
+     * @param id ID del trabajo
+     * @param status Nuevo estado
+     * @param error Mensaje de error, o null
+     */
+    void updateStatus(int id, DeletionJob.Status status, String error);
+
+    /**
+     * Suma filas borradas al progreso de un trabajo.
+     * @param id ID del trabajo
+     * @param rows Filas borradas en el último bloque
+     */
+    void addDeletedRows(int id, int rows);
+}
@@ -0,0 +1,83 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao;
+
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Transactional;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.DeletionJob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+@Transactional
+public class DeletionJobDAOImpl implements DeletionJobDAO {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeletionJobDAOImpl.class);
+
+    // Longitud de la columna last_error
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+
+    @Override
+    public void insertJob(DeletionJob job) {
+        logger.info("Inserting deletion job for {} {}", job.getTarget(), job.getTargetId());
+        entityManager.persist(job);
+        logger.info("Inserted deletion job with id: {}", job.getId());
+    }
+
+    @Override
+    public DeletionJob getJobById(int id) {
+        return entityManager.find(DeletionJob.class, id);
+    }
+
+    @Override
+    public DeletionJob getUnfinishedJob(DeletionJob.Target target, int targetId) {
+        List<DeletionJob> jobs = entityManager.createQuery(
+                        "SELECT j FROM DeletionJob j WHERE j.target = :target AND j.targetId = :targetId " +
+                                "AND j.status IN :statuses", DeletionJob.class)
+                .setParameter("target", target)
+                .setParameter("targetId", targetId)
+                .setParameter("statuses", List.of(DeletionJob.Status.PENDING, DeletionJob.Status.RUNNING))
+                .setMaxResults(1)
+                .getResultList();
+        return jobs.isEmpty() ? null : jobs.get(0);
+    }
+
+    @Override
+    public List<DeletionJob> listUnfinishedJobs() {
+        return entityManager.createQuery(
+                        "SELECT j FROM DeletionJob j WHERE j.status IN :statuses ORDER BY j.id", DeletionJob.class)
+                .setParameter("statuses", List.of(DeletionJob.Status.PENDING, DeletionJob.Status.RUNNING))
+                .getResultList();
+    }
+
+    @Override
+    public void updateStatus(int id, DeletionJob.Status status, String error) {
+        logger.info("Deletion job {} is now {}", id, status);
+        String lastError = error == null || error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH);
+        entityManager.createQuery(
+                        "UPDATE DeletionJob j SET j.status = :status, j.lastError = :error, j.updatedAt = :now WHERE j.id = :id")
+                .setParameter("status", status)
+                .setParameter("error", lastError)
+                .setParameter("now", LocalDateTime.now())
+                .setParameter("id", id)
+                .executeUpdate();
+    }
+
+    @Override
+    public void addDeletedRows(int id, int rows) {
+        entityManager.createQuery(
+                        "UPDATE DeletionJob j SET j.deletedRows = j.deletedRows + :rows, j.updatedAt = :now WHERE j.id = :id")
+                .setParameter("rows", (long) rows)
+                .setParameter("now", LocalDateTime.now())
+                .setParameter("id", id)
+                .executeUpdate();
+    }
+}
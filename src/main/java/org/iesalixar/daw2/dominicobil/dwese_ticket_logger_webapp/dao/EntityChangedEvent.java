@@ -0,0 +1,30 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Evento que publican los DAO al insertar, actualizar o borrar filas, para que los índices en memoria
+ * (como el de búsqueda) se mantengan al día sin volver a leer las tablas completas.
+ *
+ * Se publica dentro de la transacción del DAO; quien lo escuche con `@TransactionalEventListener`
+ * solo lo recibe si la transacción se confirma.
+ *
+ * @param entityType Clase de la entidad modificada.
+ * @param ids        IDs de las filas modificadas.
+ * @param deleted    true si las filas se han borrado; false si se han insertado o actualizado.
+ */
+public record EntityChangedEvent(Class<?> entityType, Collection<Integer> ids, boolean deleted) {
+
+    public static EntityChangedEvent saved(Class<?> entityType, Integer id) {
+        return new EntityChangedEvent(entityType, List.of(id), false);
+    }
+
+    public static EntityChangedEvent saved(Class<?> entityType, Collection<Integer> ids) {
+        return new EntityChangedEvent(entityType, List.copyOf(ids), false);
+    }
+
+    public static EntityChangedEvent deleted(Class<?> entityType, Collection<Integer> ids) {
+        return new EntityChangedEvent(entityType, List.copyOf(ids), true);
+    }
+}
@@ -0,0 +1,192 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao;
+
+import jakarta.persistence.EntityManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Comprobación de existencia de un valor único (código o nombre) de una tabla.
+ *
+ * La consulta compara contra una columna normalizada (`UPPER(col)`, generada e indexada en schema.sql)
+ * y se detiene en la primera fila (`SELECT 1 ... LIMIT 1`), en lugar de contar todas las coincidencias
+ * aplicando `UPPER()` sobre la columna original, que impide usar el índice.
+ *
+ * Si el filtro de Bloom está activado, los valores que seguro que no existen se responden sin consultar
+ * la base de datos. El filtro se carga al arrancar y el DAO lo mantiene al insertar, actualizar y borrar:
+ * las altas se añaden en el momento (un alta revertida solo deja un falso positivo) y las bajas se aplican
+ * tras el commit, para no provocar nunca un falso negativo.
+ */
+final class ExistenceIndex {
+
+    private final String table;
+    private final String column;
+    private final String normalizedColumn;
+    private final CountingBloomFilter filter;
+
+    // El filtro solo se consulta cuando ha terminado la carga inicial
+    private volatile boolean ready;
+
+    /**
+     * @param table            Tabla consultada.
+     * @param column           Columna original.
+     * @param normalizedColumn Columna normalizada e indexada.
+     * @param filter           Filtro de Bloom, o null si está desactivado.
+     */
+    ExistenceIndex(String table, String column, String normalizedColumn, CountingBloomFilter filter) {
+        this.table = table;
+        this.column = column;
+        this.normalizedColumn = normalizedColumn;
+        this.filter = filter;
+    }
+
+    /**
+     * Normaliza un valor igual que la columna generada de la base de datos.
+     * @param value Valor original.
+     * @return Valor normalizado.
+     */
+    static String normalize(String value) {
+        return value.toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * @param entityManager EntityManager con el que se consulta.
+     * @param value         Valor a comprobar.
+     * @return true si alguna fila tiene el valor.
+     */
+    boolean exists(EntityManager entityManager, String value) {
+        String key = normalize(value);
+        if (definitelyAbsent(key)) {
+            return false;
+        }
+        return !entityManager.createNativeQuery(
+                        "SELECT 1 FROM " + table + " WHERE " + normalizedColumn + " = :value LIMIT 1")
+                .setParameter("value", key)
+                .getResultList()
+                .isEmpty();
+    }
+
+    /**
+     * @param entityManager EntityManager con el que se consulta.
+     * @param value         Valor a comprobar.
+     * @param id            ID de la fila que se excluye.
+     * @return true si alguna fila distinta de la indicada tiene el valor.
+     */
+    boolean existsExcludingId(EntityManager entityManager, String value, int id) {
+        String key = normalize(value);
+        if (definitelyAbsent(key)) {
+            return false;
+        }
+        return !entityManager.createNativeQuery(
+                        "SELECT 1 FROM " + table + " WHERE " + normalizedColumn + " = :value AND id <> :id LIMIT 1")
+                .setParameter("value", key)
+                .setParameter("id", id)
+                .getResultList()
+                .isEmpty();
+    }
+
+    /**
+     * Registra el valor de una fila nueva.
+     * @param value Valor insertado.
+     */
+    void added(String value) {
+        if (filter != null && value != null) {
+            filter.add(normalize(value));
+        }
+    }
+
+    /**
+     * Registra el cambio de valor de una fila a punto de actualizarse. Lee el valor anterior
+     * de la base de datos solo si el filtro está activado.
+     * @param entityManager EntityManager con el que se lee el valor anterior.
+     * @param id            ID de la fila actualizada.
+     * @param newValue      Nuevo valor.
+     */
+    void updating(EntityManager entityManager, int id, String newValue) {
+        if (filter == null) {
+            return;
+        }
+        // El nuevo valor se añade siempre: si la entidad estaba gestionada, la consulta puede provocar
+        // un flush y devolver ya el valor nuevo, y omitir el alta dejaría un falso negativo
+        added(newValue);
+        List<?> current = entityManager.createNativeQuery("SELECT " + column + " FROM " + table + " WHERE id = :id")
+                .setParameter("id", id)
+                .getResultList();
+        String oldValue = current.isEmpty() ? null : (String) current.get(0);
+        if (oldValue != null && newValue != null && Objects.equals(normalize(oldValue), normalize(newValue))) {
+            // Sin cambio, o cambio ya volcado y valor anterior desconocido: la cuenta extra solo
+            // puede dar falsos positivos, mientras que retirarla podría dar un falso negativo
+            return;
+        }
+        removed(oldValue);
+    }
+
+    /**
+     * Registra los valores de las filas que se van a borrar con una sentencia DELETE por IDs. Solo
+     * los lee, bloqueando las filas hasta el borrado, si el filtro está activado.
+     * @param entityManager EntityManager con el que se leen los valores.
+     * @param ids           IDs de las filas que se van a borrar.
+     */
+    void deleting(EntityManager entityManager, Collection<Integer> ids) {
+        if (filter == null || ids.isEmpty()) {
+            return;
+        }
+        List<?> values = entityManager.createNativeQuery(
+                        "SELECT " + column + " FROM " + table + " WHERE id IN (:ids) FOR UPDATE")
+                .setParameter("ids", ids)
+                .getResultList();
+        values.forEach(value -> removed((String) value));
+    }
+
+    /**
+     * Registra el valor de una fila borrada. Se retira del filtro cuando se confirma la transacción.
+     * @param value Valor de la fila borrada.
+     */
+    void removed(String value) {
+        if (filter == null || value == null) {
+            return;
+        }
+        String key = normalize(value);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    removeIfReady(key);
+                }
+            });
+        } else {
+            removeIfReady(key);
+        }
+    }
+
+    private void removeIfReady(String key) {
+        // Durante la carga inicial no se retira nada: la baja puede no estar aún contada en el filtro
+        if (ready) {
+            filter.remove(key);
+        }
+    }
+
+    private boolean definitelyAbsent(String key) {
+        return ready && !filter.mightContain(key);
+    }
+
+    boolean isFiltered() {
+        return filter != null;
+    }
+
+    String getTable() {
+        return table;
+    }
+
+    String getColumn() {
+        return column;
+    }
+
+    void markReady() {
+        ready = true;
+    }
+}
@@ -0,0 +1,92 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceUnit;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+/**
+ * Componente que crea los índices de existencia de los DAO y carga sus filtros de Bloom al arrancar.
+ *
+ * El filtro está desactivado por defecto: solo es válido con una única instancia de la aplicación
+ * escribiendo en la base de datos, ya que las altas hechas por otra instancia no llegarían al filtro.
+ */
+@Component
+public class ExistenceIndexes {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExistenceIndexes.class);
+
+    @PersistenceUnit
+    private EntityManagerFactory entityManagerFactory;
+
+    @Value("${app.exists-filter.enabled:false}")
+    private boolean filterEnabled;
+
+    // Número de valores por tabla para el que se dimensiona cada filtro
+    @Value("${app.exists-filter.expected-keys:100000}")
+    private long expectedKeys;
+
+    @Value("${app.exists-filter.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    private final List<ExistenceIndex> indexes = new CopyOnWriteArrayList<>();
+
+    /**
+     * Crea el índice de existencia de una columna.
+     * @param table            Tabla consultada.
+     * @param column           Columna original.
+     * @param normalizedColumn Columna normalizada e indexada.
+     * @return Índice de existencia, con filtro de Bloom si está activado.
+     */
+    ExistenceIndex create(String table, String column, String normalizedColumn) {
+        CountingBloomFilter filter = filterEnabled ? new CountingBloomFilter(expectedKeys, falsePositiveRate) : null;
+        ExistenceIndex index = new ExistenceIndex(table, column, normalizedColumn, filter);
+        indexes.add(index);
+        return index;
+    }
+
+    /**
+     * Carga en cada filtro los valores existentes. Hasta que termina, las comprobaciones van a la base de datos.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadFilters() {
+        for (ExistenceIndex index : indexes) {
+            if (!index.isFiltered()) {
+                continue;
+            }
+            try {
+                long loaded = load(index);
+                index.markReady();
+                logger.info("Existence filter for {}.{} loaded with {} keys.", index.getTable(), index.getColumn(), loaded);
+            } catch (RuntimeException e) {
+                // Sin filtro las comprobaciones siguen siendo correctas, solo más lentas
+                logger.error("Could not load existence filter for {}.{}: {}", index.getTable(), index.getColumn(), e.getMessage());
+            }
+        }
+    }
+
+    private long load(ExistenceIndex index) {
+        try (StatelessSession session = entityManagerFactory.unwrap(SessionFactory.class).openStatelessSession();
+             Stream<String> values = session
+                     .createNativeQuery("SELECT " + index.getColumn() + " FROM " + index.getTable(), String.class)
+                     .setFetchSize(StreamingQuery.FETCH_SIZE)
+                     .getResultStream()) {
+            long[] count = {0};
+            values.forEach(value -> {
+                index.added(value);
+                count[0]++;
+            });
+            return count[0];
+        }
+    }
+}
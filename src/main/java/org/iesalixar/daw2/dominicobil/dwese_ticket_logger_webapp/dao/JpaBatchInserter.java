@@ -0,0 +1,54 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Componente que persiste listas de entidades en lotes JDBC.
+ *
+ * Persiste las entidades dentro de la transacción del DAO que lo invoca y, cada `batchSize` entidades,
+ * hace flush (Hibernate envía un único lote de INSERT) y clear (libera el contexto de persistencia),
+ * de modo que la memoria no crece con el tamaño de la lista. El tamaño de lote es el mismo que
+ * `hibernate.jdbc.batch_size` para que cada flush corresponda a un lote completo.
+ */
+@Component
+public class JpaBatchInserter {
+
+    private static final Logger logger = LoggerFactory.getLogger(JpaBatchInserter.class);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Tamaño de lote JDBC configurado para Hibernate
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize;
+
+    /**
+     * Persiste todas las entidades de la lista en lotes.
+     * Debe llamarse dentro de una transacción; las entidades quedan desacopladas al terminar.
+     * @param entities Entidades a insertar.
+     * @param <T>      Tipo de entidad.
+     * @return Número de entidades insertadas.
+     */
+    public <T> int persistAll(List<T> entities) {
+        int count = 0;
+        for (T entity : entities) {
+            entityManager.persist(entity);
+            count++;
+            if (count % batchSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+                logger.debug("Flushed batch of {} entities ({} so far).", batchSize, count);
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return count;
+    }
+}
@@ -0,0 +1,47 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * La clase `KeysetPage` representa una página de resultados obtenida por keyset.
+ * Contiene las filas de la página, la ordenación y el filtro aplicados, y los cursores
+ * para construir los enlaces "anterior" y "siguiente" sin contar el total de filas.
+ *
+ * @param <T> Tipo de las filas de la página.
+ */
+@Getter
+@AllArgsConstructor
+public class KeysetPage<T> {
+
+    // Filas de la página actual
+    private final List<T> content;
+
+    // Columna lógica de ordenación aplicada
+    private final String sort;
+
+    // Dirección de ordenación aplicada ("asc" o "desc")
+    private final String dir;
+
+    // Filtro aplicado o null
+    private final String filter;
+
+    // Tamaño de página aplicado
+    private final int size;
+
+    // Cursor para la página anterior o null si no hay página anterior
+    private final String prevCursor;
+
+    // Cursor para la página siguiente o null si no hay página siguiente
+    private final String nextCursor;
+
+    public boolean hasPrevious() {
+        return prevCursor != null;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
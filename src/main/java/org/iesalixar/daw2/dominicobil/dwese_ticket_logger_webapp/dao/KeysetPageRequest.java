@@ -0,0 +1,78 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * La clase `KeysetPageRequest` representa la petición de una página de un listado paginado por keyset
+ * ("seek after last id/sort key"). Se enlaza directamente con los parámetros de la URL de los listados:
+ * `sort`, `dir`, `filter`, `after`, `before` y `size`.
+ *
+ * `after` y `before` son cursores opacos generados por {@link KeysetPage}; nunca se usa un OFFSET
+ * ni un COUNT(*), por lo que el coste de cada página es constante aunque la tabla crezca.
+ */
+@Data
+@NoArgsConstructor
+public class KeysetPageRequest {
+
+    // Tamaño de página por defecto y máximo permitido
+    public static final int DEFAULT_SIZE = 25;
+    public static final int MAX_SIZE = 200;
+
+    // Nombre lógico de la columna por la que se ordena (validado por cada DAO)
+    private String sort;
+
+    // Dirección de la ordenación: "asc" o "desc"
+    private String dir = "asc";
+
+    // Filtro por prefijo sobre la columna principal del listado
+    private String filter;
+
+    // Cursor de la última fila de la página anterior (avanzar)
+    private String after;
+
+    // Cursor de la primera fila de la página siguiente (retroceder)
+    private String before;
+
+    // Número de filas por página
+    private int size = DEFAULT_SIZE;
+
+    /**
+     * Indica si la ordenación es ascendente.
+     * @return true salvo que `dir` sea "desc".
+     */
+    public boolean isAscending() {
+        return !"desc".equalsIgnoreCase(dir);
+    }
+
+    /**
+     * Indica si se está retrocediendo desde el cursor `before`.
+     * @return true si solo se ha indicado el cursor `before`.
+     */
+    public boolean isBackward() {
+        return isBlank(after) && !isBlank(before);
+    }
+
+    /**
+     * Devuelve el tamaño de página acotado entre 1 y {@link #MAX_SIZE}.
+     * @return Tamaño de página efectivo.
+     */
+    public int getEffectiveSize() {
+        if (size < 1) {
+            return DEFAULT_SIZE;
+        }
+        return Math.min(size, MAX_SIZE);
+    }
+
+    /**
+     * Devuelve el filtro normalizado o null si está vacío.
+     * @return Filtro sin espacios en los extremos o null.
+     */
+    public String getEffectiveFilter() {
+        return isBlank(filter) ? null : filter.trim();
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
@@ -0,0 +1,196 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Clase de apoyo para los DAO que construye y ejecuta consultas JPQL paginadas por keyset.
+ *
+ * Cada página se obtiene con una única consulta del tipo
+ * `WHERE col >= :key AND (col > :key OR id > :id) ORDER BY col, id` limitada a `size + 1` filas:
+ * la fila extra indica si existe una página siguiente, de modo que nunca se ejecuta un COUNT(*).
+ * La condición `col >= :key` va sola para que la base de datos la resuelva como un rango sobre el índice
+ * `(col, id)` de cada columna ordenable, y el filtro es un `LIKE 'prefijo%'` sobre la columna `*_norm`
+ * (en mayúsculas e indexada), de modo que ninguna página recorre ni ordena la tabla completa.
+ * Las columnas de ordenación se validan contra una lista blanca para evitar inyección en el ORDER BY.
+ *
+ * @param <T> Tipo de las filas devueltas por la consulta.
+ */
+class KeysetQuery<T> {
+
+    // Columna lógica de ordenación por defecto (siempre disponible)
+    static final String ID_SORT = "id";
+
+    private final Class<T> resultType;
+    private final String select;
+    private final String from;
+    private final String idPath;
+    private final Function<T, Integer> idGetter;
+    private final String filterPath;
+    private final Map<String, SortColumn<T>> sortColumns = new LinkedHashMap<>();
+
+    /**
+     * @param resultType Clase de las filas devueltas.
+     * @param select     Cláusula SELECT (por ejemplo "SELECT l").
+     * @param from       Cláusula FROM con sus JOIN (por ejemplo "FROM Location l JOIN l.province p").
+     * @param idPath     Ruta JPQL del identificador (por ejemplo "l.id").
+     * @param idGetter   Función que obtiene el identificador de una fila.
+     * @param filterPath Expresión de la columna normalizada sobre la que se aplica el filtro por prefijo
+     *                   (por ejemplo "column(l.address_norm as String)"; la columna no está mapeada en la entidad).
+     */
+    KeysetQuery(Class<T> resultType, String select, String from, String idPath,
+                Function<T, Integer> idGetter, String filterPath) {
+        this.resultType = resultType;
+        this.select = select;
+        this.from = from;
+        this.idPath = idPath;
+        this.idGetter = idGetter;
+        this.filterPath = filterPath;
+    }
+
+    /**
+     * Registra una columna de texto por la que se permite ordenar.
+     * @param name      Nombre lógico usado en el parámetro `sort`.
+     * @param path      Ruta JPQL de la columna.
+     * @param keyGetter Función que obtiene el valor de la columna de una fila.
+     * @return Esta misma consulta, para encadenar llamadas.
+     */
+    KeysetQuery<T> sortable(String name, String path, Function<T, String> keyGetter) {
+        sortColumns.put(name, new SortColumn<>(path, keyGetter));
+        return this;
+    }
+
+    /**
+     * Ejecuta la consulta para la página solicitada.
+     * @param entityManager EntityManager con el que se crea la consulta.
+     * @param request       Petición de página (ordenación, filtro, cursor y tamaño).
+     * @return Página de resultados con los cursores anterior y siguiente.
+     */
+    KeysetPage<T> fetch(EntityManager entityManager, KeysetPageRequest request) {
+        String sort = sortColumns.containsKey(request.getSort()) ? request.getSort() : ID_SORT;
+        SortColumn<T> column = sortColumns.get(sort);
+        boolean ascending = request.isAscending();
+        boolean backward = request.isBackward();
+        int size = request.getEffectiveSize();
+        String filter = request.getEffectiveFilter();
+        Cursor cursor = Cursor.decode(backward ? request.getBefore() : request.getAfter());
+
+        // Al retroceder se recorre el índice en sentido contrario y luego se invierte el resultado
+        boolean seekUp = ascending != backward;
+        String op = seekUp ? ">" : "<";
+        String order = seekUp ? "ASC" : "DESC";
+
+        StringBuilder jpql = new StringBuilder(select).append(' ').append(from).append(" WHERE 1 = 1");
+        if (filter != null) {
+            jpql.append(" AND ").append(filterPath).append(" LIKE :filter ESCAPE '!'");
+        }
+        if (cursor != null) {
+            if (column == null) {
+                jpql.append(" AND ").append(idPath).append(' ').append(op).append(" :cursorId");
+            } else {
+                jpql.append(" AND ").append(column.path).append(' ').append(op).append("= :cursorKey")
+                        .append(" AND (").append(column.path).append(' ').append(op).append(" :cursorKey OR ")
+                        .append(idPath).append(' ').append(op).append(" :cursorId)");
+            }
+        }
+        jpql.append(" ORDER BY ");
+        if (column != null) {
+            jpql.append(column.path).append(' ').append(order).append(", ");
+        }
+        jpql.append(idPath).append(' ').append(order);
+
+        TypedQuery<T> query = entityManager.createQuery(jpql.toString(), resultType);
+        if (filter != null) {
+            query.setParameter("filter", escapeLike(filter.toUpperCase()) + "%");
+        }
+        if (cursor != null) {
+            query.setParameter("cursorId", cursor.id);
+            if (column != null) {
+                query.setParameter("cursorKey", cursor.key == null ? "" : cursor.key);
+            }
+        }
+        List<T> rows = new ArrayList<>(query.setMaxResults(size + 1).getResultList());
+
+        // La fila extra indica que hay más resultados en el sentido del recorrido
+        boolean more = rows.size() > size;
+        if (more) {
+            rows.remove(size);
+        }
+        if (backward) {
+            Collections.reverse(rows);
+        }
+        boolean hasPrevious = backward ? more : cursor != null;
+        boolean hasNext = backward || more;
+
+        String prevCursor = hasPrevious && !rows.isEmpty() ? encode(rows.get(0), column) : null;
+        String nextCursor = hasNext && !rows.isEmpty() ? encode(rows.get(rows.size() - 1), column) : null;
+        return new KeysetPage<>(rows, sort, ascending ? "asc" : "desc", filter, size, prevCursor, nextCursor);
+    }
+
+    private String encode(T row, SortColumn<T> column) {
+        String key = column == null ? null : column.keyGetter.apply(row);
+        return new Cursor(idGetter.apply(row), key).encode();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    /**
+     * Columna de ordenación registrada: ruta JPQL y función para leer su valor.
+     */
+    private static final class SortColumn<T> {
+        private final String path;
+        private final Function<T, String> keyGetter;
+
+        private SortColumn(String path, Function<T, String> keyGetter) {
+            this.path = path;
+            this.keyGetter = keyGetter;
+        }
+    }
+
+    /**
+     * Posición dentro del listado: identificador de la fila y valor de la columna de ordenación.
+     * Se serializa como Base64 URL-safe de "id:clave" para usarlo como parámetro de la URL.
+     */
+    private static final class Cursor {
+        private final int id;
+        private final String key;
+
+        private Cursor(int id, String key) {
+            this.id = id;
+            this.key = key;
+        }
+
+        private String encode() {
+            String raw = key == null ? String.valueOf(id) : id + ":" + key;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private static Cursor decode(String token) {
+            if (token == null || token.isBlank()) {
+                return null;
+            }
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                int separator = raw.indexOf(':');
+                if (separator < 0) {
+                    return new Cursor(Integer.parseInt(raw), null);
+                }
+                return new Cursor(Integer.parseInt(raw.substring(0, separator)), raw.substring(separator + 1));
+            } catch (IllegalArgumentException e) {
+                // Un cursor manipulado o corrupto se ignora y se muestra la primera página
+                return null;
+            }
+        }
+    }
+}
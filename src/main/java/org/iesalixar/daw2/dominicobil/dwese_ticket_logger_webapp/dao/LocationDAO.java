@@ -1,9 +1,14 @@
 package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao;
 
 import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Location;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.LocationKeys;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.LocationPoint;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.LocationRow;
 
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Interfaz LocationDAO que define las operaciones CRUD para la entidad Location.
@@ -16,12 +21,47 @@ public interface LocationDAO {
      */
     List<Location> listAllLocations();
 
+    /**
+     * Obtiene una página de ubicaciones paginada por keyset, con ordenación y filtro en el servidor.
+     * Devuelve proyecciones de solo lectura con el nombre de provincia y supermercado ya resueltos.
+     * @param pageRequest Petición de página (ordenación, filtro por dirección, cursor y tamaño)
+     * @return Página de ubicaciones con los cursores anterior y siguiente
+     */
+    KeysetPage<LocationRow> listLocationsPage(KeysetPageRequest pageRequest);
+
+    /**
+     * Recorre todas las ubicaciones con un cursor de solo avance, sin cargarlas en memoria.
+     * El Stream devuelto mantiene abierta una conexión y debe cerrarse siempre.
+     * @return Stream de ubicaciones ordenadas por ID
+     */
+    Stream<LocationRow> streamAllLocations();
+
+    List<LocationRow> listLocationRowsByIds(Collection<Integer> ids);
+
+    Stream<LocationPoint> streamLocationPoints();
+
+    List<LocationPoint> listLocationPointsByIds(Collection<Integer> ids);
+
+    List<LocationPoint> listLocationPointsInBox(double minLatitude, double maxLatitude,
+                                                double minLongitude, double maxLongitude, Integer supermarketId);
+
+    Stream<LocationKeys> streamLocationKeys();
+
+    List<LocationKeys> listLocationKeysByIds(Collection<Integer> ids);
+
     /**
      * Inserta una nueva ubicación en la base de datos.
      * @param location Ubicación a insertar
      */
     void insertLocation(Location location) ;
 
+    /**
+     * Inserta una lista de ubicaciones usando lotes JDBC.
+     * @param locations Ubicaciones a insertar
+     * @return Número de ubicaciones insertadas
+     */
+    int insertLocations(List<Location> locations);
+
     /**
      * Actualiza una ubicación existente en la base de datos.
      * @param location Ubicación a actualizar
@@ -34,6 +74,43 @@ public interface LocationDAO {
      */
     void deleteLocation(int id) ;
 
+    /**
+     * Elimina varias ubicaciones por su ID con una sola sentencia.
+     * @param ids IDs de las ubicaciones a eliminar
+     * @return Número de ubicaciones eliminadas
+     */
+    int deleteLocations(List<Integer> ids);
+
+    /**
+     * Obtiene los IDs de las primeras ubicaciones de una provincia, para borrarlas por bloques.
+     * @param provinceId ID de la provincia
+     * @param limit Número máximo de IDs
+     * @return IDs ordenados de menor a mayor
+     */
+    List<Integer> listLocationIdsByProvince(int provinceId, int limit);
+
+    /**
+     * Obtiene los IDs de las primeras ubicaciones de un supermercado, para borrarlas por bloques.
+     * @param supermarketId ID del supermercado
+     * @param limit Número máximo de IDs
+     * @return IDs ordenados de menor a mayor
+     */
+    List<Integer> listLocationIdsBySupermarket(int supermarketId, int limit);
+
+    /**
+     * Obtiene los IDs de todas las ubicaciones de las provincias indicadas.
+     * @param provinceIds IDs de las provincias
+     * @return IDs de las ubicaciones
+     */
+    List<Integer> listLocationIdsByProvinces(Collection<Integer> provinceIds);
+
+    /**
+     * Obtiene los IDs de todas las ubicaciones de los supermercados indicados.
+     * @param supermarketIds IDs de los supermercados
+     * @return IDs de las ubicaciones
+     */
+    List<Integer> listLocationIdsBySupermarkets(Collection<Integer> supermarketIds);
+
     /**
      * Obtiene una ubicación por su ID.
      * @param id ID de la ubicación
@@ -1,15 +1,23 @@
 package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao;
 
 
+import jakarta.annotation.PostConstruct;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.OptimisticLockException;
 import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
 import jakarta.transaction.Transactional;
 import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Location;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.LocationKeys;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.LocationPoint;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.LocationRow;
 import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Province;
 import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Supermarket;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.jdbc.core.BeanPropertyRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
@@ -17,7 +25,10 @@ import org.springframework.stereotype.Repository;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 @Repository
 @Transactional
@@ -25,10 +36,52 @@ public class LocationDAOImpl implements LocationDAO {
 
     private static final Logger logger = LoggerFactory.getLogger(LocationDAOImpl.class);
 
+    // Consulta de proyección compartida por el listado paginado, el modo streaming y las exportaciones
+    private static final String ROW_SELECT =
+            "SELECT new org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.LocationRow(l.id, l.address, l.city, p.name, s.name)";
+    private static final String ROW_FROM = "FROM Location l JOIN l.supermarket s JOIN l.province p";
+
+    // Coordenadas para el índice de cercanía; solo las ubicaciones que tienen latitud y longitud
+    private static final String POINT_SELECT =
+            "SELECT new org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.LocationPoint(l.id, l.supermarket.id, l.latitude, l.longitude) " +
+                    "FROM Location l WHERE l.latitude IS NOT NULL AND l.longitude IS NOT NULL";
+
+    // Supermercado, provincia y región de cada ubicación, para los informes de gasto
+    private static final String KEYS_SELECT =
+            "SELECT new org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.LocationKeys(l.id, l.supermarket.id, p.id, p.region_id.id) " +
+                    "FROM Location l JOIN l.province p";
+
+    // Consulta paginada por keyset: ordenable por id, dirección o ciudad y filtrable por dirección.
+    // Proyecta directamente a LocationRow para resolver provincia y supermercado en una sola consulta.
+    private static final KeysetQuery<LocationRow> PAGE_QUERY = new KeysetQuery<>(LocationRow.class,
+            ROW_SELECT, ROW_FROM, "l.id", LocationRow::id, "column(l.address_norm as String)")
+            .sortable("address", "l.address", LocationRow::address)
+            .sortable("city", "l.city", LocationRow::city);
+
     @PersistenceContext
     private EntityManager entityManager;
 
+    @Autowired
+    private JpaBatchInserter batchInserter;
+
+    @Autowired
+    private ExistenceIndexes existenceIndexes;
+
+    // Avisa de los cambios a los índices en memoria (búsqueda y cercanía)
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Comprobación de existencia por dirección (columna address_norm indexada y filtro de Bloom opcional)
+    private ExistenceIndex addressIndex;
+
+
+    @PostConstruct
+    void initExistenceIndex() {
+        addressIndex = existenceIndexes.create("locations", "address", "address_norm");
+    }
+
     @Override
+    @ReadOnlyTransactional
     public List<Location> listAllLocations() {
         logger.info("Listing all locations from the database.");
         String query = "SELECT l FROM Location l JOIN l.supermarket s JOIN l.province p";
@@ -37,33 +90,238 @@ public class LocationDAOImpl implements LocationDAO {
         return locations;
     }
 
+    @Override
+    @ReadOnlyTransactional
+    public KeysetPage<LocationRow> listLocationsPage(KeysetPageRequest pageRequest) {
+        logger.info("Listing locations page sorted by {} {} with filter: {}", pageRequest.getSort(), pageRequest.getDir(), pageRequest.getFilter());
+        KeysetPage<LocationRow> page = PAGE_QUERY.fetch(entityManager, pageRequest);
+        logger.info("Retrieved {} locations for the requested page.", page.getContent().size());
+        return page;
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public Stream<LocationRow> streamAllLocations() {
+        logger.info("Streaming all locations from the database.");
+        String query = ROW_SELECT + " " + ROW_FROM + " ORDER BY l.id";
+        return StreamingQuery.stream(entityManager, query, LocationRow.class, Map.of());
+    }
+
+    /**
+     * Obtiene en una sola consulta las proyecciones de listado de las ubicaciones indicadas.
+     * @param ids IDs de las ubicaciones
+     * @return Proyecciones de las ubicaciones que existen
+     */
+    @Override
+    public List<LocationRow> listLocationRowsByIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        String query = ROW_SELECT + " " + ROW_FROM + " WHERE l.id IN :ids";
+        return entityManager.createQuery(query, LocationRow.class).setParameter("ids", ids).getResultList();
+    }
+
+    /**
+     * Recorre las coordenadas de todas las ubicaciones que las tienen, con un cursor de solo avance.
+     * El Stream devuelto mantiene abierta una conexión y debe cerrarse siempre.
+     * @return Stream de coordenadas
+     */
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public Stream<LocationPoint> streamLocationPoints() {
+        logger.info("Streaming location coordinates from the database.");
+        return StreamingQuery.stream(entityManager, POINT_SELECT, LocationPoint.class, Map.of());
+    }
+
+    /**
+     * Obtiene las coordenadas de las ubicaciones indicadas; las que no tienen coordenadas no se devuelven.
+     * @param ids IDs de las ubicaciones
+     * @return Coordenadas de las ubicaciones que existen y las tienen
+     */
+    @Override
+    public List<LocationPoint> listLocationPointsByIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return entityManager.createQuery(POINT_SELECT + " AND l.id IN :ids", LocationPoint.class)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
+    /**
+     * Obtiene las coordenadas de las ubicaciones dentro de un rectángulo, usando el índice (latitude, longitude).
+     * @param minLatitude   Latitud mínima
+     * @param maxLatitude   Latitud máxima
+     * @param minLongitude  Longitud mínima
+     * @param maxLongitude  Longitud máxima
+     * @param supermarketId ID del supermercado, o null para todos
+     * @return Coordenadas de las ubicaciones del rectángulo
+     */
+    @Override
+    @ReadOnlyTransactional
+    public List<LocationPoint> listLocationPointsInBox(double minLatitude, double maxLatitude,
+                                                       double minLongitude, double maxLongitude, Integer supermarketId) {
+        String query = POINT_SELECT + " AND l.latitude BETWEEN :minLat AND :maxLat AND l.longitude BETWEEN :minLon AND :maxLon"
+                + (supermarketId == null ? "" : " AND l.supermarket.id = :supermarketId");
+        TypedQuery<LocationPoint> typedQuery = entityManager.createQuery(query, LocationPoint.class)
+                .setParameter("minLat", minLatitude)
+                .setParameter("maxLat", maxLatitude)
+                .setParameter("minLon", minLongitude)
+                .setParameter("maxLon", maxLongitude);
+        if (supermarketId != null) {
+            typedQuery.setParameter("supermarketId", supermarketId);
+        }
+        return typedQuery.getResultList();
+    }
+
+    /**
+     * Recorre el supermercado, la provincia y la región de todas las ubicaciones, con un cursor de solo avance.
+     * El Stream devuelto mantiene abierta una conexión y debe cerrarse siempre.
+     * @return Stream de claves de ubicación
+     */
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public Stream<LocationKeys> streamLocationKeys() {
+        logger.info("Streaming location keys from the database.");
+        return StreamingQuery.stream(entityManager, KEYS_SELECT, LocationKeys.class, Map.of());
+    }
+
+    /**
+     * Obtiene el supermercado, la provincia y la región de las ubicaciones indicadas.
+     * @param ids IDs de las ubicaciones
+     * @return Claves de las ubicaciones que existen
+     */
+    @Override
+    public List<LocationKeys> listLocationKeysByIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return entityManager.createQuery(KEYS_SELECT + " WHERE l.id IN :ids", LocationKeys.class)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
     @Override
     public void insertLocation(Location location) {
         logger.info("Inserting location with id:{}", location.getId());
         entityManager.persist(location);
+        eventPublisher.publishEvent(EntityChangedEvent.saved(Location.class, location.getId()));
+        addressIndex.added(location.getAddress());
         logger.info("Inserted location, rows affected: {}", location.getId());
     }
 
+    @Override
+    public int insertLocations(List<Location> locations) {
+        logger.info("Inserting {} locations in JDBC batches.", locations.size());
+        locations.forEach(location -> addressIndex.added(location.getAddress()));
+        int inserted = batchInserter.persistAll(locations);
+        eventPublisher.publishEvent(EntityChangedEvent.saved(Location.class, locations.stream().map(Location::getId).toList()));
+        logger.info("Inserted {} locations.", inserted);
+        return inserted;
+    }
+
+    /**
+     * Actualiza una ubicación con un único UPDATE condicionado a su versión. El supermercado y la
+     * provincia se asignan por referencia, sin consultarlos. Lanza OptimisticLockException si la
+     * ubicación se ha modificado o borrado desde que se leyó.
+     * @param location Ubicación a actualizar.
+     */
     @Override
     public void updateLocation(Location location) {
-        logger.info("Updating location with id: {}", location.getId());
-        entityManager.merge(location);
-        logger.info("Updated location, rows affected: {}", location.getId());
+        logger.info("Updating location with id: {} and version: {}", location.getId(), location.getVersion());
+        addressIndex.updating(entityManager, location.getId(), location.getAddress());
+        int rows = entityManager.createQuery(
+                        "UPDATE Location l SET l.address = :address, l.city = :city, l.latitude = :latitude, " +
+                                "l.longitude = :longitude, l.supermarket = :supermarket, l.province = :province, " +
+                                "l.version = l.version + 1 WHERE l.id = :id AND l.version = :version")
+                .setParameter("address", location.getAddress())
+                .setParameter("city", location.getCity())
+                .setParameter("latitude", location.getLatitude())
+                .setParameter("longitude", location.getLongitude())
+                .setParameter("supermarket", entityManager.getReference(Supermarket.class, location.getSupermarket().getId()))
+                .setParameter("province", entityManager.getReference(Province.class, location.getProvince().getId()))
+                .setParameter("id", location.getId())
+                .setParameter("version", location.getVersion())
+                .executeUpdate();
+        if (rows == 0) {
+            logger.warn("Location with id: {} was modified or deleted concurrently (version {}).", location.getId(), location.getVersion());
+            throw new OptimisticLockException(location);
+        }
+        location.setVersion(location.getVersion() + 1);
+        eventPublisher.publishEvent(EntityChangedEvent.saved(Location.class, location.getId()));
+        logger.info("Updated location, rows affected: {}", rows);
     }
 
     @Override
     public void deleteLocation(int id)  {
         logger.info("Deleting location with id: {}", id);
-        Location location = entityManager.find(Location.class, id);
-        if(location != null){
-            entityManager.remove(location);
+        if (deleteLocations(List.of(id)) > 0) {
             logger.info("Deleted location, with id; {}", id);
-        }else {
+        } else {
             logger.warn("Location witch id:{} not found", id);
         }
     }
 
+    /**
+     * Borra las ubicaciones indicadas con una única sentencia DELETE, sin cargarlas antes.
+     * Las ubicaciones no tienen hijos, así que no hay nada que propagar.
+     * @param ids IDs de las ubicaciones a borrar.
+     * @return Número de ubicaciones borradas.
+     */
+    @Override
+    public int deleteLocations(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        addressIndex.deleting(entityManager, ids);
+        int deleted = entityManager.createQuery("DELETE FROM Location l WHERE l.id IN :ids")
+                .setParameter("ids", ids)
+                .executeUpdate();
+        eventPublisher.publishEvent(EntityChangedEvent.deleted(Location.class, ids));
+        logger.info("Deleted {} locations by id.", deleted);
+        return deleted;
+    }
+
+    @Override
+    public List<Integer> listLocationIdsByProvince(int provinceId, int limit) {
+        return entityManager.createQuery(
+                        "SELECT l.id FROM Location l WHERE l.province.id = :provinceId ORDER BY l.id", Integer.class)
+                .setParameter("provinceId", provinceId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public List<Integer> listLocationIdsBySupermarket(int supermarketId, int limit) {
+        return entityManager.createQuery(
+                        "SELECT l.id FROM Location l WHERE l.supermarket.id = :supermarketId ORDER BY l.id", Integer.class)
+                .setParameter("supermarketId", supermarketId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public List<Integer> listLocationIdsByProvinces(Collection<Integer> provinceIds) {
+        if (provinceIds.isEmpty()) {
+            return List.of();
+        }
+        return entityManager.createQuery("SELECT l.id FROM Location l WHERE l.province.id IN :provinceIds", Integer.class)
+                .setParameter("provinceIds", provinceIds)
+                .getResultList();
+    }
+
+    @Override
+    public List<Integer> listLocationIdsBySupermarkets(Collection<Integer> supermarketIds) {
+        if (supermarketIds.isEmpty()) {
+            return List.of();
+        }
+        return entityManager.createQuery("SELECT l.id FROM Location l WHERE l.supermarket.id IN :supermarketIds", Integer.class)
+                .setParameter("supermarketIds", supermarketIds)
+                .getResultList();
+    }
+
     @Override
+    @ReadOnlyTransactional
     public Location getLocationById(int id) {
         logger.info("Retrieving location by id: {}", id);
         Location location = entityManager.find(Location.class, id);
@@ -78,12 +336,7 @@ public class LocationDAOImpl implements LocationDAO {
     @Override
     public boolean existsLocationByCodeAndNotId(String address, int id) {
         logger.info("Checking if location with address: {} exists excluding id: {}", address, id);
-        String query = "SELECT COUNT(l) FROM Location l WHERE UPPER(l.address) = :address AND l.id != :id";
-        Long count = entityManager.createQuery(query, Long.class)
-                .setParameter("address", address.toUpperCase())
-                .setParameter("id", id)
-                .getSingleResult();
-        boolean exists = count != null && count > 0;
+        boolean exists = addressIndex.existsExcludingId(entityManager, address, id);
         logger.info("Location with address: {} exists excluding id {}: {}", address, id, exists);
         return exists;
     }
@@ -91,11 +344,7 @@ public class LocationDAOImpl implements LocationDAO {
     @Override
     public boolean existsLocationByCode(String address) {
         logger.info("Checking if location with address: {} exists", address);
-        String query = "SELECT COUNT(l) FROM Location l WHERE UPPER(l.address) = :address";
-        Long count = entityManager.createQuery(query, Long.class)
-                .setParameter("address", address.toUpperCase())
-                .getSingleResult();
-        boolean exists = count != null && count > 0;
+        boolean exists = addressIndex.exists(entityManager, address);
         logger.info("Location with address {} exists: {}", address, exists);
         return exists;
     }
@@ -103,9 +352,10 @@ public class LocationDAOImpl implements LocationDAO {
 
 /**
      * Clase interna que implementa RowMapper para mapear los resultados de la consulta SQL a la entidad Location.
+     * Visible en el paquete para compararla con el mapeo de JPA en los benchmarks.
      */
 
-    private static class LocationRowMapper implements RowMapper<Location> {
+    static class LocationRowMapper implements RowMapper<Location> {
         @Override
         public Location mapRow(ResultSet rs, int rowNum) throws SQLException {
             Location location = new Location();
@@ -2,8 +2,12 @@ package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao;
 
 
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Province;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.ProvinceKeys;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.ProvinceRow;
 
 
 public interface ProvinceDAO {
@@ -14,15 +18,39 @@ public interface ProvinceDAO {
     List<Province> listAllProvinces() ;
 
 
+    KeysetPage<ProvinceRow> listProvincesPage(KeysetPageRequest pageRequest);
+
+
+    Stream<ProvinceRow> streamAllProvinces();
+
+    List<ProvinceRow> listProvinceRowsByIds(Collection<Integer> ids);
+
+    List<ProvinceKeys> listProvinceKeys();
+
+    List<ProvinceKeys> listProvinceKeysByIds(Collection<Integer> ids);
+
+
     void insertProvince(Province province);
 
 
+    int insertProvinces(List<Province> provinces);
+
+
     void updateProvince(Province province);
 
 
     void deleteProvince(int id);
 
 
+    int deleteProvinces(List<Integer> ids);
+
+
+    List<Integer> listProvinceIdsByRegion(int regionId, int limit);
+
+
+    List<Integer> listProvinceIdsByRegions(Collection<Integer> regionIds);
+
+
     Province getProvinceById(int id);
 
 
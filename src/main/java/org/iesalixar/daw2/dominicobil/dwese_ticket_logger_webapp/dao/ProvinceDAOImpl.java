@@ -2,16 +2,26 @@ package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao;
 
 
 import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Province;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.ProvinceKeys;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.ProvinceRow;
 import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Region;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Repository;
 
 
+import jakarta.annotation.PostConstruct;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.OptimisticLockException;
 import jakarta.persistence.PersistenceContext;
+import org.hibernate.jpa.HibernateHints;
 import jakarta.transaction.Transactional;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 
 @Repository
@@ -23,24 +33,131 @@ public class ProvinceDAOImpl implements ProvinceDAO {
     private static final Logger logger = LoggerFactory.getLogger(ProvinceDAOImpl.class);
 
 
+    // Consulta de proyección compartida por el listado paginado, el modo streaming y las exportaciones
+    private static final String ROW_SELECT =
+            "SELECT new org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.ProvinceRow(p.id, p.code, p.name, r.name)";
+    private static final String ROW_FROM = "FROM Province p JOIN p.region_id r";
+
+    // Región de cada provincia, para los informes de gasto
+    private static final String KEYS_SELECT =
+            "SELECT new org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.ProvinceKeys(p.id, p.region_id.id) FROM Province p";
+
+    // Consulta paginada por keyset: ordenable por id, código o nombre y filtrable por nombre.
+    // Proyecta directamente a ProvinceRow para resolver el nombre de la región en la misma consulta.
+    private static final KeysetQuery<ProvinceRow> PAGE_QUERY = new KeysetQuery<>(ProvinceRow.class,
+            ROW_SELECT, ROW_FROM, "p.id", ProvinceRow::id, "column(p.name_norm as String)")
+            .sortable("code", "p.code", ProvinceRow::code)
+            .sortable("name", "p.name", ProvinceRow::name);
+
+
     @PersistenceContext
     private EntityManager entityManager;
 
+    // Componente para las inserciones masivas en lotes JDBC
+    @Autowired
+    private JpaBatchInserter batchInserter;
+
+    @Autowired
+    private ExistenceIndexes existenceIndexes;
+
+    // Avisa de los cambios a los índices en memoria (búsqueda)
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Comprobación de existencia por código (columna code_norm indexada y filtro de Bloom opcional)
+    private ExistenceIndex codeIndex;
+
+
+    @PostConstruct
+    void initExistenceIndex() {
+        codeIndex = existenceIndexes.create("provinces", "code", "code_norm");
+    }
+
 
     /**
      * Lista todas las provincias de la base de datos.
+     * El resultado se guarda en la caché de consultas hasta que se modifica la tabla.
      * @return Lista de provincias
      */
     @Override
+    @ReadOnlyTransactional
     public List<Province> listAllProvinces() {
         logger.info("Listing all provinces from the database.");
-        String query = "SELECT p FROM Province p JOIN FETCH p.region";
-        List<Province> provinces = entityManager.createQuery(query, Province.class).getResultList();
+        String query = "SELECT p FROM Province p JOIN FETCH p.region_id";
+        List<Province> provinces = entityManager.createQuery(query, Province.class)
+                .setHint(HibernateHints.HINT_CACHEABLE, true)
+                .getResultList();
         logger.info("Retrieved {} provinces from the database.", provinces.size());
         return provinces;
     }
 
 
+    /**
+     * Obtiene una página de provincias paginada por keyset.
+     * @param pageRequest Petición de página (ordenación, filtro por nombre, cursor y tamaño)
+     * @return Página de provincias
+     */
+    @Override
+    @ReadOnlyTransactional
+    public KeysetPage<ProvinceRow> listProvincesPage(KeysetPageRequest pageRequest) {
+        logger.info("Listing provinces page sorted by {} {} with filter: {}", pageRequest.getSort(), pageRequest.getDir(), pageRequest.getFilter());
+        KeysetPage<ProvinceRow> page = PAGE_QUERY.fetch(entityManager, pageRequest);
+        logger.info("Retrieved {} provinces for the requested page.", page.getContent().size());
+        return page;
+    }
+
+
+    /**
+     * Recorre todas las provincias con un cursor de solo avance, sin cargarlas en memoria.
+     * El Stream devuelto mantiene abierta una conexión y debe cerrarse siempre.
+     * @return Stream de provincias ordenadas por ID
+     */
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public Stream<ProvinceRow> streamAllProvinces() {
+        logger.info("Streaming all provinces from the database.");
+        return StreamingQuery.stream(entityManager, ROW_SELECT + " " + ROW_FROM + " ORDER BY p.id", ProvinceRow.class, Map.of());
+    }
+
+    /**
+     * Obtiene en una sola consulta las proyecciones de listado de las provincias indicadas.
+     * @param ids IDs de las provincias
+     * @return Proyecciones de las provincias que existen
+     */
+    @Override
+    public List<ProvinceRow> listProvinceRowsByIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        String query = ROW_SELECT + " " + ROW_FROM + " WHERE p.id IN :ids";
+        return entityManager.createQuery(query, ProvinceRow.class).setParameter("ids", ids).getResultList();
+    }
+
+    /**
+     * Obtiene la región de todas las provincias.
+     * @return Claves de las provincias
+     */
+    @Override
+    public List<ProvinceKeys> listProvinceKeys() {
+        return entityManager.createQuery(KEYS_SELECT, ProvinceKeys.class).getResultList();
+    }
+
+    /**
+     * Obtiene la región de las provincias indicadas.
+     * @param ids IDs de las provincias
+     * @return Claves de las provincias que existen
+     */
+    @Override
+    public List<ProvinceKeys> listProvinceKeysByIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return entityManager.createQuery(KEYS_SELECT + " WHERE p.id IN :ids", ProvinceKeys.class)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
+
     /**
      * Inserta una nueva provincia en la base de datos.
      * @param province Provincia a insertar
@@ -49,32 +166,68 @@ public class ProvinceDAOImpl implements ProvinceDAO {
     public void insertProvince(Province province) {
         logger.info("Inserting province with code: {} and name: {}", province.getCode(), province.getName());
         entityManager.persist(province);
+        eventPublisher.publishEvent(EntityChangedEvent.saved(Province.class, province.getId()));
+        codeIndex.added(province.getCode());
         logger.info("Inserted province with ID: {}", province.getId());
     }
 
 
+    /**
+     * Inserta una lista de provincias en lotes JDBC.
+     * @param provinces Provincias a insertar
+     * @return Número de provincias insertadas
+     */
+    @Override
+    public int insertProvinces(List<Province> provinces) {
+        logger.info("Inserting {} provinces in JDBC batches.", provinces.size());
+        provinces.forEach(province -> codeIndex.added(province.getCode()));
+        int inserted = batchInserter.persistAll(provinces);
+        eventPublisher.publishEvent(EntityChangedEvent.saved(Province.class, provinces.stream().map(Province::getId).toList()));
+        logger.info("Inserted {} provinces.", inserted);
+        return inserted;
+    }
+
+
     /**
      * Actualiza una provincia existente en la base de datos.
+     *
+     * Un solo UPDATE que comprueba la versión: la región se asigna por referencia, sin cargarla, y
+     * si la provincia ha cambiado desde que se leyó se lanza OptimisticLockException.
      * @param province Provincia a actualizar
      */
     @Override
     public void updateProvince(Province province) {
-        logger.info("Updating province with id: {}", province.getId());
-        entityManager.merge(province);
+        logger.info("Updating province with id: {} and version: {}", province.getId(), province.getVersion());
+        codeIndex.updating(entityManager, province.getId(), province.getCode());
+        int rows = entityManager.createQuery(
+                        "UPDATE Province p SET p.code = :code, p.name = :name, p.region_id = :region, " +
+                                "p.version = p.version + 1 WHERE p.id = :id AND p.version = :version")
+                .setParameter("code", province.getCode())
+                .setParameter("name", province.getName())
+                .setParameter("region", entityManager.getReference(Region.class, province.getRegion_id().getId()))
+                .setParameter("id", province.getId())
+                .setParameter("version", province.getVersion())
+                .executeUpdate();
+        if (rows == 0) {
+            logger.warn("Province with id: {} was modified or deleted concurrently (version {}).", province.getId(), province.getVersion());
+            throw new OptimisticLockException(province);
+        }
+        province.setVersion(province.getVersion() + 1);
+        eventPublisher.publishEvent(EntityChangedEvent.saved(Province.class, province.getId()));
         logger.info("Updated province with id: {}", province.getId());
     }
 
 
     /**
-     * Elimina una provincia de la base de datos.
+     * Elimina una provincia de la base de datos con una única sentencia DELETE.
+     * No borra sus ubicaciones: si aún tiene alguna, la clave foránea rechaza el borrado.
+     * Las provincias con ubicaciones se eliminan con CascadeDeletionService.
      * @param id ID de la provincia a eliminar
      */
     @Override
     public void deleteProvince(int id) {
         logger.info("Deleting province with id: {}", id);
-        Province province = entityManager.find(Province.class, id);
-        if (province != null) {
-            entityManager.remove(province);
+        if (deleteProvinces(List.of(id)) > 0) {
             logger.info("Deleted province with id: {}", id);
         } else {
             logger.warn("Province with id: {} not found.", id);
@@ -82,12 +235,66 @@ public class ProvinceDAOImpl implements ProvinceDAO {
     }
 
 
+    /**
+     * Elimina varias provincias sin ubicaciones con una sola sentencia DELETE.
+     * @param ids IDs de las provincias a eliminar
+     * @return Número de provincias eliminadas
+     */
+    @Override
+    public int deleteProvinces(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        codeIndex.deleting(entityManager, ids);
+        int deleted = entityManager.createQuery("DELETE FROM Province p WHERE p.id IN :ids")
+                .setParameter("ids", ids)
+                .executeUpdate();
+        eventPublisher.publishEvent(EntityChangedEvent.deleted(Province.class, ids));
+        logger.info("Deleted {} provinces by id.", deleted);
+        return deleted;
+    }
+
+
+    /**
+     * Obtiene los IDs de las primeras provincias de una región, para borrarlas por bloques.
+     * @param regionId ID de la región
+     * @param limit Número máximo de IDs
+     * @return IDs ordenados de menor a mayor
+     */
+    @Override
+    public List<Integer> listProvinceIdsByRegion(int regionId, int limit) {
+        return entityManager.createQuery(
+                        "SELECT p.id FROM Province p WHERE p.region_id.id = :regionId ORDER BY p.id", Integer.class)
+                .setParameter("regionId", regionId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+
+    /**
+     * Obtiene los IDs de todas las provincias de las regiones indicadas.
+     * @param regionIds IDs de las regiones
+     * @return IDs de las provincias
+     */
+    @Override
+    public List<Integer> listProvinceIdsByRegions(Collection<Integer> regionIds) {
+        if (regionIds.isEmpty()) {
+            return List.of();
+        }
+        return entityManager.createQuery(
+                        "SELECT p.id FROM Province p WHERE p.region_id.id IN :regionIds", Integer.class)
+                .setParameter("regionIds", regionIds)
+                .getResultList();
+    }
+
+
     /**
      * Obtiene una provincia por su ID.
      * @param id ID de la provincia
      * @return Provincia correspondiente al ID
      */
     @Override
+    @ReadOnlyTransactional
     public Province getProvinceById(int id) {
         logger.info("Retrieving province by id: {}", id);
         Province province = entityManager.find(Province.class, id);
@@ -108,11 +315,7 @@ public class ProvinceDAOImpl implements ProvinceDAO {
     @Override
     public boolean existsProvinceByCode(String code) {
         logger.info("Checking if province with code: {} exists", code);
-        String query = "SELECT COUNT(p) FROM Province p WHERE UPPER(p.code) = :code";
-        Long count = entityManager.createQuery(query, Long.class)
-                .setParameter("code", code.toUpperCase())
-                .getSingleResult();
-        boolean exists = count != null && count > 0;
+        boolean exists = codeIndex.exists(entityManager, code);
         logger.info("Province with code: {} exists: {}", code, exists);
         return exists;
     }
@@ -129,12 +332,7 @@ public class ProvinceDAOImpl implements ProvinceDAO {
     @Override
     public boolean existsProvinceByCodeAndNotId(String code, int id) {
         logger.info("Checking if province with code: {} exists excluding id: {}", code, id);
-        String query = "SELECT COUNT(p) FROM Province p WHERE UPPER(p.code) = :code AND p.id != :id";
-        Long count = entityManager.createQuery(query, Long.class)
-                .setParameter("code", code.toUpperCase())
-                .setParameter("id", id)
-                .getSingleResult();
-        boolean exists = count != null && count > 0;
+        boolean exists = codeIndex.existsExcludingId(entityManager, code, id);
         logger.info("Province with code: {} exists excluding id {}: {}", code, id, exists);
         return exists;
     }
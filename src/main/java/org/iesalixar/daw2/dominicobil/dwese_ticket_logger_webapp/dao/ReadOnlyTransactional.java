@@ -0,0 +1,24 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao;
+
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marca un método de DAO que solo lee datos.
+ *
+ * Abre una transacción de Spring de solo lectura, que tiene prioridad sobre el `@Transactional`
+ * de JTA de la clase. Hibernate usa entonces FlushMode.MANUAL y carga las entidades en modo de solo
+ * lectura (sin snapshots ni dirty-checking), y la conexión se marca como de solo lectura, lo que
+ * permite enviarla a la réplica cuando está configurada (ver ReadReplicaConfig).
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Transactional(readOnly = true)
+public @interface ReadOnlyTransactional {
+}
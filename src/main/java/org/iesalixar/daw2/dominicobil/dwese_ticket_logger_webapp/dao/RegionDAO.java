@@ -2,15 +2,22 @@ package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao;
 
 
 import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Region;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.RegionRow;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 
 public interface RegionDAO {
 
 
     List<Region> listAllRegions();
+    KeysetPage<RegionRow> listRegionsPage(KeysetPageRequest pageRequest);
+    Stream<RegionRow> streamAllRegions();
+    List<RegionRow> listRegionRowsByIds(Collection<Integer> ids);
     void insertRegion(Region region);
+    int insertRegions(List<Region> regions);
     void updateRegion(Region region);
     void deleteRegion(int id);
     Region getRegionById(int id);
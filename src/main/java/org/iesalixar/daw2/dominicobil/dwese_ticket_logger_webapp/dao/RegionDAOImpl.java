@@ -2,15 +2,24 @@ package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao;
 
 
 import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Region;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.RegionRow;
 import org.springframework.stereotype.Repository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 
 
+import jakarta.annotation.PostConstruct;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.OptimisticLockException;
 import jakarta.persistence.PersistenceContext;
+import org.hibernate.jpa.HibernateHints;
 import jakarta.transaction.Transactional;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 
 @Repository
@@ -22,24 +31,103 @@ public class RegionDAOImpl implements RegionDAO {
     private static final Logger logger = LoggerFactory.getLogger(RegionDAOImpl.class);
 
 
+    // Consulta de proyección compartida por el listado paginado, el modo streaming y las exportaciones
+    private static final String ROW_SELECT =
+            "SELECT new org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.RegionRow(r.id, r.code, r.name)";
+    private static final String ROW_FROM = "FROM Region r";
+
+    // Consulta paginada por keyset: ordenable por id, código o nombre y filtrable por nombre.
+    // Proyecta a RegionRow para no cargar entidades gestionadas en el contexto de persistencia.
+    private static final KeysetQuery<RegionRow> PAGE_QUERY = new KeysetQuery<>(RegionRow.class,
+            ROW_SELECT, ROW_FROM, "r.id", RegionRow::id, "column(r.name_norm as String)")
+            .sortable("code", "r.code", RegionRow::code)
+            .sortable("name", "r.name", RegionRow::name);
+
+
     @PersistenceContext
     private EntityManager entityManager;
 
+    // Componente para las inserciones masivas en lotes JDBC
+    @Autowired
+    private JpaBatchInserter batchInserter;
+
+    @Autowired
+    private ExistenceIndexes existenceIndexes;
+
+    // Avisa de los cambios a los índices en memoria (búsqueda)
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Comprobación de existencia por código (columna code_norm indexada y filtro de Bloom opcional)
+    private ExistenceIndex codeIndex;
+
+
+    @PostConstruct
+    void initExistenceIndex() {
+        codeIndex = existenceIndexes.create("regions", "code", "code_norm");
+    }
+
 
     /**
      * Lista todas las regiones de la base de datos.
+     * El resultado se guarda en la caché de consultas hasta que se modifica la tabla.
      * @return Lista de regiones
      */
     @Override
+    @ReadOnlyTransactional
     public List<Region> listAllRegions() {
         logger.info("Listing all regions from the database.");
         String query = "SELECT r FROM Region r";
-        List<Region> regions = entityManager.createQuery(query, Region.class).getResultList();
+        List<Region> regions = entityManager.createQuery(query, Region.class)
+                .setHint(HibernateHints.HINT_CACHEABLE, true)
+                .getResultList();
         logger.info("Retrieved {} regions from the database.", regions.size());
         return regions;
     }
 
 
+    /**
+     * Obtiene una página de regiones paginada por keyset.
+     * @param pageRequest Petición de página (ordenación, filtro por nombre, cursor y tamaño)
+     * @return Página de regiones
+     */
+    @Override
+    @ReadOnlyTransactional
+    public KeysetPage<RegionRow> listRegionsPage(KeysetPageRequest pageRequest) {
+        logger.info("Listing regions page sorted by {} {} with filter: {}", pageRequest.getSort(), pageRequest.getDir(), pageRequest.getFilter());
+        KeysetPage<RegionRow> page = PAGE_QUERY.fetch(entityManager, pageRequest);
+        logger.info("Retrieved {} regions for the requested page.", page.getContent().size());
+        return page;
+    }
+
+
+    /**
+     * Recorre todas las regiones con un cursor de solo avance, sin cargarlas en memoria.
+     * El Stream devuelto mantiene abierta una conexión y debe cerrarse siempre.
+     * @return Stream de regiones ordenadas por ID
+     */
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public Stream<RegionRow> streamAllRegions() {
+        logger.info("Streaming all regions from the database.");
+        return StreamingQuery.stream(entityManager, ROW_SELECT + " " + ROW_FROM + " ORDER BY r.id", RegionRow.class, Map.of());
+    }
+
+    /**
+     * Obtiene en una sola consulta las proyecciones de listado de las regiones indicadas.
+     * @param ids IDs de las regiones
+     * @return Proyecciones de las regiones que existen
+     */
+    @Override
+    public List<RegionRow> listRegionRowsByIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        String query = ROW_SELECT + " " + ROW_FROM + " WHERE r.id IN :ids";
+        return entityManager.createQuery(query, RegionRow.class).setParameter("ids", ids).getResultList();
+    }
+
+
     /**
      * Inserta una nueva región en la base de datos.
      * @param region Región a insertar
@@ -48,32 +136,73 @@ public class RegionDAOImpl implements RegionDAO {
     public void insertRegion(Region region) {
         logger.info("Inserting region with code: {} and name: {}", region.getCode(), region.getName());
         entityManager.persist(region);
+        eventPublisher.publishEvent(EntityChangedEvent.saved(Region.class, region.getId()));
+        codeIndex.added(region.getCode());
         logger.info("Inserted region with ID: {}", region.getId());
     }
 
 
+    /**
+     * Inserta una lista de regiones en lotes JDBC.
+     * @param regions Regiones a insertar
+     * @return Número de regiones insertadas
+     */
+    @Override
+    public int insertRegions(List<Region> regions) {
+        logger.info("Inserting {} regions in JDBC batches.", regions.size());
+        regions.forEach(region -> codeIndex.added(region.getCode()));
+        int inserted = batchInserter.persistAll(regions);
+        eventPublisher.publishEvent(EntityChangedEvent.saved(Region.class, regions.stream().map(Region::getId).toList()));
+        logger.info("Inserted {} regions.", inserted);
+        return inserted;
+    }
+
+
     /**
      * Actualiza una región existente en la base de datos.
+     *
+     * Se ejecuta un único UPDATE condicionado a la versión leída en el formulario, sin el SELECT previo
+     * de merge(). Si otra edición la ha modificado o borrado entretanto no se actualiza ninguna fila y
+     * se lanza OptimisticLockException.
      * @param region Región a actualizar
      */
     @Override
     public void updateRegion(Region region) {
-        logger.info("Updating region with id: {}", region.getId());
-        entityManager.merge(region);
+        logger.info("Updating region with id: {} and version: {}", region.getId(), region.getVersion());
+        codeIndex.updating(entityManager, region.getId(), region.getCode());
+        int rows = entityManager.createQuery(
+                        "UPDATE Region r SET r.code = :code, r.name = :name, r.version = r.version + 1 " +
+                                "WHERE r.id = :id AND r.version = :version")
+                .setParameter("code", region.getCode())
+                .setParameter("name", region.getName())
+                .setParameter("id", region.getId())
+                .setParameter("version", region.getVersion())
+                .executeUpdate();
+        if (rows == 0) {
+            logger.warn("Region with id: {} was modified or deleted concurrently (version {}).", region.getId(), region.getVersion());
+            throw new OptimisticLockException(region);
+        }
+        region.setVersion(region.getVersion() + 1);
+        eventPublisher.publishEvent(EntityChangedEvent.saved(Region.class, region.getId()));
         logger.info("Updated region with id: {}", region.getId());
     }
 
 
     /**
-     * Elimina una región de la base de datos.
+     * Elimina una región de la base de datos con una única sentencia DELETE.
+     * Sus provincias deben haberse borrado antes (CascadeDeletionService lo hace por bloques);
+     * si queda alguna, la clave foránea rechaza el borrado.
      * @param id ID de la región a eliminar
      */
     @Override
     public void deleteRegion(int id) {
         logger.info("Deleting region with id: {}", id);
-        Region region = entityManager.find(Region.class, id);
-        if (region != null) {
-            entityManager.remove(region);
+        codeIndex.deleting(entityManager, List.of(id));
+        int deleted = entityManager.createQuery("DELETE FROM Region r WHERE r.id = :id")
+                .setParameter("id", id)
+                .executeUpdate();
+        if (deleted > 0) {
+            eventPublisher.publishEvent(EntityChangedEvent.deleted(Region.class, List.of(id)));
             logger.info("Deleted region with id: {}", id);
         } else {
             logger.warn("Region with id: {} not found.", id);
@@ -87,6 +216,7 @@ public class RegionDAOImpl implements RegionDAO {
      * @return Región encontrada o null si no existe
      */
     @Override
+    @ReadOnlyTransactional
     public Region getRegionById(int id) {
         logger.info("Retrieving region by id: {}", id);
         Region region = entityManager.find(Region.class, id);
@@ -107,11 +237,7 @@ public class RegionDAOImpl implements RegionDAO {
     @Override
     public boolean existsRegionByCode(String code) {
         logger.info("Checking if region with code: {} exists", code);
-        String query = "SELECT COUNT(r) FROM Region r WHERE UPPER(r.code) = :code";
-        Long count = entityManager.createQuery(query, Long.class)
-                .setParameter("code", code.toUpperCase())
-                .getSingleResult();
-        boolean exists = count != null && count > 0;
+        boolean exists = codeIndex.exists(entityManager, code);
         logger.info("Region with code: {} exists: {}", code, exists);
         return exists;
     }
@@ -128,12 +254,7 @@ public class RegionDAOImpl implements RegionDAO {
     @Override
     public boolean existsRegionByCodeAndNotId(String code, int id) {
         logger.info("Checking if region with code: {} exists excluding id: {}", code, id);
-        String query = "SELECT COUNT(r) FROM Region r WHERE UPPER(r.code) = :code AND r.id != :id";
-        Long count = entityManager.createQuery(query, Long.class)
-                .setParameter("code", code.toUpperCase())
-                .setParameter("id", id)
-                .getSingleResult();
-        boolean exists = count != null && count > 0;
+        boolean exists = codeIndex.existsExcludingId(entityManager, code, id);
         logger.info("Region with code: {} exists excluding id {}: {}", code, id, exists);
         return exists;
     }
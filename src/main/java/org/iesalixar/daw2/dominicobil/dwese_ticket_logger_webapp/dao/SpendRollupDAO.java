@@ -0,0 +1,44 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao;
+
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.SpendDelta;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.SpendDimension;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.SpendTotal;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Interfaz SpendRollupDAO que define las operaciones sobre el resumen diario de gasto (`spend_daily`).
+ */
+public interface SpendRollupDAO {
+
+    /**
+     * Suma las cantidades indicadas a sus filas del resumen, creándolas si no existen.
+     * Se ejecuta dentro de la transacción del llamante, para que el resumen y los tickets se confirmen juntos.
+     * @param deltas Cantidades a sumar; como mucho una por fila
+     */
+    void addDeltas(List<SpendDelta> deltas);
+
+    /**
+     * Vuelve a calcular el resumen de un rango de días a partir de las líneas de ticket.
+     * @param from Primer día incluido
+     * @param to   Último día incluido
+     * @return Número de filas del resumen escritas
+     */
+    int rebuildDays(LocalDate from, LocalDate to);
+
+    /**
+     * Suma el resumen de un rango de días agrupado por el criterio indicado.
+     * @param dimension     Criterio de agrupación
+     * @param from          Primer día incluido
+     * @param to            Último día incluido
+     * @param regionId      Región, o null para todas
+     * @param provinceId    Provincia, o null para todas
+     * @param supermarketId Supermercado, o null para todos
+     * @param categoryIds   Categorías incluidas, o null para todas
+     * @return Totales por grupo, sin nombre; las claves de mes en formato yyyy-MM
+     */
+    List<SpendTotal> listTotals(SpendDimension dimension, LocalDate from, LocalDate to, Integer regionId,
+                                Integer provinceId, Integer supermarketId, Collection<Integer> categoryIds);
+}
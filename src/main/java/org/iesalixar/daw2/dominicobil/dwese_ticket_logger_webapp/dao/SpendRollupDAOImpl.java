@@ -0,0 +1,158 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao;
+
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import jakarta.transaction.Transactional;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.SpendDelta;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.SpendDimension;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.SpendTotal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.StringJoiner;
+
+@Repository
+@Transactional
+public class SpendRollupDAOImpl implements SpendRollupDAO {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpendRollupDAOImpl.class);
+
+    // Filas por sentencia INSERT de varias filas (7 parámetros por fila)
+    private static final int UPSERT_CHUNK_SIZE = 500;
+
+    private static final String UPSERT_PREFIX =
+            "INSERT INTO spend_daily (spend_date, region_id, province_id, supermarket_id, category_id, total_cents, line_count) VALUES ";
+    private static final String UPSERT_SUFFIX =
+            " ON DUPLICATE KEY UPDATE total_cents = total_cents + VALUES(total_cents), line_count = line_count + VALUES(line_count)";
+
+    private static final String DELETE_DAYS = "DELETE FROM spend_daily WHERE spend_date >= :from AND spend_date < :to";
+
+    // Recalcula un rango de días agrupando las líneas de ticket; usa el índice de tickets por issued_at
+    private static final String REBUILD_DAYS =
+            "INSERT INTO spend_daily (spend_date, region_id, province_id, supermarket_id, category_id, total_cents, line_count) " +
+            "SELECT CAST(t.issued_at AS DATE), p.region_id, l.province_id, l.supermarket_id, tl.category_id, " +
+            "       SUM(tl.amount_cents), COUNT(*) " +
+            "FROM tickets t " +
+            "JOIN ticket_lines tl ON tl.ticket_id = t.id " +
+            "JOIN locations l ON l.id = t.location_id " +
+            "JOIN provinces p ON p.id = l.province_id " +
+            "WHERE t.issued_at >= :from AND t.issued_at < :to " +
+            "GROUP BY CAST(t.issued_at AS DATE), p.region_id, l.province_id, l.supermarket_id, tl.category_id";
+
+    // Mes como número de meses desde el año 0, igual que en el almacén en memoria de los informes
+    private static final String MONTH_KEY = "EXTRACT(YEAR FROM spend_date) * 12 + EXTRACT(MONTH FROM spend_date) - 1";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+
+    @Override
+    public void addDeltas(List<SpendDelta> deltas) {
+        for (int from = 0; from < deltas.size(); from += UPSERT_CHUNK_SIZE) {
+            List<SpendDelta> chunk = deltas.subList(from, Math.min(from + UPSERT_CHUNK_SIZE, deltas.size()));
+            StringJoiner rows = new StringJoiner(", ", UPSERT_PREFIX, UPSERT_SUFFIX);
+            for (int i = 0; i < chunk.size(); i++) {
+                int p = i * 7;
+                rows.add("(?" + (p + 1) + ", ?" + (p + 2) + ", ?" + (p + 3) + ", ?" + (p + 4)
+                        + ", ?" + (p + 5) + ", ?" + (p + 6) + ", ?" + (p + 7) + ")");
+            }
+            Query query = entityManager.createNativeQuery(rows.toString());
+            for (int i = 0; i < chunk.size(); i++) {
+                SpendDelta delta = chunk.get(i);
+                int p = i * 7;
+                query.setParameter(p + 1, delta.day())
+                        .setParameter(p + 2, delta.regionId())
+                        .setParameter(p + 3, delta.provinceId())
+                        .setParameter(p + 4, delta.supermarketId())
+                        .setParameter(p + 5, delta.categoryId())
+                        .setParameter(p + 6, delta.totalCents())
+                        .setParameter(p + 7, delta.lineCount());
+            }
+            query.executeUpdate();
+        }
+        logger.debug("Added {} spend deltas", deltas.size());
+    }
+
+    @Override
+    public int rebuildDays(LocalDate from, LocalDate to) {
+        LocalDate end = to.plusDays(1);
+        int deleted = entityManager.createNativeQuery(DELETE_DAYS)
+                .setParameter("from", from)
+                .setParameter("to", end)
+                .executeUpdate();
+        int written = entityManager.createNativeQuery(REBUILD_DAYS)
+                .setParameter("from", from.atStartOfDay())
+                .setParameter("to", end.atStartOfDay())
+                .executeUpdate();
+        logger.info("Rebuilt spend rollup for {} - {}: {} rows deleted, {} written", from, to, deleted, written);
+        return written;
+    }
+
+    @Override
+    @ReadOnlyTransactional
+    public List<SpendTotal> listTotals(SpendDimension dimension, LocalDate from, LocalDate to, Integer regionId,
+                                       Integer provinceId, Integer supermarketId, Collection<Integer> categoryIds) {
+        String key = switch (dimension) {
+            case REGION -> "region_id";
+            case PROVINCE -> "province_id";
+            case SUPERMARKET -> "supermarket_id";
+            case CATEGORY -> "category_id";
+            case MONTH -> MONTH_KEY;
+        };
+        StringBuilder sql = new StringBuilder("SELECT ").append(key).append(", SUM(total_cents), SUM(line_count) ")
+                .append("FROM spend_daily WHERE spend_date >= :from AND spend_date <= :to");
+        if (regionId != null) {
+            sql.append(" AND region_id = :regionId");
+        }
+        if (provinceId != null) {
+            sql.append(" AND province_id = :provinceId");
+        }
+        if (supermarketId != null) {
+            sql.append(" AND supermarket_id = :supermarketId");
+        }
+        if (categoryIds != null) {
+            if (categoryIds.isEmpty()) {
+                return List.of();
+            }
+            sql.append(" AND category_id IN (:categoryIds)");
+        }
+        sql.append(" GROUP BY ").append(key).append(" ORDER BY ").append(key);
+
+        Query query = entityManager.createNativeQuery(sql.toString())
+                .setParameter("from", from)
+                .setParameter("to", to);
+        if (regionId != null) {
+            query.setParameter("regionId", regionId);
+        }
+        if (provinceId != null) {
+            query.setParameter("provinceId", provinceId);
+        }
+        if (supermarketId != null) {
+            query.setParameter("supermarketId", supermarketId);
+        }
+        if (categoryIds != null) {
+            query.setParameter("categoryIds", categoryIds);
+        }
+
+        List<?> rows = query.getResultList();
+        List<SpendTotal> totals = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            Object[] columns = (Object[]) row;
+            int id = ((Number) columns[0]).intValue();
+            String groupKey = dimension == SpendDimension.MONTH
+                    ? YearMonth.of(Math.floorDiv(id, 12), Math.floorMod(id, 12) + 1).toString()
+                    : String.valueOf(id);
+            totals.add(new SpendTotal(groupKey, null, ((Number) columns[1]).longValue(), ((Number) columns[2]).longValue()));
+        }
+        logger.info("Read {} spend rollup totals by {} for {} - {}", totals.size(), dimension, from, to);
+        return totals;
+    }
+}
@@ -0,0 +1,63 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Interfaz StoredFileDAO que define las operaciones sobre el registro de archivos subidos (`stored_files`).
+ * Las rutas son relativas al directorio de subidas.
+ */
+public interface StoredFileDAO {
+
+    /**
+     * Registra un archivo recién subido, o renueva su fecha de registro si ya existía.
+     * Se confirma por separado, antes de mover el archivo a su ruta definitiva.
+     * @param path        Ruta del archivo
+     * @param sizeBytes   Tamaño en bytes
+     * @param contentType Tipo de contenido
+     */
+    void registerFile(String path, long sizeBytes, String contentType);
+
+    /**
+     * Suma una referencia por cada aparición de cada ruta. Las rutas no registradas se ignoran.
+     * Se ejecuta dentro de la transacción del llamante.
+     * @param paths Rutas referenciadas
+     */
+    void addReferences(Collection<String> paths);
+
+    /**
+     * Resta una referencia por cada aparición de cada ruta. Las rutas no registradas se ignoran.
+     * Se ejecuta dentro de la transacción del llamante.
+     * @param paths Rutas que dejan de estar referenciadas
+     */
+    void removeReferences(Collection<String> paths);
+
+    /**
+     * Quita del registro un archivo sin referencias registrado antes de la fecha indicada. La fila queda
+     * bloqueada hasta el final de la transacción del llamante, que debe borrar el archivo antes de confirmar.
+     * @param path             Ruta del archivo
+     * @param registeredBefore Fecha límite de registro
+     * @return true si se ha quitado
+     */
+    boolean deleteUnreferenced(String path, LocalDateTime registeredBefore);
+
+    /**
+     * De una lista de rutas, devuelve las que siguen en uso: las que son la imagen de alguna categoría y las
+     * registradas con referencias o subidas después de la fecha indicada. Una sola consulta por lista.
+     * @param paths           Rutas a comprobar
+     * @param registeredAfter Fecha a partir de la cual un archivo sin referencias se considera recién subido
+     * @return Rutas en uso
+     */
+    Set<String> findReferencedPaths(Collection<String> paths, LocalDateTime registeredAfter);
+
+    /**
+     * Bloquea la fila de un archivo (o el hueco donde iría, si no está registrado) y comprueba que no está en
+     * uso, para borrarlo sin que una subida del mismo contenido lo registre a la vez. Se ejecuta dentro de la
+     * transacción del llamante, que debe borrar el archivo y su fila antes de confirmar.
+     * @param path             Ruta del archivo
+     * @param registeredBefore Fecha límite de registro
+     * @return true si el archivo no está registrado o no tiene referencias y se registró antes de la fecha
+     */
+    boolean lockUnreferenced(String path, LocalDateTime registeredBefore);
+}
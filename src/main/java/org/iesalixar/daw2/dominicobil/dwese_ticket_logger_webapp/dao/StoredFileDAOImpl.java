@@ -0,0 +1,108 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao;
+
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Repository
+@Transactional
+public class StoredFileDAOImpl implements StoredFileDAO {
+
+    private static final Logger logger = LoggerFactory.getLogger(StoredFileDAOImpl.class);
+
+    private static final String REGISTER =
+            "INSERT INTO stored_files (path, size_bytes, content_type, ref_count, registered_at) " +
+            "VALUES (:path, :size, :contentType, 0, :now) ON DUPLICATE KEY UPDATE registered_at = VALUES(registered_at)";
+
+    private static final String ADJUST_REFERENCES =
+            "UPDATE stored_files SET ref_count = GREATEST(ref_count + :delta, 0) WHERE path = :path";
+
+    private static final String REFERENCED_PATHS =
+            "SELECT image FROM categories WHERE image IN (:paths) " +
+            "UNION SELECT path FROM stored_files WHERE path IN (:paths) AND (ref_count > 0 OR registered_at >= :after)";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+
+    @Override
+    public void registerFile(String path, long sizeBytes, String contentType) {
+        entityManager.createNativeQuery(REGISTER)
+                .setParameter("path", path)
+                .setParameter("size", sizeBytes)
+                .setParameter("contentType", contentType)
+                .setParameter("now", LocalDateTime.now())
+                .executeUpdate();
+        logger.debug("Registered stored file {}", path);
+    }
+
+    @Override
+    public void addReferences(Collection<String> paths) {
+        adjustReferences(paths, 1);
+    }
+
+    @Override
+    public void removeReferences(Collection<String> paths) {
+        adjustReferences(paths, -1);
+    }
+
+    @Override
+    public boolean deleteUnreferenced(String path, LocalDateTime registeredBefore) {
+        int deleted = entityManager.createNativeQuery(
+                        "DELETE FROM stored_files WHERE path = :path AND ref_count = 0 AND registered_at < :before")
+                .setParameter("path", path)
+                .setParameter("before", registeredBefore)
+                .executeUpdate();
+        return deleted > 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Set<String> findReferencedPaths(Collection<String> paths, LocalDateTime registeredAfter) {
+        if (paths.isEmpty()) {
+            return Set.of();
+        }
+        List<String> referenced = entityManager.createNativeQuery(REFERENCED_PATHS)
+                .setParameter("paths", paths)
+                .setParameter("after", registeredAfter)
+                .getResultList();
+        return new HashSet<>(referenced);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean lockUnreferenced(String path, LocalDateTime registeredBefore) {
+        List<Number> rows = entityManager.createNativeQuery(
+                        "SELECT CASE WHEN ref_count = 0 AND registered_at < :before THEN 1 ELSE 0 END " +
+                        "FROM stored_files WHERE path = :path FOR UPDATE")
+                .setParameter("path", path)
+                .setParameter("before", registeredBefore)
+                .getResultList();
+        return rows.isEmpty() || rows.get(0).intValue() == 1;
+    }
+
+    private void adjustReferences(Collection<String> paths, int sign) {
+        // Rutas ordenadas: todas las transacciones bloquean las filas en el mismo orden
+        Map<String, Long> counts = paths.stream()
+                .collect(Collectors.groupingBy(Function.identity(), TreeMap::new, Collectors.counting()));
+        counts.forEach((path, count) -> entityManager.createNativeQuery(ADJUST_REFERENCES)
+                .setParameter("delta", sign * count)
+                .setParameter("path", path)
+                .executeUpdate());
+        logger.debug("Adjusted references by {} for {}", sign, counts);
+    }
+}
@@ -0,0 +1,15 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao;
+
+import java.util.Collection;
+
+/**
+ * Evento que publican los DAO al quitar referencias a archivos subidos (por ejemplo, al cambiar o borrar la
+ * imagen de una categoría), para que el almacén de archivos borre los que se hayan quedado sin uso.
+ *
+ * Como {@link EntityChangedEvent}, se publica dentro de la transacción y solo llega a los
+ * `@TransactionalEventListener` si se confirma.
+ *
+ * @param paths Rutas de los archivos, relativas al directorio de subidas.
+ */
+public record StoredFilesReleasedEvent(Collection<String> paths) {
+}
@@ -0,0 +1,96 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Clase de apoyo para los DAO que ejecuta una consulta JPQL en modo streaming.
+ *
+ * La consulta se lanza sobre una `StatelessSession` (sin contexto de persistencia ni dirty-checking)
+ * con un cursor JDBC de solo avance y un tamaño de fetch acotado, de forma que las filas se leen
+ * del driver según se consumen y la memoria usada no depende del número de filas.
+ *
+ * La conexión se marca como de solo lectura, por lo que se obtiene de la réplica si está configurada.
+ *
+ * El `Stream` devuelto mantiene abiertos la sesión y su conexión hasta que se cierra,
+ * por lo que el llamante debe cerrarlo siempre (try-with-resources o callback de fin de petición).
+ */
+final class StreamingQuery {
+
+    // Número de filas que el driver trae en cada viaje al servidor
+    static final int FETCH_SIZE = 500;
+
+    private StreamingQuery() {
+    }
+
+    /**
+     * Ejecuta la consulta y devuelve sus filas como un `Stream` perezoso.
+     * @param entityManager EntityManager del que se obtiene la SessionFactory.
+     * @param jpql          Consulta JPQL a ejecutar.
+     * @param resultType    Clase de las filas devueltas.
+     * @param parameters    Parámetros con nombre de la consulta.
+     * @param <T>           Tipo de las filas devueltas.
+     * @return Stream de filas que libera la sesión y el cursor al cerrarse.
+     */
+    static <T> Stream<T> stream(EntityManager entityManager, String jpql, Class<T> resultType, Map<String, ?> parameters) {
+        StatelessSession session = entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactory.class)
+                .openStatelessSession();
+        try {
+            // Conexión de solo lectura: con réplica configurada la lectura se envía a ella
+            session.doWork(connection -> connection.setReadOnly(true));
+            var query = session.createSelectionQuery(jpql, resultType).setFetchSize(FETCH_SIZE);
+            parameters.forEach(query::setParameter);
+            ScrollableResults<T> results = query.scroll(ScrollMode.FORWARD_ONLY);
+            Iterator<T> iterator = new ScrollIterator<>(results);
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                    .onClose(() -> {
+                        results.close();
+                        session.close();
+                    });
+        } catch (RuntimeException e) {
+            session.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Adaptador de `ScrollableResults` a `Iterator` que avanza el cursor bajo demanda.
+     */
+    private static final class ScrollIterator<T> implements Iterator<T> {
+        private final ScrollableResults<T> results;
+        private Boolean hasNext;
+
+        private ScrollIterator(ScrollableResults<T> results) {
+            this.results = results;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (hasNext == null) {
+                hasNext = results.next();
+            }
+            return hasNext;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            hasNext = null;
+            return results.get();
+        }
+    }
+}
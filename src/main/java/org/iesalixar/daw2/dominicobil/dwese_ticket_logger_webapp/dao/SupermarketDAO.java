@@ -1,14 +1,21 @@
 package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao;
 
 import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Supermarket;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.SupermarketRow;
 
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface SupermarketDAO {
     List<Supermarket> listAllSupermarkets();
+    KeysetPage<SupermarketRow> listSupermarketsPage(KeysetPageRequest pageRequest);
+    Stream<SupermarketRow> streamAllSupermarkets();
+    List<SupermarketRow> listSupermarketRowsByIds(Collection<Integer> ids);
     Supermarket getSupermarketById(int id) ;
     void insertSupermarket(Supermarket supermarket);
+    int insertSupermarkets(List<Supermarket> supermarkets);
     void updateSupermarket(Supermarket supermarket) ;
     void deleteSupermarket(int id) ;
     boolean existsSupermarketByName(String name) ;
@@ -1,16 +1,25 @@
 package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao;
 
+import jakarta.annotation.PostConstruct;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.OptimisticLockException;
 import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Supermarket;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.SupermarketRow;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.jdbc.core.BeanPropertyRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 import jakarta.persistence.PersistenceContext;
+import org.hibernate.jpa.HibernateHints;
 import jakarta.transaction.Transactional;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 
 @Repository
@@ -21,23 +30,101 @@ public class SupermarketDAOImpl implements SupermarketDAO {
     // Logger para registrar eventos importantes en el DAO
     private static final Logger logger = LoggerFactory.getLogger(SupermarketDAOImpl.class);
 
+    // Projection query shared by the paged list, streaming and export paths
+    private static final String ROW_SELECT =
+            "SELECT new org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.SupermarketRow(s.id, s.name)";
+    private static final String ROW_FROM = "FROM Supermarket s";
+
+    // Keyset-paginated query: sortable by id or name and filterable by name prefix.
+    // Projects to SupermarketRow so no managed entities end up in the persistence context.
+    private static final KeysetQuery<SupermarketRow> PAGE_QUERY = new KeysetQuery<>(SupermarketRow.class,
+            ROW_SELECT, ROW_FROM, "s.id", SupermarketRow::id, "column(s.name_norm as String)")
+            .sortable("name", "s.name", SupermarketRow::name);
+
     @PersistenceContext
     private EntityManager entityManager;
 
+    // Component used for bulk inserts in JDBC batches
+    @Autowired
+    private JpaBatchInserter batchInserter;
+
+    @Autowired
+    private ExistenceIndexes existenceIndexes;
+
+    // Avisa de los cambios a los índices en memoria (búsqueda)
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Existence check by name (indexed name_norm column and optional Bloom filter)
+    private ExistenceIndex nameIndex;
+
+
+    @PostConstruct
+    void initExistenceIndex() {
+        nameIndex = existenceIndexes.create("supermarkets", "name", "name_norm");
+    }
+
     /**
      * Lists all supermarkets from the database.
+     * The result is kept in the query cache until the table is modified.
      *
      * @return List of supermarkets
      */
     @Override
+    @ReadOnlyTransactional
     public List<Supermarket> listAllSupermarkets() {
         logger.info("Listing all supermarkets from the database.");
         String query = "SELECT s FROM Supermarket s";
-        List<Supermarket> supermarkets = entityManager.createQuery(query, Supermarket.class).getResultList();
+        List<Supermarket> supermarkets = entityManager.createQuery(query, Supermarket.class)
+                .setHint(HibernateHints.HINT_CACHEABLE, true)
+                .getResultList();
         logger.info("Retrieved {} supermarkets from the database.", supermarkets.size());
         return supermarkets;
     }
 
+    /**
+     * Lists one keyset-paginated page of supermarkets.
+     *
+     * @param pageRequest Page request (sort, name filter, cursor and size)
+     * @return Page of supermarkets
+     */
+    @Override
+    @ReadOnlyTransactional
+    public KeysetPage<SupermarketRow> listSupermarketsPage(KeysetPageRequest pageRequest) {
+        logger.info("Listing supermarkets page sorted by {} {} with filter: {}", pageRequest.getSort(), pageRequest.getDir(), pageRequest.getFilter());
+        KeysetPage<SupermarketRow> page = PAGE_QUERY.fetch(entityManager, pageRequest);
+        logger.info("Retrieved {} supermarkets for the requested page.", page.getContent().size());
+        return page;
+    }
+
+    /**
+     * Streams every supermarket through a forward-only cursor without loading them into memory.
+     * The returned Stream holds a connection open and must always be closed.
+     *
+     * @return Stream of supermarkets ordered by ID
+     */
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public Stream<SupermarketRow> streamAllSupermarkets() {
+        logger.info("Streaming all supermarkets from the database.");
+        return StreamingQuery.stream(entityManager, ROW_SELECT + " " + ROW_FROM + " ORDER BY s.id", SupermarketRow.class, Map.of());
+    }
+
+    /**
+     * Retrieves the list projection of the given supermarkets in a single query.
+     *
+     * @param ids IDs of the supermarkets
+     * @return Projections of the supermarkets that exist
+     */
+    @Override
+    public List<SupermarketRow> listSupermarketRowsByIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        String query = ROW_SELECT + " " + ROW_FROM + " WHERE s.id IN :ids";
+        return entityManager.createQuery(query, SupermarketRow.class).setParameter("ids", ids).getResultList();
+    }
+
     /**
      * Inserts a new supermarket into the database.
      *
@@ -47,32 +134,72 @@ public class SupermarketDAOImpl implements SupermarketDAO {
     public void insertSupermarket(Supermarket supermarket) {
         logger.info("Inserting supermarket with name: {}", supermarket.getName());
         entityManager.persist(supermarket);
+        eventPublisher.publishEvent(EntityChangedEvent.saved(Supermarket.class, supermarket.getId()));
+        nameIndex.added(supermarket.getName());
         logger.info("Supermarket inserted. Rows affected: {}", supermarket.getId());
     }
 
+    /**
+     * Inserts a list of supermarkets using JDBC batches.
+     *
+     * @param supermarkets Supermarkets to insert
+     * @return Number of supermarkets inserted
+     */
+    @Override
+    public int insertSupermarkets(List<Supermarket> supermarkets) {
+        logger.info("Inserting {} supermarkets in JDBC batches.", supermarkets.size());
+        supermarkets.forEach(supermarket -> nameIndex.added(supermarket.getName()));
+        int inserted = batchInserter.persistAll(supermarkets);
+        eventPublisher.publishEvent(EntityChangedEvent.saved(Supermarket.class, supermarkets.stream().map(Supermarket::getId).toList()));
+        logger.info("Inserted {} supermarkets.", inserted);
+        return inserted;
+    }
+
     /**
      * Updates an existing supermarket in the database.
      *
+     * Issues a single UPDATE guarded by the version the caller read, instead of merge()'s
+     * SELECT + UPDATE. A stale version means someone else changed or deleted the row.
+     *
      * @param supermarket Supermarket to update
+     * @throws OptimisticLockException if the supermarket was modified or deleted concurrently
      */
     @Override
     public void updateSupermarket(Supermarket supermarket) {
-        logger.info("Updating supermarket with ID: {}", supermarket.getId());
-        entityManager.merge(supermarket);
-        logger.info("Supermarket updated. Rows affected: {}", supermarket.getId());
+        logger.info("Updating supermarket with ID: {} and version: {}", supermarket.getId(), supermarket.getVersion());
+        nameIndex.updating(entityManager, supermarket.getId(), supermarket.getName());
+        int rows = entityManager.createQuery(
+                        "UPDATE Supermarket s SET s.name = :name, s.version = s.version + 1 " +
+                                "WHERE s.id = :id AND s.version = :version")
+                .setParameter("name", supermarket.getName())
+                .setParameter("id", supermarket.getId())
+                .setParameter("version", supermarket.getVersion())
+                .executeUpdate();
+        if (rows == 0) {
+            logger.warn("Supermarket with ID: {} was modified or deleted concurrently (version {}).", supermarket.getId(), supermarket.getVersion());
+            throw new OptimisticLockException(supermarket);
+        }
+        supermarket.setVersion(supermarket.getVersion() + 1);
+        eventPublisher.publishEvent(EntityChangedEvent.saved(Supermarket.class, supermarket.getId()));
+        logger.info("Supermarket updated. Rows affected: {}", rows);
     }
 
     /**
-     * Deletes a supermarket from the database.
+     * Deletes a supermarket from the database with a single DELETE statement.
+     * Its locations are not touched: if any are left the foreign key rejects the delete,
+     * so supermarkets with locations are removed through CascadeDeletionService.
      *
      * @param id ID of the supermarket to delete
      */
     @Override
     public void deleteSupermarket(int id) {
         logger.info("Deleting supermarket with ID: {}", id);
-        Supermarket supermarket = entityManager.find(Supermarket.class, id);
-        if (supermarket != null) {
-            entityManager.remove(supermarket);
+        nameIndex.deleting(entityManager, List.of(id));
+        int deleted = entityManager.createQuery("DELETE FROM Supermarket s WHERE s.id = :id")
+                .setParameter("id", id)
+                .executeUpdate();
+        if (deleted > 0) {
+            eventPublisher.publishEvent(EntityChangedEvent.deleted(Supermarket.class, List.of(id)));
             logger.info("Supermarket with ID: {} deleted.", id);
         } else {
             logger.info("Supermarket with ID: {} not found.", id);
@@ -86,6 +213,7 @@ public class SupermarketDAOImpl implements SupermarketDAO {
      * @return Supermarket found or null if it doesn't exist
      */
     @Override
+    @ReadOnlyTransactional
     public Supermarket getSupermarketById(int id) {
         logger.info("Retrieving supermarket by ID: {}", id);
         Supermarket supermarket = entityManager.find(Supermarket.class, id);
@@ -106,11 +234,7 @@ public class SupermarketDAOImpl implements SupermarketDAO {
     @Override
     public boolean existsSupermarketByName(String name) {
         logger.info("Checking if supermarket with name: {} exists.", name);
-        String query = "SELECT COUNT(s) FROM Supermarket s WHERE UPPER(s.name) = :name";
-        Long count = entityManager.createQuery(query, Long.class)
-                .setParameter("name", name.toUpperCase())
-                .getSingleResult();
-        boolean exists = count != null && count > 0;
+        boolean exists = nameIndex.exists(entityManager, name);
         logger.info("Supermarket with name: {} exists: {}", name, exists);
         return exists;
     }
@@ -127,12 +251,7 @@ public class SupermarketDAOImpl implements SupermarketDAO {
     @Override
     public boolean existsSupermarketByNameAndNotId(String name, int id) {
         logger.info("Checking if supermarket with name: {} exists excluding ID: {}", name, id);
-        String query = "SELECT COUNT(s) FROM Supermarket s WHERE UPPER(s.name) = :name AND id != :id";
-        Long count = entityManager.createQuery(query, Long.class)
-                .setParameter("name", name.toUpperCase())
-                .setParameter("id", id)
-                .getSingleResult();
-        boolean exists = count != null && count > 0;
+        boolean exists = nameIndex.existsExcludingId(entityManager, name, id);
         logger.info("Supermarket with name: {} exists excluding ID {}: {}", name, id, exists);
         return exists;
     }
@@ -0,0 +1,64 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao;
+
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.TicketLineFact;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Ticket;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Interfaz TicketDAO que define las operaciones sobre los tickets de compra.
+ */
+public interface TicketDAO {
+
+    /**
+     * Inserta un lote de tickets con sus líneas en una transacción, en lotes JDBC.
+     * Los tickets cuya ubicación o alguna de cuyas categorías no existe se descartan.
+     * @param tickets Tickets a insertar; la ubicación y las categorías solo necesitan el ID
+     * @return Número de tickets insertados
+     */
+    int insertTickets(List<Ticket> tickets);
+
+    /**
+     * Recorre todas las líneas de ticket con un cursor de solo avance, sin cargarlas en memoria.
+     * El Stream devuelto mantiene abierta una conexión y debe cerrarse siempre.
+     * @return Stream de líneas de ticket
+     */
+    Stream<TicketLineFact> streamTicketLineFacts();
+
+    /**
+     * Indica si una ubicación tiene tickets, que impiden borrarla.
+     * @param locationId ID de la ubicación
+     * @return true si tiene al menos un ticket
+     */
+    boolean existsTicketsByLocation(int locationId);
+
+    /**
+     * Indica si alguna ubicación de una provincia tiene tickets.
+     * @param provinceId ID de la provincia
+     * @return true si hay al menos un ticket
+     */
+    boolean existsTicketsByProvince(int provinceId);
+
+    /**
+     * Indica si alguna ubicación de una región tiene tickets.
+     * @param regionId ID de la región
+     * @return true si hay al menos un ticket
+     */
+    boolean existsTicketsByRegion(int regionId);
+
+    /**
+     * Indica si alguna ubicación de un supermercado tiene tickets.
+     * @param supermarketId ID del supermercado
+     * @return true si hay al menos un ticket
+     */
+    boolean existsTicketsBySupermarket(int supermarketId);
+
+    /**
+     * Indica si alguna de las categorías aparece en líneas de ticket.
+     * @param categoryIds IDs de las categorías
+     * @return true si hay al menos una línea
+     */
+    boolean existsTicketLinesByCategories(Collection<Integer> categoryIds);
+}
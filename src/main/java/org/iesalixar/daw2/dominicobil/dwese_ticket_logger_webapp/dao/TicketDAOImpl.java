@@ -0,0 +1,189 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao;
+
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Transactional;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.LocationKeys;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.SpendDelta;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.TicketLineFact;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Category;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Location;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Ticket;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.TicketLine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Repository
+@Transactional
+public class TicketDAOImpl implements TicketDAO {
+
+    private static final Logger logger = LoggerFactory.getLogger(TicketDAOImpl.class);
+
+    // Orden de las filas del resumen diario: todas las transacciones las bloquean en el mismo orden
+    private static final Comparator<SpendDelta> DELTA_ORDER = Comparator.comparing(SpendDelta::day)
+            .thenComparingInt(SpendDelta::regionId)
+            .thenComparingInt(SpendDelta::provinceId)
+            .thenComparingInt(SpendDelta::supermarketId)
+            .thenComparingInt(SpendDelta::categoryId);
+
+    // Líneas de ticket para el almacén de los informes de gasto
+    private static final String FACT_SELECT =
+            "SELECT new org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.TicketLineFact(l.id, t.location.id, l.category.id, t.issuedAt, l.amountCents) " +
+                    "FROM TicketLine l JOIN l.ticket t";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private JpaBatchInserter batchInserter;
+
+    @Autowired
+    private LocationDAO locationDAO;
+
+    // Resumen diario de gasto, que se actualiza en la misma transacción que los tickets
+    @Autowired
+    private SpendRollupDAO spendRollupDAO;
+
+    // Avisa de las líneas nuevas a los informes de gasto
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+
+    @Override
+    public int insertTickets(List<Ticket> tickets) {
+        Set<Integer> locationIds = new HashSet<>();
+        Set<Integer> categoryIds = new HashSet<>();
+        for (Ticket ticket : tickets) {
+            locationIds.add(ticket.getLocation().getId());
+            for (TicketLine line : ticket.getLines()) {
+                categoryIds.add(line.getCategory().getId());
+            }
+        }
+        // Dos consultas por lote en lugar de una comprobación por ticket; de las ubicaciones se traen
+        // también supermercado, provincia y región para el resumen diario
+        Map<Integer, LocationKeys> existingLocations = locationDAO.listLocationKeysByIds(locationIds).stream()
+                .collect(Collectors.toMap(LocationKeys::id, Function.identity()));
+        Set<Integer> existingCategories = new HashSet<>(entityManager.createQuery(
+                        "SELECT c.id FROM Category c WHERE c.id IN :ids", Integer.class)
+                .setParameter("ids", categoryIds)
+                .getResultList());
+
+        List<Ticket> valid = new ArrayList<>(tickets.size());
+        for (Ticket ticket : tickets) {
+            if (!existingLocations.containsKey(ticket.getLocation().getId())
+                    || !ticket.getLines().stream().allMatch(line -> existingCategories.contains(line.getCategory().getId()))) {
+                logger.warn("Discarding ticket for location {} issued at {}: unknown location or category",
+                        ticket.getLocation().getId(), ticket.getIssuedAt());
+                continue;
+            }
+            // Referencias sin consulta: solo hace falta el ID para la clave foránea
+            ticket.setLocation(entityManager.getReference(Location.class, ticket.getLocation().getId()));
+            for (TicketLine line : ticket.getLines()) {
+                line.setCategory(entityManager.getReference(Category.class, line.getCategory().getId()));
+            }
+            valid.add(ticket);
+        }
+
+        int inserted = batchInserter.persistAll(valid);
+        spendRollupDAO.addDeltas(spendDeltas(valid, existingLocations));
+        logger.info("Inserted {} tickets ({} discarded)", inserted, tickets.size() - inserted);
+
+        // Tras persistAll las entidades están desacopladas, pero conservan sus IDs y valores
+        List<TicketLineFact> facts = new ArrayList<>();
+        for (Ticket ticket : valid) {
+            for (TicketLine line : ticket.getLines()) {
+                facts.add(new TicketLineFact(line.getId(), ticket.getLocation().getId(), line.getCategory().getId(),
+                        ticket.getIssuedAt(), line.getAmountCents()));
+            }
+        }
+        eventPublisher.publishEvent(new TicketLinesInsertedEvent(facts));
+        return inserted;
+    }
+
+    /**
+     * Agrupa las líneas de los tickets por fila del resumen diario: una suma por fila afectada, no por línea.
+     */
+    private static List<SpendDelta> spendDeltas(List<Ticket> tickets, Map<Integer, LocationKeys> locations) {
+        record RollupKey(LocalDate day, int regionId, int provinceId, int supermarketId, int categoryId) {
+        }
+        Map<RollupKey, long[]> sums = new HashMap<>();
+        for (Ticket ticket : tickets) {
+            LocationKeys location = locations.get(ticket.getLocation().getId());
+            LocalDate day = ticket.getIssuedAt().toLocalDate();
+            for (TicketLine line : ticket.getLines()) {
+                RollupKey key = new RollupKey(day, location.regionId(), location.provinceId(),
+                        location.supermarketId(), line.getCategory().getId());
+                long[] sum = sums.computeIfAbsent(key, k -> new long[2]);
+                sum[0] += line.getAmountCents();
+                sum[1]++;
+            }
+        }
+        List<SpendDelta> deltas = new ArrayList<>(sums.size());
+        sums.forEach((key, sum) -> deltas.add(new SpendDelta(key.day(), key.regionId(), key.provinceId(),
+                key.supermarketId(), key.categoryId(), sum[0], sum[1])));
+        deltas.sort(DELTA_ORDER);
+        return deltas;
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public Stream<TicketLineFact> streamTicketLineFacts() {
+        logger.info("Streaming ticket lines from the database.");
+        return StreamingQuery.stream(entityManager, FACT_SELECT, TicketLineFact.class, Map.of());
+    }
+
+
+    // Las comprobaciones de tickets protegen los borrados, así que van a la base de datos principal (sin
+    // @ReadOnlyTransactional): una réplica con retraso podría no ver un ticket recién insertado
+    @Override
+    public boolean existsTicketsByLocation(int locationId) {
+        return exists("SELECT 1 FROM Ticket t WHERE t.location.id = :id", locationId);
+    }
+
+    @Override
+    public boolean existsTicketsByProvince(int provinceId) {
+        return exists("SELECT 1 FROM Ticket t JOIN t.location l WHERE l.province.id = :id", provinceId);
+    }
+
+    @Override
+    public boolean existsTicketsByRegion(int regionId) {
+        return exists("SELECT 1 FROM Ticket t JOIN t.location l JOIN l.province p WHERE p.region_id.id = :id", regionId);
+    }
+
+    @Override
+    public boolean existsTicketsBySupermarket(int supermarketId) {
+        return exists("SELECT 1 FROM Ticket t WHERE t.location.supermarket.id = :id", supermarketId);
+    }
+
+    @Override
+    public boolean existsTicketLinesByCategories(Collection<Integer> categoryIds) {
+        return !categoryIds.isEmpty()
+                && exists("SELECT 1 FROM TicketLine l WHERE l.category.id IN :id", categoryIds);
+    }
+
+
+    private boolean exists(String query, Object id) {
+        return !entityManager.createQuery(query, Integer.class)
+                .setParameter("id", id)
+                .setMaxResults(1)
+                .getResultList()
+                .isEmpty();
+    }
+}
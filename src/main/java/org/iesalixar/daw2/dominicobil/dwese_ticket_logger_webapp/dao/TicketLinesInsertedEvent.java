@@ -0,0 +1,17 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao;
+
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.TicketLineFact;
+
+import java.util.List;
+
+/**
+ * Evento que publica {@link TicketDAO} al insertar tickets, con sus líneas ya reducidas a lo que necesitan
+ * los informes de gasto, para que el almacén en memoria las añada sin volver a leerlas de la base de datos.
+ *
+ * Como {@link EntityChangedEvent}, se publica dentro de la transacción y solo llega a los
+ * `@TransactionalEventListener` si se confirma.
+ *
+ * @param lines Líneas insertadas.
+ */
+public record TicketLinesInsertedEvent(List<TicketLineFact> lines) {
+}
@@ -0,0 +1,14 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto;
+
+/**
+ * Estadísticas de una región de la caché de segundo nivel.
+ *
+ * @param region    Nombre de la región.
+ * @param hits      Lecturas servidas desde la caché.
+ * @param misses    Lecturas que no encontraron la entrada y fueron a la base de datos.
+ * @param puts      Entradas guardadas en la caché.
+ * @param evictions Entradas expulsadas por tamaño o caducidad.
+ * @param size      Número aproximado de entradas en memoria.
+ */
+public record CacheRegionStats(String region, long hits, long misses, long puts, long evictions, long size) {
+}
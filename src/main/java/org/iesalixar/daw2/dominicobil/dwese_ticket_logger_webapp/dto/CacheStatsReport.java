@@ -0,0 +1,17 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto;
+
+import java.util.List;
+
+/**
+ * Informe de uso de la caché de segundo nivel y de la carga que llega a la base de datos.
+ *
+ * @param regions            Estadísticas de cada región de la caché.
+ * @param queryCacheHits     Consultas cacheables resueltas desde la caché.
+ * @param queryCacheMisses   Consultas cacheables que tuvieron que ejecutarse.
+ * @param queriesExecuted    Consultas ejecutadas contra la base de datos.
+ * @param entitiesLoaded     Entidades leídas de la base de datos.
+ * @param statementsPrepared Sentencias JDBC preparadas.
+ */
+public record CacheStatsReport(List<CacheRegionStats> regions, long queryCacheHits, long queryCacheMisses,
+                               long queriesExecuted, long entitiesLoaded, long statementsPrepared) {
+}
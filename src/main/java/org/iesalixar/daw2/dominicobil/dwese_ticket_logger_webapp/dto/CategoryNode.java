@@ -0,0 +1,14 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto;
+
+/**
+ * Proyección de solo lectura de una categoría dentro de un recorrido del árbol de categorías
+ * (subárbol o antepasados de una categoría).
+ *
+ * @param id       Identificador de la categoría.
+ * @param name     Nombre de la categoría.
+ * @param image    Nombre del fichero de imagen asociado o null.
+ * @param parentId Identificador de la categoría padre o null.
+ * @param depth    Distancia, en niveles, a la categoría desde la que empieza el recorrido.
+ */
+public record CategoryNode(Integer id, String name, String image, Integer parentId, int depth) {
+}
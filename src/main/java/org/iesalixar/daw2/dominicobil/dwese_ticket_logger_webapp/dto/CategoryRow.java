@@ -0,0 +1,13 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto;
+
+/**
+ * Proyección de solo lectura de una categoría para los listados,
+ * con el nombre de la categoría padre ya resuelto (null si no tiene padre).
+ *
+ * @param id         Identificador de la categoría.
+ * @param name       Nombre de la categoría.
+ * @param image      Nombre del fichero de imagen asociado o null.
+ * @param parentName Nombre de la categoría padre o null.
+ */
+public record CategoryRow(Integer id, String name, String image, String parentName) {
+}
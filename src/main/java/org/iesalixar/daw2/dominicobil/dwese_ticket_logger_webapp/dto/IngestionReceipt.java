@@ -0,0 +1,10 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto;
+
+/**
+ * Respuesta de la API de ingesta cuando acepta tickets.
+ *
+ * @param accepted Tickets aceptados en la petición.
+ * @param pending  Tickets en cola pendientes de escribir, incluidos los aceptados.
+ */
+public record IngestionReceipt(int accepted, int pending) {
+}
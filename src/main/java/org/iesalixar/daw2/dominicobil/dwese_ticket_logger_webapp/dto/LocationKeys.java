@@ -0,0 +1,12 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto;
+
+/**
+ * Claves de una ubicación para los informes de gasto: el supermercado, la provincia y la región a los que pertenece.
+ *
+ * @param id            Identificador de la ubicación.
+ * @param supermarketId Identificador del supermercado.
+ * @param provinceId    Identificador de la provincia.
+ * @param regionId      Identificador de la región de la provincia.
+ */
+public record LocationKeys(Integer id, Integer supermarketId, Integer provinceId, Integer regionId) {
+}
@@ -0,0 +1,12 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto;
+
+/**
+ * Coordenadas de una ubicación, con lo mínimo para el índice de cercanía.
+ *
+ * @param id            Identificador de la ubicación.
+ * @param supermarketId Identificador del supermercado al que pertenece.
+ * @param latitude      Latitud en grados.
+ * @param longitude     Longitud en grados.
+ */
+public record LocationPoint(Integer id, Integer supermarketId, Double latitude, Double longitude) {
+}
@@ -0,0 +1,15 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto;
+
+/**
+ * Proyección de solo lectura de una ubicación para los listados.
+ * Se construye con una expresión constructora JPQL que ya incluye el nombre de la provincia
+ * y del supermercado, por lo que no se cargan entidades gestionadas ni asociaciones LAZY.
+ *
+ * @param id              Identificador de la ubicación.
+ * @param address         Dirección de la ubicación.
+ * @param city            Ciudad de la ubicación.
+ * @param provinceName    Nombre de la provincia a la que pertenece.
+ * @param supermarketName Nombre del supermercado al que pertenece.
+ */
+public record LocationRow(Integer id, String address, String city, String provinceName, String supermarketName) {
+}
@@ -0,0 +1,17 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto;
+
+/**
+ * Ubicación devuelta por la búsqueda por cercanía.
+ *
+ * @param id              Identificador de la ubicación.
+ * @param address         Dirección de la ubicación.
+ * @param city            Ciudad de la ubicación.
+ * @param provinceName    Nombre de la provincia a la que pertenece.
+ * @param supermarketName Nombre del supermercado al que pertenece.
+ * @param latitude        Latitud en grados.
+ * @param longitude       Longitud en grados.
+ * @param distanceKm      Distancia en kilómetros desde el punto buscado.
+ */
+public record NearbyLocation(Integer id, String address, String city, String provinceName, String supermarketName,
+                             double latitude, double longitude, double distanceKm) {
+}
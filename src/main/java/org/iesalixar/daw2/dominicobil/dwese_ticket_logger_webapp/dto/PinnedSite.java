@@ -0,0 +1,11 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto;
+
+/**
+ * Punto del código en el que un hilo virtual ha quedado fijado a su hilo portador.
+ *
+ * @param frame       Primer método fuera del JDK en la pila (clase, método y línea).
+ * @param events      Veces que se ha quedado fijado ahí.
+ * @param totalMillis Tiempo total que ha mantenido ocupado el hilo portador.
+ */
+public record PinnedSite(String frame, long events, long totalMillis) {
+}
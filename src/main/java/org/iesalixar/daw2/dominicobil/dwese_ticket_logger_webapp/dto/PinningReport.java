@@ -0,0 +1,17 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto;
+
+import java.util.List;
+
+/**
+ * Informe de hilos virtuales fijados a su hilo portador (pinning) desde el arranque.
+ *
+ * @param virtualThreads  true si las peticiones se atienden con hilos virtuales.
+ * @param monitoring      true si se están registrando los eventos de JFR.
+ * @param thresholdMillis Duración mínima de los bloqueos registrados.
+ * @param events          Bloqueos registrados.
+ * @param totalMillis     Tiempo total de los hilos portadores bloqueados.
+ * @param sites           Puntos del código, los que más tiempo han bloqueado primero.
+ */
+public record PinningReport(boolean virtualThreads, boolean monitoring, long thresholdMillis, long events,
+                            long totalMillis, List<PinnedSite> sites) {
+}
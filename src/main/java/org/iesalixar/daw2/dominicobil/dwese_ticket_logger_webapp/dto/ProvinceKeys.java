@@ -0,0 +1,10 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto;
+
+/**
+ * Claves de una provincia para los informes de gasto: la región a la que pertenece.
+ *
+ * @param id       Identificador de la provincia.
+ * @param regionId Identificador de la región.
+ */
+public record ProvinceKeys(Integer id, Integer regionId) {
+}
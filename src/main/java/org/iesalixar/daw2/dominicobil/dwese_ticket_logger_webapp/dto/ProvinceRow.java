@@ -0,0 +1,13 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto;
+
+/**
+ * Proyección de solo lectura de una provincia para los listados,
+ * con el nombre de su región ya resuelto en la misma consulta.
+ *
+ * @param id         Identificador de la provincia.
+ * @param code       Código de la provincia.
+ * @param name       Nombre de la provincia.
+ * @param regionName Nombre de la región a la que pertenece.
+ */
+public record ProvinceRow(Integer id, String code, String name, String regionName) {
+}
@@ -0,0 +1,11 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto;
+
+/**
+ * Proyección de solo lectura de una región para los listados.
+ *
+ * @param id   Identificador de la región.
+ * @param code Código de la región.
+ * @param name Nombre de la región.
+ */
+public record RegionRow(Integer id, String code, String name) {
+}
@@ -0,0 +1,14 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto;
+
+/**
+ * Resultado de la búsqueda global.
+ *
+ * @param type     Tipo de entidad (region, province, supermarket, location o category).
+ * @param id       Identificador de la entidad.
+ * @param title    Texto principal (nombre o dirección).
+ * @param subtitle Texto secundario (código, región, ciudad...) o null.
+ * @param url      Enlace al formulario de edición de la entidad.
+ * @param score    Relevancia; cuanto mayor, antes aparece.
+ */
+public record SearchResult(String type, Integer id, String title, String subtitle, String url, double score) {
+}
@@ -0,0 +1,18 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Cantidad que hay que sumar a una fila del resumen diario de gasto (`spend_daily`).
+ *
+ * @param day           Día de los tickets.
+ * @param regionId      Identificador de la región.
+ * @param provinceId    Identificador de la provincia.
+ * @param supermarketId Identificador del supermercado.
+ * @param categoryId    Identificador de la categoría.
+ * @param totalCents    Importe que se suma, en céntimos.
+ * @param lineCount     Número de líneas que se suman.
+ */
+public record SpendDelta(LocalDate day, int regionId, int provinceId, int supermarketId, int categoryId,
+                         long totalCents, long lineCount) {
+}
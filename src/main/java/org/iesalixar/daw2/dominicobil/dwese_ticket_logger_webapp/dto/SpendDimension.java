@@ -0,0 +1,13 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto;
+
+
+/**
+ * Criterio de agrupación de los informes de gasto.
+ */
+public enum SpendDimension {
+    REGION,
+    PROVINCE,
+    SUPERMARKET,
+    CATEGORY,
+    MONTH
+}
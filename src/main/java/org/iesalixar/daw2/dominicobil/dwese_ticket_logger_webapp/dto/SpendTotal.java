@@ -0,0 +1,12 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto;
+
+/**
+ * Gasto acumulado de un grupo de un informe de gasto.
+ *
+ * @param key        Clave del grupo: ID de la categoría, supermercado o provincia, o el mes en formato `yyyy-MM`.
+ * @param label      Nombre de la categoría, supermercado o provincia; el propio mes en los informes por mes.
+ * @param totalCents Suma de los importes en céntimos.
+ * @param lineCount  Número de líneas de ticket sumadas.
+ */
+public record SpendTotal(String key, String label, long totalCents, long lineCount) {
+}
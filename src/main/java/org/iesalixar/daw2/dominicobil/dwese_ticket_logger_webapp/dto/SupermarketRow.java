@@ -0,0 +1,10 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto;
+
+/**
+ * Proyección de solo lectura de un supermercado para los listados.
+ *
+ * @param id   Identificador del supermercado.
+ * @param name Nombre del supermercado.
+ */
+public record SupermarketRow(Integer id, String name) {
+}
@@ -0,0 +1,16 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * Lote de tickets recibido por la API de ingesta. Se acepta o se rechaza entero.
+ *
+ * @param tickets Tickets del lote.
+ */
+public record TicketBatchRequest(@NotEmpty @Size(max = 5000) List<@Valid @NotNull TicketRequest> tickets) {
+}
@@ -0,0 +1,15 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Línea de ticket reducida a lo que necesitan los informes de gasto.
+ *
+ * @param id          Identificador de la línea.
+ * @param locationId  Identificador de la ubicación del ticket.
+ * @param categoryId  Identificador de la categoría de la línea.
+ * @param issuedAt    Fecha y hora del ticket.
+ * @param amountCents Importe de la línea en céntimos.
+ */
+public record TicketLineFact(Long id, Integer locationId, Integer categoryId, LocalDateTime issuedAt, Long amountCents) {
+}
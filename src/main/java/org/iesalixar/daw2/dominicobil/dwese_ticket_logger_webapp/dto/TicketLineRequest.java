@@ -0,0 +1,20 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+import jakarta.validation.constraints.Size;
+
+/**
+ * Línea de un ticket recibido por la API de ingesta.
+ *
+ * @param categoryId     ID de la categoría del artículo.
+ * @param description    Descripción del artículo (opcional).
+ * @param quantity       Unidades compradas.
+ * @param unitPriceCents Precio por unidad en céntimos.
+ */
+public record TicketLineRequest(@NotNull Integer categoryId,
+                                @Size(max = 255) String description,
+                                @Positive int quantity,
+                                @PositiveOrZero long unitPriceCents) {
+}
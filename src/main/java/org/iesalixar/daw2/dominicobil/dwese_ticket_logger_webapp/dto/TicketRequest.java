@@ -0,0 +1,21 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Ticket recibido por la API de ingesta.
+ *
+ * @param locationId ID de la ubicación en la que se emitió.
+ * @param issuedAt   Fecha y hora de emisión.
+ * @param lines      Líneas del ticket.
+ */
+public record TicketRequest(@NotNull Integer locationId,
+                            @NotNull LocalDateTime issuedAt,
+                            @NotEmpty @Size(max = 500) List<@Valid @NotNull TicketLineRequest> lines) {
+}
@@ -0,0 +1,15 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto;
+
+/**
+ * Contadores del servicio de archivos subidos (`/uploads/**`) desde el arranque.
+ *
+ * @param requests         Peticiones recibidas.
+ * @param bytesServed      Bytes de contenido enviados (completos y parciales).
+ * @param notModified      Revalidaciones resueltas con 304 gracias al ETag o la fecha.
+ * @param partialResponses Respuestas 206 a peticiones de rango.
+ * @param sendfileResponses Respuestas enviadas por Tomcat con sendfile, sin pasar por la aplicación.
+ * @param notFound         Peticiones de archivos que no existen o no se pueden servir.
+ */
+public record UploadServingStats(long requests, long bytesServed, long notModified, long partialResponses,
+                                 long sendfileResponses, long notFound) {
+}
@@ -0,0 +1,18 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto;
+
+/**
+ * Estado de una subida por partes.
+ *
+ * @param id             Identificador de la sesión.
+ * @param fileName       Nombre original del archivo.
+ * @param size           Tamaño total en bytes.
+ * @param chunkSize      Tamaño de cada parte (la última puede ser menor).
+ * @param chunkCount     Número de partes.
+ * @param receivedChunks Partes recibidas y verificadas.
+ * @param offset         Bytes recibidos de forma contigua desde el principio: el cliente reanuda desde aquí.
+ * @param completing     true mientras el archivo reunido se está guardando.
+ * @param completed      true si el archivo ya se ha reunido y guardado.
+ */
+public record UploadSessionStatus(String id, String fileName, long size, long chunkSize, int chunkCount,
+                                  int receivedChunks, long offset, boolean completing, boolean completed) {
+}
@@ -0,0 +1,18 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Resultado de una pasada del barrido de archivos huérfanos del directorio de subidas.
+ *
+ * @param startedAt        Inicio de la pasada.
+ * @param durationMillis   Duración en milisegundos.
+ * @param scannedFiles     Archivos recorridos, sin contar la cuarentena.
+ * @param orphanFiles      Archivos sin ninguna referencia y más antiguos que el margen.
+ * @param deletedFiles     Archivos borrados, incluidos los que cumplían su plazo en cuarentena.
+ * @param quarantinedFiles Archivos movidos a la cuarentena.
+ * @param reclaimedBytes   Bytes liberados por los archivos borrados.
+ */
+public record UploadSweepReport(LocalDateTime startedAt, long durationMillis, long scannedFiles, long orphanFiles,
+                                long deletedFiles, long quarantinedFiles, long reclaimedBytes) {
+}
@@ -26,11 +26,20 @@ import java.util.List;
 public class Category {
 
     // Campo que almacena el identificador único de la categoría.
-    // Es una clave primaria autogenerada por la base de datos.
+    // Es una clave primaria que Hibernate asigna por bloques desde la tabla `id_generators`.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "categories_gen")
+    @TableGenerator(name = "categories_gen", table = "id_generators", pkColumnName = "gen_name",
+            valueColumnName = "gen_value", pkColumnValue = "categories", allocationSize = 50)
     private Integer id;
 
+
+    // Versión de la categoría para el control de concurrencia optimista.
+    // Cada actualización la incrementa y solo se aplica si coincide con la versión leída en el formulario.
+    @Version
+    @Column(name = "version", nullable = false)
+    private Integer version;
+
     // Campo que almacena el nombre de la categoría, que no puede estar vacío y tiene una longitud máxima de 255 caracteres.
     @NotEmpty(message = "{msg.category.name.notEmpty}")
     @Size(max = 255, message = "{msg.category.name.size}")
@@ -0,0 +1,98 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity;
+
+
+
+import jakarta.persistence.*; // Anotaciones de JPA
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+
+/**
+ * La clase `DeletionJob` representa un borrado en cascada que se ejecuta en segundo plano.
+ *
+ * Guarda qué entidad se está eliminando (una región, una provincia o un supermercado), el estado del
+ * trabajo y cuántas filas lleva borradas. Como el estado está en la base de datos, un trabajo que no
+ * terminó (por ejemplo, porque se paró la aplicación) se reanuda en el siguiente arranque.
+ */
+@Entity // Marca esta clase como una entidad gestionada por JPA.
+@Table(name = "deletion_jobs") // Especifica el nombre de la tabla asociada a esta entidad.
+@Data
+@NoArgsConstructor
+public class DeletionJob {
+
+
+    /**
+     * Entidades que se eliminan con un trabajo en segundo plano porque arrastran hijos.
+     */
+    public enum Target {
+        REGION, PROVINCE, SUPERMARKET
+    }
+
+
+    /**
+     * Estados de un trabajo de borrado. REFUSED indica que no se ha borrado porque alguna de las
+     * ubicaciones afectadas tiene tickets, que no se borran ni se reasignan.
+     */
+    public enum Status {
+        PENDING, RUNNING, COMPLETED, FAILED, REFUSED
+    }
+
+
+    // Identificador único del trabajo, generado por la base de datos.
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+
+    // Tipo de la entidad que se elimina.
+    @Enumerated(EnumType.STRING)
+    @Column(name = "target", nullable = false, length = 20)
+    private Target target;
+
+
+    // ID de la entidad que se elimina.
+    @Column(name = "target_id", nullable = false)
+    private Integer targetId;
+
+
+    // Estado actual del trabajo.
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private Status status;
+
+
+    // Filas borradas hasta ahora (hijos y la propia entidad).
+    @Column(name = "deleted_rows", nullable = false)
+    private long deletedRows;
+
+
+    // Mensaje del último error, si el trabajo ha fallado.
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+
+    // Momento en que se pidió el borrado.
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+
+    // Momento del último cambio de estado o progreso.
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+
+    /**
+     * Crea un trabajo pendiente para eliminar la entidad indicada.
+     * @param target   Tipo de la entidad.
+     * @param targetId ID de la entidad.
+     */
+    public DeletionJob(Target target, Integer targetId) {
+        this.target = target;
+        this.targetId = targetId;
+        this.status = Status.PENDING;
+        this.createdAt = LocalDateTime.now();
+        this.updatedAt = this.createdAt;
+    }
+}
@@ -2,6 +2,8 @@ package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity;
 
 
 import jakarta.persistence.*; // Anotaciones de JPA
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
@@ -11,9 +13,10 @@ import lombok.NoArgsConstructor;
 
 /**
  * La clase `Location` representa una entidad que modela una ubicación.
- * Contiene tres campos: `id`, `address`, `city`, `supermarket` y `province`,
+ * Contiene los campos `id`, `address`, `city`, `latitude`, `longitude`, `supermarket` y `province`,
  * donde `id` es el identificador único de la ubicación,
- * `address` es la dirección, `city` es la ciudad, `supermarket` es la referencia
+ * `address` es la dirección, `city` es la ciudad, `latitude` y `longitude` son las coordenadas
+ * opcionales, `supermarket` es la referencia
  * al supermercado al que pertenece la ubicación, y `province` es la provincia a la que pertenece.
  */
 @Entity // Marca esta clase como una entidad JPA.
@@ -24,12 +27,22 @@ import lombok.NoArgsConstructor;
 public class Location {
 
 
-    // Identificador único de la ubicación. Es autogenerado y clave primaria.
+    // Identificador único de la ubicación. Es clave primaria y se reserva en bloques de 50
+    // (en lugar de IDENTITY) para que las inserciones masivas puedan agruparse en lotes JDBC.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "locations_gen")
+    @TableGenerator(name = "locations_gen", table = "id_generators", pkColumnName = "gen_name",
+            valueColumnName = "gen_value", pkColumnValue = "locations", allocationSize = 50)
     private Integer id;
 
 
+    // Versión de la ubicación para el control de concurrencia optimista.
+    // Cada actualización la incrementa y solo se aplica si coincide con la versión leída en el formulario.
+    @Version
+    @Column(name = "version", nullable = false)
+    private Integer version;
+
+
     // Dirección de la ubicación. No puede estar vacía.
     @NotEmpty(message = "{msg.location.address.notEmpty}")
     @Column(name = "address", nullable = false)
@@ -42,6 +55,20 @@ public class Location {
     private String city;
 
 
+    // Latitud en grados (WGS84). Es opcional; sin coordenadas la ubicación no aparece en las búsquedas por cercanía.
+    @DecimalMin(value = "-90.0", message = "{msg.location.latitude.range}")
+    @DecimalMax(value = "90.0", message = "{msg.location.latitude.range}")
+    @Column(name = "latitude")
+    private Double latitude;
+
+
+    // Longitud en grados (WGS84). Es opcional, como la latitud.
+    @DecimalMin(value = "-180.0", message = "{msg.location.longitude.range}")
+    @DecimalMax(value = "180.0", message = "{msg.location.longitude.range}")
+    @Column(name = "longitude")
+    private Double longitude;
+
+
     // Relación con el supermercado al que pertenece la ubicación. No puede ser nulo.
     @NotNull(message = "{msg.location.supermarket.notNull}")
     @ManyToOne(fetch = FetchType.LAZY)
@@ -7,6 +7,8 @@ import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Region;
 
 import java.util.List;
@@ -23,18 +25,28 @@ import java.util.List;
  */
 @Entity // Marca esta clase como una entidad JPA.
 @Table(name = "provinces") // Define el nombre de la tabla asociada a esta entidad.
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "provinces") // Entidad de referencia en la caché de segundo nivel.
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Province {
 
 
-    // Campo que almacena el identificador único de la provincia. Es autogenerado y clave primaria.
+    // Campo que almacena el identificador único de la provincia. Es clave primaria y se asigna desde `id_generators`.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "provinces_gen")
+    @TableGenerator(name = "provinces_gen", table = "id_generators", pkColumnName = "gen_name",
+            valueColumnName = "gen_value", pkColumnValue = "provinces", allocationSize = 50)
     private Integer id;
 
 
+    // Versión de la provincia para el control de concurrencia optimista.
+    // Cada actualización la incrementa y solo se aplica si coincide con la versión leída en el formulario.
+    @Version
+    @Column(name = "version", nullable = false)
+    private Integer version;
+
+
     // Campo que almacena el código de la provincia, normalmente una cadena corta que identifica la provincia.
     // Ejemplo: "23" para Jaén.
     @NotEmpty(message = "{msg.province.code.notEmpty}")
@@ -8,6 +8,8 @@ import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import jakarta.validation.constraints.NotNull;
 
 import java.util.List;
@@ -23,6 +25,7 @@ import java.util.List;
  */
 @Entity // Marca esta clase como una entidad gestionada por JPA.
 @Table(name = "regions") // Especifica el nombre de la tabla asociada a esta entidad.
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "regions") // Entidad de referencia en la caché de segundo nivel.
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -30,12 +33,21 @@ public class Region {
 
 
     // Campo que almacena el identificador único de la región.
-    // Es una clave primaria autogenerada por la base de datos.
+    // Es una clave primaria que Hibernate asigna por bloques desde la tabla `id_generators`.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "regions_gen")
+    @TableGenerator(name = "regions_gen", table = "id_generators", pkColumnName = "gen_name",
+            valueColumnName = "gen_value", pkColumnValue = "regions", allocationSize = 50)
     private Integer id;
 
 
+    // Versión de la región para el control de concurrencia optimista.
+    // Cada actualización la incrementa y solo se aplica si coincide con la versión leída en el formulario.
+    @Version
+    @Column(name = "version", nullable = false)
+    private Integer version;
+
+
     // Campo que almacena el código de la región, normalmente una cadena corta que identifica la región.
     // Ejemplo: "01" para Andalucía.
     @NotEmpty(message = "{msg.region.code.notEmpty}")
@@ -52,7 +64,9 @@ public class Region {
 
     // Relación uno a muchos con la entidad Province.
 // Una región puede tener muchas provincias.
+    // La colección también se guarda en la caché de segundo nivel (solo los IDs; las provincias están cacheadas).
     @OneToMany(mappedBy = "region_id", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "regions.provinces")
     private List<Province> provinces;
 
     /**
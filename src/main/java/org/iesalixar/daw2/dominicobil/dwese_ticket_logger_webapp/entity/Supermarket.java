@@ -6,6 +6,8 @@ import jakarta.validation.constraints.NotEmpty;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.List;
 
@@ -17,18 +19,28 @@ import java.util.List;
  */
 @Entity // Marca esta clase como una entidad JPA.
 @Table(name = "supermarkets") // Especifica el nombre de la tabla asociada a esta entidad.
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "supermarkets") // Entidad de referencia en la caché de segundo nivel.
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Supermarket {
 
 
-    // Identificador único del supermercado. Es autogenerado y clave primaria.
+    // Identificador único del supermercado. Es clave primaria y se asigna desde `id_generators`.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY) // Generación automática del ID.
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "supermarkets_gen")
+    @TableGenerator(name = "supermarkets_gen", table = "id_generators", pkColumnName = "gen_name",
+            valueColumnName = "gen_value", pkColumnValue = "supermarkets", allocationSize = 50)
     private Integer id;
 
 
+    // Versión del supermercado para el control de concurrencia optimista.
+    // Cada actualización la incrementa y solo se aplica si coincide con la versión leída en el formulario.
+    @Version
+    @Column(name = "version", nullable = false)
+    private Integer version;
+
+
     // Nombre del supermercado. No puede estar vacío.
     @NotEmpty(message = "{msg.supermarket.name.notEmpty}")
     @Column(name = "name", nullable = false) // Define la columna correspondiente en la tabla.
@@ -0,0 +1,71 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity;
+
+
+import jakarta.persistence.*; // Anotaciones de JPA
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * La clase `Ticket` representa un ticket de compra registrado en una ubicación (un supermercado concreto).
+ *
+ * Los importes se guardan en céntimos como `long`, no como decimales: las sumas son exactas, no hay
+ * objetos intermedios por cada importe y las columnas son BIGINT. El total es la suma de sus líneas y se
+ * calcula al crear el ticket.
+ */
+@Entity // Marca esta clase como una entidad gestionada por JPA.
+@Table(name = "tickets") // Especifica el nombre de la tabla asociada a esta entidad.
+@Data
+@NoArgsConstructor
+public class Ticket {
+
+
+    // Identificador único del ticket. Se reserva en bloques grandes desde `id_generators`
+    // para que la ingesta masiva apenas tenga que consultar el generador.
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "tickets_gen")
+    @TableGenerator(name = "tickets_gen", table = "id_generators", pkColumnName = "gen_name",
+            valueColumnName = "gen_value", pkColumnValue = "tickets", allocationSize = 1000)
+    private Long id;
+
+
+    // Ubicación en la que se emitió el ticket.
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "location_id", nullable = false) // Clave foránea a la tabla ubicaciones.
+    private Location location;
+
+
+    // Fecha y hora de emisión del ticket.
+    @Column(name = "issued_at", nullable = false)
+    private LocalDateTime issuedAt;
+
+
+    // Importe total en céntimos (suma de las líneas).
+    @Column(name = "total_cents", nullable = false)
+    private long totalCents;
+
+
+    // Líneas del ticket; se insertan junto con él.
+    @OneToMany(mappedBy = "ticket", cascade = CascadeType.PERSIST, fetch = FetchType.LAZY)
+    @OrderBy("id")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private List<TicketLine> lines = new ArrayList<>();
+
+
+    /**
+     * Añade una línea al ticket y suma su importe al total.
+     * @param line Línea a añadir.
+     */
+    public void addLine(TicketLine line) {
+        line.setTicket(this);
+        lines.add(line);
+        totalCents = Math.addExact(totalCents, line.getAmountCents());
+    }
+}
@@ -0,0 +1,79 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity;
+
+
+import jakarta.persistence.*; // Anotaciones de JPA
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+
+/**
+ * La clase `TicketLine` representa una línea de un ticket: un artículo de una categoría, la cantidad
+ * comprada y su precio. Como en `Ticket`, los importes se guardan en céntimos.
+ */
+@Entity // Marca esta clase como una entidad gestionada por JPA.
+@Table(name = "ticket_lines") // Especifica el nombre de la tabla asociada a esta entidad.
+@Data
+@NoArgsConstructor
+public class TicketLine {
+
+
+    // Identificador único de la línea, reservado en bloques como el de los tickets.
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "ticket_lines_gen")
+    @TableGenerator(name = "ticket_lines_gen", table = "id_generators", pkColumnName = "gen_name",
+            valueColumnName = "gen_value", pkColumnValue = "ticket_lines", allocationSize = 1000)
+    private Long id;
+
+
+    // Ticket al que pertenece la línea.
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "ticket_id", nullable = false) // Clave foránea a la tabla tickets.
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Ticket ticket;
+
+
+    // Categoría del artículo.
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "category_id", nullable = false) // Clave foránea a la tabla categorías.
+    private Category category;
+
+
+    // Descripción del artículo tal como aparece en el ticket (opcional).
+    @Column(name = "description", length = 255)
+    private String description;
+
+
+    // Unidades compradas.
+    @Column(name = "quantity", nullable = false)
+    private int quantity;
+
+
+    // Precio por unidad en céntimos.
+    @Column(name = "unit_price_cents", nullable = false)
+    private long unitPriceCents;
+
+
+    // Importe de la línea en céntimos (unidades por precio).
+    @Column(name = "amount_cents", nullable = false)
+    private long amountCents;
+
+
+    /**
+     * Crea una línea calculando su importe.
+     * @param category       Categoría del artículo.
+     * @param description    Descripción del artículo.
+     * @param quantity       Unidades compradas.
+     * @param unitPriceCents Precio por unidad en céntimos.
+     * @throws ArithmeticException Si el importe no cabe en un long.
+     */
+    public TicketLine(Category category, String description, int quantity, long unitPriceCents) {
+        this.category = category;
+        this.description = description;
+        this.quantity = quantity;
+        this.unitPriceCents = unitPriceCents;
+        this.amountCents = Math.multiplyExact(quantity, unitPriceCents);
+    }
+}
@@ -0,0 +1,66 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services;
+
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.config.SecondLevelCacheConfig;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.CacheRegionStats;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.CacheStatsReport;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Servicio que reúne las estadísticas de la caché de segundo nivel.
+ *
+ * Los aciertos, fallos y escrituras salen de las estadísticas de Hibernate
+ * (`hibernate.generate_statistics`) y las expulsiones de las estadísticas nativas de Caffeine.
+ * Los contadores de consultas y entidades cargadas permiten comprobar cuánto baja la carga de la base de datos.
+ */
+@Service
+public class CacheStatisticsService {
+
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CacheManager hibernateCacheManager;
+
+
+    /**
+     * Obtiene el estado actual de todas las regiones de la caché.
+     * @return Informe con las estadísticas acumuladas desde el arranque.
+     */
+    public CacheStatsReport getReport() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        List<CacheRegionStats> regions = new ArrayList<>();
+        for (String region : SecondLevelCacheConfig.CACHE_REGIONS) {
+            CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+            Cache<Object, Object> cache = hibernateCacheManager.getCache(region);
+            CacheStats cacheStats = cache == null ? CacheStats.empty()
+                    : cache.unwrap(com.github.benmanes.caffeine.cache.Cache.class).stats();
+            regions.add(new CacheRegionStats(region,
+                    regionStatistics == null ? 0 : regionStatistics.getHitCount(),
+                    regionStatistics == null ? 0 : regionStatistics.getMissCount(),
+                    regionStatistics == null ? 0 : regionStatistics.getPutCount(),
+                    cacheStats.evictionCount(),
+                    cache == null ? 0 : cache.unwrap(com.github.benmanes.caffeine.cache.Cache.class).estimatedSize()));
+        }
+        return new CacheStatsReport(regions,
+                statistics.getQueryCacheHitCount(),
+                statistics.getQueryCacheMissCount(),
+                statistics.getQueryExecutionCount(),
+                statistics.getEntityLoadCount(),
+                statistics.getPrepareStatementCount());
+    }
+}
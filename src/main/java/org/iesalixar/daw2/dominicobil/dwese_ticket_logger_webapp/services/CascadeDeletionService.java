@@ -0,0 +1,281 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services;
+
+
+import jakarta.annotation.PreDestroy;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.DeletionJobDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.LocationDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.ProvinceDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.RegionDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.SupermarketDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.TicketDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.DeletionJob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+
+/**
+ * Servicio que elimina en segundo plano las entidades que arrastran hijos: regiones (provincias y sus
+ * ubicaciones), provincias (ubicaciones) y supermercados (ubicaciones).
+ *
+ * La petición solo registra un trabajo en la tabla `deletion_jobs` y vuelve enseguida. Un único hilo
+ * ejecuta los trabajos de uno en uno: busca los IDs de los hijos en bloques de `app.deletion.chunk-size`
+ * y borra cada bloque con una sentencia DELETE en su propia transacción, junto con el progreso del
+ * trabajo. Así ninguna transacción mantiene bloqueos sobre muchas filas y, si la aplicación se para,
+ * el trabajo se reanuda en el siguiente arranque desde lo que quede por borrar.
+ *
+ * Los tickets son el histórico de compras y nunca se borran en cascada ni se pasan a otra ubicación: si
+ * alguna ubicación afectada tiene tickets, el trabajo se rechaza (REFUSED) antes de borrar nada. Si entra
+ * un ticket mientras el trabajo avanza, la clave foránea para el bloque y el trabajo queda también
+ * rechazado, con lo ya borrado confirmado; se puede volver a lanzar cuando se hayan resuelto los tickets.
+ */
+@Service
+public class CascadeDeletionService {
+
+
+    // Logger para registrar eventos en esta clase
+    private static final Logger logger = LoggerFactory.getLogger(CascadeDeletionService.class);
+
+
+    @Autowired
+    private DeletionJobDAO deletionJobDAO;
+
+    @Autowired
+    private RegionDAO regionDAO;
+
+    @Autowired
+    private ProvinceDAO provinceDAO;
+
+    @Autowired
+    private SupermarketDAO supermarketDAO;
+
+    @Autowired
+    private LocationDAO locationDAO;
+
+    @Autowired
+    private TicketDAO ticketDAO;
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.deletion.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${app.deletion.pause-between-chunks:50ms}")
+    private Duration pauseBetweenChunks;
+
+    // Los trabajos se ejecutan de uno en uno para no competir entre ellos por los bloqueos
+    private final ExecutorService executor;
+
+
+    public CascadeDeletionService(PlatformTransactionManager transactionManager,
+                                  @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.executor = Executors.newSingleThreadExecutor(virtualThreads ? Thread.ofVirtual().name("cascade-deletion").factory() : runnable -> {
+            Thread thread = new Thread(runnable, "cascade-deletion");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+
+    /**
+     * Registra el borrado de una entidad y lo pone en cola. Si ya hay un trabajo sin terminar para la
+     * misma entidad, devuelve ese trabajo.
+     * @param target   Tipo de la entidad.
+     * @param targetId ID de la entidad.
+     * @return Trabajo de borrado.
+     */
+    public DeletionJob submit(DeletionJob.Target target, int targetId) {
+        DeletionJob existing = deletionJobDAO.getUnfinishedJob(target, targetId);
+        if (existing != null) {
+            logger.info("Deletion of {} {} already queued as job {}.", target, targetId, existing.getId());
+            return existing;
+        }
+        DeletionJob job = new DeletionJob(target, targetId);
+        deletionJobDAO.insertJob(job);
+        executor.execute(() -> run(job.getId()));
+        return job;
+    }
+
+
+    /**
+     * Obtiene el estado de un trabajo.
+     * @param id ID del trabajo.
+     * @return Trabajo o null si no existe.
+     */
+    public DeletionJob getJob(int id) {
+        return deletionJobDAO.getJobById(id);
+    }
+
+
+    /**
+     * Reanuda al arrancar los trabajos que quedaron pendientes o a medias.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinishedJobs() {
+        List<DeletionJob> jobs = deletionJobDAO.listUnfinishedJobs();
+        if (!jobs.isEmpty()) {
+            logger.info("Resuming {} unfinished deletion jobs.", jobs.size());
+        }
+        for (DeletionJob job : jobs) {
+            executor.execute(() -> run(job.getId()));
+        }
+    }
+
+
+    @PreDestroy
+    public void shutdown() {
+        // El trabajo interrumpido sigue como RUNNING y se reanuda en el siguiente arranque
+        executor.shutdownNow();
+    }
+
+
+    /**
+     * Ejecuta un trabajo hasta el final.
+     * @param jobId ID del trabajo.
+     */
+    void run(int jobId) {
+        DeletionJob job = deletionJobDAO.getJobById(jobId);
+        if (job == null) {
+            return;
+        }
+        logger.info("Running deletion job {} for {} {}.", jobId, job.getTarget(), job.getTargetId());
+        deletionJobDAO.updateStatus(jobId, DeletionJob.Status.RUNNING, null);
+        try {
+            int id = job.getTargetId();
+            if (hasTickets(job.getTarget(), id)) {
+                logger.warn("Deletion job {} refused: {} {} has locations with tickets.", jobId, job.getTarget(), id);
+                deletionJobDAO.updateStatus(jobId, DeletionJob.Status.REFUSED, "Locations with tickets");
+                return;
+            }
+            switch (job.getTarget()) {
+                case REGION -> deleteRegion(jobId, id);
+                case PROVINCE -> deleteProvince(jobId, id);
+                case SUPERMARKET -> deleteSupermarket(jobId, id);
+            }
+            deletionJobDAO.updateStatus(jobId, DeletionJob.Status.COMPLETED, null);
+            logger.info("Deletion job {} completed.", jobId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.info("Deletion job {} interrupted; it will resume on the next start.", jobId);
+        } catch (DataIntegrityViolationException e) {
+            // Un ticket nuevo en una de las ubicaciones que quedaban por borrar
+            logger.warn("Deletion job {} refused: a location got tickets while it was running.", jobId);
+            deletionJobDAO.updateStatus(jobId, DeletionJob.Status.REFUSED, "Locations with tickets");
+        } catch (RuntimeException e) {
+            logger.error("Deletion job {} failed: {}", jobId, e.getMessage());
+            deletionJobDAO.updateStatus(jobId, DeletionJob.Status.FAILED, e.getMessage());
+        }
+    }
+
+
+    /**
+     * Indica si alguna de las ubicaciones que borraría un trabajo tiene tickets.
+     * @param target   Tipo de la entidad.
+     * @param targetId ID de la entidad.
+     * @return true si el borrado debe rechazarse.
+     */
+    public boolean hasTickets(DeletionJob.Target target, int targetId) {
+        return switch (target) {
+            case REGION -> ticketDAO.existsTicketsByRegion(targetId);
+            case PROVINCE -> ticketDAO.existsTicketsByProvince(targetId);
+            case SUPERMARKET -> ticketDAO.existsTicketsBySupermarket(targetId);
+        };
+    }
+
+
+    private void deleteRegion(int jobId, int regionId) throws InterruptedException {
+        List<Integer> provinceIds;
+        while (!(provinceIds = provinceDAO.listProvinceIdsByRegion(regionId, chunkSize)).isEmpty()) {
+            for (Integer provinceId : provinceIds) {
+                deleteInChunks(jobId, () -> locationDAO.listLocationIdsByProvince(provinceId, chunkSize),
+                        locationDAO::deleteLocations);
+            }
+            List<Integer> chunk = provinceIds;
+            inTransaction(jobId, () -> provinceDAO.deleteProvinces(chunk));
+        }
+        inTransaction(jobId, () -> {
+            regionDAO.deleteRegion(regionId);
+            return 1;
+        });
+    }
+
+
+    private void deleteProvince(int jobId, int provinceId) throws InterruptedException {
+        deleteInChunks(jobId, () -> locationDAO.listLocationIdsByProvince(provinceId, chunkSize),
+                locationDAO::deleteLocations);
+        inTransaction(jobId, () -> {
+            provinceDAO.deleteProvince(provinceId);
+            return 1;
+        });
+    }
+
+
+    private void deleteSupermarket(int jobId, int supermarketId) throws InterruptedException {
+        deleteInChunks(jobId, () -> locationDAO.listLocationIdsBySupermarket(supermarketId, chunkSize),
+                locationDAO::deleteLocations);
+        inTransaction(jobId, () -> {
+            supermarketDAO.deleteSupermarket(supermarketId);
+            return 1;
+        });
+    }
+
+
+    /**
+     * Borra bloques de hijos hasta que no quede ninguno. Cada bloque se lee y se borra en la misma
+     * transacción, de modo que un bloque a medias nunca queda confirmado.
+     */
+    private void deleteInChunks(int jobId, Supplier<List<Integer>> nextChunk,
+                                Function<List<Integer>, Integer> delete) throws InterruptedException {
+        while (true) {
+            Integer deleted = inTransaction(jobId, () -> {
+                List<Integer> ids = nextChunk.get();
+                return ids.isEmpty() ? -1 : delete.apply(ids);
+            });
+            if (deleted < 0) {
+                return;
+            }
+            pause();
+        }
+    }
+
+
+    /**
+     * Ejecuta un paso del borrado y suma sus filas al progreso del trabajo en la misma transacción.
+     */
+    private Integer inTransaction(int jobId, Supplier<Integer> step) throws InterruptedException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException();
+        }
+        return transactionTemplate.execute(status -> {
+            Integer rows = step.get();
+            if (rows > 0) {
+                deletionJobDAO.addDeletedRows(jobId, rows);
+            }
+            return rows;
+        });
+    }
+
+
+    private void pause() throws InterruptedException {
+        // Deja hueco entre bloques al resto de transacciones que esperan los mismos bloqueos
+        if (!pauseBetweenChunks.isZero()) {
+            Thread.sleep(pauseBetweenChunks.toMillis());
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services;
+
+
+import jakarta.annotation.PreDestroy;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.UploadSessionStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.BitSet;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Servicio de subidas por partes reanudables, para archivos grandes que llegan desde conexiones inestables.
+ *
+ * El cliente abre una sesión con el nombre y el tamaño del archivo, envía las partes numeradas de
+ * `app.uploads.chunk-size` en cualquier orden (o varias a la vez) con el SHA-256 de cada una, consulta qué
+ * ha llegado para reanudar tras un corte y cierra la sesión. Cada parte se escribe en su posición de un
+ * temporal del directorio de preparación con escrituras posicionales por canal, a través de un búfer fijo, así
+ * que la memoria no depende ni del tamaño de la parte ni del archivo; una parte cuyo SHA-256 no coincide no
+ * se da por recibida. Al cerrar, el archivo reunido pasa por {@link FileStorageService} como cualquier subida,
+ * pero con su propio límite, `app.uploads.chunked-max-size`, porque esta vía existe para los archivos grandes.
+ *
+ * Las sesiones viven en memoria: las que pasan `app.uploads.session-ttl` sin actividad se descartan, y un
+ * reinicio las descarta todas (el cliente vuelve a empezar). Como las partes se reúnen en el disco del nodo que
+ * abrió la sesión, con varios nodos (por ejemplo, compartiendo el almacén S3) el balanceador tiene que enviar
+ * todas las peticiones de una sesión, y el formulario que la recoge, al mismo nodo (sesiones persistentes).
+ *
+ * Mientras se escribe una parte, la sesión no se puede cerrar: completarla espera a que no quede ninguna a
+ * medias, y al descartarla el temporal lo borra la última escritura en curso. Ninguna escritura ni el guardado
+ * final se hacen con el monitor de la sesión tomado, para no bloquear las consultas de estado durante una
+ * subida a S3 ni fijar el hilo portador de un hilo virtual.
+ */
+@Service
+public class ChunkedUploadService {
+
+
+    // Logger para registrar eventos en esta clase
+    private static final Logger logger = LoggerFactory.getLogger(ChunkedUploadService.class);
+
+    static final String DATA_PREFIX = ".chunked-";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+
+    /**
+     * Resultado de abrir una sesión o de recibir una parte.
+     */
+    public enum Result {
+        ACCEPTED,
+        UNKNOWN_SESSION,
+        INVALID,
+        TOO_LARGE,
+        TOO_MANY_SESSIONS,
+        BUSY,
+        CHECKSUM_MISMATCH,
+        CLOSED
+    }
+
+
+    @Autowired
+    private StorageBackend storageBackend;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Value("${app.uploads.chunk-size:4MB}")
+    private DataSize chunkSize;
+
+    @Value("${app.uploads.chunked-max-size:200MB}")
+    private DataSize maxSize;
+
+    @Value("${app.uploads.session-ttl:24h}")
+    private Duration sessionTtl;
+
+    @Value("${app.uploads.max-sessions:100}")
+    private int maxSessions;
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService cleaner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "upload-sessions");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+
+    /**
+     * Borra los temporales de las sesiones anteriores al arranque y programa la limpieza de las caducadas.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(storageBackend.stagingDirectory(), DATA_PREFIX + "*")) {
+            for (Path leftover : leftovers) {
+                Files.deleteIfExists(leftover);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not clean previous upload sessions: {}", e.getMessage());
+        }
+        cleaner.scheduleWithFixedDelay(this::expireSessions, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cleaner.shutdownNow();
+    }
+
+
+    /**
+     * Abre una sesión de subida.
+     * @param fileName Nombre original del archivo.
+     * @param size     Tamaño total en bytes.
+     * @return Estado de la nueva sesión, o el motivo por el que no se ha abierto.
+     */
+    public Opened create(String fileName, long size) {
+        if (size <= 0 || fileName == null || fileName.isBlank()) {
+            return new Opened(Result.INVALID, null);
+        }
+        if (size > maxSize.toBytes()) {
+            return new Opened(Result.TOO_LARGE, null);
+        }
+        if (sessions.size() >= maxSessions) {
+            logger.warn("Upload session limit reached ({}).", maxSessions);
+            return new Opened(Result.TOO_MANY_SESSIONS, null);
+        }
+        try {
+            Path data = Files.createTempFile(storageBackend.stagingDirectory(), DATA_PREFIX, ".part");
+            Session session = new Session(UUID.randomUUID().toString(), fileName, size, chunkSize.toBytes(), data);
+            sessions.put(session.id, session);
+            logger.info("Upload session {} opened for {} ({} bytes, {} chunks).", session.id, fileName, size, session.chunkCount);
+            return new Opened(Result.ACCEPTED, session.status());
+        } catch (IOException e) {
+            logger.error("Could not open upload session for {}: {}", fileName, e.getMessage());
+            return new Opened(Result.INVALID, null);
+        }
+    }
+
+    /**
+     * Resultado de {@link #create}.
+     *
+     * @param result Resultado.
+     * @param status Estado de la sesión si se ha abierto.
+     */
+    public record Opened(Result result, UploadSessionStatus status) {
+    }
+
+
+    /**
+     * Recibe una parte y la escribe en su posición. Una parte ya recibida se verifica pero no se reescribe.
+     *
+     * @param id             Sesión.
+     * @param index          Número de la parte, desde 0.
+     * @param body           Contenido de la parte.
+     * @param expectedSha256 SHA-256 de la parte en hexadecimal.
+     * @return Resultado de la recepción; CLOSED si la sesión ya se ha completado o descartado.
+     */
+    public Result writeChunk(String id, int index, InputStream body, String expectedSha256) throws IOException {
+        Session session = sessions.get(id);
+        if (session == null) {
+            return Result.UNKNOWN_SESSION;
+        }
+        if (index < 0 || index >= session.chunkCount || expectedSha256 == null) {
+            return Result.INVALID;
+        }
+        boolean alreadyReceived;
+        // La comprobación del cierre y la reserva de la parte van juntas: a partir de aquí la sesión no se
+        // completa ni se borra su temporal hasta que esta escritura la suelte
+        synchronized (session) {
+            if (session.closed) {
+                return Result.CLOSED;
+            }
+            if (session.writing.get(index)) {
+                return Result.BUSY;
+            }
+            session.writing.set(index);
+            alreadyReceived = session.received.get(index);
+            session.lastActivity = Instant.now();
+        }
+        Result result = Result.INVALID;
+        boolean closed;
+        boolean lastWriter;
+        try {
+            result = receiveChunk(session, index, body, expectedSha256, alreadyReceived);
+        } finally {
+            synchronized (session) {
+                session.writing.clear(index);
+                closed = session.closed;
+                if (result == Result.ACCEPTED && !closed) {
+                    session.received.set(index);
+                }
+                lastWriter = closed && session.writing.isEmpty();
+            }
+            if (lastWriter) {
+                deleteData(session);
+            }
+        }
+        return closed ? Result.CLOSED : result;
+    }
+
+    private Result receiveChunk(Session session, int index, InputStream body, String expectedSha256,
+                                boolean alreadyReceived) throws IOException {
+        try {
+            long position = index * session.chunkSize;
+            long expectedLength = Math.min(session.chunkSize, session.size - position);
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            long written = copyChunk(body, digest, alreadyReceived ? null : session.data, position, expectedLength);
+            if (written != expectedLength) {
+                logger.warn("Upload session {} chunk {} has {} bytes, expected {}.", session.id, index, written, expectedLength);
+                return Result.INVALID;
+            }
+            if (!HexFormat.of().formatHex(digest.digest()).equalsIgnoreCase(expectedSha256.trim())) {
+                logger.warn("Upload session {} chunk {} failed its checksum.", session.id, index);
+                return Result.CHECKSUM_MISMATCH;
+            }
+            return Result.ACCEPTED;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    /**
+     * @param id Sesión.
+     * @return Estado de la sesión, o null si no existe.
+     */
+    public UploadSessionStatus getStatus(String id) {
+        Session session = sessions.get(id);
+        return session == null ? null : session.status();
+    }
+
+
+    /**
+     * Cierra la sesión: si han llegado todas las partes, guarda el archivo reunido.
+     * @param id Sesión.
+     * @return Estado de la sesión (completed indica si se ha guardado, completing que otra petición lo está
+     *         guardando), o null si no existe. Si faltan partes o el archivo se rechaza, completed es false.
+     */
+    public UploadSessionStatus complete(String id) {
+        Session session = sessions.get(id);
+        if (session == null) {
+            return null;
+        }
+        // Con el monitor solo se comprueba que está completa y se cierra; el guardado va fuera
+        synchronized (session) {
+            session.lastActivity = Instant.now();
+            if (session.closed || session.received.cardinality() < session.chunkCount || !session.writing.isEmpty()) {
+                return session.status();
+            }
+            session.closed = true;
+            session.completing = true;
+        }
+        String path = null;
+        try {
+            path = fileStorageService.saveFile(session.data, session.fileName, maxSize);
+        } finally {
+            synchronized (session) {
+                session.completing = false;
+                session.storedPath = path;
+            }
+            if (path == null) {
+                // Contenido no permitido o error al guardar: la sesión no sirve para nada más
+                discard(session);
+            } else {
+                deleteData(session);
+                logger.info("Upload session {} completed as {}.", id, path);
+            }
+        }
+        return session.status();
+    }
+
+
+    /**
+     * Entrega la ruta del archivo de una sesión completada y cierra la sesión. Así el formulario solo envía el
+     * identificador de la sesión, nunca una ruta elegida por el cliente.
+     * @param id Sesión.
+     * @return Ruta del archivo guardado, o null si la sesión no existe o no se ha completado.
+     */
+    public String claim(String id) {
+        Session session = sessions.get(id);
+        if (session == null || session.storedPath == null) {
+            return null;
+        }
+        // Borrado condicional: si dos formularios recogen la misma sesión a la vez, solo uno se lleva la ruta
+        return sessions.remove(id, session) ? session.storedPath : null;
+    }
+
+
+    /**
+     * Descarta una sesión y su temporal.
+     * @param id Sesión.
+     * @return false si no existía.
+     */
+    public boolean abort(String id) {
+        Session session = sessions.get(id);
+        if (session == null) {
+            return false;
+        }
+        discard(session);
+        return true;
+    }
+
+
+    /**
+     * Copia el cuerpo de una parte a su posición del temporal con un búfer fijo, calculando su SHA-256.
+     * Si `data` es null solo se calcula el SHA-256. Nunca escribe más de `length` bytes.
+     *
+     * @return Bytes leídos del cuerpo (uno más de los esperados si sobran).
+     */
+    private static long copyChunk(InputStream body, MessageDigest digest, Path data, long position, long length) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long total = 0;
+        try (FileChannel channel = data == null ? null : FileChannel.open(data, StandardOpenOption.WRITE)) {
+            int read;
+            while (total <= length && (read = body.read(buffer, 0, (int) Math.min(buffer.length, length + 1 - total))) > 0) {
+                if (total + read > length) {
+                    return total + read;
+                }
+                digest.update(buffer, 0, read);
+                if (channel != null) {
+                    ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                    long offset = position + total;
+                    while (chunk.hasRemaining()) {
+                        offset += channel.write(chunk, offset);
+                    }
+                }
+                total += read;
+            }
+        }
+        return total;
+    }
+
+
+    private void expireSessions() {
+        Instant expiredBefore = Instant.now().minus(sessionTtl);
+        sessions.values().stream()
+                .filter(session -> session.lastActivity.isBefore(expiredBefore))
+                .forEach(session -> {
+                    logger.info("Upload session {} expired.", session.id);
+                    discard(session);
+                });
+    }
+
+    private void discard(Session session) {
+        sessions.remove(session.id, session);
+        boolean idle;
+        synchronized (session) {
+            session.closed = true;
+            idle = session.writing.isEmpty() && !session.completing;
+        }
+        // Si hay partes escribiéndose, la última en terminar borra el temporal (y si se está guardando, el guardado)
+        if (idle) {
+            deleteData(session);
+        }
+    }
+
+    private static void deleteData(Session session) {
+        try {
+            Files.deleteIfExists(session.data);
+        } catch (IOException e) {
+            logger.warn("Could not delete data of upload session {}: {}", session.id, e.getMessage());
+        }
+    }
+
+
+    /**
+     * Estado interno de una sesión. Los conjuntos de partes y el cierre se protegen con el monitor de la sesión.
+     */
+    private static final class Session {
+
+        private final String id;
+        private final String fileName;
+        private final long size;
+        private final long chunkSize;
+        private final int chunkCount;
+        private final Path data;
+        private final BitSet received = new BitSet();
+        private final BitSet writing = new BitSet();
+        // Completada, guardándose o descartada: no admite más partes
+        private boolean closed;
+        // El archivo reunido se está guardando
+        private boolean completing;
+        private volatile Instant lastActivity = Instant.now();
+        private volatile String storedPath;
+
+        private Session(String id, String fileName, long size, long chunkSize, Path data) {
+            this.id = id;
+            this.fileName = fileName;
+            this.size = size;
+            this.chunkSize = chunkSize;
+            this.chunkCount = (int) ((size + chunkSize - 1) / chunkSize);
+            this.data = data;
+        }
+
+        private synchronized UploadSessionStatus status() {
+            int contiguous = received.nextClearBit(0);
+            long offset = Math.min(size, contiguous * chunkSize);
+            return new UploadSessionStatus(id, fileName, size, chunkSize, chunkCount, received.cardinality(), offset,
+                    completing, storedPath != null);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services;
+
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.RecordComponent;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+
+/**
+ * Servicio que exporta las filas de un listado (proyecciones `record` del paquete dto) en CSV o NDJSON.
+ *
+ * Las filas se escriben directamente en el OutputStream de la respuesta según se leen del cursor
+ * de base de datos, sin construir ninguna lista, de modo que la memoria usada es constante
+ * independientemente del número de filas. Si el cliente acepta gzip la salida se comprime al vuelo.
+ */
+@Service
+public class ExportService {
+
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportService.class);
+
+
+    // Tamaño del buffer de escritura entre el cursor y la respuesta
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+
+    /**
+     * Formatos de exportación soportados.
+     */
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        /**
+         * Obtiene el formato a partir del parámetro de la petición (por defecto CSV).
+         * @param value Valor del parámetro `format`.
+         * @return Formato correspondiente.
+         */
+        public static Format of(String value) {
+            return "ndjson".equalsIgnoreCase(value) || "json".equalsIgnoreCase(value) ? NDJSON : CSV;
+        }
+    }
+
+
+    /**
+     * Escribe todas las filas del Stream en la respuesta HTTP y cierra el Stream.
+     *
+     * @param rows           Stream de filas abierto por el DAO (se cierra al terminar).
+     * @param rowType        Clase record de las filas, usada para la cabecera CSV.
+     * @param baseName       Nombre base del fichero descargado.
+     * @param format         Formato de salida.
+     * @param acceptEncoding Cabecera Accept-Encoding de la petición (puede ser null).
+     * @param response       Respuesta HTTP en la que se escribe.
+     * @param <T>            Tipo de las filas.
+     * @return Número de filas exportadas.
+     * @throws IOException Si falla la escritura en la respuesta.
+     */
+    public <T extends Record> long export(Stream<T> rows, Class<T> rowType, String baseName, Format format,
+                                          String acceptEncoding, HttpServletResponse response) throws IOException {
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+        response.setContentType(format.contentType);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + baseName + "." + format.extension + "\"");
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+
+        long count = 0;
+        try (rows) {
+            OutputStream out = gzip ? new GZIPOutputStream(response.getOutputStream(), BUFFER_SIZE) : response.getOutputStream();
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+            Iterator<T> iterator = rows.iterator();
+            if (format == Format.CSV) {
+                RecordComponent[] components = rowType.getRecordComponents();
+                writeCsvHeader(writer, components);
+                while (iterator.hasNext()) {
+                    writeCsvRow(writer, components, iterator.next());
+                    count++;
+                }
+            } else {
+                ObjectWriter jsonWriter = objectMapper.writerFor(rowType);
+                while (iterator.hasNext()) {
+                    writer.write(jsonWriter.writeValueAsString(iterator.next()));
+                    writer.write('\n');
+                    count++;
+                }
+            }
+            // Cerrar el writer vacía el buffer y, en su caso, escribe el final del flujo gzip
+            writer.close();
+        }
+        logger.info("Exportadas {} filas de {} en formato {} (gzip: {}).", count, baseName, format, gzip);
+        return count;
+    }
+
+
+    private void writeCsvHeader(Writer writer, RecordComponent[] components) throws IOException {
+        for (int i = 0; i < components.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(components[i].getName());
+        }
+        writer.write("\r\n");
+    }
+
+
+    private void writeCsvRow(Writer writer, RecordComponent[] components, Record row) throws IOException {
+        for (int i = 0; i < components.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            Object value = read(components[i].getAccessor(), row);
+            if (value != null) {
+                writer.write(escapeCsv(value.toString()));
+            }
+        }
+        writer.write("\r\n");
+    }
+
+
+    private Object read(Method accessor, Record row) {
+        try {
+            return accessor.invoke(row);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("No se pudo leer el campo " + accessor.getName(), e);
+        }
+    }
+
+
+    /**
+     * Escapa un valor según RFC 4180: se entrecomilla si contiene separadores, comillas o saltos de línea.
+     *
+     * @param value Valor a escapar.
+     * @return Valor listo para escribirse en el CSV.
+     */
+    private String escapeCsv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -2,94 +2,365 @@ package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services;
 
 
 
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.StoredFileDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.StoredFilesReleasedEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.UUID;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
 
 
+/**
+ * Servicio que guarda los archivos subidos en el {@link StorageBackend almacén} configurado.
+ *
+ * Los archivos no se cargan nunca enteros en memoria: se copian por canales a un archivo temporal del
+ * directorio de preparación del almacén, contando los bytes para cortar la copia si superan
+ * `app.uploads.max-size`, y después se entregan completos al almacén (en el local, un movimiento atómico).
+ * El tipo se decide por los primeros bytes del archivo, no por su nombre ni por la cabecera que envía el
+ * navegador.
+ *
+ * Cada archivo se guarda una sola vez por contenido: durante la copia se calcula su SHA-256 y se guarda en
+ * `ab/cd/<sha256>.<ext>`, con dos niveles de subdirectorios para que ningún directorio crezca demasiado.
+ * Subir un archivo que ya existe solo renueva su fila en `stored_files`. Los DAO cuentan ahí las referencias
+ * de las categorías y avisan con {@link StoredFilesReleasedEvent} al soltarlas; un archivo se borra cuando
+ * no le quedan referencias y hace más de `app.uploads.unreferenced-grace-period` que se subió por última vez.
+ * Los archivos antiguos, con nombre UUID en la raíz del almacén, se siguen sirviendo y borrando como antes.
+ *
+ * Tras guardar una imagen se encarga a {@link ImageVariantService} la generación de sus versiones reducidas,
+ * después de confirmar la transacción que la registra.
+ */
 @Service
 public class FileStorageService {
 
 
     private static final Logger logger = LoggerFactory.getLogger(FileStorageService.class);
 
+    // Bytes que se leen del principio del archivo para reconocer su tipo
+    private static final int SNIFF_LENGTH = 12;
 
-    // Variable de entorno para la ruta de almacenamiento
-    @Value("${UPLOAD_PATH}")
-    private String uploadPath;
+    // Extensión con la que se guarda cada tipo reconocido
+    private static final Map<String, String> EXTENSIONS = Map.of(
+            "image/jpeg", "jpg",
+            "image/png", "png",
+            "image/gif", "gif",
+            "image/webp", "webp",
+            "application/pdf", "pdf");
+
+
+    @Autowired
+    private StorageBackend storageBackend;
+
+    @Value("${app.uploads.max-size:20MB}")
+    private DataSize maxSize;
+
+    @Value("${app.uploads.allowed-types:image/jpeg,image/png,image/gif,image/webp}")
+    private Set<String> allowedTypes;
+
+    @Value("${app.uploads.unreferenced-grace-period:10m}")
+    private Duration unreferencedGracePeriod;
+
+    @Autowired
+    private StoredFileDAO storedFileDAO;
+
+    // Miniaturas y demás versiones de las imágenes, generadas en segundo plano
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    // Transacción propia para borrar archivos después de confirmar la que soltó sus referencias
+    private final TransactionTemplate deleteTransaction;
+
+
+    public FileStorageService(PlatformTransactionManager transactionManager) {
+        this.deleteTransaction = new TransactionTemplate(transactionManager);
+        this.deleteTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
 
 
     /**
-     * Guarda un archivo en el sistema de archivos y devuelve el nombre del archivo guardado.
+     * Guarda un archivo en el sistema de archivos y devuelve su ruta relativa al directorio de subidas.
+     * Si ya había un archivo con el mismo contenido se devuelve su ruta sin volver a escribirlo.
      *
      * @param file El archivo a guardar.
-     * @return El nombre del archivo guardado o null si ocurre un error.
+     * @return La ruta del archivo guardado o null si ocurre un error, si el archivo supera el tamaño
+     *         máximo o si su contenido no es de un tipo permitido.
      */
     public String saveFile(MultipartFile file) {
-        try {
-            // Generar un nombre único para el archivo
-            String fileExtension = getFileExtension(file.getOriginalFilename());
-            String uniqueFileName = UUID.randomUUID().toString() + "." + fileExtension;
+        try (InputStream in = file.getInputStream()) {
+            return save(in, file.getSize(), file.getOriginalFilename(), maxSize);
+        } catch (IOException e) {
+            logger.error("Error al leer el archivo subido {}: {}", file.getOriginalFilename(), e.getMessage());
+            return null;
+        }
+    }
 
 
-            // Ruta completa del archivo
-            Path filePath = Paths.get(uploadPath + File.separator + uniqueFileName);
+    /**
+     * Guarda un archivo ya completo en disco, como el que reúnen las subidas por partes. El archivo de
+     * origen no se modifica; el llamante lo borra.
+     *
+     * @param source       Archivo a guardar.
+     * @param originalName Nombre original, para los mensajes.
+     * @param limit        Tamaño máximo, que sustituye a `app.uploads.max-size`.
+     * @return La ruta del archivo guardado o null en los mismos casos que {@link #saveFile(MultipartFile)}.
+     */
+    public String saveFile(Path source, String originalName, DataSize limit) {
+        try (InputStream in = Files.newInputStream(source)) {
+            return save(in, Files.size(source), originalName, limit);
+        } catch (IOException e) {
+            logger.error("Error al leer el archivo {}: {}", originalName, e.getMessage());
+            return null;
+        }
+    }
 
 
-            // Crear los directorios si no existen
-            Files.createDirectories(filePath.getParent());
+    private String save(InputStream in, long declaredSize, String originalName, DataSize limit) {
+        // El tamaño declarado permite rechazar sin leer nada; la copia vuelve a comprobarlo
+        if (declaredSize > limit.toBytes()) {
+            logger.warn("Archivo {} rechazado: {} bytes superan el máximo de {}.", originalName, declaredSize, limit);
+            return null;
+        }
 
+        Path tempFile = null;
+        try {
+            // Reconocer el tipo por los primeros bytes
+            byte[] header = new byte[SNIFF_LENGTH];
+            int headerLength = in.readNBytes(header, 0, SNIFF_LENGTH);
+            String contentType = sniffContentType(Arrays.copyOf(header, headerLength));
+            if (contentType == null || !allowedTypes.contains(contentType)) {
+                logger.warn("Archivo {} rechazado: su contenido no es de ningún tipo permitido.", originalName);
+                return null;
+            }
 
-            // Guardar el archivo en la ruta
-            Files.write(filePath, file.getBytes());
+            // En el almacén local el temporal está en el mismo directorio y el movimiento final es atómico
+            tempFile = Files.createTempFile(storageBackend.stagingDirectory(), ".upload-", ".tmp");
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(header, 0, headerLength);
+            long size = copy(header, headerLength, new DigestInputStream(in, digest), tempFile, limit.toBytes());
+            if (size > limit.toBytes()) {
+                logger.warn("Archivo {} rechazado: supera el máximo de {}.", originalName, limit);
+                return null;
+            }
 
+            String hash = HexFormat.of().formatHex(digest.digest());
+            String relativePath = hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + "." + EXTENSIONS.get(contentType);
 
-            logger.info("Archivo {} guardado con éxito.", uniqueFileName);
-            return uniqueFileName; // Devolver el nombre del archivo para guardarlo en la base de datos
-        } catch (IOException e) {
+            // Registrar antes de guardar: si a la vez se está borrando un archivo igual, el registro espera a que
+            // termine ese borrado y este archivo se vuelve a escribir. La comprobación no usa la caché del almacén,
+            // que no se entera de los borrados de otros nodos
+            storedFileDAO.registerFile(relativePath, size, contentType);
+            if (storageBackend.statUncached(relativePath).isPresent()) {
+                logger.info("Archivo {} ya guardado, se reutiliza.", relativePath);
+            } else {
+                try {
+                    storageBackend.store(relativePath, tempFile, contentType);
+                } catch (IOException e) {
+                    unregister(relativePath);
+                    throw e;
+                }
+                logger.info("Archivo {} guardado con éxito ({} bytes).", relativePath, size);
+            }
+            // Si ya existía, solo se generan las versiones que falten
+            enqueueVariants(relativePath);
+            return relativePath; // Devolver la ruta del archivo para guardarla en la base de datos
+        } catch (IOException | NoSuchAlgorithmException e) {
             logger.error("Error al guardar el archivo: {}", e.getMessage());
             return null;
+        } finally {
+            if (tempFile != null) {
+                deleteQuietly(tempFile);
+            }
+        }
+    }
+
+
+    /**
+     * Quita del registro un archivo que no se ha podido guardar. Si no, su fila se quedaría sin referencias y sin
+     * archivo para siempre: el barrido recorre los archivos, no las filas. Si entretanto otra subida del mismo
+     * contenido lo ha guardado, la fila se conserva.
+     */
+    private void unregister(String relativePath) {
+        try {
+            deleteTransaction.executeWithoutResult(status -> {
+                if (!isStored(relativePath)) {
+                    // Con un segundo de margen: registered_at se guarda sin fracciones de segundo
+                    storedFileDAO.deleteUnreferenced(relativePath, LocalDateTime.now().plusSeconds(1));
+                }
+            });
+        } catch (RuntimeException e) {
+            logger.error("Error al quitar del registro el archivo {}: {}", relativePath, e.getMessage());
+        }
+    }
+
+    private boolean isStored(String relativePath) {
+        try {
+            return storageBackend.statUncached(relativePath).isPresent();
+        } catch (IOException e) {
+            // Si el almacén no responde se da por no guardado: una fila de menos solo deja el archivo al barrido
+            return false;
+        }
+    }
+
+
+    /**
+     * Encarga las versiones de la imagen cuando se confirme la transacción en curso, si la hay, como hacen los
+     * `@TransactionalEventListener`: si se deshace no se generan versiones de un archivo que nadie va a usar, y
+     * el hilo de fondo no empieza mientras la fila de `stored_files` sigue sin confirmar.
+     */
+    private void enqueueVariants(String relativePath) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    imageVariantService.enqueue(relativePath);
+                }
+            });
+        } else {
+            imageVariantService.enqueue(relativePath);
         }
     }
 
 
     /**
-     * Elimina un archivo del sistema de archivos.
+     * Borra los archivos que se han quedado sin referencias al confirmarse la transacción que las soltó.
      *
-     * @param fileName El nombre del archivo a eliminar.
+     * @param event Archivos cuyas referencias se han soltado.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStoredFilesReleased(StoredFilesReleasedEvent event) {
+        event.paths().stream().distinct().forEach(this::deleteFile);
+    }
+
+
+    /**
+     * Elimina un archivo del sistema de archivos si ya no lo usa ninguna categoría.
+     *
+     * @param fileName La ruta del archivo a eliminar, relativa al directorio de subidas.
      */
     public void deleteFile(String fileName) {
         try {
-            Path filePath = Paths.get(uploadPath, fileName);
-            Files.deleteIfExists(filePath);
-            logger.info("Archivo {} eliminado con éxito.", fileName);
-        } catch (IOException e) {
+            // Archivo antiguo con nombre UUID en la raíz: no se comparte con nadie
+            if (!fileName.contains("/")) {
+                storageBackend.delete(fileName);
+                logger.info("Archivo {} eliminado con éxito.", fileName);
+                return;
+            }
+            // El archivo se borra con la fila bloqueada, antes de confirmar
+            boolean deleted = Boolean.TRUE.equals(deleteTransaction.execute(status -> {
+                if (!storedFileDAO.deleteUnreferenced(fileName, LocalDateTime.now().minus(unreferencedGracePeriod))) {
+                    return false;
+                }
+                try {
+                    storageBackend.delete(fileName);
+                } catch (IOException e) {
+                    logger.warn("No se ha podido borrar {}: {}", fileName, e.getMessage());
+                }
+                imageVariantService.deleteVariants(fileName);
+                return true;
+            }));
+            if (deleted) {
+                logger.info("Archivo {} eliminado con éxito.", fileName);
+            } else {
+                logger.debug("Archivo {} en uso o subido recientemente, se conserva.", fileName);
+            }
+        } catch (IOException | RuntimeException e) {
             logger.error("Error al eliminar el archivo {}: {}", fileName, e.getMessage());
         }
     }
 
 
     /**
-     * Obtiene la extensión del archivo.
+     * Escribe la cabecera ya leída y copia el resto del flujo al archivo, sin pasar de un byte más del
+     * tamaño máximo. La copia usa un búfer temporal de tamaño fijo, así que la memoria no depende del
+     * tamaño del archivo.
      *
-     * @param fileName El nombre del archivo.
-     * @return La extensión del archivo o una cadena vacía si no tiene extensión.
+     * @return Bytes escritos; si superan el máximo, la copia se ha cortado.
      */
-    private String getFileExtension(String fileName) {
-        if (fileName != null && fileName.contains(".")) {
-            return fileName.substring(fileName.lastIndexOf(".") + 1);
-        } else {
-            return ""; // Sin extensión
+    private long copy(byte[] header, int headerLength, InputStream in, Path target, long limit) throws IOException {
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE);
+             ReadableByteChannel source = Channels.newChannel(in)) {
+            out.write(ByteBuffer.wrap(header, 0, headerLength));
+            long position = headerLength;
+            while (position <= limit) {
+                long transferred = out.transferFrom(source, position, limit + 1 - position);
+                if (transferred == 0) {
+                    break;
+                }
+                position += transferred;
+            }
+            return position;
+        }
+    }
+
+
+    /**
+     * Reconoce el tipo de un archivo por sus primeros bytes.
+     *
+     * @param header Primeros bytes del archivo.
+     * @return El tipo de contenido reconocido, o null si no se reconoce.
+     */
+    private String sniffContentType(byte[] header) {
+        if (startsWith(header, 0, 0xFF, 0xD8, 0xFF)) {
+            return "image/jpeg";
+        } else if (startsWith(header, 0, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return "image/png";
+        } else if (startsWith(header, 0, 'G', 'I', 'F', '8') && (startsWith(header, 4, '7', 'a') || startsWith(header, 4, '9', 'a'))) {
+            return "image/gif";
+        } else if (startsWith(header, 0, 'R', 'I', 'F', 'F') && startsWith(header, 8, 'W', 'E', 'B', 'P')) {
+            return "image/webp";
+        } else if (startsWith(header, 0, '%', 'P', 'D', 'F', '-')) {
+            return "application/pdf";
+        }
+        return null;
+    }
+
+
+    private static boolean startsWith(byte[] header, int offset, int... magic) {
+        if (header.length < offset + magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((header[offset + i] & 0xFF) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("No se ha podido borrar {}: {}", file, e.getMessage());
         }
     }
 }
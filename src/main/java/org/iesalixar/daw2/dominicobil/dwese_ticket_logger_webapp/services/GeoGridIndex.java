@@ -0,0 +1,305 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services;
+
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+/**
+ * Índice espacial en memoria para buscar las ubicaciones más cercanas a un punto.
+ *
+ * Divide el mapa en celdas de `cellDegrees` grados de latitud y longitud y guarda cada punto en su
+ * celda. Para buscar los k más cercanos recorre anillos de celdas alrededor del punto y se detiene en
+ * cuanto ninguna celda más lejana puede contener un punto más cerca que el k-ésimo encontrado, de modo
+ * que el coste depende de la densidad alrededor del punto y no del total de ubicaciones. Además de la
+ * rejilla general hay una por supermercado, para que filtrar por supermercado no obligue a descartar
+ * los puntos de los demás.
+ */
+public class GeoGridIndex {
+
+
+    // Radio medio de la Tierra en kilómetros
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+
+
+    /**
+     * Punto indexado.
+     */
+    private record Point(int id, int supermarketId, double latitude, double longitude) {
+    }
+
+
+    /**
+     * Ubicación encontrada y su distancia al punto buscado.
+     *
+     * @param id         ID de la ubicación.
+     * @param latitude   Latitud en grados.
+     * @param longitude  Longitud en grados.
+     * @param distanceKm Distancia en kilómetros.
+     */
+    public record Neighbour(int id, double latitude, double longitude, double distanceKm) {
+    }
+
+
+    /**
+     * Rejilla de celdas con sus puntos. La clave de cada celda combina su fila y su columna.
+     */
+    private static final class Grid {
+        private final Map<Long, List<Point>> cells = new HashMap<>();
+        private int size;
+
+        private void add(long cell, Point point) {
+            cells.computeIfAbsent(cell, c -> new ArrayList<>()).add(point);
+            size++;
+        }
+
+        private void remove(long cell, Point point) {
+            List<Point> points = cells.get(cell);
+            if (points != null && points.remove(point)) {
+                size--;
+                if (points.isEmpty()) {
+                    cells.remove(cell);
+                }
+            }
+        }
+    }
+
+
+    private final double cellDegrees;
+    private final int rows;
+    private final int columns;
+
+    private final Grid all = new Grid();
+    private final Map<Integer, Grid> bySupermarket = new HashMap<>();
+    private final Map<Integer, Point> points = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+
+    /**
+     * @param cellDegrees Lado de cada celda en grados.
+     */
+    public GeoGridIndex(double cellDegrees) {
+        if (!(cellDegrees > 0 && cellDegrees <= 90)) {
+            throw new IllegalArgumentException("cellDegrees must be in (0, 90]: " + cellDegrees);
+        }
+        this.cellDegrees = cellDegrees;
+        this.rows = (int) Math.ceil(180 / cellDegrees);
+        this.columns = (int) Math.ceil(360 / cellDegrees);
+    }
+
+
+    /**
+     * Añade una ubicación o la mueve si ya estaba indexada.
+     * @param id            ID de la ubicación.
+     * @param supermarketId ID de su supermercado.
+     * @param latitude      Latitud en grados.
+     * @param longitude     Longitud en grados.
+     */
+    public void put(int id, int supermarketId, double latitude, double longitude) {
+        Point point = new Point(id, supermarketId, latitude, longitude);
+        lock.writeLock().lock();
+        try {
+            unlink(points.put(id, point));
+            long cell = cell(row(latitude), column(longitude));
+            all.add(cell, point);
+            bySupermarket.computeIfAbsent(supermarketId, s -> new Grid()).add(cell, point);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Quita una ubicación del índice, si estaba.
+     * @param id ID de la ubicación.
+     */
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            unlink(points.remove(id));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Número de ubicaciones indexadas.
+     * @return Tamaño del índice.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return points.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * Busca las ubicaciones más cercanas a un punto.
+     * @param latitude      Latitud del punto en grados.
+     * @param longitude     Longitud del punto en grados.
+     * @param supermarketId ID del supermercado, o null para todos.
+     * @param limit         Número máximo de ubicaciones.
+     * @return Ubicaciones de la más cercana a la más lejana.
+     */
+    public List<Neighbour> nearest(double latitude, double longitude, Integer supermarketId, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Grid grid = supermarketId == null ? all : bySupermarket.get(supermarketId);
+            if (grid == null || grid.size == 0) {
+                return List.of();
+            }
+
+            // Montículo de los `limit` más cercanos: la cabeza es el más lejano de ellos
+            PriorityQueue<Neighbour> best = new PriorityQueue<>(limit + 1,
+                    Comparator.comparingDouble(Neighbour::distanceKm).reversed());
+            int centerRow = row(latitude);
+            int centerColumn = column(longitude);
+            int visited = 0;
+
+            for (int ring = 0; ; ring++) {
+                // Si el anillo ya abarca más celdas que las que tienen puntos, es más barato recorrerlas todas
+                long side = 2L * ring + 1;
+                if (ring > 0 && side * side > grid.cells.size()) {
+                    best.clear();
+                    for (List<Point> cellPoints : grid.cells.values()) {
+                        collect(cellPoints, latitude, longitude, limit, best);
+                    }
+                    break;
+                }
+                visited += visitRing(grid, centerRow, centerColumn, ring, latitude, longitude, limit, best);
+                if (visited >= grid.size) {
+                    break;
+                }
+                if (best.size() == limit && best.peek().distanceKm() <= distanceOutside(latitude, longitude, centerRow, centerColumn, ring)) {
+                    break;
+                }
+            }
+
+            List<Neighbour> result = new ArrayList<>(best);
+            result.sort(Comparator.comparingDouble(Neighbour::distanceKm));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * Distancia de círculo máximo (haversine) entre dos puntos.
+     * @return Distancia en kilómetros.
+     */
+    public static double distanceKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double dLat = Math.toRadians(latitude2 - latitude1);
+        double dLon = Math.toRadians(longitude2 - longitude1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+
+    /**
+     * Recorre las celdas del borde del anillo `ring` alrededor de la celda central.
+     * @return Número de puntos examinados.
+     */
+    private int visitRing(Grid grid, int centerRow, int centerColumn, int ring,
+                          double latitude, double longitude, int limit, PriorityQueue<Neighbour> best) {
+        int examined = 0;
+        for (int dRow = -ring; dRow <= ring; dRow++) {
+            int row = centerRow + dRow;
+            if (row < 0 || row >= rows) {
+                continue;
+            }
+            // En las filas interiores del anillo solo están en el borde la primera y la última columna
+            int step = Math.abs(dRow) == ring ? 1 : Math.max(1, 2 * ring);
+            for (int dColumn = -ring; dColumn <= ring; dColumn += step) {
+                List<Point> cellPoints = grid.cells.get(cell(row, Math.floorMod(centerColumn + dColumn, columns)));
+                if (cellPoints != null) {
+                    collect(cellPoints, latitude, longitude, limit, best);
+                    examined += cellPoints.size();
+                }
+            }
+        }
+        return examined;
+    }
+
+
+    private static void collect(List<Point> cellPoints, double latitude, double longitude, int limit,
+                                PriorityQueue<Neighbour> best) {
+        for (Point point : cellPoints) {
+            double distance = distanceKm(latitude, longitude, point.latitude(), point.longitude());
+            if (best.size() < limit) {
+                best.add(new Neighbour(point.id(), point.latitude(), point.longitude(), distance));
+            } else if (distance < best.peek().distanceKm()) {
+                best.poll();
+                best.add(new Neighbour(point.id(), point.latitude(), point.longitude(), distance));
+            }
+        }
+    }
+
+
+    /**
+     * Cota inferior de la distancia desde el punto a cualquier punto fuera del bloque de celdas ya
+     * recorrido: la menor de las distancias a sus bordes de latitud (paralelos) y de longitud (meridianos).
+     */
+    private double distanceOutside(double latitude, double longitude, int centerRow, int centerColumn, int ring) {
+        double minLatitude = (centerRow - ring) * cellDegrees - 90;
+        double maxLatitude = (centerRow + ring + 1) * cellDegrees - 90;
+        double latitudeMargin = Math.min(
+                minLatitude <= -90 ? Double.MAX_VALUE : latitude - minLatitude,
+                maxLatitude >= 90 ? Double.MAX_VALUE : maxLatitude - latitude);
+
+        double minLongitude = (centerColumn - ring) * cellDegrees - 180;
+        double maxLongitude = (centerColumn + ring + 1) * cellDegrees - 180;
+        double longitudeMargin = Math.min(longitude - minLongitude, maxLongitude - longitude);
+
+        double latitudeKm = EARTH_RADIUS_KM * Math.toRadians(latitudeMargin);
+        // Distancia al meridiano que está a `longitudeMargin` grados: asin(sin Δλ · cos φ)
+        double longitudeKm = longitudeMargin >= 90 ? Double.MAX_VALUE
+                : EARTH_RADIUS_KM * Math.asin(Math.sin(Math.toRadians(longitudeMargin)) * Math.cos(Math.toRadians(latitude)));
+        return Math.min(latitudeKm, longitudeKm);
+    }
+
+
+    private void unlink(Point point) {
+        if (point == null) {
+            return;
+        }
+        long cell = cell(row(point.latitude()), column(point.longitude()));
+        all.remove(cell, point);
+        Grid grid = bySupermarket.get(point.supermarketId());
+        if (grid != null) {
+            grid.remove(cell, point);
+            if (grid.size == 0) {
+                bySupermarket.remove(point.supermarketId());
+            }
+        }
+    }
+
+
+    private int row(double latitude) {
+        return Math.min(rows - 1, Math.max(0, (int) Math.floor((latitude + 90) / cellDegrees)));
+    }
+
+
+    private int column(double longitude) {
+        return Math.floorMod((int) Math.floor((longitude + 180) / cellDegrees), columns);
+    }
+
+
+    private long cell(int row, int column) {
+        return (long) row * columns + column;
+    }
+}
@@ -0,0 +1,33 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services;
+
+/**
+ * Versiones derivadas de una imagen subida. Cada una se ajusta a un cuadrado de `maxSize` píxeles
+ * de lado sin ampliar nunca la original, y se vuelve a comprimir como JPEG o PNG.
+ */
+public enum ImageVariant {
+
+    // Miniatura para las celdas de los listados (100 px, al doble para pantallas de alta densidad)
+    THUMBNAIL("thumb", 200),
+
+    // Tamaño intermedio para fichas y vistas previas
+    MEDIUM("medium", 800),
+
+    // Original recomprimida, limitada a un tamaño razonable para la web
+    OPTIMIZED("opt", 2048);
+
+    private final String suffix;
+    private final int maxSize;
+
+    ImageVariant(String suffix, int maxSize) {
+        this.suffix = suffix;
+        this.maxSize = maxSize;
+    }
+
+    public String getSuffix() {
+        return suffix;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+}
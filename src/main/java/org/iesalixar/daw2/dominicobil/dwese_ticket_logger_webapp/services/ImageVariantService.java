@@ -0,0 +1,301 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services;
+
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Servicio que genera en segundo plano las versiones derivadas de las imágenes subidas ({@link ImageVariant}):
+ * miniatura, tamaño medio y original recomprimida, con ImageIO del JDK.
+ *
+ * Cada imagen se procesa en un hilo virtual propio, pero solo `app.uploads.variants.concurrency` decodifican
+ * a la vez, porque una foto grande descomprimida ocupa decenas de megas; como mucho esperan
+ * `app.uploads.variants.max-pending` imágenes y las que no caben se quedan sin versiones. Las fotos grandes
+ * se decodifican ya reducidas (submuestreo), así que nunca se carga la imagen completa en memoria.
+ *
+ * Las versiones se guardan en el mismo almacén, junto a la original (`ab/cd/<sha256>.thumb.jpg`), y las
+ * plantillas las piden con {@link #url}, que devuelve la original mientras la versión no esté lista.
+ */
+@Service
+public class ImageVariantService {
+
+
+    // Logger para registrar eventos en esta clase
+    private static final Logger logger = LoggerFactory.getLogger(ImageVariantService.class);
+
+
+    @Autowired
+    private StorageBackend storageBackend;
+
+    @Value("${app.uploads.variants.jpeg-quality:0.82}")
+    private float jpegQuality;
+
+    @Value("${app.uploads.variants.max-pending:500}")
+    private int maxPending;
+
+    private final Semaphore decoders;
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("image-variants-", 0).factory());
+
+
+    public ImageVariantService(@Value("${app.uploads.variants.concurrency:2}") int concurrency) {
+        this.decoders = new Semaphore(concurrency);
+    }
+
+
+    /**
+     * Encola la generación de las versiones de una imagen ya guardada. Las versiones que ya existan no se
+     * vuelven a generar. Los tipos que ImageIO no sabe leer (WebP, PDF) se ignoran.
+     *
+     * @param path Ruta de la imagen, relativa al directorio de subidas.
+     * @return true si se ha encolado.
+     */
+    public boolean enqueue(String path) {
+        if (!supports(path)) {
+            return false;
+        }
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            logger.warn("Image variant queue full ({} pending), skipping {}", maxPending, path);
+            return false;
+        }
+        executor.execute(() -> {
+            try {
+                decoders.acquire();
+                try {
+                    generate(path);
+                } finally {
+                    decoders.release();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException | RuntimeException e) {
+                logger.error("Could not generate variants for {}: {}", path, e.getMessage());
+            } finally {
+                pending.decrementAndGet();
+            }
+        });
+        return true;
+    }
+
+
+    /**
+     * Ruta de la versión de una imagen si ya está generada, o de la original si todavía no lo está.
+     * Pensado para las plantillas: `@{'/uploads/' + ${@imageVariantService.url(category.image, 'THUMBNAIL')}}`.
+     *
+     * @param path    Ruta de la imagen original, relativa al directorio de subidas.
+     * @param variant Nombre de la versión ({@link ImageVariant}).
+     * @return Ruta relativa de la versión o de la original.
+     */
+    public String url(String path, String variant) {
+        if (path == null || !supports(path)) {
+            return path;
+        }
+        String variantPath = variantPath(path, ImageVariant.valueOf(variant));
+        try {
+            return storageBackend.exists(variantPath) ? variantPath : path;
+        } catch (IOException e) {
+            logger.debug("Could not check {} variant of {}: {}", variant, path, e.getMessage());
+            return path;
+        }
+    }
+
+
+    /**
+     * Borra las versiones de una imagen.
+     *
+     * @param path Ruta de la imagen original, relativa al directorio de subidas.
+     */
+    public void deleteVariants(String path) {
+        if (!supports(path)) {
+            return;
+        }
+        for (ImageVariant variant : ImageVariant.values()) {
+            try {
+                storageBackend.delete(variantPath(path, variant));
+            } catch (IOException e) {
+                logger.warn("Could not delete {} variant of {}: {}", variant, path, e.getMessage());
+            }
+        }
+    }
+
+
+    /**
+     * Ruta de una versión: la de la original con el sufijo de la versión y la extensión del formato de salida
+     * (JPEG para las fotos JPEG, PNG para el resto, que pueden tener transparencia).
+     */
+    static String variantPath(String path, ImageVariant variant) {
+        int dot = path.lastIndexOf('.');
+        String base = dot < 0 ? path : path.substring(0, dot);
+        return base + "." + variant.getSuffix() + "." + (isJpeg(path) ? "jpg" : "png");
+    }
+
+
+    void generate(String path) throws IOException {
+        long start = System.nanoTime();
+        boolean missing = false;
+        // Sin caché: otro nodo puede haber borrado la imagen y sus versiones
+        for (ImageVariant variant : ImageVariant.values()) {
+            missing |= storageBackend.statUncached(variantPath(path, variant)).isEmpty();
+        }
+        Optional<StorageBackend.ObjectInfo> source = storageBackend.statUncached(path);
+        if (!missing || source.isEmpty()) {
+            return;
+        }
+
+        BufferedImage image = null;
+        // De mayor a menor: cada versión se reduce a partir de la anterior
+        for (ImageVariant variant : new ImageVariant[]{ImageVariant.OPTIMIZED, ImageVariant.MEDIUM, ImageVariant.THUMBNAIL}) {
+            String target = variantPath(path, variant);
+            if (image == null) {
+                image = read(path, source.get().size(), variant.getMaxSize(), !isJpeg(path));
+                if (image == null) {
+                    logger.warn("No image reader for {}", path);
+                    return;
+                }
+            }
+            image = scale(image, variant.getMaxSize());
+            if (storageBackend.statUncached(target).isEmpty()) {
+                write(image, target);
+            }
+        }
+        logger.info("Generated variants for {} in {} ms", path, (System.nanoTime() - start) / 1_000_000);
+    }
+
+
+    /**
+     * Lee una imagen submuestreada para que su lado mayor quede entre `maxSize` y el doble.
+     */
+    private BufferedImage read(String path, long size, int maxSize, boolean alpha) throws IOException {
+        // En el almacén local se lee el archivo directamente, con acceso aleatorio y sin caché intermedia
+        Path root = storageBackend.localRoot();
+        try (InputStream stream = root == null ? storageBackend.read(path, 0, size) : null;
+             ImageInputStream in = ImageIO.createImageInputStream(root == null ? stream : root.resolve(path).toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int largest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, largest / maxSize);
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage decoded = reader.read(0, param);
+                return copy(decoded, decoded.getWidth(), decoded.getHeight(), alpha);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+
+    /**
+     * Reduce la imagen para que quepa en un cuadrado de `maxSize` píxeles, a mitades sucesivas y un último
+     * paso bilineal, que da casi la calidad de un filtro mejor a una fracción del coste.
+     */
+    private static BufferedImage scale(BufferedImage image, int maxSize) {
+        int largest = Math.max(image.getWidth(), image.getHeight());
+        if (largest <= maxSize) {
+            return image;
+        }
+        int targetWidth = Math.max(1, (int) ((long) image.getWidth() * maxSize / largest));
+        int targetHeight = Math.max(1, (int) ((long) image.getHeight() * maxSize / largest));
+        boolean alpha = image.getColorModel().hasAlpha();
+        BufferedImage current = image;
+        while (current.getWidth() / 2 >= targetWidth && current.getHeight() / 2 >= targetHeight) {
+            current = copy(current, current.getWidth() / 2, current.getHeight() / 2, alpha);
+        }
+        return copy(current, targetWidth, targetHeight, alpha);
+    }
+
+
+    private static BufferedImage copy(BufferedImage image, int width, int height, boolean alpha) {
+        BufferedImage target = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+
+    /**
+     * Escribe la versión en un temporal y la entrega completa al almacén, para que nunca se sirva a medio escribir.
+     */
+    private void write(BufferedImage image, String target) throws IOException {
+        String format = target.endsWith(".jpg") ? "jpeg" : "png";
+        Path tempFile = Files.createTempFile(storageBackend.stagingDirectory(), ".variant-", ".tmp");
+        try {
+            ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+            try (ImageOutputStream out = ImageIO.createImageOutputStream(tempFile.toFile())) {
+                writer.setOutput(out);
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                if (format.equals("jpeg")) {
+                    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                    param.setCompressionQuality(jpegQuality);
+                }
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+            storageBackend.store(target, tempFile, "image/" + format);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+
+    private static boolean supports(String path) {
+        String lower = path.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".jpg") || lower.endsWith(".jpeg") || lower.endsWith(".png") || lower.endsWith(".gif");
+    }
+
+    private static boolean isJpeg(String path) {
+        String lower = path.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".jpg") || lower.endsWith(".jpeg");
+    }
+
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,132 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services;
+
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Optional;
+
+
+/**
+ * Almacén de archivos en un directorio local (UPLOAD_PATH). Los temporales se preparan en el propio
+ * directorio, así que guardarlos es un movimiento atómico dentro del mismo sistema de archivos.
+ */
+public class LocalStorageBackend implements StorageBackend {
+
+
+    private final Path root;
+
+
+    public LocalStorageBackend(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+
+    @Override
+    public Path stagingDirectory() throws IOException {
+        return Files.createDirectories(root);
+    }
+
+    @Override
+    public void store(String path, Path source, String contentType) throws IOException {
+        Path target = resolve(path);
+        Files.createDirectories(target.getParent());
+        Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public Optional<ObjectInfo> stat(String path) throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(resolve(path), BasicFileAttributes.class);
+            return attributes.isRegularFile()
+                    ? Optional.of(new ObjectInfo(attributes.size(), attributes.lastModifiedTime().toInstant()))
+                    : Optional.empty();
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public boolean exists(String path) throws IOException {
+        return Files.isRegularFile(resolve(path));
+    }
+
+    @Override
+    public InputStream read(String path, long offset, long length) throws IOException {
+        return slice(resolve(path), offset, length);
+    }
+
+    @Override
+    public void delete(String path) throws IOException {
+        Files.deleteIfExists(resolve(path));
+    }
+
+    @Override
+    public Path localRoot() {
+        return root;
+    }
+
+
+    /**
+     * Flujo con un tramo de un archivo, leído por su canal sin cargarlo en memoria.
+     */
+    static InputStream slice(Path file, long offset, long length) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ).position(offset);
+        return new FilterInputStream(Channels.newInputStream(channel)) {
+            private long remaining = length;
+
+            @Override
+            public int read() throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int b = super.read();
+                if (b >= 0) {
+                    remaining--;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int off, int len) throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int n = super.read(buffer, off, (int) Math.min(len, remaining));
+                if (n > 0) {
+                    remaining -= n;
+                }
+                return n;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                long skipped = super.skip(Math.min(n, remaining));
+                remaining -= skipped;
+                return skipped;
+            }
+
+            @Override
+            public int available() throws IOException {
+                return (int) Math.min(super.available(), remaining);
+            }
+        };
+    }
+
+
+    private Path resolve(String path) throws IOException {
+        Path file = root.resolve(path).normalize();
+        if (!file.startsWith(root) || file.equals(root)) {
+            throw new IOException("Ruta fuera del almacén: " + path);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,241 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services;
+
+
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.EntityChangedEvent;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.LocationDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.LocationPoint;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.LocationRow;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.NearbyLocation;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Location;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+/**
+ * Servicio de búsqueda de las ubicaciones más cercanas a un punto ("supermercados cerca de mí").
+ *
+ * Las búsquedas se resuelven con un {@link GeoGridIndex} en memoria que se carga al arrancar con las
+ * coordenadas de todas las ubicaciones y se mantiene al día con los {@link EntityChangedEvent} de
+ * `Location`. Mientras el índice no está listo, la búsqueda va a la base de datos con un rectángulo
+ * alrededor del punto (índice `idx_locations_lat_lon`) que se agranda hasta reunir suficientes
+ * ubicaciones, y las distancias exactas se calculan aquí.
+ */
+@Service
+public class NearbyLocationService {
+
+
+    // Logger para registrar eventos en esta clase
+    private static final Logger logger = LoggerFactory.getLogger(NearbyLocationService.class);
+
+    // Kilómetros por grado de latitud
+    private static final double KM_PER_DEGREE = Math.toRadians(1) * GeoGridIndex.EARTH_RADIUS_KM;
+
+    // Radio inicial del rectángulo de la búsqueda en base de datos; se multiplica por 4 en cada intento
+    private static final double FIRST_BOX_RADIUS_KM = 10;
+
+    // Media circunferencia terrestre: ningún punto está más lejos
+    private static final double MAX_DISTANCE_KM = Math.PI * GeoGridIndex.EARTH_RADIUS_KM;
+
+    // Máximo de IDs por consulta IN al recargar coordenadas
+    private static final int RELOAD_CHUNK_SIZE = 1000;
+
+
+    @Autowired
+    private LocationDAO locationDAO;
+
+    private final TransactionTemplate reloadTransaction;
+
+    @Value("${app.geo.cell-degrees:0.05}")
+    private double cellDegrees;
+
+    @Value("${app.geo.max-results:100}")
+    private int maxResults;
+
+    // null hasta que termina la primera carga
+    private volatile GeoGridIndex index;
+
+    // Cambios recibidos mientras se carga el índice; null cuando no hay carga en curso
+    private List<EntityChangedEvent> pendingChanges;
+    private final Object buildLock = new Object();
+
+
+    public NearbyLocationService(PlatformTransactionManager transactionManager) {
+        // Como en la búsqueda global: transacción propia en el primario para ver lo recién confirmado
+        this.reloadTransaction = new TransactionTemplate(transactionManager);
+        this.reloadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+
+    /**
+     * Busca las ubicaciones más cercanas a un punto.
+     * @param latitude      Latitud del punto en grados.
+     * @param longitude     Longitud del punto en grados.
+     * @param supermarketId ID del supermercado, o null para todos.
+     * @param limit         Número de ubicaciones (como mucho `app.geo.max-results`).
+     * @return Ubicaciones de la más cercana a la más lejana.
+     */
+    public List<NearbyLocation> findNearest(double latitude, double longitude, Integer supermarketId, int limit) {
+        int k = Math.min(limit, maxResults);
+        GeoGridIndex current = index;
+        List<GeoGridIndex.Neighbour> neighbours = current != null
+                ? current.nearest(latitude, longitude, supermarketId, k)
+                : nearestInDatabase(latitude, longitude, supermarketId, k);
+        if (neighbours.isEmpty()) {
+            return List.of();
+        }
+
+        // Dirección, ciudad y nombres se leen al final, solo para las k ubicaciones encontradas
+        Map<Integer, LocationRow> rows = locationDAO.listLocationRowsByIds(neighbours.stream().map(GeoGridIndex.Neighbour::id).toList())
+                .stream().collect(Collectors.toMap(LocationRow::id, Function.identity()));
+        List<NearbyLocation> result = new ArrayList<>(neighbours.size());
+        for (GeoGridIndex.Neighbour neighbour : neighbours) {
+            LocationRow row = rows.get(neighbour.id());
+            if (row != null) {
+                result.add(new NearbyLocation(row.id(), row.address(), row.city(), row.provinceName(), row.supermarketName(),
+                        neighbour.latitude(), neighbour.longitude(), neighbour.distanceKm()));
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Carga el índice con las coordenadas de todas las ubicaciones y lo activa de una vez.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIndex() {
+        synchronized (buildLock) {
+            pendingChanges = new ArrayList<>();
+        }
+        GeoGridIndex fresh = new GeoGridIndex(cellDegrees);
+        boolean built = false;
+        List<EntityChangedEvent> changes;
+        try (Stream<LocationPoint> points = locationDAO.streamLocationPoints()) {
+            points.forEach(point -> fresh.put(point.id(), point.supermarketId(), point.latitude(), point.longitude()));
+            built = true;
+        } catch (RuntimeException e) {
+            logger.error("Could not build the nearby-location index: {}", e.getMessage());
+        } finally {
+            synchronized (buildLock) {
+                if (built) {
+                    index = fresh;
+                }
+                changes = pendingChanges;
+                pendingChanges = null;
+            }
+        }
+        GeoGridIndex current = index;
+        if (current != null) {
+            changes.forEach(change -> applySafely(current, change));
+        }
+        if (built) {
+            logger.info("Nearby-location index built with {} locations.", fresh.size());
+        }
+    }
+
+
+    /**
+     * Aplica al índice los cambios confirmados de ubicaciones.
+     * @param event Cambio publicado por un DAO.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (event.entityType() != Location.class) {
+            return;
+        }
+        GeoGridIndex current;
+        synchronized (buildLock) {
+            if (pendingChanges != null) {
+                pendingChanges.add(event);
+                return;
+            }
+            current = index;
+        }
+        if (current != null) {
+            applySafely(current, event);
+        }
+    }
+
+
+    private void applySafely(GeoGridIndex target, EntityChangedEvent event) {
+        try {
+            apply(target, event);
+        } catch (RuntimeException e) {
+            logger.error("Could not update the nearby-location index for locations {}: {}", event.ids(), e.getMessage());
+        }
+    }
+
+
+    private void apply(GeoGridIndex target, EntityChangedEvent event) {
+        if (event.deleted()) {
+            event.ids().forEach(target::remove);
+            return;
+        }
+        List<Integer> ids = List.copyOf(event.ids());
+        for (int from = 0; from < ids.size(); from += RELOAD_CHUNK_SIZE) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + RELOAD_CHUNK_SIZE, ids.size()));
+            List<LocationPoint> points = reloadTransaction.execute(status -> locationDAO.listLocationPointsByIds(chunk));
+            Set<Integer> found = new HashSet<>();
+            for (LocationPoint point : points) {
+                target.put(point.id(), point.supermarketId(), point.latitude(), point.longitude());
+                found.add(point.id());
+            }
+            // Las que ya no existen o se han quedado sin coordenadas salen del índice
+            chunk.stream().filter(id -> !found.contains(id)).forEach(target::remove);
+        }
+    }
+
+
+    /**
+     * Búsqueda sin índice: consulta rectángulos cada vez mayores hasta que contienen k ubicaciones
+     * dentro del radio del rectángulo, que son entonces las k más cercanas.
+     */
+    private List<GeoGridIndex.Neighbour> nearestInDatabase(double latitude, double longitude, Integer supermarketId, int k) {
+        for (double radiusKm = FIRST_BOX_RADIUS_KM; ; radiusKm *= 4) {
+            boolean wholeWorld = radiusKm >= MAX_DISTANCE_KM;
+            double latitudeDelta = radiusKm / KM_PER_DEGREE;
+            double cosLatitude = Math.cos(Math.toRadians(Math.min(89.9, Math.abs(latitude) + latitudeDelta)));
+            double longitudeDelta = radiusKm / (KM_PER_DEGREE * cosLatitude);
+            boolean allLongitudes = wholeWorld || latitudeDelta >= 90 || longitudeDelta >= 180
+                    || longitude - longitudeDelta < -180 || longitude + longitudeDelta > 180;
+            List<LocationPoint> points = locationDAO.listLocationPointsInBox(
+                    wholeWorld ? -90 : Math.max(-90, latitude - latitudeDelta),
+                    wholeWorld ? 90 : Math.min(90, latitude + latitudeDelta),
+                    allLongitudes ? -180 : longitude - longitudeDelta,
+                    allLongitudes ? 180 : longitude + longitudeDelta,
+                    supermarketId);
+            double limitKm = radiusKm;
+            List<GeoGridIndex.Neighbour> neighbours = points.stream()
+                    .map(point -> new GeoGridIndex.Neighbour(point.id(), point.latitude(), point.longitude(),
+                            GeoGridIndex.distanceKm(latitude, longitude, point.latitude(), point.longitude())))
+                    .filter(neighbour -> wholeWorld || neighbour.distanceKm() <= limitKm)
+                    .sorted(Comparator.comparingDouble(GeoGridIndex.Neighbour::distanceKm))
+                    .limit(k)
+                    .toList();
+            if (neighbours.size() == k || wholeWorld) {
+                logger.info("Nearby search answered from the database with a {} km box.", Math.round(radiusKm));
+                return neighbours;
+            }
+        }
+    }
+}
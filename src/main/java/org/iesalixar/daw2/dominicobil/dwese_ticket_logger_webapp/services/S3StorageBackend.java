@@ -0,0 +1,440 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * Almacén de archivos en un bucket compatible con S3 (AWS, MinIO, Ceph...), para que varios nodos de la
+ * aplicación compartan las mismas imágenes.
+ *
+ * Usa el cliente HTTP del JDK con firma AWS Signature V4 y direcciones de tipo `endpoint/bucket/clave`, que
+ * admiten todos los servicios compatibles. Los archivos de más de `multipart-threshold` se suben por partes
+ * de `part-size`, hasta `upload-concurrency` a la vez, leyendo cada parte directamente del temporal; si una
+ * parte falla se aborta la subida para no dejar partes huérfanas en el bucket. Las lecturas piden solo el
+ * tramo necesario (cabecera Range) y lo devuelven en streaming.
+ *
+ * Los archivos no cambian de contenido, así que se recuerda el tamaño de los que ya se han consultado y las
+ * plantillas no hacen una petición HEAD por cada miniatura. Los que no existen se recuerdan solo
+ * `MISSING_TTL`, porque mientras se generan las versiones de una imagen se preguntan en cada página; otro nodo
+ * puede borrar un archivo sin que esta caché se entere, así que antes de reutilizar uno se comprueba con
+ * {@link #statUncached}.
+ */
+public class S3StorageBackend implements StorageBackend {
+
+
+    // Logger para registrar eventos en esta clase
+    private static final Logger logger = LoggerFactory.getLogger(S3StorageBackend.class);
+
+    private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+    private static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    private static final String EMPTY_PAYLOAD = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+    private static final Pattern UPLOAD_ID = Pattern.compile("<UploadId>([^<]+)</UploadId>");
+
+    // Entradas máximas de la caché de archivos consultados antes de vaciarla
+    private static final int MAX_KNOWN_OBJECTS = 10_000;
+
+    // Tiempo que se recuerda que un archivo no existe
+    private static final long MISSING_TTL_NANOS = Duration.ofSeconds(30).toNanos();
+
+
+    private final URI endpoint;
+    private final String region;
+    private final String bucket;
+    private final String accessKey;
+    private final String secretKey;
+    private final Path stagingDirectory;
+    private final long multipartThreshold;
+    private final long partSize;
+
+    private final HttpClient httpClient;
+    private final ExecutorService uploadExecutor;
+    private final Map<String, ObjectInfo> knownObjects = new ConcurrentHashMap<>();
+    // Archivos que no existían, con el momento (System.nanoTime) en que caduca la respuesta
+    private final Map<String, Long> missingObjects = new ConcurrentHashMap<>();
+
+
+    /**
+     * @param endpoint           URL del servicio, por ejemplo `http://localhost:9000`.
+     * @param region             Región con la que se firman las peticiones.
+     * @param bucket             Bucket, ya creado.
+     * @param accessKey          Clave de acceso.
+     * @param secretKey          Clave secreta.
+     * @param stagingDirectory   Directorio local de los temporales.
+     * @param multipartThreshold Tamaño a partir del cual se sube por partes.
+     * @param partSize           Tamaño de cada parte (S3 exige al menos 5 MB salvo en la última).
+     * @param uploadConcurrency  Partes que se suben a la vez.
+     */
+    public S3StorageBackend(URI endpoint, String region, String bucket, String accessKey, String secretKey,
+                            Path stagingDirectory, long multipartThreshold, long partSize, int uploadConcurrency) {
+        this.endpoint = URI.create(endpoint.toString().replaceAll("/+$", ""));
+        this.region = region;
+        this.bucket = bucket;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.stagingDirectory = stagingDirectory;
+        this.multipartThreshold = multipartThreshold;
+        this.partSize = partSize;
+        this.httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.uploadExecutor = Executors.newFixedThreadPool(uploadConcurrency, runnable -> {
+            Thread thread = new Thread(runnable, "s3-upload-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+
+    @Override
+    public Path stagingDirectory() throws IOException {
+        return Files.createDirectories(stagingDirectory);
+    }
+
+    @Override
+    public void store(String path, Path source, String contentType) throws IOException {
+        long size = Files.size(source);
+        long start = System.nanoTime();
+        if (size <= multipartThreshold) {
+            HttpResponse<String> response = send(request("PUT", path, Map.of(), UNSIGNED_PAYLOAD)
+                    .header("Content-Type", contentType)
+                    .PUT(HttpRequest.BodyPublishers.ofFile(source)));
+            expect(response, "PUT " + path, 200);
+        } else {
+            storeMultipart(path, source, size, contentType);
+        }
+        knownObjects.remove(path);
+        missingObjects.remove(path);
+        logger.debug("Stored {} in bucket {} ({} bytes, {} ms)", path, bucket, size, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Override
+    public Optional<ObjectInfo> stat(String path) throws IOException {
+        ObjectInfo known = knownObjects.get(path);
+        if (known != null) {
+            return Optional.of(known);
+        }
+        Long missingUntil = missingObjects.get(path);
+        if (missingUntil != null && missingUntil - System.nanoTime() > 0) {
+            return Optional.empty();
+        }
+        return statUncached(path);
+    }
+
+    @Override
+    public Optional<ObjectInfo> statUncached(String path) throws IOException {
+        HttpResponse<String> response = send(request("HEAD", path, Map.of(), EMPTY_PAYLOAD)
+                .method("HEAD", HttpRequest.BodyPublishers.noBody()));
+        if (response.statusCode() == 404) {
+            knownObjects.remove(path);
+            rememberMissing(path);
+            return Optional.empty();
+        }
+        expect(response, "HEAD " + path, 200);
+        long size = response.headers().firstValueAsLong("Content-Length").orElse(0);
+        Instant lastModified = response.headers().firstValue("Last-Modified")
+                .map(value -> ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant())
+                .orElse(Instant.EPOCH);
+        ObjectInfo info = new ObjectInfo(size, lastModified);
+        if (knownObjects.size() >= MAX_KNOWN_OBJECTS) {
+            knownObjects.clear();
+        }
+        knownObjects.put(path, info);
+        missingObjects.remove(path);
+        return Optional.of(info);
+    }
+
+    @Override
+    public InputStream read(String path, long offset, long length) throws IOException {
+        HttpRequest request = request("GET", path, Map.of("range", "bytes=" + offset + "-" + (offset + length - 1)), EMPTY_PAYLOAD)
+                .GET()
+                .build();
+        try {
+            HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            if (response.statusCode() != 200 && response.statusCode() != 206) {
+                response.body().close();
+                throw new IOException("GET " + path + " failed with status " + response.statusCode());
+            }
+            return response.body();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("GET " + path + " interrupted");
+        }
+    }
+
+    @Override
+    public void delete(String path) throws IOException {
+        knownObjects.remove(path);
+        HttpResponse<String> response = send(request("DELETE", path, Map.of(), EMPTY_PAYLOAD).DELETE());
+        expect(response, "DELETE " + path, 204, 200, 404);
+        rememberMissing(path);
+    }
+
+    @Override
+    public Path localRoot() {
+        return null;
+    }
+
+    @Override
+    public void close() {
+        uploadExecutor.shutdownNow();
+    }
+
+
+    private void rememberMissing(String path) {
+        if (missingObjects.size() >= MAX_KNOWN_OBJECTS) {
+            missingObjects.clear();
+        }
+        missingObjects.put(path, System.nanoTime() + MISSING_TTL_NANOS);
+    }
+
+
+    /**
+     * Sube un archivo por partes en paralelo: inicia la subida, envía las partes y la completa con la lista
+     * de ETags en orden. Si algo falla, la aborta.
+     */
+    private void storeMultipart(String path, Path source, long size, String contentType) throws IOException {
+        HttpResponse<String> created = send(request("POST", path + "?uploads=", Map.of(), EMPTY_PAYLOAD)
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.noBody()));
+        expect(created, "CreateMultipartUpload " + path, 200);
+        Matcher matcher = UPLOAD_ID.matcher(created.body());
+        if (!matcher.find()) {
+            throw new IOException("CreateMultipartUpload " + path + " returned no UploadId");
+        }
+        String uploadId = matcher.group(1);
+
+        int partCount = (int) ((size + partSize - 1) / partSize);
+        List<CompletableFuture<String>> parts = new ArrayList<>(partCount);
+        for (int part = 1; part <= partCount; part++) {
+            long offset = (part - 1) * partSize;
+            long length = Math.min(partSize, size - offset);
+            String query = "?partNumber=" + part + "&uploadId=" + encode(uploadId, true);
+            parts.add(CompletableFuture.supplyAsync(() -> uploadPart(path + query, source, offset, length), uploadExecutor));
+        }
+        try {
+            StringBuilder body = new StringBuilder("<CompleteMultipartUpload>");
+            for (int part = 1; part <= partCount; part++) {
+                body.append("<Part><PartNumber>").append(part).append("</PartNumber><ETag>")
+                        .append(parts.get(part - 1).join()).append("</ETag></Part>");
+            }
+            body.append("</CompleteMultipartUpload>");
+            HttpResponse<String> completed = send(request("POST", path + "?uploadId=" + encode(uploadId, true), Map.of(), UNSIGNED_PAYLOAD)
+                    .header("Content-Type", "application/xml")
+                    .POST(HttpRequest.BodyPublishers.ofString(body.toString())));
+            // S3 puede responder 200 con un error en el cuerpo si falla al unir las partes
+            expect(completed, "CompleteMultipartUpload " + path, 200);
+            if (completed.body().contains("<Error>")) {
+                throw new IOException("CompleteMultipartUpload " + path + " failed: " + completed.body());
+            }
+            logger.debug("Multipart upload of {} completed in {} parts", path, partCount);
+        } catch (CompletionException | IOException e) {
+            parts.forEach(part -> part.cancel(true));
+            abortQuietly(path, uploadId);
+            if (e.getCause() instanceof UncheckedIOException unchecked) {
+                throw unchecked.getCause();
+            }
+            throw e instanceof IOException io ? io : new IOException("Multipart upload of " + path + " failed", e.getCause());
+        }
+    }
+
+    private String uploadPart(String pathAndQuery, Path source, long offset, long length) {
+        try {
+            HttpResponse<String> response = send(request("PUT", pathAndQuery, Map.of(), UNSIGNED_PAYLOAD)
+                    .PUT(HttpRequest.BodyPublishers.fromPublisher(HttpRequest.BodyPublishers.ofInputStream(() -> {
+                        try {
+                            return LocalStorageBackend.slice(source, offset, length);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }), length)));
+            expect(response, "UploadPart " + pathAndQuery, 200);
+            return response.headers().firstValue("ETag")
+                    .orElseThrow(() -> new IOException("UploadPart " + pathAndQuery + " returned no ETag"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void abortQuietly(String path, String uploadId) {
+        try {
+            send(request("DELETE", path + "?uploadId=" + encode(uploadId, true), Map.of(), EMPTY_PAYLOAD).DELETE());
+        } catch (IOException e) {
+            logger.warn("Could not abort multipart upload {} of {}: {}", uploadId, path, e.getMessage());
+        }
+    }
+
+
+    private HttpResponse<String> send(HttpRequest.Builder builder) throws IOException {
+        try {
+            return httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("S3 request interrupted");
+        }
+    }
+
+    private static void expect(HttpResponse<String> response, String operation, int... statuses) throws IOException {
+        for (int status : statuses) {
+            if (response.statusCode() == status) {
+                return;
+            }
+        }
+        throw new IOException(operation + " failed with status " + response.statusCode() + ": " + response.body());
+    }
+
+
+    /**
+     * Prepara una petición firmada para una clave del bucket.
+     *
+     * @param method      Método HTTP.
+     * @param keyAndQuery Clave, con la consulta detrás si la lleva (`clave?uploads=`).
+     * @param headers     Cabeceras adicionales que se firman (en minúsculas).
+     * @param payloadHash SHA-256 del cuerpo, o UNSIGNED-PAYLOAD.
+     */
+    private HttpRequest.Builder request(String method, String keyAndQuery, Map<String, String> headers, String payloadHash) {
+        int question = keyAndQuery.indexOf('?');
+        String key = question < 0 ? keyAndQuery : keyAndQuery.substring(0, question);
+        String query = question < 0 ? "" : keyAndQuery.substring(question + 1);
+        String canonicalUri = endpoint.getRawPath() + "/" + encode(bucket, true) + "/" + encode(key, false);
+        String canonicalQuery = canonicalQuery(query);
+        String host = endpoint.getPort() < 0 ? endpoint.getHost() : endpoint.getHost() + ":" + endpoint.getPort();
+        String amzDate = AMZ_DATE.format(ZonedDateTime.now(ZoneOffset.UTC));
+
+        Map<String, String> signed = new TreeMap<>(headers);
+        signed.put("host", host);
+        signed.put("x-amz-content-sha256", payloadHash);
+        signed.put("x-amz-date", amzDate);
+        String authorization = authorization(method, canonicalUri, canonicalQuery, signed, payloadHash, amzDate,
+                region, accessKey, secretKey);
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(endpoint.getScheme() + "://" + host + canonicalUri
+                        + (canonicalQuery.isEmpty() ? "" : "?" + canonicalQuery)))
+                .timeout(Duration.ofMinutes(5))
+                .header("Authorization", authorization);
+        signed.forEach((name, value) -> {
+            if (!name.equals("host")) {
+                builder.header(name, value);
+            }
+        });
+        return builder;
+    }
+
+
+    /**
+     * Cabecera Authorization de AWS Signature V4 para S3.
+     *
+     * @param signedHeaders Cabeceras firmadas, en minúsculas y ordenadas; incluye `host` y `x-amz-date`.
+     */
+    static String authorization(String method, String canonicalUri, String canonicalQuery, Map<String, String> signedHeaders,
+                                String payloadHash, String amzDate, String region, String accessKey, String secretKey) {
+        StringBuilder canonicalHeaders = new StringBuilder();
+        signedHeaders.forEach((name, value) -> canonicalHeaders.append(name).append(':').append(value.trim()).append('\n'));
+        String signedHeaderNames = String.join(";", signedHeaders.keySet());
+        String canonicalRequest = method + "\n" + canonicalUri + "\n" + canonicalQuery + "\n"
+                + canonicalHeaders + "\n" + signedHeaderNames + "\n" + payloadHash;
+
+        String date = amzDate.substring(0, 8);
+        String scope = date + "/" + region + "/s3/aws4_request";
+        String stringToSign = ALGORITHM + "\n" + amzDate + "\n" + scope + "\n" + sha256Hex(canonicalRequest);
+
+        byte[] key = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), date);
+        key = hmac(key, region);
+        key = hmac(key, "s3");
+        key = hmac(key, "aws4_request");
+        String signature = HexFormat.of().formatHex(hmac(key, stringToSign));
+        return ALGORITHM + " Credential=" + accessKey + "/" + scope + ", SignedHeaders=" + signedHeaderNames
+                + ", Signature=" + signature;
+    }
+
+
+    private static String canonicalQuery(String query) {
+        if (query.isEmpty()) {
+            return "";
+        }
+        Map<String, String> parameters = new TreeMap<>();
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            String name = equals < 0 ? parameter : parameter.substring(0, equals);
+            String value = equals < 0 ? "" : parameter.substring(equals + 1);
+            // Los valores ya llegan codificados
+            parameters.put(encode(name, true), value);
+        }
+        StringBuilder canonical = new StringBuilder();
+        parameters.forEach((name, value) -> canonical.append(canonical.isEmpty() ? "" : "&").append(name).append('=').append(value));
+        return canonical.toString();
+    }
+
+
+    /**
+     * Codificación URI de S3: todo salvo letras, dígitos y `-_.~`, y la barra si no es un valor de consulta.
+     */
+    static String encode(String value, boolean encodeSlash) {
+        StringBuilder encoded = new StringBuilder();
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '~' || (c == '/' && !encodeSlash)) {
+                encoded.append(c);
+            } else {
+                encoded.append('%').append(String.format("%02X", b & 0xFF));
+            }
+        }
+        return encoded.toString();
+    }
+
+    private static String sha256Hex(String value) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String value) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(value.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services;
+
+
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.SearchResult;
+
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+
+/**
+ * Índice invertido en memoria para la búsqueda global.
+ *
+ * El texto se normaliza (minúsculas y sin tildes) y cada palabra se parte en trigramas, más grams de
+ * inicio de palabra para las consultas de una o dos letras, de modo que "se", "villa" o "Cadiz"
+ * encuentran "Sevilla" y "Cádiz" sin recorrer ninguna tabla. Cada documento guarda sus grams para poder quitarlo del índice al
+ * actualizarlo o borrarlo. Las lecturas pueden ir en paralelo; las escrituras son exclusivas.
+ */
+public class SearchIndex {
+
+
+    // Fracción mínima del peso de la consulta que debe coincidir para devolver un documento
+    private static final double MIN_COVERAGE = 0.5;
+
+    // Extra máximo por coincidencia literal con el título (ver bonus)
+    private static final double MAX_BONUS = 1.0;
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+
+    // Ante igual relevancia, orden alfabético del título
+    private static final Comparator<SearchResult> RANKING = Comparator.comparingDouble(SearchResult::score)
+            .thenComparing(SearchResult::title, Comparator.reverseOrder());
+
+
+    /**
+     * Documento indexado. La igualdad es por identidad, ya que se guarda en los conjuntos de postings.
+     */
+    private static final class Document {
+        private final SearchResult result;
+        private final String normalizedTitle;
+        private final String normalizedText;
+        private final Set<String> grams;
+
+        private Document(SearchResult result, String normalizedTitle, String normalizedText, Set<String> grams) {
+            this.result = result;
+            this.normalizedTitle = normalizedTitle;
+            this.normalizedText = normalizedText;
+            this.grams = grams;
+        }
+    }
+
+
+    private final Map<String, Document> documents = new HashMap<>();
+    private final Map<String, Set<Document>> postings = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+
+    /**
+     * Añade un documento o lo sustituye si ya estaba indexado.
+     * @param type     Tipo de entidad.
+     * @param id       ID de la entidad.
+     * @param title    Texto principal.
+     * @param subtitle Texto secundario o null.
+     * @param url      Enlace a la entidad.
+     */
+    public void put(String type, int id, String title, String subtitle, String url) {
+        String normalizedTitle = normalize(title);
+        String normalizedText = subtitle == null ? normalizedTitle : normalizedTitle + " " + normalize(subtitle);
+        Document document = new Document(new SearchResult(type, id, title == null ? "" : title, subtitle, url, 0),
+                normalizedTitle, normalizedText, grams(normalizedText));
+        lock.writeLock().lock();
+        try {
+            unlink(documents.put(key(type, id), document));
+            for (String gram : document.grams) {
+                postings.computeIfAbsent(gram, g -> new LinkedHashSet<>()).add(document);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Quita un documento del índice, si estaba.
+     * @param type Tipo de entidad.
+     * @param id   ID de la entidad.
+     */
+    public void remove(String type, int id) {
+        lock.writeLock().lock();
+        try {
+            unlink(documents.remove(key(type, id)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Número de documentos indexados.
+     * @return Tamaño del índice.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * Busca los documentos más relevantes para una consulta.
+     *
+     * Cada gram de la consulta pesa según lo raro que es en el índice (idf), y un documento puntúa
+     * con la fracción del peso total que contiene. Se suma un extra si el título empieza por la
+     * consulta o la contiene literalmente, para que las coincidencias exactas queden arriba.
+     *
+     * Los grams se recorren del más raro al más común y los candidatos salen solo de los postings de
+     * los raros: un documento que no tiene ninguno de ellos no puede llegar a la cobertura mínima, así
+     * que los postings de los grams comunes nunca se recorren, solo se consultan. Además, un candidato
+     * que aparece por primera vez en el posting i no contiene los grams anteriores, lo que acota su
+     * puntuación; en cuanto hay `limit` resultados que ningún candidato restante puede superar, se para.
+     *
+     * @param query Texto buscado.
+     * @param limit Número máximo de resultados.
+     * @return Resultados ordenados de más a menos relevante.
+     */
+    public List<SearchResult> search(String query, int limit) {
+        String normalizedQuery = normalize(query);
+        Set<String> queryGrams = queryGrams(normalizedQuery);
+        if (queryGrams.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            double totalDocuments = documents.size();
+            List<Set<Document>> gramPostings = new ArrayList<>(queryGrams.size());
+            for (String gram : queryGrams) {
+                gramPostings.add(postings.getOrDefault(gram, Set.of()));
+            }
+            gramPostings.sort(Comparator.comparingInt(Set::size));
+            double[] weights = new double[gramPostings.size()];
+            double totalWeight = 0;
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] = Math.log(1 + totalDocuments / Math.max(1, gramPostings.get(i).size()));
+                totalWeight += weights[i];
+            }
+
+            // Montículo de los `limit` mejores: la cabeza es el peor de los que se quedan
+            PriorityQueue<SearchResult> best = new PriorityQueue<>(limit + 1, RANKING);
+            Set<Document> seen = new HashSet<>();
+            // Peso de los grams cuyos postings aún no se han recorrido: la cobertura máxima de un candidato nuevo
+            double remainingWeight = totalWeight;
+            for (int i = 0; i < gramPostings.size(); i++) {
+                double maxCoverage = remainingWeight / totalWeight;
+                if (maxCoverage < MIN_COVERAGE
+                        || (best.size() == limit && best.peek().score() > maxCoverage + MAX_BONUS)) {
+                    break;
+                }
+                for (Document document : gramPostings.get(i)) {
+                    if (!seen.add(document)) {
+                        continue;
+                    }
+                    // El documento no está en los postings anteriores (se habría visto); se miran los siguientes
+                    double matchedWeight = weights[i];
+                    for (int j = i + 1; j < gramPostings.size(); j++) {
+                        if (gramPostings.get(j).contains(document)) {
+                            matchedWeight += weights[j];
+                        }
+                    }
+                    double coverage = matchedWeight / totalWeight;
+                    if (coverage < MIN_COVERAGE) {
+                        continue;
+                    }
+                    double score = coverage + bonus(document, normalizedQuery);
+                    SearchResult result = document.result;
+                    best.add(new SearchResult(result.type(), result.id(), result.title(), result.subtitle(), result.url(), score));
+                    if (best.size() > limit) {
+                        best.poll();
+                    }
+                }
+                remainingWeight -= weights[i];
+            }
+
+            List<SearchResult> results = new ArrayList<>(best);
+            results.sort(RANKING.reversed());
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * Pasa un texto a minúsculas, sin tildes ni signos, con las palabras separadas por un espacio.
+     * @param text Texto original (puede ser null).
+     * @return Texto normalizado.
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String withoutMarks = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return NON_ALPHANUMERIC.matcher(withoutMarks.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+
+    /**
+     * Calcula los grams que se indexan de un texto normalizado: por cada palabra, su primera letra y
+     * sus dos primeras letras marcadas como inicio ("^s", "^se") y todos sus trigramas ("sev", "evi"...).
+     * @param normalizedText Texto ya normalizado.
+     * @return Grams sin repetir.
+     */
+    static Set<String> grams(String normalizedText) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (String word : normalizedText.split(" ")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            grams.add("^" + word.substring(0, 1));
+            if (word.length() > 1) {
+                grams.add("^" + word.substring(0, 2));
+            }
+            for (int i = 0; i + 3 <= word.length(); i++) {
+                grams.add(word.substring(i, i + 3));
+            }
+        }
+        return grams;
+    }
+
+
+    /**
+     * Calcula los grams de una consulta: los trigramas de cada palabra, de modo que también encuentra
+     * texto en mitad de una palabra, o el gram de inicio si la palabra tiene menos de tres letras.
+     * @param normalizedQuery Consulta ya normalizada.
+     * @return Grams sin repetir.
+     */
+    static Set<String> queryGrams(String normalizedQuery) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (String word : normalizedQuery.split(" ")) {
+            if (word.length() >= 3) {
+                for (int i = 0; i + 3 <= word.length(); i++) {
+                    grams.add(word.substring(i, i + 3));
+                }
+            } else if (!word.isEmpty()) {
+                grams.add("^" + word);
+            }
+        }
+        return grams;
+    }
+
+
+    private static double bonus(Document document, String normalizedQuery) {
+        if (document.normalizedTitle.startsWith(normalizedQuery)) {
+            return MAX_BONUS;
+        }
+        if (document.normalizedTitle.contains(normalizedQuery)) {
+            return 0.5;
+        }
+        return document.normalizedText.contains(normalizedQuery) ? 0.25 : 0;
+    }
+
+
+    private void unlink(Document document) {
+        if (document == null) {
+            return;
+        }
+        for (String gram : document.grams) {
+            Set<Document> posting = postings.get(gram);
+            if (posting != null && posting.remove(document) && posting.isEmpty()) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+
+    private static String key(String type, int id) {
+        return type + ":" + id;
+    }
+}
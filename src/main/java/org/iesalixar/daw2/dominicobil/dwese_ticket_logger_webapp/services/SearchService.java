@@ -0,0 +1,314 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services;
+
+
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.CategoryDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.EntityChangedEvent;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.LocationDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.ProvinceDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.RegionDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.SupermarketDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.CategoryRow;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.LocationRow;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.ProvinceRow;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.RegionRow;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.SearchResult;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.SupermarketRow;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Category;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Location;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Province;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Region;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Supermarket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+
+/**
+ * Servicio de búsqueda global sobre regiones, provincias, supermercados, ubicaciones y categorías.
+ *
+ * Las consultas se resuelven contra un {@link SearchIndex} en memoria, sin ningún LIKE sobre la base
+ * de datos. El índice se construye al arrancar recorriendo cada tabla una vez con los streams de los
+ * DAO y después se mantiene con los {@link EntityChangedEvent} que publican los DAO: tras cada commit
+ * se vuelven a leer solo las filas afectadas (o se quitan si se han borrado) y, como los subtítulos
+ * copian el nombre de la entidad padre, también sus dependientes directos.
+ */
+@Service
+public class SearchService {
+
+
+    // Logger para registrar eventos en esta clase
+    private static final Logger logger = LoggerFactory.getLogger(SearchService.class);
+
+    public static final String REGION = "region";
+    public static final String PROVINCE = "province";
+    public static final String SUPERMARKET = "supermarket";
+    public static final String LOCATION = "location";
+    public static final String CATEGORY = "category";
+
+    // Máximo de IDs por consulta IN al recargar filas
+    private static final int RELOAD_CHUNK_SIZE = 1000;
+
+
+    @Autowired
+    private RegionDAO regionDAO;
+
+    @Autowired
+    private ProvinceDAO provinceDAO;
+
+    @Autowired
+    private SupermarketDAO supermarketDAO;
+
+    @Autowired
+    private LocationDAO locationDAO;
+
+    @Autowired
+    private CategoryDAO categoryDAO;
+
+    private final TransactionTemplate reloadTransaction;
+
+    @Value("${app.search.max-results:50}")
+    private int maxResults;
+
+    private volatile SearchIndex index = new SearchIndex();
+
+    // Cambios recibidos mientras se construye el índice; null cuando no hay construcción en curso
+    private List<EntityChangedEvent> pendingChanges;
+    private final Object buildLock = new Object();
+
+
+    public SearchService(PlatformTransactionManager transactionManager) {
+        // Transacción propia y de escritura: tras un commit no se puede reutilizar la del DAO, y una de
+        // solo lectura podría ir a la réplica y no ver todavía las filas recién confirmadas
+        this.reloadTransaction = new TransactionTemplate(transactionManager);
+        this.reloadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+
+    /**
+     * Busca en todas las entidades.
+     * @param query Texto buscado.
+     * @return Resultados ordenados por relevancia (como mucho `app.search.max-results`).
+     */
+    public List<SearchResult> search(String query) {
+        if (query == null || query.isBlank()) {
+            return List.of();
+        }
+        List<SearchResult> results = index.search(query, maxResults);
+        logger.info("Search for '{}' returned {} results.", query, results.size());
+        return results;
+    }
+
+
+    /**
+     * Construye el índice completo y lo sustituye de una vez; hasta entonces se sigue usando el anterior.
+     * Los cambios que llegan durante la construcción se aplican al final sobre el índice nuevo.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIndex() {
+        synchronized (buildLock) {
+            pendingChanges = new ArrayList<>();
+        }
+        SearchIndex fresh = new SearchIndex();
+        boolean built = false;
+        List<EntityChangedEvent> changes;
+        try {
+            try (Stream<RegionRow> rows = regionDAO.streamAllRegions()) {
+                rows.forEach(row -> put(fresh, row));
+            }
+            try (Stream<ProvinceRow> rows = provinceDAO.streamAllProvinces()) {
+                rows.forEach(row -> put(fresh, row));
+            }
+            try (Stream<SupermarketRow> rows = supermarketDAO.streamAllSupermarkets()) {
+                rows.forEach(row -> put(fresh, row));
+            }
+            try (Stream<LocationRow> rows = locationDAO.streamAllLocations()) {
+                rows.forEach(row -> put(fresh, row));
+            }
+            try (Stream<CategoryRow> rows = categoryDAO.streamAllCategories()) {
+                rows.forEach(row -> put(fresh, row));
+            }
+            built = true;
+        } catch (RuntimeException e) {
+            logger.error("Could not build the search index: {}", e.getMessage());
+        } finally {
+            // Se cambia de índice dentro del cerrojo para que ningún cambio vaya al índice que se descarta
+            synchronized (buildLock) {
+                if (built) {
+                    index = fresh;
+                }
+                changes = pendingChanges;
+                pendingChanges = null;
+            }
+        }
+        SearchIndex current = index;
+        // Recargar las filas desde la base de datos hace que el orden en que se apliquen no importe
+        changes.forEach(change -> applySafely(current, change));
+        if (built) {
+            logger.info("Search index built with {} documents.", fresh.size());
+        }
+    }
+
+
+    /**
+     * Aplica al índice un cambio confirmado. Si la escritura no tenía transacción, se aplica en el momento.
+     * @param event Cambio publicado por un DAO.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEntityChanged(EntityChangedEvent event) {
+        synchronized (buildLock) {
+            if (pendingChanges != null) {
+                pendingChanges.add(event);
+                return;
+            }
+        }
+        applySafely(index, event);
+    }
+
+
+    private void applySafely(SearchIndex target, EntityChangedEvent event) {
+        try {
+            apply(target, event);
+        } catch (RuntimeException e) {
+            // La escritura ya está confirmada; el índice queda desfasado hasta la siguiente reconstrucción
+            logger.error("Could not update the search index for {} {}: {}",
+                    event.entityType().getSimpleName(), event.ids(), e.getMessage());
+        }
+    }
+
+
+    private void apply(SearchIndex target, EntityChangedEvent event) {
+        String type = typeOf(event.entityType());
+        if (type == null) {
+            return;
+        }
+        if (event.deleted()) {
+            event.ids().forEach(id -> target.remove(type, id));
+            return;
+        }
+        List<Integer> ids = List.copyOf(event.ids());
+        reloadAll(target, type, ids);
+
+        // El subtítulo de los dependientes lleva el nombre de esta entidad (la región en las provincias, la
+        // provincia y el supermercado en las ubicaciones, el padre en las subcategorías): se recargan también
+        String dependentType = dependentTypeOf(type);
+        if (dependentType != null) {
+            List<Integer> dependents = new ArrayList<>();
+            for (int from = 0; from < ids.size(); from += RELOAD_CHUNK_SIZE) {
+                List<Integer> chunk = ids.subList(from, Math.min(from + RELOAD_CHUNK_SIZE, ids.size()));
+                dependents.addAll(reloadTransaction.execute(status -> listDependentIds(type, chunk)));
+            }
+            if (dependentType.equals(type)) {
+                dependents.removeAll(new HashSet<>(ids));
+            }
+            reloadAll(target, dependentType, dependents);
+        }
+    }
+
+
+    private void reloadAll(SearchIndex target, String type, List<Integer> ids) {
+        for (int from = 0; from < ids.size(); from += RELOAD_CHUNK_SIZE) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + RELOAD_CHUNK_SIZE, ids.size()));
+            Set<Integer> found = reloadTransaction.execute(status -> reload(target, type, chunk));
+            // Las filas que ya no existen (borradas entre medias) salen del índice
+            chunk.stream().filter(id -> !found.contains(id)).forEach(id -> target.remove(type, id));
+        }
+    }
+
+
+    private Set<Integer> reload(SearchIndex target, String type, List<Integer> ids) {
+        Set<Integer> found = new HashSet<>();
+        switch (type) {
+            case REGION -> regionDAO.listRegionRowsByIds(ids).forEach(row -> found.add(put(target, row)));
+            case PROVINCE -> provinceDAO.listProvinceRowsByIds(ids).forEach(row -> found.add(put(target, row)));
+            case SUPERMARKET -> supermarketDAO.listSupermarketRowsByIds(ids).forEach(row -> found.add(put(target, row)));
+            case LOCATION -> locationDAO.listLocationRowsByIds(ids).forEach(row -> found.add(put(target, row)));
+            case CATEGORY -> categoryDAO.listCategoryRowsByIds(ids).forEach(row -> found.add(put(target, row)));
+            default -> throw new IllegalArgumentException("Unknown search type: " + type);
+        }
+        return found;
+    }
+
+
+    private List<Integer> listDependentIds(String type, List<Integer> ids) {
+        return switch (type) {
+            case REGION -> provinceDAO.listProvinceIdsByRegions(ids);
+            case PROVINCE -> locationDAO.listLocationIdsByProvinces(ids);
+            case SUPERMARKET -> locationDAO.listLocationIdsBySupermarkets(ids);
+            case CATEGORY -> categoryDAO.listCategoryIdsByParents(ids);
+            default -> List.of();
+        };
+    }
+
+
+    /**
+     * Tipo de los documentos cuyo subtítulo incluye el nombre de una entidad del tipo indicado.
+     * @param type Tipo de la entidad modificada.
+     * @return Tipo de sus dependientes, o null si no tiene.
+     */
+    private static String dependentTypeOf(String type) {
+        return switch (type) {
+            case REGION -> PROVINCE;
+            case PROVINCE, SUPERMARKET -> LOCATION;
+            case CATEGORY -> CATEGORY;
+            default -> null;
+        };
+    }
+
+
+    private static String typeOf(Class<?> entityType) {
+        if (entityType == Region.class) {
+            return REGION;
+        } else if (entityType == Province.class) {
+            return PROVINCE;
+        } else if (entityType == Supermarket.class) {
+            return SUPERMARKET;
+        } else if (entityType == Location.class) {
+            return LOCATION;
+        } else if (entityType == Category.class) {
+            return CATEGORY;
+        }
+        return null;
+    }
+
+
+    private static Integer put(SearchIndex target, RegionRow row) {
+        target.put(REGION, row.id(), row.name(), row.code(), "/regions/edit?id=" + row.id());
+        return row.id();
+    }
+
+    private static Integer put(SearchIndex target, ProvinceRow row) {
+        target.put(PROVINCE, row.id(), row.name(), row.code() + " · " + row.regionName(), "/provinces/edit?id=" + row.id());
+        return row.id();
+    }
+
+    private static Integer put(SearchIndex target, SupermarketRow row) {
+        target.put(SUPERMARKET, row.id(), row.name(), null, "/supermarkets/edit?id=" + row.id());
+        return row.id();
+    }
+
+    private static Integer put(SearchIndex target, LocationRow row) {
+        target.put(LOCATION, row.id(), row.address(), row.city() + ", " + row.provinceName() + " · " + row.supermarketName(),
+                "/locations/edit?id=" + row.id());
+        return row.id();
+    }
+
+    private static Integer put(SearchIndex target, CategoryRow row) {
+        target.put(CATEGORY, row.id(), row.name(), row.parentName(), "/categories/edit?id=" + row.id());
+        return row.id();
+    }
+}
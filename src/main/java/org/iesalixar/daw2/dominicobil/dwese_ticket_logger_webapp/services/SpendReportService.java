@@ -0,0 +1,364 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services;
+
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.CategoryDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.EntityChangedEvent;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.LocationDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.ProvinceDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.RegionDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.SpendRollupDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.SupermarketDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.TicketDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.TicketLinesInsertedEvent;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.CategoryNode;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.CategoryRow;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.LocationKeys;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.ProvinceKeys;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.ProvinceRow;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.RegionRow;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.SpendDimension;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.SpendTotal;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.SupermarketRow;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.TicketLineFact;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Location;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Province;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+/**
+ * Servicio de informes de gasto (por región, provincia, supermercado, categoría o mes) a partir de las
+ * líneas de ticket.
+ *
+ * Los informes por meses no consultan la base de datos: se calculan sobre un {@link TicketLineColumns} en
+ * memoria que se carga al arrancar recorriendo una vez las líneas de ticket, las ubicaciones y las provincias,
+ * y que después crece con los {@link TicketLinesInsertedEvent} de cada lote de tickets confirmado. Los cambios
+ * de ubicaciones y provincias llegan con los {@link EntityChangedEvent}. Solo se va a la base de datos para
+ * poner nombre a los grupos y, si se filtra por categoría, para obtener sus subcategorías.
+ *
+ * Los informes por días leen el resumen diario `spend_daily` ({@link SpendRollupDAO}), que ya está agregado
+ * por región, provincia, supermercado y categoría.
+ */
+@Service
+public class SpendReportService {
+
+
+    // Logger para registrar eventos en esta clase
+    private static final Logger logger = LoggerFactory.getLogger(SpendReportService.class);
+
+    // Máximo de IDs por consulta IN al recargar ubicaciones
+    private static final int RELOAD_CHUNK_SIZE = 1000;
+
+
+    @Autowired
+    private TicketDAO ticketDAO;
+
+    @Autowired
+    private LocationDAO locationDAO;
+
+    @Autowired
+    private CategoryDAO categoryDAO;
+
+    @Autowired
+    private SupermarketDAO supermarketDAO;
+
+    @Autowired
+    private ProvinceDAO provinceDAO;
+
+    @Autowired
+    private RegionDAO regionDAO;
+
+    @Autowired
+    private SpendRollupDAO spendRollupDAO;
+
+    private final TransactionTemplate reloadTransaction;
+
+    // Hilos para los recorridos; 0 = uno por procesador
+    @Value("${app.analytics.parallelism:0}")
+    private int parallelism;
+
+    private ForkJoinPool pool;
+
+    // null hasta que termina la primera carga
+    private volatile TicketLineColumns columns;
+
+    // Eventos recibidos mientras se carga el almacén; null cuando no hay carga en curso
+    private List<Object> pendingChanges;
+    private final Object buildLock = new Object();
+
+
+    public SpendReportService(PlatformTransactionManager transactionManager) {
+        // Transacción propia en el primario, como en los demás índices en memoria
+        this.reloadTransaction = new TransactionTemplate(transactionManager);
+        this.reloadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+
+    @PostConstruct
+    void createPool() {
+        pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+
+    @PreDestroy
+    void shutdownPool() {
+        pool.shutdownNow();
+    }
+
+
+    /**
+     * Calcula el gasto agrupado por el criterio indicado.
+     * @param dimension     Criterio de agrupación.
+     * @param from          Primer mes incluido, o null para no limitar.
+     * @param to            Último mes incluido, o null para no limitar.
+     * @param regionId      Región, o null para todas.
+     * @param provinceId    Provincia, o null para todas.
+     * @param supermarketId Supermercado, o null para todos.
+     * @param categoryId    Categoría (incluidas sus subcategorías), o null para todas.
+     * @return Totales por grupo (de mayor a menor gasto, o por orden cronológico si se agrupa por mes),
+     *         o vacío si el almacén todavía se está cargando.
+     */
+    public Optional<List<SpendTotal>> spendBy(SpendDimension dimension, YearMonth from, YearMonth to, Integer regionId,
+                                              Integer provinceId, Integer supermarketId, Integer categoryId) {
+        TicketLineColumns current = columns;
+        if (current == null) {
+            return Optional.empty();
+        }
+        TicketLineColumns.Filter filter = new TicketLineColumns.Filter(
+                from == null ? Integer.MIN_VALUE : TicketLineColumns.epochMonth(from),
+                to == null ? Integer.MAX_VALUE : TicketLineColumns.epochMonth(to),
+                categoryId == null ? null : categoryMask(categoryId),
+                regionId == null ? TicketLineColumns.ANY : regionId,
+                provinceId == null ? TicketLineColumns.ANY : provinceId,
+                supermarketId == null ? TicketLineColumns.ANY : supermarketId);
+
+        long start = System.nanoTime();
+        List<TicketLineColumns.Total> totals = current.aggregate(dimension, filter, pool);
+        logger.debug("Spend by {} over {} lines in {} ms", dimension, current.size(), (System.nanoTime() - start) / 1_000_000);
+
+        if (dimension == SpendDimension.MONTH) {
+            return Optional.of(totals.stream()
+                    .map(total -> {
+                        String month = TicketLineColumns.yearMonth(total.key()).toString();
+                        return new SpendTotal(month, month, total.totalCents(), total.lineCount());
+                    })
+                    .toList());
+        }
+        Map<Integer, String> labels = labels(dimension, totals.stream().map(TicketLineColumns.Total::key).toList());
+        return Optional.of(totals.stream()
+                .sorted(Comparator.comparingLong(TicketLineColumns.Total::totalCents).reversed())
+                .map(total -> new SpendTotal(String.valueOf(total.key()), labels.get(total.key()),
+                        total.totalCents(), total.lineCount()))
+                .toList());
+    }
+
+
+    /**
+     * Calcula el gasto de un rango de días agrupado por el criterio indicado, a partir del resumen diario.
+     * @param dimension     Criterio de agrupación.
+     * @param from          Primer día incluido.
+     * @param to            Último día incluido.
+     * @param regionId      Región, o null para todas.
+     * @param provinceId    Provincia, o null para todas.
+     * @param supermarketId Supermercado, o null para todos.
+     * @param categoryId    Categoría (incluidas sus subcategorías), o null para todas.
+     * @return Totales por grupo, de mayor a menor gasto (por orden cronológico si se agrupa por mes).
+     */
+    public List<SpendTotal> dailySpendBy(SpendDimension dimension, LocalDate from, LocalDate to, Integer regionId,
+                                         Integer provinceId, Integer supermarketId, Integer categoryId) {
+        List<Integer> categoryIds = categoryId == null ? null
+                : categoryDAO.listSubtree(categoryId).stream().map(CategoryNode::id).toList();
+        List<SpendTotal> totals = spendRollupDAO.listTotals(dimension, from, to, regionId, provinceId, supermarketId, categoryIds);
+        if (dimension == SpendDimension.MONTH) {
+            return totals.stream()
+                    .map(total -> new SpendTotal(total.key(), total.key(), total.totalCents(), total.lineCount()))
+                    .toList();
+        }
+        Map<Integer, String> labels = labels(dimension, totals.stream().map(total -> Integer.valueOf(total.key())).toList());
+        return totals.stream()
+                .sorted(Comparator.comparingLong(SpendTotal::totalCents).reversed())
+                .map(total -> new SpendTotal(total.key(), labels.get(Integer.valueOf(total.key())),
+                        total.totalCents(), total.lineCount()))
+                .toList();
+    }
+
+
+    /**
+     * Carga el almacén con todas las líneas de ticket y lo activa de una vez.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        synchronized (buildLock) {
+            pendingChanges = new ArrayList<>();
+        }
+        TicketLineColumns fresh = new TicketLineColumns();
+        // Líneas leídas, para no añadir otra vez las que además lleguen como evento durante la carga (antes o
+        // después de que el cursor pase por ellas). Un mapa de bits, no un conjunto de Long, por la memoria
+        LineIdBitmap loadedIds = new LineIdBitmap();
+        boolean built = false;
+        List<Object> changes;
+        try {
+            provinceDAO.listProvinceKeys().forEach(keys -> fresh.putProvince(keys.id(), keys.regionId()));
+            try (Stream<LocationKeys> locations = locationDAO.streamLocationKeys()) {
+                locations.forEach(keys -> fresh.putLocation(keys.id(), keys.supermarketId(), keys.provinceId()));
+            }
+            try (Stream<TicketLineFact> lines = ticketDAO.streamTicketLineFacts()) {
+                lines.forEach(line -> {
+                    append(fresh, line);
+                    loadedIds.add(line.id());
+                });
+            }
+            built = true;
+        } catch (RuntimeException e) {
+            logger.error("Could not load the spend report store: {}", e.getMessage());
+        } finally {
+            synchronized (buildLock) {
+                changes = pendingChanges;
+                pendingChanges = null;
+                if (built) {
+                    columns = fresh;
+                    // Dentro del cerrojo: los eventos que lleguen a partir de aquí ya van al almacén nuevo
+                    applyPending(fresh, changes, loadedIds);
+                }
+            }
+        }
+        if (built) {
+            logger.info("Spend report store loaded with {} ticket lines.", fresh.size());
+        }
+    }
+
+
+    /**
+     * Añade al almacén las líneas de los tickets confirmados.
+     * @param event Líneas publicadas por el DAO de tickets.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTicketLinesInserted(TicketLinesInsertedEvent event) {
+        TicketLineColumns current;
+        synchronized (buildLock) {
+            if (pendingChanges != null) {
+                pendingChanges.add(event);
+                return;
+            }
+            current = columns;
+        }
+        if (current != null) {
+            event.lines().forEach(line -> append(current, line));
+        }
+    }
+
+
+    /**
+     * Actualiza el supermercado y la provincia de las ubicaciones modificadas y la región de las provincias.
+     * @param event Cambio publicado por un DAO.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEntityChanged(EntityChangedEvent event) {
+        // Las ubicaciones con tickets (y sus provincias) no se pueden borrar; las demás no aparecen en ningún informe
+        if ((event.entityType() != Location.class && event.entityType() != Province.class) || event.deleted()) {
+            return;
+        }
+        TicketLineColumns current;
+        synchronized (buildLock) {
+            if (pendingChanges != null) {
+                pendingChanges.add(event);
+                return;
+            }
+            current = columns;
+        }
+        if (current != null) {
+            reload(current, event);
+        }
+    }
+
+
+    private void applyPending(TicketLineColumns target, List<Object> changes, LineIdBitmap loadedIds) {
+        for (Object change : changes) {
+            if (change instanceof TicketLinesInsertedEvent inserted) {
+                inserted.lines().stream()
+                        .filter(line -> !loadedIds.contains(line.id()))
+                        .forEach(line -> append(target, line));
+            } else if (change instanceof EntityChangedEvent changed) {
+                reload(target, changed);
+            }
+        }
+    }
+
+
+    private void reload(TicketLineColumns target, EntityChangedEvent event) {
+        try {
+            List<Integer> ids = List.copyOf(event.ids());
+            for (int from = 0; from < ids.size(); from += RELOAD_CHUNK_SIZE) {
+                List<Integer> chunk = ids.subList(from, Math.min(from + RELOAD_CHUNK_SIZE, ids.size()));
+                if (event.entityType() == Province.class) {
+                    List<ProvinceKeys> keys = reloadTransaction.execute(status -> provinceDAO.listProvinceKeysByIds(chunk));
+                    keys.forEach(key -> target.putProvince(key.id(), key.regionId()));
+                } else {
+                    List<LocationKeys> keys = reloadTransaction.execute(status -> locationDAO.listLocationKeysByIds(chunk));
+                    keys.forEach(key -> target.putLocation(key.id(), key.supermarketId(), key.provinceId()));
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("Could not update the spend report store for {} {}: {}",
+                    event.entityType().getSimpleName(), event.ids(), e.getMessage());
+        }
+    }
+
+
+    private static void append(TicketLineColumns target, TicketLineFact line) {
+        target.append(line.locationId(), line.categoryId(),
+                TicketLineColumns.epochMonth(YearMonth.from(line.issuedAt())), line.amountCents());
+    }
+
+
+    /**
+     * Categorías incluidas al filtrar por una categoría: ella y todas sus descendientes.
+     */
+    private boolean[] categoryMask(int categoryId) {
+        List<Integer> ids = categoryDAO.listSubtree(categoryId).stream().map(CategoryNode::id).toList();
+        boolean[] mask = new boolean[ids.stream().mapToInt(Integer::intValue).max().orElse(0) + 1];
+        ids.forEach(id -> mask[id] = true);
+        return mask;
+    }
+
+
+    private Map<Integer, String> labels(SpendDimension dimension, List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        return switch (dimension) {
+            case REGION -> regionDAO.listRegionRowsByIds(ids).stream()
+                    .collect(Collectors.toMap(RegionRow::id, RegionRow::name));
+            case CATEGORY -> categoryDAO.listCategoryRowsByIds(ids).stream()
+                    .collect(Collectors.toMap(CategoryRow::id, CategoryRow::name));
+            case SUPERMARKET -> supermarketDAO.listSupermarketRowsByIds(ids).stream()
+                    .collect(Collectors.toMap(SupermarketRow::id, SupermarketRow::name));
+            case PROVINCE -> provinceDAO.listProvinceRowsByIds(ids).stream()
+                    .collect(Collectors.toMap(ProvinceRow::id, ProvinceRow::name));
+            case MONTH -> Map.of();
+        };
+    }
+}
@@ -0,0 +1,104 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services;
+
+
+import jakarta.annotation.PreDestroy;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.SpendRollupDAO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Servicio que recalcula el resumen diario de gasto (`spend_daily`) a partir de las líneas de ticket.
+ *
+ * Las altas de tickets ya mantienen el resumen al día; el recálculo sirve para cargarlo por primera vez
+ * sobre tickets existentes o para reagrupar días pasados después de mover ubicaciones o provincias. El rango
+ * se parte en tramos de `app.rollup.rebuild-chunk-days` días que se recalculan en paralelo, cada uno en su
+ * propia transacción, con `app.rollup.rebuild-threads` hilos. Solo se admite un recálculo a la vez.
+ */
+@Service
+public class SpendRollupService {
+
+
+    // Logger para registrar eventos en esta clase
+    private static final Logger logger = LoggerFactory.getLogger(SpendRollupService.class);
+
+
+    @Autowired
+    private SpendRollupDAO spendRollupDAO;
+
+    @Value("${app.rollup.rebuild-chunk-days:7}")
+    private int chunkDays;
+
+    private final ExecutorService executor;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+
+    public SpendRollupService(@Value("${app.rollup.rebuild-threads:4}") int threads,
+                              @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        // Con hilos virtuales el número de trozos en paralelo sigue limitado a `threads`, pero mientras
+        // esperan a la base de datos no ocupan un hilo del sistema
+        ThreadFactory threadFactory = virtualThreads ? Thread.ofVirtual().name("spend-rollup-", 1).factory() : runnable -> {
+            Thread thread = new Thread(runnable, "spend-rollup-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = Executors.newFixedThreadPool(threads, threadFactory);
+    }
+
+
+    /**
+     * Recalcula en segundo plano el resumen de un rango de días.
+     * @param from Primer día incluido.
+     * @param to   Último día incluido.
+     * @return Futuro con el número de filas escritas, o vacío si ya hay un recálculo en marcha.
+     */
+    public Optional<CompletableFuture<Integer>> rebuild(LocalDate from, LocalDate to) {
+        if (!running.compareAndSet(false, true)) {
+            logger.warn("Spend rollup rebuild for {} - {} rejected: another rebuild is running", from, to);
+            return Optional.empty();
+        }
+        long start = System.nanoTime();
+        List<CompletableFuture<Integer>> chunks = new ArrayList<>();
+        for (LocalDate chunkFrom = from; !chunkFrom.isAfter(to); chunkFrom = chunkFrom.plusDays(chunkDays)) {
+            LocalDate chunkTo = chunkFrom.plusDays(chunkDays - 1L).isAfter(to) ? to : chunkFrom.plusDays(chunkDays - 1L);
+            LocalDate first = chunkFrom;
+            chunks.add(CompletableFuture.supplyAsync(() -> spendRollupDAO.rebuildDays(first, chunkTo), executor));
+        }
+        logger.info("Rebuilding spend rollup for {} - {} in {} chunks", from, to, chunks.size());
+
+        return Optional.of(CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new))
+                .thenApply(done -> chunks.stream().mapToInt(CompletableFuture::join).sum())
+                .whenComplete((written, error) -> {
+                    running.set(false);
+                    if (error != null) {
+                        logger.error("Spend rollup rebuild for {} - {} failed: {}", from, to, error.getMessage());
+                    } else {
+                        logger.info("Rebuilt spend rollup for {} - {}: {} rows in {} ms",
+                                from, to, written, (System.nanoTime() - start) / 1_000_000);
+                    }
+                }));
+    }
+
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,96 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services;
+
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Optional;
+
+
+/**
+ * Almacén donde se guardan los archivos subidos, identificados por su ruta relativa (`ab/cd/<sha256>.<ext>`).
+ *
+ * Hay dos implementaciones: {@link LocalStorageBackend}, sobre el directorio UPLOAD_PATH, y
+ * {@link S3StorageBackend}, sobre un bucket compatible con S3 que pueden compartir varios nodos de la
+ * aplicación. Se elige con `app.storage.type`. Los archivos se preparan siempre en un temporal local del
+ * {@link #stagingDirectory() directorio de preparación} y se entregan ya completos con {@link #store}.
+ */
+public interface StorageBackend extends AutoCloseable {
+
+
+    /**
+     * Tamaño y fecha de un archivo guardado.
+     *
+     * @param size         Tamaño en bytes.
+     * @param lastModified Fecha de la última escritura.
+     */
+    record ObjectInfo(long size, Instant lastModified) {
+    }
+
+
+    /**
+     * Directorio local donde crear los temporales que después se entregan a {@link #store}.
+     * @return Directorio, ya creado.
+     */
+    Path stagingDirectory() throws IOException;
+
+    /**
+     * Guarda un archivo ya completo en la ruta indicada, sustituyendo el que hubiera. El origen puede
+     * moverse (almacén local) o copiarse; el llamante borra lo que quede de él.
+     * @param path        Ruta relativa de destino.
+     * @param source      Temporal del directorio de preparación.
+     * @param contentType Tipo de contenido.
+     */
+    void store(String path, Path source, String contentType) throws IOException;
+
+    /**
+     * @param path Ruta relativa.
+     * @return Tamaño y fecha del archivo, o vacío si no existe.
+     */
+    Optional<ObjectInfo> stat(String path) throws IOException;
+
+    /**
+     * Como {@link #stat}, pero preguntando siempre al almacén aunque la implementación guarde una caché. Es la
+     * que hay que usar antes de dar por guardado un archivo, porque otro nodo puede haberlo borrado.
+     * @param path Ruta relativa.
+     * @return Tamaño y fecha del archivo, o vacío si no existe.
+     */
+    default Optional<ObjectInfo> statUncached(String path) throws IOException {
+        return stat(path);
+    }
+
+    /**
+     * @param path Ruta relativa.
+     * @return true si el archivo existe.
+     */
+    default boolean exists(String path) throws IOException {
+        return stat(path).isPresent();
+    }
+
+    /**
+     * Abre un tramo de un archivo para leerlo en streaming.
+     * @param path   Ruta relativa.
+     * @param offset Primer byte.
+     * @param length Número de bytes.
+     * @return Flujo con los bytes del tramo; el llamante debe cerrarlo.
+     */
+    InputStream read(String path, long offset, long length) throws IOException;
+
+    /**
+     * Borra un archivo; no hace nada si no existe.
+     * @param path Ruta relativa.
+     */
+    void delete(String path) throws IOException;
+
+    /**
+     * Directorio local con los archivos, para quien pueda aprovecharlo (envío con sendfile, barrido de
+     * huérfanos).
+     * @return Directorio raíz, o null si el almacén no es local.
+     */
+    Path localRoot();
+
+    @Override
+    default void close() {
+    }
+}
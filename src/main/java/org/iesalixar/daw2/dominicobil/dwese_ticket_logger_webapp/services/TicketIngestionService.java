@@ -0,0 +1,206 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services;
+
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.TicketDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.TicketLineRequest;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.TicketRequest;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Category;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Location;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.Ticket;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.entity.TicketLine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * Servicio de ingesta de tickets.
+ *
+ * La petición solo convierte los tickets a entidades y los deja en una cola acotada, así que responde
+ * enseguida. Un único hilo escritor vacía la cola en lotes de hasta `app.tickets.batch-size` tickets
+ * (esperando como mucho `app.tickets.max-batch-delay` a que se llene un lote) y escribe cada lote en una
+ * transacción con inserciones agrupadas en lotes JDBC. Si la cola está llena, la petición se rechaza en
+ * lugar de esperar, para que el cliente reintente más tarde.
+ *
+ * Los tickets aceptados están solo en memoria hasta que se escriben: al parar la aplicación se vacía la
+ * cola antes de cerrar, pero una caída del proceso perdería los que estuvieran pendientes.
+ */
+@Service
+public class TicketIngestionService {
+
+
+    // Logger para registrar eventos en esta clase
+    private static final Logger logger = LoggerFactory.getLogger(TicketIngestionService.class);
+
+
+    @Autowired
+    private TicketDAO ticketDAO;
+
+    @Value("${app.tickets.queue-capacity:20000}")
+    private int queueCapacity;
+
+    @Value("${app.tickets.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.tickets.max-batch-delay:20ms}")
+    private Duration maxBatchDelay;
+
+    @Value("${app.tickets.shutdown-timeout:30s}")
+    private Duration shutdownTimeout;
+
+    private BlockingQueue<Ticket> queue;
+
+    // Los lotes de una petición entran en la cola enteros o no entran
+    private final ReentrantLock enqueueLock = new ReentrantLock();
+
+    private Thread writer;
+    private volatile boolean running;
+
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        writer = new Thread(this::writeLoop, "ticket-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+
+    /**
+     * Deja de aceptar tickets y espera a que se escriban los que quedan en la cola.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        writer.join(shutdownTimeout.toMillis());
+        if (writer.isAlive()) {
+            logger.warn("Ticket writer did not finish in {}s; {} tickets were not written.", shutdownTimeout.toSeconds(), queue.size());
+            writer.interrupt();
+        }
+    }
+
+
+    /**
+     * Pone en cola unos tickets para escribirlos en segundo plano.
+     * @param requests Tickets recibidos.
+     * @return true si se han aceptado todos; false si no caben en la cola (no se acepta ninguno).
+     * @throws ArithmeticException Si el importe de algún ticket no cabe en un long.
+     */
+    public boolean submit(List<TicketRequest> requests) {
+        // La conversión (y el cálculo de importes) se hace aquí para rechazar en la petición los tickets erróneos
+        List<Ticket> tickets = new ArrayList<>(requests.size());
+        for (TicketRequest request : requests) {
+            tickets.add(toTicket(request));
+        }
+        enqueueLock.lock();
+        try {
+            // El escritor solo saca de la cola, así que el hueco comprobado no puede disminuir
+            if (!running || queue.remainingCapacity() < tickets.size()) {
+                return false;
+            }
+            queue.addAll(tickets);
+            return true;
+        } finally {
+            enqueueLock.unlock();
+        }
+    }
+
+
+    /**
+     * Número de tickets aceptados pendientes de escribir.
+     * @return Tamaño de la cola.
+     */
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+
+    private static Ticket toTicket(TicketRequest request) {
+        Ticket ticket = new Ticket();
+        Location location = new Location();
+        location.setId(request.locationId());
+        ticket.setLocation(location);
+        ticket.setIssuedAt(request.issuedAt());
+        for (TicketLineRequest lineRequest : request.lines()) {
+            Category category = new Category();
+            category.setId(lineRequest.categoryId());
+            ticket.addLine(new TicketLine(category, lineRequest.description(), lineRequest.quantity(), lineRequest.unitPriceCents()));
+        }
+        return ticket;
+    }
+
+
+    private void writeLoop() {
+        List<Ticket> batch = new ArrayList<>(batchSize);
+        try {
+            while (running || !queue.isEmpty()) {
+                Ticket first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                fillBatch(batch);
+                write(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     * Completa el lote con lo que haya en la cola y, si no llega al tamaño de lote, espera un poco
+     * a que lleguen más tickets: en los picos los lotes salen llenos y en calma apenas añade espera.
+     */
+    private void fillBatch(List<Ticket> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + maxBatchDelay.toNanos();
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                return;
+            }
+            Ticket next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+
+    private void write(List<Ticket> batch) {
+        try {
+            ticketDAO.insertTickets(batch);
+        } catch (RuntimeException e) {
+            // Un ticket erróneo no debe hacer perder el resto del lote: se reintenta de uno en uno
+            logger.warn("Batch of {} tickets failed ({}); retrying one by one.", batch.size(), e.getMessage());
+            for (Ticket ticket : batch) {
+                // Los IDs asignados en la transacción fallida no llegaron a guardarse
+                ticket.setId(null);
+                ticket.getLines().forEach(line -> line.setId(null));
+                try {
+                    ticketDAO.insertTickets(List.of(ticket));
+                } catch (RuntimeException ticketError) {
+                    logger.error("Discarding ticket for location {} issued at {}: {}",
+                            ticket.getLocation().getId(), ticket.getIssuedAt(), ticketError.getMessage());
+                }
+            }
+        }
+    }
+}
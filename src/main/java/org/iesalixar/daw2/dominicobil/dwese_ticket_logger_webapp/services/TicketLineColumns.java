@@ -0,0 +1,377 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services;
+
+
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.SpendDimension;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+
+/**
+ * Almacén en memoria, por columnas, de las líneas de ticket para los informes de gasto.
+ *
+ * Cada línea ocupa una posición en cuatro arrays primitivos (ubicación, categoría, mes e importe) repartidos
+ * en segmentos de tamaño fijo, de modo que un informe recorre memoria contigua sin objetos ni punteros. El
+ * supermercado y la provincia no se repiten en cada línea: se obtienen de la ubicación con dos arrays
+ * indexados por su ID (y la región, de la provincia), así que cambiar una ubicación de provincia no obliga
+ * a tocar sus líneas.
+ *
+ * Los informes reparten los segmentos entre los hilos de un {@link ForkJoinPool}; cada tarea suma en sus
+ * propios arrays indexados por la clave del grupo y al final se combinan. Las líneas solo se añaden: un
+ * único escritor rellena el segmento actual y publica el nuevo tamaño, y los lectores recorren como mucho
+ * el tamaño que había al empezar, sin bloqueos.
+ */
+public class TicketLineColumns {
+
+
+    // Filas por segmento (y por tarea de recorrido)
+    private static final int SEGMENT_BITS = 16;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+
+    // Valor de los filtros sin restricción
+    public static final int ANY = -1;
+
+
+    /**
+     * Filtro de un informe. Los meses se expresan con {@link #epochMonth(YearMonth)}.
+     *
+     * @param fromMonth     Primer mes incluido.
+     * @param toMonth       Último mes incluido.
+     * @param categories    Categorías incluidas, indexadas por ID, o null para todas.
+     * @param regionId      ID de la región o {@link #ANY}.
+     * @param provinceId    ID de la provincia o {@link #ANY}.
+     * @param supermarketId ID del supermercado o {@link #ANY}.
+     */
+    public record Filter(int fromMonth, int toMonth, boolean[] categories, int regionId, int provinceId, int supermarketId) {
+
+        public static final Filter ALL = new Filter(Integer.MIN_VALUE, Integer.MAX_VALUE, null, ANY, ANY, ANY);
+    }
+
+
+    /**
+     * Total de un grupo.
+     *
+     * @param key        ID de la región, provincia, supermercado o categoría, o mes según {@link #epochMonth(YearMonth)}.
+     * @param totalCents Suma de los importes en céntimos.
+     * @param lineCount  Número de líneas.
+     */
+    public record Total(int key, long totalCents, long lineCount) {
+    }
+
+
+    /**
+     * Bloque de filas. Solo el escritor modifica los arrays; `size` se publica después de escribir cada fila.
+     */
+    private static final class Segment {
+        private final int[] locations = new int[SEGMENT_SIZE];
+        private final int[] categories = new int[SEGMENT_SIZE];
+        private final int[] months = new int[SEGMENT_SIZE];
+        private final long[] amounts = new long[SEGMENT_SIZE];
+        private volatile int size;
+    }
+
+
+    /**
+     * Supermercado y provincia por ID de ubicación y región por ID de provincia (0 si no se conocen).
+     */
+    private record LocationTable(int[] supermarkets, int[] provinces, int[] regions,
+                                 int maxSupermarketId, int maxProvinceId, int maxRegionId) {
+    }
+
+
+    private volatile Segment[] segments = new Segment[0];
+    private volatile LocationTable locationTable = new LocationTable(new int[0], new int[0], new int[0], 0, 0, 0);
+
+    // Rango de claves ya vistas; se actualizan antes de publicar el tamaño del segmento
+    private volatile int maxCategoryId;
+    private volatile int minMonth = Integer.MAX_VALUE;
+    private volatile int maxMonth = Integer.MIN_VALUE;
+
+    private final Object writeLock = new Object();
+
+
+    /**
+     * Mes como número de meses desde el año 0, para guardarlo en un int y usarlo como índice.
+     */
+    public static int epochMonth(YearMonth month) {
+        return month.getYear() * 12 + month.getMonthValue() - 1;
+    }
+
+
+    public static YearMonth yearMonth(int epochMonth) {
+        return YearMonth.of(Math.floorDiv(epochMonth, 12), Math.floorMod(epochMonth, 12) + 1);
+    }
+
+
+    /**
+     * Añade una línea.
+     * @param locationId  ID de la ubicación del ticket.
+     * @param categoryId  ID de la categoría.
+     * @param epochMonth  Mes del ticket según {@link #epochMonth(YearMonth)}.
+     * @param amountCents Importe en céntimos.
+     */
+    public void append(int locationId, int categoryId, int epochMonth, long amountCents) {
+        synchronized (writeLock) {
+            Segment[] current = segments;
+            Segment segment = current.length == 0 ? null : current[current.length - 1];
+            if (segment == null || segment.size == SEGMENT_SIZE) {
+                segment = new Segment();
+                Segment[] grown = Arrays.copyOf(current, current.length + 1);
+                grown[current.length] = segment;
+                segments = grown;
+            }
+            int row = segment.size;
+            segment.locations[row] = locationId;
+            segment.categories[row] = categoryId;
+            segment.months[row] = epochMonth;
+            segment.amounts[row] = amountCents;
+            if (categoryId > maxCategoryId) {
+                maxCategoryId = categoryId;
+            }
+            if (epochMonth < minMonth) {
+                minMonth = epochMonth;
+            }
+            if (epochMonth > maxMonth) {
+                maxMonth = epochMonth;
+            }
+            segment.size = row + 1;
+        }
+    }
+
+
+    /**
+     * Asigna (o cambia) el supermercado y la provincia de una ubicación.
+     * @param locationId    ID de la ubicación.
+     * @param supermarketId ID del supermercado.
+     * @param provinceId    ID de la provincia.
+     */
+    public void putLocation(int locationId, int supermarketId, int provinceId) {
+        synchronized (writeLock) {
+            LocationTable table = locationTable;
+            int[] supermarkets = table.supermarkets();
+            int[] provinces = table.provinces();
+            if (locationId >= supermarkets.length) {
+                int capacity = Math.max(locationId + 1, supermarkets.length * 2);
+                supermarkets = Arrays.copyOf(supermarkets, capacity);
+                provinces = Arrays.copyOf(provinces, capacity);
+            }
+            supermarkets[locationId] = supermarketId;
+            provinces[locationId] = provinceId;
+            // Publicar una tabla nueva hace visibles los cambios a los informes que empiecen después
+            locationTable = new LocationTable(supermarkets, provinces, table.regions(),
+                    Math.max(table.maxSupermarketId(), supermarketId), Math.max(table.maxProvinceId(), provinceId),
+                    table.maxRegionId());
+        }
+    }
+
+
+    /**
+     * Asigna (o cambia) la región de una provincia.
+     * @param provinceId ID de la provincia.
+     * @param regionId   ID de la región.
+     */
+    public void putProvince(int provinceId, int regionId) {
+        synchronized (writeLock) {
+            LocationTable table = locationTable;
+            int[] regions = table.regions();
+            if (provinceId >= regions.length) {
+                regions = Arrays.copyOf(regions, Math.max(provinceId + 1, regions.length * 2));
+            }
+            regions[provinceId] = regionId;
+            locationTable = new LocationTable(table.supermarkets(), table.provinces(), regions,
+                    table.maxSupermarketId(), table.maxProvinceId(), Math.max(table.maxRegionId(), regionId));
+        }
+    }
+
+
+    /**
+     * Número de líneas almacenadas.
+     * @return Número de líneas.
+     */
+    public long size() {
+        Segment[] current = segments;
+        return current.length == 0 ? 0 : (long) (current.length - 1) * SEGMENT_SIZE + current[current.length - 1].size;
+    }
+
+
+    /**
+     * Calcula el gasto por grupo de las líneas que cumplen el filtro.
+     * @param dimension Criterio de agrupación.
+     * @param filter    Filtro de las líneas.
+     * @param pool      Pool en el que se reparte el recorrido.
+     * @return Totales de los grupos con alguna línea, ordenados por clave.
+     */
+    public List<Total> aggregate(SpendDimension dimension, Filter filter, ForkJoinPool pool) {
+        // Primero los tamaños y después los rangos de claves: así los rangos cubren todas las filas recorridas
+        Segment[] snapshot = segments;
+        int[] sizes = new int[snapshot.length];
+        for (int i = 0; i < snapshot.length; i++) {
+            sizes[i] = snapshot[i].size;
+        }
+        LocationTable table = locationTable;
+        int firstMonth = minMonth;
+        int keyCount = switch (dimension) {
+            case REGION -> table.maxRegionId() + 1;
+            case CATEGORY -> maxCategoryId + 1;
+            case SUPERMARKET -> table.maxSupermarketId() + 1;
+            case PROVINCE -> table.maxProvinceId() + 1;
+            case MONTH -> firstMonth > maxMonth ? 0 : maxMonth - firstMonth + 1;
+        };
+        if (snapshot.length == 0 || keyCount == 0) {
+            return List.of();
+        }
+
+        Scan scan = new Scan(snapshot, sizes, LocationScope.of(table, dimension, filter), dimension, filter,
+                firstMonth, keyCount, 0, snapshot.length);
+        Partial result = pool.invoke(scan);
+
+        List<Total> totals = new ArrayList<>();
+        for (int key = 0; key < keyCount; key++) {
+            // La clave 0 de región, provincia o supermercado agrupa las líneas de ubicaciones desconocidas
+            boolean unknown = key == 0 && dimension != SpendDimension.MONTH;
+            if (result.counts[key] > 0 && !unknown) {
+                int outputKey = dimension == SpendDimension.MONTH ? key + firstMonth : key;
+                totals.add(new Total(outputKey, result.sums[key], result.counts[key]));
+            }
+        }
+        return totals;
+    }
+
+
+    /**
+     * Lo que se necesita de cada ubicación durante un informe, calculado una vez por ubicación y no por línea:
+     * si pasa los filtros de región, provincia y supermercado (null si no hay filtro) y su clave de grupo.
+     */
+    private record LocationScope(boolean[] mask, int[] keys) {
+
+        private static LocationScope of(LocationTable table, SpendDimension dimension, Filter filter) {
+            int[] supermarkets = table.supermarkets();
+            int[] provinces = table.provinces();
+            int[] regionOfProvince = table.regions();
+            int[] regions = null;
+            if (dimension == SpendDimension.REGION || filter.regionId() != ANY) {
+                regions = new int[provinces.length];
+                for (int location = 0; location < regions.length; location++) {
+                    int province = provinces[location];
+                    regions[location] = province < regionOfProvince.length ? regionOfProvince[province] : 0;
+                }
+            }
+            boolean[] mask = null;
+            if (filter.regionId() != ANY || filter.provinceId() != ANY || filter.supermarketId() != ANY) {
+                mask = new boolean[supermarkets.length];
+                for (int location = 0; location < mask.length; location++) {
+                    mask[location] = (filter.regionId() == ANY || regions[location] == filter.regionId())
+                            && (filter.provinceId() == ANY || provinces[location] == filter.provinceId())
+                            && (filter.supermarketId() == ANY || supermarkets[location] == filter.supermarketId());
+                }
+            }
+            int[] keys = switch (dimension) {
+                case REGION -> regions;
+                case PROVINCE -> provinces;
+                default -> supermarkets;
+            };
+            return new LocationScope(mask, keys);
+        }
+    }
+
+
+    /**
+     * Sumas y recuentos parciales por clave.
+     */
+    private record Partial(long[] sums, long[] counts) {
+
+        private Partial merge(Partial other) {
+            for (int key = 0; key < sums.length; key++) {
+                sums[key] += other.sums[key];
+                counts[key] += other.counts[key];
+            }
+            return this;
+        }
+    }
+
+
+    /**
+     * Recorrido de un rango de segmentos: lo parte en dos hasta quedarse con un solo segmento.
+     */
+    private static final class Scan extends RecursiveTask<Partial> {
+        private final Segment[] segments;
+        private final int[] sizes;
+        private final LocationScope locationScope;
+        private final SpendDimension dimension;
+        private final Filter filter;
+        private final int firstMonth;
+        private final int keyCount;
+        private final int from;
+        private final int to;
+
+        private Scan(Segment[] segments, int[] sizes, LocationScope locationScope, SpendDimension dimension, Filter filter,
+                     int firstMonth, int keyCount, int from, int to) {
+            this.segments = segments;
+            this.sizes = sizes;
+            this.locationScope = locationScope;
+            this.dimension = dimension;
+            this.filter = filter;
+            this.firstMonth = firstMonth;
+            this.keyCount = keyCount;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from == 1) {
+                return scan(segments[from], sizes[from]);
+            }
+            int middle = (from + to) >>> 1;
+            Scan left = new Scan(segments, sizes, locationScope, dimension, filter, firstMonth, keyCount, from, middle);
+            Scan right = new Scan(segments, sizes, locationScope, dimension, filter, firstMonth, keyCount, middle, to);
+            left.fork();
+            Partial rightResult = right.compute();
+            return left.join().merge(rightResult);
+        }
+
+        private Partial scan(Segment segment, int size) {
+            long[] sums = new long[keyCount];
+            long[] counts = new long[keyCount];
+            int[] locations = segment.locations;
+            int[] categories = segment.categories;
+            int[] months = segment.months;
+            long[] amounts = segment.amounts;
+            int fromMonth = filter.fromMonth();
+            int toMonth = filter.toMonth();
+            boolean[] categoryMask = filter.categories();
+            boolean[] locationMask = locationScope.mask();
+            int[] locationKeys = locationScope.keys();
+
+            for (int row = 0; row < size; row++) {
+                int month = months[row];
+                if (month < fromMonth || month > toMonth) {
+                    continue;
+                }
+                int category = categories[row];
+                if (categoryMask != null && (category >= categoryMask.length || !categoryMask[category])) {
+                    continue;
+                }
+                int location = locations[row];
+                if (locationMask != null && (location >= locationMask.length || !locationMask[location])) {
+                    continue;
+                }
+                int key = switch (dimension) {
+                    case CATEGORY -> category;
+                    case REGION, PROVINCE, SUPERMARKET -> location < locationKeys.length ? locationKeys[location] : 0;
+                    case MONTH -> month - firstMonth;
+                };
+                // Claves posteriores al inicio del informe (p. ej. una provincia nueva) quedan fuera
+                if (key < keyCount) {
+                    sums[key] += amounts[row];
+                    counts[key]++;
+                }
+            }
+            return new Partial(sums, counts);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services;
+
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.UploadServingStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Servicio que sirve los archivos subidos.
+ *
+ * Los nombres de los archivos no se reutilizan nunca para otro contenido (son el SHA-256 del contenido o,
+ * en los antiguos, un UUID), así que el propio nombre sirve de ETag fuerte y las respuestas se marcan como
+ * `immutable`: el navegador no vuelve a preguntar por ellos y, si lo hace, basta un 304. Se admiten
+ * peticiones de un rango de bytes (If-Range incluido) para reanudar descargas y para los visores de PDF.
+ *
+ * En el almacén local el contenido no pasa por la memoria de la aplicación: si el conector de Tomcat admite
+ * sendfile se le delega el envío (FileChannel.transferTo directo al socket); si no, se copia con transferTo
+ * al canal de la respuesta. Con un almacén remoto se pide solo el tramo necesario y se reenvía en streaming.
+ */
+@Service
+public class UploadServingService {
+
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadServingService.class);
+
+    // Atributos de petición con los que Tomcat anuncia y recibe los envíos con sendfile
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+
+    @Autowired
+    private StorageBackend storageBackend;
+
+    @Value("${app.uploads.cache-max-age:365d}")
+    private Duration cacheMaxAge;
+
+    // Por debajo de este tamaño el envío directo no compensa el cambio de hilo de Tomcat
+    @Value("${app.uploads.sendfile-threshold:48KB}")
+    private DataSize sendfileThreshold;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder bytesServed = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder partialResponses = new LongAdder();
+    private final LongAdder sendfileResponses = new LongAdder();
+    private final LongAdder notFound = new LongAdder();
+
+
+    /**
+     * Envía un archivo subido, entero o un rango, o responde 304 si el cliente ya tiene la versión actual.
+     *
+     * @param relativePath Ruta del archivo relativa al directorio de subidas.
+     * @param request      Petición HTTP (GET o HEAD).
+     * @param response     Respuesta HTTP.
+     */
+    public void serve(String relativePath, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        requests.increment();
+        Optional<StorageBackend.ObjectInfo> info = isValidPath(relativePath) ? stat(relativePath) : Optional.empty();
+        if (info.isEmpty()) {
+            notFound.increment();
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        String fileName = relativePath.substring(relativePath.lastIndexOf('/') + 1);
+        String eTag = "\"" + fileName + "\"";
+        long lastModified = info.get().lastModified().toEpochMilli();
+        long size = info.get().size();
+        response.setHeader(HttpHeaders.ETAG, eTag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=" + cacheMaxAge.toSeconds() + ", immutable");
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader("X-Content-Type-Options", "nosniff");
+
+        if (isNotModified(request, eTag, lastModified)) {
+            notModified.increment();
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setContentType(MediaTypeFactory.getMediaType(fileName)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+        long start = 0;
+        long end = size - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && size > 0 && ifRangeMatches(request, eTag, lastModified)) {
+            long[] bounds = parseRange(range, size);
+            if (bounds == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (bounds.length == 2) {
+                start = bounds[0];
+                end = bounds[1];
+                partialResponses.increment();
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+            }
+        }
+        long length = end - start + 1;
+        response.setContentLengthLong(length);
+        if ("HEAD".equals(request.getMethod()) || length == 0) {
+            return;
+        }
+
+        bytesServed.add(length);
+        Path root = storageBackend.localRoot();
+        if (root == null) {
+            try (InputStream in = storageBackend.read(relativePath, start, length)) {
+                in.transferTo(response.getOutputStream());
+            }
+            return;
+        }
+        Path file = root.resolve(relativePath);
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT)) && length >= sendfileThreshold.toBytes()) {
+            // Tomcat envía el archivo cuando termine la petición, sin que pase por la aplicación
+            sendfileResponses.increment();
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position <= end) {
+                long transferred = channel.transferTo(position, end + 1 - position, out);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+            }
+        }
+    }
+
+
+    /**
+     * Devuelve los contadores desde el arranque.
+     * @return Contadores del servicio.
+     */
+    public UploadServingStats getStats() {
+        return new UploadServingStats(requests.sum(), bytesServed.sum(), notModified.sum(),
+                partialResponses.sum(), sendfileResponses.sum(), notFound.sum());
+    }
+
+
+    /**
+     * Comprueba que la ruta no sale del almacén ni apunta a temporales o a la cuarentena (segmentos que
+     * empiezan por punto).
+     */
+    private static boolean isValidPath(String relativePath) {
+        if (relativePath == null || relativePath.isEmpty() || relativePath.indexOf('\\') >= 0) {
+            return false;
+        }
+        for (String segment : relativePath.split("/", -1)) {
+            if (segment.isEmpty() || segment.startsWith(".")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Optional<StorageBackend.ObjectInfo> stat(String relativePath) {
+        try {
+            return storageBackend.stat(relativePath);
+        } catch (IOException e) {
+            logger.debug("Upload {} not readable: {}", relativePath, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+
+    private static boolean isNotModified(HttpServletRequest request, String eTag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            // Comparación débil: W/"x" coincide con "x"
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.equals("*") || tag.equals(eTag) || tag.equals("W/" + eTag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    private static boolean ifRangeMatches(HttpServletRequest request, String eTag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // If-Range usa comparación fuerte
+            return ifRange.equals(eTag);
+        }
+        long date = dateHeader(request, HttpHeaders.IF_RANGE);
+        return date >= 0 && lastModified / 1000 == date / 1000;
+    }
+
+    private static long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+
+    /**
+     * Interpreta una cabecera Range de un único rango (`bytes=a-b`, `bytes=a-` o `bytes=-n`).
+     *
+     * @return [inicio, fin] del rango; un array vacío si la cabecera no se entiende o pide varios rangos,
+     *         y entonces se envía el archivo entero; o null si el rango no es satisfacible.
+     */
+    static long[] parseRange(String header, long size) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return new long[0];
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                // Sufijo: los últimos n bytes
+                long suffix = Long.parseLong(last);
+                return suffix <= 0 ? null : new long[]{Math.max(0, size - suffix), size - 1};
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            if (start >= size) {
+                return null;
+            }
+            return start > end ? new long[0] : new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services;
+
+
+import jakarta.annotation.PreDestroy;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.StoredFileDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.UploadSweepReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * Servicio que busca y elimina periódicamente los archivos del directorio de subidas que no usa nadie:
+ * imágenes que ninguna categoría referencia (las antiguas con nombre UUID, o las que se quedaron sin fila en
+ * `stored_files`), temporales de subidas interrumpidas y versiones reducidas cuya original ya no existe.
+ *
+ * El directorio se recorre en streaming, sin listarlo entero, y los archivos se comprueban contra la base de
+ * datos en bloques de `app.uploads.sweep.batch-size` rutas, con una pausa entre bloques para no competir con
+ * las peticiones. Los archivos modificados hace menos de `app.uploads.unreferenced-grace-period` no se tocan.
+ * Los huérfanos se borran o, con `app.uploads.sweep.quarantine=true`, se mueven a `.orphans/` y se borran
+ * cuando llevan allí `app.uploads.sweep.quarantine-retention`.
+ *
+ * Solo recorre el almacén local; en un bucket S3 los huérfanos se dejan a las reglas de ciclo de vida del bucket.
+ */
+@Service
+public class UploadSweeperService {
+
+
+    // Logger para registrar eventos en esta clase
+    private static final Logger logger = LoggerFactory.getLogger(UploadSweeperService.class);
+
+    // Directorio de cuarentena; empieza por punto para que no se sirva ni se recorra
+    static final String QUARANTINE_DIRECTORY = ".orphans";
+
+    // Temporales que dejan FileStorageService e ImageVariantService
+    private static final Pattern TEMP_FILE = Pattern.compile("^\\.(upload|variant)-.*\\.tmp$");
+
+    // Versión reducida de una imagen: <original sin extensión>.<sufijo>.<jpg|png>
+    private static final Pattern VARIANT_FILE = Pattern.compile("^(.+)\\.(thumb|medium|opt)\\.(jpg|png)$");
+
+    // Extensiones de las imágenes de las que se generan versiones
+    private static final String[] VARIANT_SOURCES = {"jpg", "jpeg", "png", "gif"};
+
+
+    @Autowired
+    private StoredFileDAO storedFileDAO;
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    @Autowired
+    private StorageBackend storageBackend;
+
+    @Value("${app.uploads.unreferenced-grace-period:10m}")
+    private Duration gracePeriod;
+
+    @Value("${app.uploads.sweep.interval:6h}")
+    private Duration interval;
+
+    @Value("${app.uploads.sweep.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.uploads.sweep.pause-between-batches:100ms}")
+    private Duration pauseBetweenBatches;
+
+    @Value("${app.uploads.sweep.quarantine:false}")
+    private boolean quarantine;
+
+    @Value("${app.uploads.sweep.quarantine-retention:7d}")
+    private Duration quarantineRetention;
+
+    // Transacción propia por archivo: la fila de stored_files queda bloqueada solo mientras se borra
+    private final TransactionTemplate deleteTransaction;
+
+    // Solo una pasada a la vez, sea la programada o una pedida a mano
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private volatile UploadSweepReport lastReport;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "upload-sweeper");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+
+    public UploadSweeperService(PlatformTransactionManager transactionManager) {
+        this.deleteTransaction = new TransactionTemplate(transactionManager);
+        this.deleteTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+
+    /**
+     * Programa las pasadas periódicas al arrancar. Un intervalo de cero las desactiva.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleSweeps() {
+        if (interval.isZero() || interval.isNegative() || storageBackend.localRoot() == null) {
+            logger.info("Upload sweeper disabled.");
+            return;
+        }
+        scheduler.scheduleWithFixedDelay(this::sweepIfIdle, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * Lanza una pasada en segundo plano.
+     * @return false si ya hay una en curso o el almacén no es local.
+     */
+    public boolean requestSweep() {
+        if (running.get() || storageBackend.localRoot() == null) {
+            return false;
+        }
+        scheduler.execute(this::sweepIfIdle);
+        return true;
+    }
+
+
+    /**
+     * @return Resultado de la última pasada terminada, o null si aún no ha habido ninguna.
+     */
+    public UploadSweepReport getLastReport() {
+        return lastReport;
+    }
+
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+
+    private void sweepIfIdle() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            sweep();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.info("Upload sweep interrupted.");
+        } catch (IOException | RuntimeException e) {
+            logger.error("Upload sweep failed: {}", e.getMessage());
+        } finally {
+            running.set(false);
+        }
+    }
+
+
+    /**
+     * Recorre el directorio de subidas y elimina los huérfanos.
+     * @return Resultado de la pasada.
+     */
+    UploadSweepReport sweep() throws IOException, InterruptedException {
+        Path root = storageBackend.localRoot();
+        Sweep sweep = new Sweep(root);
+        if (root != null && Files.isDirectory(root)) {
+            Files.walkFileTree(sweep.root, sweep);
+            sweep.flush();
+            sweep.purgeQuarantine();
+        }
+        UploadSweepReport report = sweep.report();
+        lastReport = report;
+        logger.info("Upload sweep finished in {} ms: {} files scanned, {} orphans, {} deleted, {} quarantined, {} bytes reclaimed.",
+                report.durationMillis(), report.scannedFiles(), report.orphanFiles(), report.deletedFiles(),
+                report.quarantinedFiles(), report.reclaimedBytes());
+        return report;
+    }
+
+
+    /**
+     * Estado de una pasada: recorre el árbol, acumula las rutas candidatas y las resuelve por bloques.
+     */
+    private final class Sweep extends SimpleFileVisitor<Path> {
+
+        private final Path root;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final long startNanos = System.nanoTime();
+        private final Instant modifiedBefore = Instant.now().minus(gracePeriod);
+
+        // Ruta relativa -> tamaño de las imágenes pendientes de comprobar
+        private final Map<String, Long> batch = new LinkedHashMap<>();
+
+        private long scannedFiles;
+        private long orphanFiles;
+        private long deletedFiles;
+        private long quarantinedFiles;
+        private long reclaimedBytes;
+
+        private Sweep(Path root) {
+            this.root = root;
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+            return dir.equals(root.resolve(QUARANTINE_DIRECTORY)) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+            if (!attrs.isRegularFile()) {
+                return FileVisitResult.CONTINUE;
+            }
+            scannedFiles++;
+            if (!attrs.lastModifiedTime().toInstant().isBefore(modifiedBefore)) {
+                return FileVisitResult.CONTINUE;
+            }
+            String name = file.getFileName().toString();
+            if (name.startsWith(ChunkedUploadService.DATA_PREFIX)) {
+                // Subidas por partes en curso: las caduca ChunkedUploadService según su propio plazo
+                return FileVisitResult.CONTINUE;
+            }
+            String relativePath = root.relativize(file).toString().replace('\\', '/');
+            if (TEMP_FILE.matcher(name).matches()) {
+                orphanFiles++;
+                remove(relativePath, attrs.size());
+            } else {
+                Matcher variant = VARIANT_FILE.matcher(name);
+                if (variant.matches()) {
+                    if (!hasSource(file.resolveSibling(variant.group(1)))) {
+                        orphanFiles++;
+                        remove(relativePath, attrs.size());
+                    }
+                } else {
+                    batch.put(relativePath, attrs.size());
+                    if (batch.size() >= batchSize) {
+                        try {
+                            flush();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return FileVisitResult.TERMINATE;
+                        }
+                    }
+                }
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exc) {
+            logger.warn("Could not read {} during upload sweep: {}", file, exc.getMessage());
+            return FileVisitResult.CONTINUE;
+        }
+
+        /**
+         * Comprueba el bloque pendiente con una sola consulta y elimina las rutas que nadie usa.
+         */
+        private void flush() throws InterruptedException {
+            if (batch.isEmpty()) {
+                return;
+            }
+            LocalDateTime registeredAfter = LocalDateTime.now().minus(gracePeriod);
+            Set<String> referenced = storedFileDAO.findReferencedPaths(batch.keySet(), registeredAfter);
+            for (Map.Entry<String, Long> entry : batch.entrySet()) {
+                String path = entry.getKey();
+                if (referenced.contains(path)) {
+                    continue;
+                }
+                // Se vuelve a comprobar con la fila bloqueada: una subida del mismo contenido pudo registrarlo
+                boolean removed = Boolean.TRUE.equals(deleteTransaction.execute(status -> {
+                    if (!storedFileDAO.lockUnreferenced(path, registeredAfter)) {
+                        return false;
+                    }
+                    storedFileDAO.deleteUnreferenced(path, registeredAfter);
+                    return remove(path, entry.getValue());
+                }));
+                if (removed) {
+                    orphanFiles++;
+                    imageVariantService.deleteVariants(path);
+                }
+            }
+            batch.clear();
+            if (!pauseBetweenBatches.isZero()) {
+                Thread.sleep(pauseBetweenBatches.toMillis());
+            }
+        }
+
+        /**
+         * Borra o pone en cuarentena un archivo.
+         * @return true si se ha quitado de su sitio.
+         */
+        private boolean remove(String relativePath, long size) {
+            Path file = root.resolve(relativePath);
+            try {
+                if (quarantine) {
+                    Path target = root.resolve(QUARANTINE_DIRECTORY).resolve(relativePath);
+                    Files.createDirectories(target.getParent());
+                    Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+                    // La fecha de modificación marca desde cuándo está en cuarentena
+                    Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+                    quarantinedFiles++;
+                    logger.info("Orphan upload {} moved to quarantine.", relativePath);
+                } else if (Files.deleteIfExists(file)) {
+                    deletedFiles++;
+                    reclaimedBytes += size;
+                    logger.info("Orphan upload {} deleted ({} bytes).", relativePath, size);
+                }
+                return true;
+            } catch (IOException e) {
+                logger.warn("Could not remove orphan upload {}: {}", relativePath, e.getMessage());
+                return false;
+            }
+        }
+
+        /**
+         * Borra los archivos que han cumplido su plazo en cuarentena.
+         */
+        private void purgeQuarantine() throws IOException {
+            Path quarantineRoot = root.resolve(QUARANTINE_DIRECTORY);
+            if (!Files.isDirectory(quarantineRoot)) {
+                return;
+            }
+            Instant expiredBefore = Instant.now().minus(quarantineRetention);
+            Files.walkFileTree(quarantineRoot, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && attrs.lastModifiedTime().toInstant().isBefore(expiredBefore)) {
+                        try {
+                            Files.delete(file);
+                            deletedFiles++;
+                            reclaimedBytes += attrs.size();
+                        } catch (IOException e) {
+                            logger.warn("Could not delete quarantined upload {}: {}", file, e.getMessage());
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+
+        private boolean hasSource(Path base) {
+            for (String extension : VARIANT_SOURCES) {
+                if (Files.exists(base.resolveSibling(base.getFileName() + "." + extension))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private UploadSweepReport report() {
+            return new UploadSweepReport(startedAt, (System.nanoTime() - startNanos) / 1_000_000, scannedFiles,
+                    orphanFiles, deletedFiles, quarantinedFiles, reclaimedBytes);
+        }
+    }
+}
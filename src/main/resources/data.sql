@@ -102,3 +102,12 @@ INSERT IGNORE INTO categories (id, name, image, parent_id) VALUES
 (12, 'Decoración', NULL, 3);
 
 
+-- Inicializar los generadores de identificadores a continuación del mayor id existente.
+-- INSERT IGNORE no modifica los generadores que ya estén en uso.
+INSERT IGNORE INTO id_generators (gen_name, gen_value) SELECT 'regions', COALESCE(MAX(id), 0) + 1 FROM regions;
+INSERT IGNORE INTO id_generators (gen_name, gen_value) SELECT 'provinces', COALESCE(MAX(id), 0) + 1 FROM provinces;
+INSERT IGNORE INTO id_generators (gen_name, gen_value) SELECT 'supermarkets', COALESCE(MAX(id), 0) + 1 FROM supermarkets;
+INSERT IGNORE INTO id_generators (gen_name, gen_value) SELECT 'locations', COALESCE(MAX(id), 0) + 1 FROM locations;
+INSERT IGNORE INTO id_generators (gen_name, gen_value) SELECT 'categories', COALESCE(MAX(id), 0) + 1 FROM categories;
+INSERT IGNORE INTO id_generators (gen_name, gen_value) SELECT 'tickets', COALESCE(MAX(id), 0) + 1 FROM tickets;
+INSERT IGNORE INTO id_generators (gen_name, gen_value) SELECT 'ticket_lines', COALESCE(MAX(id), 0) + 1 FROM ticket_lines;
@@ -44,3 +44,123 @@ CREATE TABLE IF NOT EXISTS categories (
         ON UPDATE CASCADE
 );
 
+-- Tabla de asignación de identificadores por bloques (TableGenerator de Hibernate).
+-- Sustituye a IDENTITY en las entidades para que los INSERT puedan enviarse en lotes JDBC.
+CREATE TABLE IF NOT EXISTS id_generators (
+    gen_name VARCHAR(64) NOT NULL PRIMARY KEY,
+    gen_value BIGINT NOT NULL
+);
+
+-- Columnas normalizadas (en mayúsculas) e indexadas para las comprobaciones de existencia de los DAO.
+-- Las calcula la base de datos, así que nunca se desincronizan de la columna original.
+ALTER TABLE regions ADD COLUMN IF NOT EXISTS code_norm VARCHAR(10) GENERATED ALWAYS AS (UPPER(code)) STORED;
+CREATE INDEX IF NOT EXISTS idx_regions_code_norm ON regions (code_norm);
+
+ALTER TABLE provinces ADD COLUMN IF NOT EXISTS code_norm VARCHAR(10) GENERATED ALWAYS AS (UPPER(code)) STORED;
+CREATE INDEX IF NOT EXISTS idx_provinces_code_norm ON provinces (code_norm);
+
+ALTER TABLE supermarkets ADD COLUMN IF NOT EXISTS name_norm VARCHAR(100) GENERATED ALWAYS AS (UPPER(name)) STORED;
+CREATE INDEX IF NOT EXISTS idx_supermarkets_name_norm ON supermarkets (name_norm);
+
+ALTER TABLE locations ADD COLUMN IF NOT EXISTS address_norm VARCHAR(255) GENERATED ALWAYS AS (UPPER(address)) STORED;
+CREATE INDEX IF NOT EXISTS idx_locations_address_norm ON locations (address_norm);
+
+ALTER TABLE categories ADD COLUMN IF NOT EXISTS name_norm VARCHAR(255) GENERATED ALWAYS AS (UPPER(name)) STORED;
+CREATE INDEX IF NOT EXISTS idx_categories_name_norm ON categories (name_norm);
+
+-- Columnas normalizadas para el filtro por prefijo (`LIKE 'ABC%'`) de los listados de comunidades y provincias,
+-- que filtran por nombre. Las demás tablas filtran por las columnas ya creadas arriba.
+ALTER TABLE regions ADD COLUMN IF NOT EXISTS name_norm VARCHAR(100) GENERATED ALWAYS AS (UPPER(name)) STORED;
+CREATE INDEX IF NOT EXISTS idx_regions_name_norm ON regions (name_norm);
+
+ALTER TABLE provinces ADD COLUMN IF NOT EXISTS name_norm VARCHAR(100) GENERATED ALWAYS AS (UPPER(name)) STORED;
+CREATE INDEX IF NOT EXISTS idx_provinces_name_norm ON provinces (name_norm);
+
+-- Un índice (columna, id) por cada columna ordenable de los listados paginados por keyset, para que cada
+-- página sea un rango del índice ya ordenado en lugar de un recorrido y una ordenación de toda la tabla.
+CREATE INDEX IF NOT EXISTS idx_regions_code_id ON regions (code, id);
+CREATE INDEX IF NOT EXISTS idx_regions_name_id ON regions (name, id);
+CREATE INDEX IF NOT EXISTS idx_provinces_code_id ON provinces (code, id);
+CREATE INDEX IF NOT EXISTS idx_provinces_name_id ON provinces (name, id);
+CREATE INDEX IF NOT EXISTS idx_supermarkets_name_id ON supermarkets (name, id);
+CREATE INDEX IF NOT EXISTS idx_locations_address_id ON locations (address, id);
+CREATE INDEX IF NOT EXISTS idx_locations_city_id ON locations (city, id);
+CREATE INDEX IF NOT EXISTS idx_categories_name_id ON categories (name, id);
+
+-- Versión de cada fila para el bloqueo optimista (@Version en las entidades).
+-- Las filas existentes empiezan en 0; cada UPDATE de los DAO la incrementa.
+ALTER TABLE regions ADD COLUMN IF NOT EXISTS version INT NOT NULL DEFAULT 0;
+ALTER TABLE provinces ADD COLUMN IF NOT EXISTS version INT NOT NULL DEFAULT 0;
+ALTER TABLE supermarkets ADD COLUMN IF NOT EXISTS version INT NOT NULL DEFAULT 0;
+ALTER TABLE locations ADD COLUMN IF NOT EXISTS version INT NOT NULL DEFAULT 0;
+ALTER TABLE categories ADD COLUMN IF NOT EXISTS version INT NOT NULL DEFAULT 0;
+
+-- Trabajos de borrado en cascada en segundo plano (regiones, provincias y supermercados con hijos).
+-- El progreso se guarda por bloques para poder reanudar un trabajo interrumpido.
+CREATE TABLE IF NOT EXISTS deletion_jobs (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    target VARCHAR(20) NOT NULL,
+    target_id INT NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    deleted_rows BIGINT NOT NULL DEFAULT 0,
+    last_error VARCHAR(500) NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_deletion_jobs_status (status)
+);
+
+
+-- Coordenadas opcionales de las ubicaciones para las búsquedas por cercanía.
+-- El índice permite filtrar por rectángulo (latitud y longitud) sin recorrer la tabla.
+ALTER TABLE locations ADD COLUMN IF NOT EXISTS latitude DOUBLE NULL;
+ALTER TABLE locations ADD COLUMN IF NOT EXISTS longitude DOUBLE NULL;
+CREATE INDEX IF NOT EXISTS idx_locations_lat_lon ON locations (latitude, longitude);
+
+-- Tickets de compra y sus líneas. Los importes se guardan en céntimos (BIGINT).
+-- Los ids los reserva Hibernate en bloques desde id_generators para insertar en lotes.
+CREATE TABLE IF NOT EXISTS tickets (
+    id BIGINT PRIMARY KEY,
+    location_id INT NOT NULL,
+    issued_at DATETIME NOT NULL,
+    total_cents BIGINT NOT NULL,
+    FOREIGN KEY (location_id) REFERENCES locations(id),
+    INDEX idx_tickets_issued_at (issued_at)
+);
+
+CREATE TABLE IF NOT EXISTS ticket_lines (
+    id BIGINT PRIMARY KEY,
+    ticket_id BIGINT NOT NULL,
+    category_id INT NOT NULL,
+    description VARCHAR(255) NULL,
+    quantity INT NOT NULL,
+    unit_price_cents BIGINT NOT NULL,
+    amount_cents BIGINT NOT NULL,
+    FOREIGN KEY (ticket_id) REFERENCES tickets(id),
+    FOREIGN KEY (category_id) REFERENCES categories(id)
+);
+
+-- Gasto diario agregado por región, provincia, supermercado y categoría. Se actualiza con sumas
+-- incrementales en la misma transacción que inserta los tickets y se puede recalcular por rangos de días.
+-- La clave primaria empieza por el día para que los informes por rango de fechas lean solo ese rango.
+CREATE TABLE IF NOT EXISTS spend_daily (
+    spend_date DATE NOT NULL,
+    region_id INT NOT NULL,
+    province_id INT NOT NULL,
+    supermarket_id INT NOT NULL,
+    category_id INT NOT NULL,
+    total_cents BIGINT NOT NULL,
+    line_count BIGINT NOT NULL,
+    PRIMARY KEY (spend_date, region_id, province_id, supermarket_id, category_id)
+);
+
+-- Archivos subidos, guardados una sola vez por contenido en `ab/cd/<sha256>.<ext>` dentro de UPLOAD_PATH.
+-- ref_count cuenta las categorías cuya imagen es el archivo; registered_at es la última vez que se subió,
+-- para no borrar un archivo recién subido que aún no ha llegado a guardarse en ninguna categoría.
+CREATE TABLE IF NOT EXISTS stored_files (
+    path VARCHAR(255) PRIMARY KEY,
+    size_bytes BIGINT NOT NULL,
+    content_type VARCHAR(100) NOT NULL,
+    ref_count INT NOT NULL DEFAULT 0,
+    registered_at DATETIME NOT NULL,
+    INDEX idx_stored_files_unreferenced (ref_count, registered_at)
+);
@@ -0,0 +1,88 @@
+// Subida por partes reanudable de las imágenes grandes del formulario de categorías.
+// El archivo se envía en partes numeradas con su SHA-256; si una falla se reintenta y, tras un corte, se
+// pregunta al servidor qué partes tiene para no repetirlas. Al terminar, el formulario se envía solo con el
+// identificador de la sesión.
+(function () {
+    const CHUNKED_THRESHOLD = 1024 * 1024;
+    const MAX_ATTEMPTS = 5;
+
+    const form = document.querySelector('form[data-upload-sessions]');
+    if (!form || !window.crypto || !window.crypto.subtle) {
+        return;
+    }
+    const fileInput = form.querySelector('#imageFile');
+    const uploadIdInput = form.querySelector('#uploadId');
+    const progress = form.querySelector('#uploadProgress');
+    const baseUrl = form.dataset.uploadSessions;
+
+    const sleep = (ms) => new Promise((resolve) => setTimeout(resolve, ms));
+
+    async function sha256(buffer) {
+        const digest = await crypto.subtle.digest('SHA-256', buffer);
+        return Array.from(new Uint8Array(digest), (b) => b.toString(16).padStart(2, '0')).join('');
+    }
+
+    async function request(url, options) {
+        const response = await fetch(url, options);
+        if (!response.ok) {
+            const error = new Error('HTTP ' + response.status);
+            error.status = response.status;
+            throw error;
+        }
+        return response.status === 204 ? null : response.json();
+    }
+
+    async function sendChunk(session, file, index) {
+        const start = index * session.chunkSize;
+        const buffer = await file.slice(start, Math.min(file.size, start + session.chunkSize)).arrayBuffer();
+        const checksum = await sha256(buffer);
+        for (let attempt = 1; ; attempt++) {
+            try {
+                await request(`${baseUrl}/${session.id}/chunks/${index}`, {
+                    method: 'PUT',
+                    headers: {'Content-Type': 'application/octet-stream', 'X-Chunk-SHA256': checksum},
+                    body: buffer
+                });
+                return;
+            } catch (error) {
+                // 404: la sesión ya no existe; no tiene sentido reintentar
+                if (error.status === 404 || attempt >= MAX_ATTEMPTS) {
+                    throw error;
+                }
+                await sleep(500 * 2 ** attempt);
+            }
+        }
+    }
+
+    async function upload(file) {
+        let session = await request(baseUrl, {
+            method: 'POST',
+            headers: {'Content-Type': 'application/x-www-form-urlencoded'},
+            body: new URLSearchParams({fileName: file.name, size: file.size})
+        });
+        // Las partes anteriores a offset ya están en el servidor
+        for (let index = session.offset / session.chunkSize; index < session.chunkCount; index++) {
+            await sendChunk(session, file, index);
+            progress.textContent = Math.round(100 * (index + 1) / session.chunkCount) + ' %';
+        }
+        session = await request(`${baseUrl}/${session.id}/complete`, {method: 'POST'});
+        return session.id;
+    }
+
+    form.addEventListener('submit', async (event) => {
+        const file = fileInput.files[0];
+        if (!file || file.size < CHUNKED_THRESHOLD || uploadIdInput.value) {
+            return;
+        }
+        event.preventDefault();
+        try {
+            uploadIdInput.value = await upload(file);
+            // El archivo ya está en el servidor: no se vuelve a enviar con el formulario
+            fileInput.value = '';
+        } catch (error) {
+            // Si la subida por partes falla, el formulario se envía como siempre
+            progress.textContent = '';
+        }
+        form.submit();
+    });
+})();
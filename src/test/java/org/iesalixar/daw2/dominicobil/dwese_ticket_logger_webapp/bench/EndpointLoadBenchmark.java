@@ -0,0 +1,200 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.bench;
+
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+/**
+ * Prueba de carga de los listados y formularios con muchos clientes a la vez, para comparar la aplicación con
+ * y sin hilos virtuales (`VIRTUAL_THREADS=true|false`) contra la misma base de datos.
+ *
+ * Cada cliente es un hilo virtual que pide las rutas una tras otra, sin pausa, durante el tiempo indicado;
+ * los primeros segundos de calentamiento no se cuentan. Al final se muestran, por ruta, las peticiones por
+ * segundo y los percentiles de latencia. Solo usa el JDK, así que se puede lanzar directamente desde el
+ * código fuente con la aplicación arrancada:
+ *
+ * <pre>
+ * java src/test/java/org/iesalixar/daw2/dominicobil/dwese_ticket_logger_webapp/bench/EndpointLoadBenchmark.java \
+ *      http://localhost:8080 1000 60s 10s /categories /locations /categories/new /locations/new
+ * </pre>
+ *
+ * Argumentos, todos opcionales y en este orden: URL base, clientes, duración, calentamiento y rutas.
+ */
+public class EndpointLoadBenchmark {
+
+
+    private static final List<String> DEFAULT_PATHS = List.of("/categories", "/locations", "/categories/new", "/locations/new");
+
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        Duration duration = args.length > 2 ? seconds(args[2]) : Duration.ofSeconds(60);
+        Duration warmup = args.length > 3 ? seconds(args[3]) : Duration.ofSeconds(10);
+        List<String> paths = args.length > 4 ? Arrays.asList(args).subList(4, args.length) : DEFAULT_PATHS;
+
+        for (String line : run(baseUrl, clients, duration, warmup, paths)) {
+            System.out.println(line);
+        }
+    }
+
+
+    /**
+     * Lanza la prueba y devuelve el resumen, una línea por ruta más el total.
+     */
+    public static List<String> run(String baseUrl, int clients, Duration duration, Duration warmup, List<String> paths)
+            throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        List<HttpRequest> requests = paths.stream()
+                .map(path -> HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofSeconds(60)).GET().build())
+                .toList();
+
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long measureUntil = measureFrom + duration.toNanos();
+        List<ClientResults> results = new ArrayList<>();
+        CountDownLatch finished = new CountDownLatch(clients);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                ClientResults clientResults = new ClientResults(paths.size());
+                results.add(clientResults);
+                int firstPath = i % paths.size();
+                executor.execute(() -> {
+                    try {
+                        clientLoop(client, requests, firstPath, measureFrom, measureUntil, clientResults);
+                    } finally {
+                        finished.countDown();
+                    }
+                });
+            }
+            finished.await();
+        }
+
+        List<String> summary = new ArrayList<>();
+        summary.add(String.format(Locale.ROOT, "%-22s %9s %7s %9s %9s %9s %9s %9s",
+                "path", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+        List<long[]> all = new ArrayList<>();
+        long allErrors = 0;
+        for (int p = 0; p < paths.size(); p++) {
+            int path = p;
+            long[] latencies = merge(results.stream().map(r -> r.latencies[path]).toList());
+            long errors = results.stream().mapToLong(r -> r.errors[path]).sum();
+            all.add(latencies);
+            allErrors += errors;
+            summary.add(line(paths.get(p), latencies, errors, duration));
+        }
+        summary.add(line("total", merge(all.stream().map(LongList::of).toList()), allErrors, duration));
+        return summary;
+    }
+
+
+    private static void clientLoop(HttpClient client, List<HttpRequest> requests, int firstPath, long measureFrom,
+                                   long measureUntil, ClientResults results) {
+        int path = firstPath;
+        long now;
+        while ((now = System.nanoTime()) < measureUntil) {
+            boolean ok;
+            try {
+                HttpResponse<Void> response = client.send(requests.get(path), HttpResponse.BodyHandlers.discarding());
+                ok = response.statusCode() < 400;
+            } catch (IOException e) {
+                ok = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long end = System.nanoTime();
+            if (now >= measureFrom && end <= measureUntil) {
+                if (ok) {
+                    results.latencies[path].add(end - now);
+                } else {
+                    results.errors[path]++;
+                }
+            }
+            path = (path + 1) % requests.size();
+        }
+    }
+
+
+    private static String line(String name, long[] latencies, long errors, Duration duration) {
+        Arrays.sort(latencies);
+        return String.format(Locale.ROOT, "%-22s %9d %7d %9.1f %9.1f %9.1f %9.1f %9.1f",
+                name, latencies.length, errors, latencies.length / (duration.toNanos() / 1e9),
+                millis(latencies, 0.50), millis(latencies, 0.95), millis(latencies, 0.99), millis(latencies, 1.0));
+    }
+
+    private static double millis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static long[] merge(List<LongList> lists) {
+        long[] merged = new long[lists.stream().mapToInt(list -> list.size).sum()];
+        int offset = 0;
+        for (LongList list : lists) {
+            System.arraycopy(list.values, 0, merged, offset, list.size);
+            offset += list.size;
+        }
+        return merged;
+    }
+
+    private static Duration seconds(String value) {
+        return Duration.ofSeconds(Long.parseLong(value.endsWith("s") ? value.substring(0, value.length() - 1) : value));
+    }
+
+
+    /**
+     * Latencias y errores de un cliente por ruta. Cada cliente escribe solo en las suyas.
+     */
+    private static final class ClientResults {
+
+        private final LongList[] latencies;
+        private final long[] errors;
+
+        private ClientResults(int paths) {
+            latencies = new LongList[paths];
+            for (int i = 0; i < paths; i++) {
+                latencies[i] = new LongList();
+            }
+            errors = new long[paths];
+        }
+    }
+
+
+    private static final class LongList {
+
+        private long[] values = new long[64];
+        private int size;
+
+        private static LongList of(long[] values) {
+            LongList list = new LongList();
+            list.values = values;
+            list.size = values.length;
+            return list;
+        }
+
+        private void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao;
+
+
+import org.junit.jupiter.api.Test;
+
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class CountingBloomFilterTest {
+
+
+    /**
+     * Toda clave añadida debe encontrarse siempre (sin falsos negativos).
+     */
+    @Test
+    public void testAddedKeysAreAlwaysFound() {
+        CountingBloomFilter filter = new CountingBloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("KEY-" + i);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("KEY-" + i));
+        }
+    }
+
+
+    /**
+     * La tasa de falsos positivos debe mantenerse cerca de la configurada.
+     */
+    @Test
+    public void testFalsePositiveRateIsBounded() {
+        CountingBloomFilter filter = new CountingBloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("KEY-" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("OTHER-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 300, "False positives: " + falsePositives);
+    }
+
+
+    /**
+     * Eliminar una clave la retira del filtro sin afectar a una clave repetida.
+     */
+    @Test
+    public void testRemoveKeepsDuplicates() {
+        CountingBloomFilter filter = new CountingBloomFilter(1_000, 0.01);
+        filter.add("MERCADONA");
+        filter.add("MERCADONA");
+        filter.add("LIDL");
+        filter.remove("LIDL");
+        filter.remove("MERCADONA");
+        assertFalse(filter.mightContain("LIDL"));
+        assertTrue(filter.mightContain("MERCADONA"));
+    }
+}
@@ -0,0 +1,175 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services;
+
+
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.UploadSessionStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+public class ChunkedUploadServiceTest {
+
+    private static final int CHUNK_SIZE = 1024;
+
+    @TempDir
+    Path uploadDir;
+
+    private ChunkedUploadService service;
+
+    private FileStorageService fileStorageService;
+
+
+    @BeforeEach
+    public void setUp() {
+        service = new ChunkedUploadService();
+        fileStorageService = mock(FileStorageService.class);
+        ReflectionTestUtils.setField(service, "storageBackend", new LocalStorageBackend(uploadDir));
+        ReflectionTestUtils.setField(service, "fileStorageService", fileStorageService);
+        ReflectionTestUtils.setField(service, "chunkSize", DataSize.ofBytes(CHUNK_SIZE));
+        ReflectionTestUtils.setField(service, "maxSize", DataSize.ofKilobytes(16));
+        ReflectionTestUtils.setField(service, "sessionTtl", Duration.ofHours(1));
+        ReflectionTestUtils.setField(service, "maxSessions", 10);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        service.shutdown();
+    }
+
+
+    /**
+     * Las partes se aceptan en cualquier orden; el offset solo avanza con las contiguas y al cerrar el
+     * archivo reunido es idéntico al original. Una sesión completada no admite más partes y su ruta se
+     * entrega una sola vez.
+     */
+    @Test
+    public void testAssemblesChunksOutOfOrder() throws IOException, NoSuchAlgorithmException {
+        byte[] content = content(2_500);
+        AtomicReference<byte[]> assembled = new AtomicReference<>();
+        when(fileStorageService.saveFile(any(Path.class), eq("scan.png"), eq(DataSize.ofKilobytes(16)))).thenAnswer(invocation -> {
+            assembled.set(Files.readAllBytes(invocation.getArgument(0)));
+            return "ab/cd/scan.png";
+        });
+        UploadSessionStatus status = service.create("scan.png", content.length).status();
+        assertEquals(3, status.chunkCount());
+
+        assertEquals(ChunkedUploadService.Result.ACCEPTED, put(status.id(), 2, content));
+        assertEquals(0, service.getStatus(status.id()).offset());
+        assertEquals(ChunkedUploadService.Result.ACCEPTED, put(status.id(), 0, content));
+        assertEquals(CHUNK_SIZE, service.getStatus(status.id()).offset());
+        assertFalse(service.complete(status.id()).completed());
+
+        assertEquals(ChunkedUploadService.Result.ACCEPTED, put(status.id(), 1, content));
+        assertEquals(ChunkedUploadService.Result.ACCEPTED, put(status.id(), 1, content));
+        assertEquals(content.length, service.getStatus(status.id()).offset());
+        assertTrue(service.complete(status.id()).completed());
+        assertArrayEquals(content, assembled.get());
+        assertEquals(ChunkedUploadService.Result.CLOSED, put(status.id(), 1, content));
+
+        assertEquals("ab/cd/scan.png", service.claim(status.id()));
+        assertNull(service.claim(status.id()));
+        try (var files = Files.list(uploadDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+
+    /**
+     * El archivo reunido se guarda sin el monitor de la sesión: mientras tanto otras peticiones consultan la
+     * sesión sin esperar, un segundo cierre ve que se está guardando y no se admiten más partes.
+     */
+    @Test
+    public void testSavesOutsideTheSessionLock() throws Exception {
+        byte[] content = content(1_500);
+        String id = service.create("scan.png", content.length).status().id();
+        put(id, 0, content);
+        put(id, 1, content);
+        AtomicReference<UploadSessionStatus> concurrent = new AtomicReference<>();
+        AtomicReference<ChunkedUploadService.Result> lateChunk = new AtomicReference<>();
+        when(fileStorageService.saveFile(any(Path.class), eq("scan.png"), eq(DataSize.ofKilobytes(16)))).thenAnswer(invocation -> {
+            // En otro hilo: con el monitor tomado por este, esperaría hasta que termine el guardado
+            concurrent.set(CompletableFuture.supplyAsync(() -> service.complete(id)).get(5, TimeUnit.SECONDS));
+            lateChunk.set(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return put(id, 1, content);
+                } catch (IOException | NoSuchAlgorithmException e) {
+                    throw new IllegalStateException(e);
+                }
+            }).get(5, TimeUnit.SECONDS));
+            return "ab/cd/scan.png";
+        });
+
+        assertTrue(service.complete(id).completed());
+        assertTrue(concurrent.get().completing());
+        assertFalse(concurrent.get().completed());
+        assertEquals(ChunkedUploadService.Result.CLOSED, lateChunk.get());
+        assertEquals("ab/cd/scan.png", service.claim(id));
+    }
+
+
+    /**
+     * Una parte con un SHA-256 distinto o con más bytes de los esperados no se da por recibida.
+     */
+    @Test
+    public void testRejectsCorruptChunks() throws IOException, NoSuchAlgorithmException {
+        byte[] content = content(2_000);
+        String id = service.create("scan.png", content.length).status().id();
+
+        assertEquals(ChunkedUploadService.Result.CHECKSUM_MISMATCH,
+                service.writeChunk(id, 0, new ByteArrayInputStream(Arrays.copyOf(content, CHUNK_SIZE)), sha256(new byte[1])));
+        byte[] tooLong = Arrays.copyOfRange(content, CHUNK_SIZE, content.length + 10);
+        assertEquals(ChunkedUploadService.Result.INVALID,
+                service.writeChunk(id, 1, new ByteArrayInputStream(tooLong), sha256(tooLong)));
+        assertEquals(ChunkedUploadService.Result.INVALID, put(id, 2, content));
+        assertEquals(0, service.getStatus(id).receivedChunks());
+        assertEquals(ChunkedUploadService.Result.UNKNOWN_SESSION, put("missing", 0, content));
+        assertEquals(ChunkedUploadService.Result.TOO_LARGE, service.create("big.png", 17 * 1024).result());
+    }
+
+
+    private ChunkedUploadService.Result put(String id, int index, byte[] content) throws IOException, NoSuchAlgorithmException {
+        int start = Math.min(index * CHUNK_SIZE, content.length);
+        byte[] chunk = Arrays.copyOfRange(content, start, Math.min(content.length, start + CHUNK_SIZE));
+        return service.writeChunk(id, index, new ByteArrayInputStream(chunk), sha256(chunk));
+    }
+
+    private static String sha256(byte[] content) throws NoSuchAlgorithmException {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+
+    private static byte[] content(int size) {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) (i * 7);
+        }
+        return content;
+    }
+}
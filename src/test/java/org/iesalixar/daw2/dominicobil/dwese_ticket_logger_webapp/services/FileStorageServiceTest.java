@@ -0,0 +1,152 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services;
+
+
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.StoredFileDAO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.stream.Stream;
+
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+
+public class FileStorageServiceTest {
+
+    private static final byte[] PNG_HEADER = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A};
+
+    @TempDir
+    Path uploadDir;
+
+    private FileStorageService service;
+
+    private StoredFileDAO storedFileDAO;
+
+
+    @BeforeEach
+    public void setUp() {
+        service = new FileStorageService(mock(PlatformTransactionManager.class));
+        storedFileDAO = mock(StoredFileDAO.class);
+        ReflectionTestUtils.setField(service, "storedFileDAO", storedFileDAO);
+        ReflectionTestUtils.setField(service, "imageVariantService", mock(ImageVariantService.class));
+        ReflectionTestUtils.setField(service, "storageBackend", new LocalStorageBackend(uploadDir));
+        ReflectionTestUtils.setField(service, "maxSize", DataSize.ofKilobytes(64));
+        ReflectionTestUtils.setField(service, "allowedTypes", Set.of("image/jpeg", "image/png"));
+    }
+
+
+    /**
+     * El archivo se guarda por su SHA-256 con la extensión de su contenido, no con la del nombre original,
+     * y sin dejar temporales. Se prueba también con un archivo en disco, que es como llegan las partes del
+     * multipart: con el mismo contenido se reutiliza el archivo ya guardado.
+     */
+    @Test
+    public void testSavesByContent(@TempDir Path partDir) throws IOException, NoSuchAlgorithmException {
+        byte[] content = png(50_000);
+        String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        String fileName = service.saveFile(new MockMultipartFile("imageFile", "scan.jpg", "image/jpeg", content));
+        assertEquals(hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + ".png", fileName);
+        assertArrayEquals(content, Files.readAllBytes(uploadDir.resolve(fileName)));
+
+        Path part = Files.write(partDir.resolve("part.tmp"), content);
+        String fromDisk = service.saveFile(new MockMultipartFile("imageFile", "scan.png", "image/png", new byte[0]) {
+            @Override
+            public long getSize() {
+                return content.length;
+            }
+
+            @Override
+            public InputStream getInputStream() throws IOException {
+                return new FileInputStream(part.toFile());
+            }
+        });
+        assertEquals(fileName, fromDisk);
+        verify(storedFileDAO, times(2)).registerFile(fileName, content.length, "image/png");
+
+        String other = service.saveFile(new MockMultipartFile("imageFile", "other.png", "image/png", png(10)));
+        assertNotNull(other);
+        assertEquals(2, fileCount());
+    }
+
+
+    /**
+     * Se rechazan los archivos de tipo no permitido o que superan el tamaño máximo, aunque declaren un tamaño menor.
+     */
+    @Test
+    public void testRejectsInvalidUploads() throws IOException {
+        assertNull(service.saveFile(new MockMultipartFile("imageFile", "notes.png", "image/png", "<html>".getBytes())));
+        assertNull(service.saveFile(new MockMultipartFile("imageFile", "anim.gif", "image/gif", "GIF89a......".getBytes())));
+        assertNull(service.saveFile(new MockMultipartFile("imageFile", "big.png", "image/png", png(70_000))));
+
+        byte[] oversized = png(70_000);
+        assertNull(service.saveFile(new MockMultipartFile("imageFile", "lying.png", "image/png", oversized) {
+            @Override
+            public long getSize() {
+                return 1_000;
+            }
+        }));
+        assertEquals(0, fileCount());
+        verify(storedFileDAO, never()).registerFile(anyString(), anyLong(), anyString());
+    }
+
+
+    /**
+     * Si el almacén falla al guardar, el archivo se quita del registro para no dejar una fila sin archivo.
+     */
+    @Test
+    public void testUnregistersFileWhenStoreFails() {
+        ReflectionTestUtils.setField(service, "storageBackend", new LocalStorageBackend(uploadDir) {
+            @Override
+            public void store(String path, Path source, String contentType) throws IOException {
+                throw new IOException("disk full");
+            }
+        });
+
+        assertNull(service.saveFile(new MockMultipartFile("imageFile", "scan.png", "image/png", png(1_000))));
+        verify(storedFileDAO).registerFile(anyString(), eq(1_000L), eq("image/png"));
+        verify(storedFileDAO).deleteUnreferenced(anyString(), any(LocalDateTime.class));
+    }
+
+
+    private static byte[] png(int size) {
+        byte[] content = Arrays.copyOf(PNG_HEADER, size);
+        for (int i = PNG_HEADER.length; i < size; i++) {
+            content[i] = (byte) i;
+        }
+        return content;
+    }
+
+    private long fileCount() throws IOException {
+        try (Stream<Path> files = Files.walk(uploadDir)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+}
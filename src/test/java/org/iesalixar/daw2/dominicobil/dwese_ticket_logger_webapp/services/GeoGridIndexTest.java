@@ -0,0 +1,75 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services;
+
+
+import org.junit.jupiter.api.Test;
+
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class GeoGridIndexTest {
+
+
+    /**
+     * Los vecinos encontrados con la rejilla deben coincidir con los de una búsqueda exhaustiva.
+     */
+    @Test
+    public void testNearestMatchesBruteForce() {
+        Random random = new Random(42);
+        double[][] points = new double[20_000][];
+        GeoGridIndex index = new GeoGridIndex(0.05);
+        for (int i = 0; i < points.length; i++) {
+            // Península y Canarias, y algunos puntos repartidos por todo el mundo
+            double latitude = i % 10 == 0 ? random.nextDouble() * 180 - 90 : 27 + random.nextDouble() * 17;
+            double longitude = i % 10 == 0 ? random.nextDouble() * 360 - 180 : -18 + random.nextDouble() * 22;
+            points[i] = new double[]{latitude, longitude};
+            index.put(i, i % 7, latitude, longitude);
+        }
+        for (int q = 0; q < 200; q++) {
+            double latitude = random.nextDouble() * 180 - 90;
+            double longitude = random.nextDouble() * 360 - 180;
+            Integer supermarketId = q % 2 == 0 ? null : q % 7;
+            double[] distances = new double[points.length];
+            for (int i = 0; i < points.length; i++) {
+                distances[i] = GeoGridIndex.distanceKm(latitude, longitude, points[i][0], points[i][1]);
+            }
+            List<Integer> expected = IntStream.range(0, points.length)
+                    .filter(i -> supermarketId == null || i % 7 == supermarketId)
+                    .boxed()
+                    .sorted(Comparator.comparingDouble(i -> distances[i]))
+                    .limit(10)
+                    .toList();
+            List<Integer> actual = index.nearest(latitude, longitude, supermarketId, 10).stream()
+                    .map(GeoGridIndex.Neighbour::id)
+                    .toList();
+            assertEquals(expected, actual, "Query " + q + " at (" + latitude + ", " + longitude + ")");
+        }
+    }
+
+
+    /**
+     * Mover o quitar una ubicación se refleja en las búsquedas, también en la rejilla de su supermercado.
+     */
+    @Test
+    public void testPutMovesAndRemoveDeletes() {
+        GeoGridIndex index = new GeoGridIndex(0.05);
+        index.put(1, 10, 37.39, -5.99);   // Sevilla
+        index.put(2, 20, 36.53, -6.29);   // Cádiz
+        assertEquals(1, index.nearest(37.38, -5.98, null, 1).get(0).id());
+
+        index.put(1, 10, 40.42, -3.70);   // Madrid
+        assertEquals(2, index.nearest(37.38, -5.98, null, 1).get(0).id());
+        assertEquals(1, index.nearest(37.38, -5.98, 10, 1).get(0).id());
+
+        index.remove(1);
+        assertTrue(index.nearest(37.38, -5.98, 10, 1).isEmpty());
+        assertEquals(1, index.size());
+    }
+}
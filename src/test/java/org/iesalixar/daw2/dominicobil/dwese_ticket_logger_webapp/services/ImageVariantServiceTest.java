@@ -0,0 +1,80 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services;
+
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class ImageVariantServiceTest {
+
+    @TempDir
+    Path uploadDir;
+
+
+    /**
+     * Cada versión cabe en su tamaño máximo conservando la proporción; las fotos JPEG siguen en JPEG y las PNG
+     * conservan la transparencia. Hasta que se generan, las plantillas reciben la original.
+     */
+    @Test
+    public void testGeneratesVariants() throws IOException {
+        ImageVariantService service = new ImageVariantService(1);
+        ReflectionTestUtils.setField(service, "storageBackend", new LocalStorageBackend(uploadDir));
+        ReflectionTestUtils.setField(service, "jpegQuality", 0.8f);
+        Files.createDirectories(uploadDir.resolve("ab/cd"));
+        ImageIO.write(image(3000, 1500, BufferedImage.TYPE_INT_RGB), "jpeg", uploadDir.resolve("ab/cd/photo.jpg").toFile());
+        ImageIO.write(image(400, 300, BufferedImage.TYPE_INT_ARGB), "png", uploadDir.resolve("ab/cd/logo.png").toFile());
+
+        assertEquals("ab/cd/photo.jpg", service.url("ab/cd/photo.jpg", "THUMBNAIL"));
+        service.generate("ab/cd/photo.jpg");
+        service.generate("ab/cd/logo.png");
+
+        assertEquals("ab/cd/photo.thumb.jpg", service.url("ab/cd/photo.jpg", "THUMBNAIL"));
+        assertSize(2048, 1024, "ab/cd/photo.opt.jpg");
+        assertSize(800, 400, "ab/cd/photo.medium.jpg");
+        assertSize(200, 100, "ab/cd/photo.thumb.jpg");
+
+        // Más pequeña que la versión: no se amplía
+        assertSize(400, 300, "ab/cd/logo.medium.png");
+        BufferedImage thumbnail = ImageIO.read(uploadDir.resolve("ab/cd/logo.thumb.png").toFile());
+        assertEquals(200, thumbnail.getWidth());
+        assertEquals(150, thumbnail.getHeight());
+        assertTrue(thumbnail.getColorModel().hasAlpha());
+        assertEquals(0, thumbnail.getRGB(0, 0) >>> 24);
+
+        service.deleteVariants("ab/cd/photo.jpg");
+        assertFalse(Files.exists(uploadDir.resolve("ab/cd/photo.thumb.jpg")));
+        assertTrue(Files.exists(uploadDir.resolve("ab/cd/photo.jpg")));
+        service.shutdown();
+    }
+
+
+    private static BufferedImage image(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.ORANGE);
+        graphics.fillOval(width / 4, height / 4, width / 2, height / 2);
+        graphics.dispose();
+        return image;
+    }
+
+    private void assertSize(int width, int height, String path) throws IOException {
+        BufferedImage image = ImageIO.read(uploadDir.resolve(path).toFile());
+        assertEquals(width, image.getWidth(), path);
+        assertEquals(height, image.getHeight(), path);
+    }
+}
@@ -0,0 +1,139 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services;
+
+
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.SearchResult;
+import org.junit.jupiter.api.Test;
+
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class SearchIndexTest {
+
+
+    private static final String[] SYLLABLES = {"se", "vi", "lla", "ca", "diz", "ma", "drid", "ba", "dal", "to", "le", "do", "gra", "na"};
+
+
+    /**
+     * La búsqueda ignora mayúsculas y tildes y encuentra texto al principio o en mitad de una palabra.
+     */
+    @Test
+    public void testFindsNormalizedAndPartialMatches() {
+        SearchIndex index = new SearchIndex();
+        index.put(SearchService.PROVINCE, 1, "Sevilla", "41 · ANDALUCÍA", "/provinces/edit?id=1");
+        index.put(SearchService.PROVINCE, 2, "Cádiz", "11 · ANDALUCÍA", "/provinces/edit?id=2");
+        index.put(SearchService.PROVINCE, 3, "Madrid", "28 · MADRID", "/provinces/edit?id=3");
+
+        assertEquals(2, index.search("CADIZ", 10).get(0).id());
+        assertEquals(1, index.search("villa", 10).get(0).id());
+        assertEquals(1, index.search("se", 10).get(0).id());
+        assertEquals(Set.of(1, 2), Set.copyOf(index.search("andalucia", 10).stream().map(SearchResult::id).toList()));
+    }
+
+
+    /**
+     * Volver a indexar un documento sustituye su texto anterior, y quitarlo lo saca de las búsquedas.
+     */
+    @Test
+    public void testPutReplacesAndRemoveDeletes() {
+        SearchIndex index = new SearchIndex();
+        index.put(SearchService.LOCATION, 7, "Calle Larios 1", "Málaga · Mercadona", "/locations/edit?id=7");
+        assertEquals(1, index.search("malaga", 10).size());
+
+        index.put(SearchService.LOCATION, 7, "Calle Larios 1", "Granada · Mercadona", "/locations/edit?id=7");
+        assertTrue(index.search("malaga", 10).isEmpty());
+        assertEquals(7, index.search("granada", 10).get(0).id());
+        assertEquals(1, index.size());
+
+        index.remove(SearchService.LOCATION, 7);
+        assertTrue(index.search("larios", 10).isEmpty());
+        assertEquals(0, index.size());
+    }
+
+
+    /**
+     * Los resultados (recorriendo solo los postings de los grams raros y parando antes de tiempo) deben
+     * coincidir con los de puntuar exhaustivamente todos los documentos que comparten algún gram.
+     */
+    @Test
+    public void testSearchMatchesExhaustiveScoring() {
+        Random random = new Random(7);
+        SearchIndex index = new SearchIndex();
+        List<String[]> documents = new ArrayList<>();
+        for (int id = 0; id < 3_000; id++) {
+            String title = word(random) + " " + word(random) + " " + id;
+            String subtitle = random.nextBoolean() ? word(random) : null;
+            documents.add(new String[]{title, subtitle});
+            index.put(SearchService.LOCATION, id, title, subtitle, "/locations/edit?id=" + id);
+        }
+        for (int q = 0; q < 200; q++) {
+            String query = q % 3 == 0 ? SYLLABLES[random.nextInt(SYLLABLES.length)] : word(random);
+            List<Integer> expected = exhaustive(documents, query, 10);
+            List<Integer> actual = index.search(query, 10).stream().map(SearchResult::id).toList();
+            assertEquals(expected, actual, "Query '" + query + "'");
+        }
+    }
+
+
+    private static String word(Random random) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 2 + random.nextInt(3); i > 0; i--) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return word.toString();
+    }
+
+
+    /**
+     * Misma puntuación que {@link SearchIndex#search}, calculada sobre todos los documentos.
+     */
+    private static List<Integer> exhaustive(List<String[]> documents, String query, int limit) {
+        List<Set<String>> grams = new ArrayList<>();
+        Map<String, Integer> frequency = new HashMap<>();
+        for (String[] document : documents) {
+            String text = SearchIndex.normalize(document[0])
+                    + (document[1] == null ? "" : " " + SearchIndex.normalize(document[1]));
+            Set<String> documentGrams = SearchIndex.grams(text);
+            grams.add(documentGrams);
+            documentGrams.forEach(gram -> frequency.merge(gram, 1, Integer::sum));
+        }
+        String normalizedQuery = SearchIndex.normalize(query);
+        Set<String> queryGrams = SearchIndex.queryGrams(normalizedQuery);
+        double totalWeight = queryGrams.stream()
+                .mapToDouble(gram -> Math.log(1 + (double) documents.size() / frequency.getOrDefault(gram, 1)))
+                .sum();
+
+        List<double[]> scores = new ArrayList<>();
+        for (int id = 0; id < documents.size(); id++) {
+            Set<String> documentGrams = grams.get(id);
+            double coverage = queryGrams.stream()
+                    .filter(documentGrams::contains)
+                    .mapToDouble(gram -> Math.log(1 + (double) documents.size() / frequency.get(gram)))
+                    .sum() / totalWeight;
+            if (coverage < 0.5) {
+                continue;
+            }
+            String title = SearchIndex.normalize(documents.get(id)[0]);
+            String text = SearchIndex.normalize(documents.get(id)[0] + " " + documents.get(id)[1]);
+            double bonus = title.startsWith(normalizedQuery) ? 1.0 : title.contains(normalizedQuery) ? 0.5
+                    : documents.get(id)[1] != null && text.contains(normalizedQuery) ? 0.25 : 0;
+            scores.add(new double[]{coverage + bonus, id});
+        }
+        return scores.stream()
+                .sorted(Comparator.<double[]>comparingDouble(score -> -score[0])
+                        .thenComparing(score -> documents.get((int) score[1])[0]))
+                .limit(limit)
+                .map(score -> (int) score[1])
+                .toList();
+    }
+}
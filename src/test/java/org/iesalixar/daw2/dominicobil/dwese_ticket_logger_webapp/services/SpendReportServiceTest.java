@@ -0,0 +1,89 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services;
+
+
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.LocationDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.ProvinceDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.TicketDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.TicketLinesInsertedEvent;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.LocationKeys;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.ProvinceKeys;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.SpendDimension;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.SpendTotal;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.TicketLineFact;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+public class SpendReportServiceTest {
+
+    private SpendReportService service;
+
+    private TicketDAO ticketDAO;
+
+
+    @BeforeEach
+    public void setUp() {
+        service = new SpendReportService(mock(PlatformTransactionManager.class));
+        ticketDAO = mock(TicketDAO.class);
+        ProvinceDAO provinceDAO = mock(ProvinceDAO.class);
+        LocationDAO locationDAO = mock(LocationDAO.class);
+        when(provinceDAO.listProvinceKeys()).thenReturn(List.of(new ProvinceKeys(1, 1)));
+        when(locationDAO.streamLocationKeys()).thenAnswer(invocation -> Stream.of(new LocationKeys(1, 1, 1, 1)));
+        ReflectionTestUtils.setField(service, "ticketDAO", ticketDAO);
+        ReflectionTestUtils.setField(service, "provinceDAO", provinceDAO);
+        ReflectionTestUtils.setField(service, "locationDAO", locationDAO);
+        service.createPool();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        service.shutdownPool();
+    }
+
+
+    /**
+     * Las líneas que llegan como evento durante la carga se cuentan una sola vez: tanto si el evento llega antes
+     * de que el cursor lea la línea como si llega después, y también si la línea no estaba en la lectura.
+     */
+    @Test
+    public void testRebuildCountsEventLinesOnce() {
+        TicketLineFact first = line(1, 100);
+        TicketLineFact second = line(2, 200);
+        TicketLineFact committedLater = line(3, 400);
+        when(ticketDAO.streamTicketLineFacts()).thenAnswer(invocation -> Stream.of(first, second)
+                .peek(line -> {
+                    if (line == first) {
+                        // Evento de una línea que el cursor todavía no ha leído
+                        service.onTicketLinesInserted(new TicketLinesInsertedEvent(List.of(second)));
+                    } else {
+                        // Evento que llega cuando el cursor ya ha pasado por la línea
+                        service.onTicketLinesInserted(new TicketLinesInsertedEvent(List.of(first, committedLater)));
+                    }
+                }));
+
+        service.rebuild();
+
+        List<SpendTotal> totals = service.spendBy(SpendDimension.MONTH, null, null, null, null, null, null).orElseThrow();
+        assertEquals(1, totals.size());
+        assertEquals(700, totals.get(0).totalCents());
+        assertEquals(3, totals.get(0).lineCount());
+    }
+
+
+    private static TicketLineFact line(long id, long amountCents) {
+        return new TicketLineFact(id, 1, 1, LocalDateTime.of(2026, 3, 14, 12, 0), amountCents);
+    }
+}
@@ -0,0 +1,123 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services;
+
+
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.SpendDimension;
+import org.junit.jupiter.api.Test;
+
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+public class TicketLineColumnsTest {
+
+
+    /**
+     * Los totales de cada agrupación y filtro deben coincidir con los de una suma fila a fila.
+     * Con 200.000 líneas el almacén ocupa varios segmentos, así que se prueba también el reparto entre tareas.
+     */
+    @Test
+    public void testAggregateMatchesBruteForce() {
+        Random random = new Random(7);
+        TicketLineColumns columns = new TicketLineColumns();
+        int[] supermarketOf = new int[101];
+        int[] provinceOf = new int[101];
+        for (int location = 1; location <= 100; location++) {
+            supermarketOf[location] = 1 + location % 6;
+            provinceOf[location] = 1 + location % 9;
+            columns.putLocation(location, supermarketOf[location], provinceOf[location]);
+        }
+        int[] regionOf = new int[10];
+        for (int province = 1; province <= 9; province++) {
+            regionOf[province] = 1 + province % 3;
+            columns.putProvince(province, regionOf[province]);
+        }
+        int firstMonth = TicketLineColumns.epochMonth(YearMonth.of(2024, 11));
+        int[][] rows = new int[200_000][];
+        long[] amounts = new long[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new int[]{1 + random.nextInt(100), 1 + random.nextInt(30), firstMonth + random.nextInt(14)};
+            amounts[i] = random.nextInt(10_000);
+            columns.append(rows[i][0], rows[i][1], rows[i][2], amounts[i]);
+        }
+
+        boolean[] someCategories = new boolean[31];
+        for (int category = 1; category <= 30; category += 3) {
+            someCategories[category] = true;
+        }
+        List<TicketLineColumns.Filter> filters = List.of(
+                TicketLineColumns.Filter.ALL,
+                new TicketLineColumns.Filter(firstMonth + 2, firstMonth + 5, null, TicketLineColumns.ANY, TicketLineColumns.ANY, TicketLineColumns.ANY),
+                new TicketLineColumns.Filter(Integer.MIN_VALUE, Integer.MAX_VALUE, someCategories, TicketLineColumns.ANY, TicketLineColumns.ANY, 3),
+                new TicketLineColumns.Filter(firstMonth, firstMonth + 1, null, TicketLineColumns.ANY, 4, TicketLineColumns.ANY),
+                new TicketLineColumns.Filter(Integer.MIN_VALUE, Integer.MAX_VALUE, null, 2, TicketLineColumns.ANY, TicketLineColumns.ANY));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        for (SpendDimension dimension : SpendDimension.values()) {
+            for (TicketLineColumns.Filter filter : filters) {
+                Map<Integer, long[]> expected = new TreeMap<>();
+                for (int i = 0; i < rows.length; i++) {
+                    int location = rows[i][0];
+                    int category = rows[i][1];
+                    int month = rows[i][2];
+                    if (month < filter.fromMonth() || month > filter.toMonth()
+                            || (filter.categories() != null && !filter.categories()[category])
+                            || (filter.regionId() != TicketLineColumns.ANY && regionOf[provinceOf[location]] != filter.regionId())
+                            || (filter.supermarketId() != TicketLineColumns.ANY && supermarketOf[location] != filter.supermarketId())
+                            || (filter.provinceId() != TicketLineColumns.ANY && provinceOf[location] != filter.provinceId())) {
+                        continue;
+                    }
+                    int key = switch (dimension) {
+                        case REGION -> regionOf[provinceOf[location]];
+                        case CATEGORY -> category;
+                        case SUPERMARKET -> supermarketOf[location];
+                        case PROVINCE -> provinceOf[location];
+                        case MONTH -> month;
+                    };
+                    long[] total = expected.computeIfAbsent(key, k -> new long[2]);
+                    total[0] += amounts[i];
+                    total[1]++;
+                }
+                List<TicketLineColumns.Total> actual = columns.aggregate(dimension, filter, pool);
+                assertEquals(expected.size(), actual.size(), dimension + " " + filter);
+                for (TicketLineColumns.Total total : actual) {
+                    long[] expectedTotal = expected.get(total.key());
+                    assertEquals(expectedTotal[0], total.totalCents(), dimension + " key " + total.key());
+                    assertEquals(expectedTotal[1], total.lineCount(), dimension + " key " + total.key());
+                }
+            }
+        }
+        pool.shutdown();
+    }
+
+
+    /**
+     * Cambiar la provincia de una ubicación mueve sus líneas de grupo sin volver a añadirlas.
+     */
+    @Test
+    public void testLocationChangeMovesLines() {
+        TicketLineColumns columns = new TicketLineColumns();
+        int month = TicketLineColumns.epochMonth(YearMonth.of(2025, 3));
+        columns.putLocation(1, 1, 10);
+        columns.putLocation(2, 1, 20);
+        columns.append(1, 5, month, 300);
+        columns.append(2, 5, month, 700);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        assertEquals(List.of(new TicketLineColumns.Total(10, 300, 1), new TicketLineColumns.Total(20, 700, 1)),
+                columns.aggregate(SpendDimension.PROVINCE, TicketLineColumns.Filter.ALL, pool));
+
+        columns.putLocation(1, 1, 20);
+        assertEquals(List.of(new TicketLineColumns.Total(20, 1000, 2)),
+                columns.aggregate(SpendDimension.PROVINCE, TicketLineColumns.Filter.ALL, pool));
+        assertEquals(YearMonth.of(2025, 3), TicketLineColumns.yearMonth(
+                columns.aggregate(SpendDimension.MONTH, TicketLineColumns.Filter.ALL, pool).get(0).key()));
+    }
+}
@@ -0,0 +1,139 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services;
+
+
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.UploadServingStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class UploadServingServiceTest {
+
+    private static final String PATH = "ab/cd/abcd1234.png";
+
+    @TempDir
+    Path tempDir;
+
+    private Path uploadDir;
+
+    private UploadServingService service;
+
+    private byte[] content;
+
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        uploadDir = Files.createDirectory(tempDir.resolve("uploads"));
+        service = new UploadServingService();
+        ReflectionTestUtils.setField(service, "storageBackend", new LocalStorageBackend(uploadDir));
+        ReflectionTestUtils.setField(service, "cacheMaxAge", Duration.ofDays(365));
+        ReflectionTestUtils.setField(service, "sendfileThreshold", DataSize.ofKilobytes(48));
+        content = new byte[1000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        Files.createDirectories(uploadDir.resolve("ab/cd"));
+        Files.write(uploadDir.resolve(PATH), content);
+    }
+
+
+    /**
+     * Respuesta completa con caché immutable y ETag; al revalidar con ese ETag basta un 304 sin cuerpo.
+     * Las rutas que salen del directorio o apuntan a temporales no se sirven.
+     */
+    @Test
+    public void testCachingAndValidation() throws IOException {
+        MockHttpServletResponse full = serve(new MockHttpServletRequest("GET", "/uploads/" + PATH));
+        assertEquals(200, full.getStatus());
+        assertArrayEquals(content, full.getContentAsByteArray());
+        assertEquals("\"abcd1234.png\"", full.getHeader("ETag"));
+        assertEquals("public, max-age=31536000, immutable", full.getHeader("Cache-Control"));
+        assertEquals("image/png", full.getContentType());
+
+        MockHttpServletRequest revalidation = new MockHttpServletRequest("GET", "/uploads/" + PATH);
+        revalidation.addHeader("If-None-Match", "W/\"abcd1234.png\"");
+        MockHttpServletResponse notModified = serve(revalidation);
+        assertEquals(304, notModified.getStatus());
+        assertEquals(0, notModified.getContentAsByteArray().length);
+
+        Files.write(uploadDir.resolve("ab/cd/.upload-1.tmp"), content);
+        Files.write(tempDir.resolve("secret.png"), content);
+        assertEquals(404, service(new MockHttpServletRequest("GET", "/uploads/x"), "ab/cd/.upload-1.tmp").getStatus());
+        assertEquals(404, service(new MockHttpServletRequest("GET", "/uploads/x"), "ab/../../secret.png").getStatus());
+
+        UploadServingStats stats = service.getStats();
+        assertEquals(4, stats.requests());
+        assertEquals(1, stats.notModified());
+        assertEquals(2, stats.notFound());
+        assertEquals(content.length, stats.bytesServed());
+    }
+
+
+    /**
+     * Rangos: un tramo da 206 con Content-Range, uno fuera del archivo da 416, varios tramos o un If-Range que
+     * no coincide dan el archivo entero; con sendfile disponible el envío se delega en Tomcat.
+     */
+    @Test
+    public void testRanges() throws IOException {
+        MockHttpServletResponse partial = serve(range("bytes=100-199"));
+        assertEquals(206, partial.getStatus());
+        assertEquals("bytes 100-199/1000", partial.getHeader("Content-Range"));
+        assertArrayEquals(Arrays.copyOfRange(content, 100, 200), partial.getContentAsByteArray());
+
+        MockHttpServletResponse suffix = serve(range("bytes=-10"));
+        assertArrayEquals(Arrays.copyOfRange(content, 990, 1000), suffix.getContentAsByteArray());
+
+        MockHttpServletResponse unsatisfiable = serve(range("bytes=1000-"));
+        assertEquals(416, unsatisfiable.getStatus());
+        assertEquals("bytes */1000", unsatisfiable.getHeader("Content-Range"));
+
+        assertEquals(200, serve(range("bytes=0-1,5-6")).getStatus());
+        MockHttpServletRequest stale = range("bytes=0-9");
+        stale.addHeader("If-Range", "\"other.png\"");
+        assertEquals(content.length, serve(stale).getContentAsByteArray().length);
+
+        ReflectionTestUtils.setField(service, "sendfileThreshold", DataSize.ofBytes(1));
+        MockHttpServletRequest sendfile = range("bytes=500-");
+        sendfile.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        MockHttpServletResponse delegated = serve(sendfile);
+        assertEquals(206, delegated.getStatus());
+        assertEquals(0, delegated.getContentAsByteArray().length);
+        assertEquals(500L, sendfile.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(1000L, sendfile.getAttribute("org.apache.tomcat.sendfile.end"));
+        assertTrue(((String) sendfile.getAttribute("org.apache.tomcat.sendfile.filename")).endsWith("abcd1234.png"));
+        assertEquals(1, service.getStats().sendfileResponses());
+    }
+
+
+    private static MockHttpServletRequest range(String range) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/uploads/" + PATH);
+        request.addHeader("Range", range);
+        return request;
+    }
+
+    private MockHttpServletResponse serve(MockHttpServletRequest request) throws IOException {
+        return service(request, PATH);
+    }
+
+    private MockHttpServletResponse service(MockHttpServletRequest request, String path) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        service.serve(path, request, response);
+        return response;
+    }
+}
@@ -0,0 +1,121 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services;
+
+
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dao.StoredFileDAO;
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.UploadSweepReport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class UploadSweeperServiceTest {
+
+    @TempDir
+    Path uploadDir;
+
+    private UploadSweeperService service;
+
+    private StoredFileDAO storedFileDAO;
+
+
+    @BeforeEach
+    public void setUp() {
+        service = new UploadSweeperService(mock(PlatformTransactionManager.class));
+        storedFileDAO = mock(StoredFileDAO.class);
+        ReflectionTestUtils.setField(service, "storedFileDAO", storedFileDAO);
+        ReflectionTestUtils.setField(service, "imageVariantService", mock(ImageVariantService.class));
+        ReflectionTestUtils.setField(service, "storageBackend", new LocalStorageBackend(uploadDir));
+        ReflectionTestUtils.setField(service, "gracePeriod", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(service, "batchSize", 2);
+        ReflectionTestUtils.setField(service, "pauseBetweenBatches", Duration.ZERO);
+        ReflectionTestUtils.setField(service, "quarantineRetention", Duration.ofDays(7));
+        when(storedFileDAO.lockUnreferenced(anyString(), any())).thenReturn(true);
+    }
+
+
+    /**
+     * Se eliminan las imágenes sin referencias, los temporales y las versiones sin original; se conservan las
+     * referenciadas y las recientes. Las rutas se comprueban por bloques y se informa de los bytes liberados.
+     */
+    @Test
+    public void testDeletesOrphans() throws IOException, InterruptedException {
+        Set<Collection<String>> batches = new HashSet<>();
+        when(storedFileDAO.findReferencedPaths(anyCollection(), any())).thenAnswer(invocation -> {
+            Collection<String> paths = invocation.getArgument(0);
+            batches.add(Set.copyOf(paths));
+            return paths.contains("ab/cd/used.png") ? Set.of("ab/cd/used.png") : Set.of();
+        });
+        old("ab/cd/used.png", 10);
+        old("ab/cd/used.thumb.png", 5);
+        old("ab/cd/orphan.jpg", 100);
+        old("ab/cd/gone.medium.jpg", 20);
+        old(".upload-123.tmp", 30);
+        old("legacy-uuid.png", 40);
+        Files.write(uploadDir.resolve("ab/cd/fresh.png"), new byte[50]);
+
+        UploadSweepReport report = service.sweep();
+
+        assertEquals(7, report.scannedFiles());
+        assertEquals(4, report.orphanFiles());
+        assertEquals(190, report.reclaimedBytes());
+        assertTrue(Files.exists(uploadDir.resolve("ab/cd/used.png")));
+        assertTrue(Files.exists(uploadDir.resolve("ab/cd/used.thumb.png")));
+        assertTrue(Files.exists(uploadDir.resolve("ab/cd/fresh.png")));
+        assertFalse(Files.exists(uploadDir.resolve("ab/cd/orphan.jpg")));
+        assertFalse(Files.exists(uploadDir.resolve("ab/cd/gone.medium.jpg")));
+        assertFalse(Files.exists(uploadDir.resolve("legacy-uuid.png")));
+        assertEquals(2, batches.size());
+        verify(storedFileDAO, times(2)).lockUnreferenced(anyString(), any());
+    }
+
+
+    /**
+     * En modo cuarentena los huérfanos se mueven a `.orphans/` y no se vuelven a recorrer.
+     */
+    @Test
+    public void testQuarantine() throws IOException, InterruptedException {
+        ReflectionTestUtils.setField(service, "quarantine", true);
+        when(storedFileDAO.findReferencedPaths(anyCollection(), any())).thenReturn(Set.of());
+        old("ab/cd/orphan.jpg", 100);
+
+        UploadSweepReport report = service.sweep();
+        assertEquals(1, report.quarantinedFiles());
+        assertEquals(0, report.reclaimedBytes());
+        assertTrue(Files.exists(uploadDir.resolve(".orphans/ab/cd/orphan.jpg")));
+
+        assertEquals(0, service.sweep().scannedFiles());
+    }
+
+
+    private void old(String path, int size) throws IOException {
+        Path file = uploadDir.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[size]);
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(Duration.ofHours(1))));
+    }
+}
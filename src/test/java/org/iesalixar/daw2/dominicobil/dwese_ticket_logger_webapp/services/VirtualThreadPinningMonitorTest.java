@@ -0,0 +1,64 @@
+package org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.services;
+
+
+import org.iesalixar.daw2.dominicobil.dwese_ticket_logger_webapp.dto.PinningReport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+
+import java.time.Duration;
+
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class VirtualThreadPinningMonitorTest {
+
+    private final VirtualThreadPinningMonitor monitor = new VirtualThreadPinningMonitor();
+
+    private final Object lock = new Object();
+
+
+    @AfterEach
+    public void tearDown() {
+        monitor.shutdown();
+    }
+
+
+    /**
+     * Un hilo virtual que duerme dentro de un bloque sincronizado queda fijado a su portador; el bloqueo se
+     * atribuye al método que ha entrado en el bloque, no a las clases del JDK.
+     */
+    @Test
+    public void testRecordsPinnedSites() throws InterruptedException {
+        ReflectionTestUtils.setField(monitor, "enabled", true);
+        ReflectionTestUtils.setField(monitor, "threshold", Duration.ofMillis(10));
+        monitor.start();
+
+        PinningReport report = monitor.getReport();
+        long deadline = System.nanoTime() + Duration.ofSeconds(20).toNanos();
+        while ((report.events() == 0 || report.sites().isEmpty()) && System.nanoTime() < deadline) {
+            Thread.ofVirtual().start(this::sleepWhileHoldingLock).join();
+            report = monitor.getReport();
+        }
+
+        assertTrue(report.monitoring());
+        assertTrue(report.events() > 0);
+        assertFalse(report.sites().isEmpty());
+        assertTrue(report.sites().get(0).frame().startsWith(getClass().getName() + ".sleepWhileHoldingLock:"),
+                report.sites().get(0).frame());
+    }
+
+
+    private void sleepWhileHoldingLock() {
+        synchronized (lock) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}